@@ -0,0 +1,157 @@
+package com.example.unified_json.batch;
+
+import com.example.unified_json.service.ExcelToJsonConverter;
+import com.example.unified_json.service.JsonToExcelService;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.DefaultJobParametersValidator;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.skip.LimitCheckingItemSkipPolicy;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Converts every workbook (or unified JSON file) in a directory. The files
+ * are split into partitions that run on a bounded pool; each partition is
+ * a chunk-oriented step whose progress is committed to the job repository
+ * after every chunk. Running the job again with the same parameters after a
+ * failure restarts only the failed partitions, each from its last committed
+ * chunk.
+ * <p>
+ * A file that cannot be converted is skipped and logged; a partition fails
+ * once it has skipped more than the skip limit.
+ * <p>
+ * Job parameters: inputDirectory and outputDirectory, required; direction,
+ * "excel-to-json" (the default) or "json-to-excel"; run, any value that
+ * tells one run of the same directories from another, such as the date;
+ * and skipLimit, the files each partition may skip, excel.bulk.skip-limit
+ * by default.
+ */
+@Configuration
+public class BulkConversionJobConfig {
+
+    public static final String JOB_NAME = "bulkConversionJob";
+
+    private static final Logger LOGGER = Logger.getLogger(BulkConversionJobConfig.class.getName());
+
+    // Partitions converted at once, and so the number of partitions
+    @Value("${excel.bulk.threads:4}")
+    private int threads = 4;
+
+    // Files converted between two commits of a partition's progress
+    @Value("${excel.bulk.chunk-size:10}")
+    private int chunkSize = 10;
+
+    @Bean
+    public Job bulkConversionJob(JobRepository jobRepository, Step bulkConversionStep) {
+        return new JobBuilder(JOB_NAME, jobRepository)
+                .validator(new DefaultJobParametersValidator(
+                        new String[]{"inputDirectory", "outputDirectory"},
+                        new String[]{"direction", "run", "skipLimit"}))
+                .start(bulkConversionStep)
+                .build();
+    }
+
+    @Bean
+    public Step bulkConversionStep(JobRepository jobRepository, ConversionFilePartitioner conversionFilePartitioner,
+                                   Step fileConversionStep) {
+        return new StepBuilder("bulkConversionStep", jobRepository)
+                .partitioner("fileConversionStep", conversionFilePartitioner)
+                .step(fileConversionStep)
+                .gridSize(threads)
+                .taskExecutor(partitionExecutor())
+                .build();
+    }
+
+    @Bean
+    public Step fileConversionStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                   ConversionFileReader conversionFileReader,
+                                   FileConversionWriter fileConversionWriter,
+                                   SkipPolicy fileConversionSkipPolicy) {
+        return new StepBuilder("fileConversionStep", jobRepository)
+                .<Path, Path>chunk(chunkSize, transactionManager)
+                .reader(conversionFileReader)
+                .writer(fileConversionWriter)
+                // A failed chunk is written again a file at a time, to find the files to skip
+                .faultTolerant()
+                .skipPolicy(fileConversionSkipPolicy)
+                .listener(new SkipListener<Path, Path>() {
+                    @Override
+                    public void onSkipInWrite(Path file, Throwable t) {
+                        LOGGER.warning("Skipped " + file + ": " + t.getMessage());
+                    }
+                })
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public SkipPolicy fileConversionSkipPolicy(
+            @Value("#{jobParameters['skipLimit'] ?: ${excel.bulk.skip-limit:10}}") int skipLimit) {
+        return new LimitCheckingItemSkipPolicy(skipLimit, Map.of(FileConversionException.class, true));
+    }
+
+    /**
+     * Launches the job on its own thread and returns its execution at once.
+     * Only injected where asked for by name, so the application's default
+     * launcher, which waits for the job, is left as it is.
+     */
+    @Bean(defaultCandidate = false)
+    public JobLauncher bulkConversionJobLauncher(JobRepository jobRepository) throws Exception {
+        // Jobs wait on the bounded partition pool, so their own threads need no limit
+        TaskExecutorJobLauncher jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.setTaskExecutor(new SimpleAsyncTaskExecutor("bulk-job-"));
+        jobLauncher.afterPropertiesSet();
+        return jobLauncher;
+    }
+
+    @Bean
+    @StepScope
+    public ConversionFilePartitioner conversionFilePartitioner(
+            @Value("#{jobParameters['inputDirectory']}") String inputDirectory,
+            @Value("#{jobParameters['direction'] ?: 'excel-to-json'}") String direction) {
+        return new ConversionFilePartitioner(Path.of(inputDirectory), ConversionDirection.parse(direction));
+    }
+
+    @Bean
+    @StepScope
+    public ConversionFileReader conversionFileReader(
+            @Value("#{jobParameters['inputDirectory']}") String inputDirectory,
+            @Value("#{stepExecutionContext['" + ConversionFilePartitioner.FILES + "']}") List<String> files) {
+        return new ConversionFileReader(Path.of(inputDirectory), files);
+    }
+
+    @Bean
+    @StepScope
+    public FileConversionWriter fileConversionWriter(
+            ExcelToJsonConverter excelToJsonConverter, JsonToExcelService jsonToExcelService,
+            @Value("#{jobParameters['outputDirectory']}") String outputDirectory,
+            @Value("#{jobParameters['direction'] ?: 'excel-to-json'}") String direction) {
+        return new FileConversionWriter(excelToJsonConverter, jsonToExcelService,
+                Path.of(outputDirectory), ConversionDirection.parse(direction));
+    }
+
+    // Not a bean, which would replace the application's default executor
+    private TaskExecutor partitionExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("bulk-conversion-");
+        executor.setConcurrencyLimit(threads);
+        return executor;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.unified_json.batch;
+
+import java.util.Locale;
+
+/**
+ * Which way a bulk run converts, and the file extensions that go with it.
+ */
+public enum ConversionDirection {
+
+    EXCEL_TO_JSON(".xlsx", ".json"),
+    JSON_TO_EXCEL(".json", ".xlsx");
+
+    private final String sourceExtension;
+    private final String targetExtension;
+
+    ConversionDirection(String sourceExtension, String targetExtension) {
+        this.sourceExtension = sourceExtension;
+        this.targetExtension = targetExtension;
+    }
+
+    /** Accepts the job parameter form, e.g. "excel-to-json". */
+    public static ConversionDirection parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    public boolean isSource(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(sourceExtension)
+                // Excel's lock files for open workbooks
+                && !fileName.startsWith("~$");
+    }
+
+    public String targetName(String sourceName) {
+        return sourceName.substring(0, sourceName.length() - sourceExtension.length()) + targetExtension;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.unified_json.batch;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Splits the files to convert in a directory into contiguous runs, one per
+ * partition. The file names are stored in each partition's context, so a
+ * restarted partition works through the same files as the failed one even
+ * if the directory has changed since.
+ */
+public class ConversionFilePartitioner implements Partitioner {
+
+    static final String FILES = "files";
+
+    private final Path inputDirectory;
+    private final ConversionDirection direction;
+
+    public ConversionFilePartitioner(Path inputDirectory, ConversionDirection direction) {
+        this.inputDirectory = inputDirectory;
+        this.direction = direction;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<String> files;
+        try (Stream<Path> entries = Files.list(inputDirectory)) {
+            files = entries.filter(Files::isRegularFile)
+                    .map(path -> path.getFileName().toString())
+                    .filter(direction::isSource)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list " + inputDirectory, e);
+        }
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        int partitionCount = Math.max(1, Math.min(gridSize, files.size()));
+        for (int i = 0; i < partitionCount; i++) {
+            int from = files.size() * i / partitionCount;
+            int to = files.size() * (i + 1) / partitionCount;
+            ExecutionContext context = new ExecutionContext();
+            context.put(FILES, new ArrayList<>(files.subList(from, to)));
+            partitions.put("partition" + i, context);
+        }
+        return partitions;
+    }
+}
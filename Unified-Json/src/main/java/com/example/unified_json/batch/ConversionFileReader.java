@@ -0,0 +1,41 @@
+package com.example.unified_json.batch;
+
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reads a partition's files in order. The count of files read is saved
+ * with every committed chunk, so a restart continues after the last one.
+ */
+public class ConversionFileReader extends AbstractItemCountingItemStreamItemReader<Path> {
+
+    private final Path inputDirectory;
+    private final List<String> files;
+
+    public ConversionFileReader(Path inputDirectory, List<String> files) {
+        this.inputDirectory = inputDirectory;
+        this.files = files;
+        setName(ConversionFileReader.class.getSimpleName());
+    }
+
+    @Override
+    protected Path doRead() {
+        int index = getCurrentItemCount() - 1;
+        return index < files.size() ? inputDirectory.resolve(files.get(index)) : null;
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        // Items are looked up by index, so there is nothing to skip over
+    }
+
+    @Override
+    protected void doOpen() {
+    }
+
+    @Override
+    protected void doClose() {
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.unified_json.batch;
+
+import java.nio.file.Path;
+
+/**
+ * A file of a bulk run that could not be converted. The step skips these,
+ * up to its skip limit, rather than failing the partition.
+ */
+public class FileConversionException extends Exception {
+
+    public FileConversionException(Path file, Throwable cause) {
+        super("Cannot convert " + file + ": " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.unified_json.batch;
+
+import com.example.unified_json.service.ExcelToJsonConverter;
+import com.example.unified_json.service.JsonToExcelService;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Converts each file of a chunk into the output directory, under the same
+ * name with the target extension. Outputs are overwritten, so converting a
+ * chunk again after a failure is harmless. A file that fails to convert is
+ * reported as a {@link FileConversionException}.
+ */
+public class FileConversionWriter implements ItemWriter<Path> {
+
+    private static final Logger LOGGER = Logger.getLogger(FileConversionWriter.class.getName());
+
+    private final ExcelToJsonConverter excelToJsonConverter;
+    private final JsonToExcelService jsonToExcelService;
+    private final Path outputDirectory;
+    private final ConversionDirection direction;
+
+    public FileConversionWriter(ExcelToJsonConverter excelToJsonConverter, JsonToExcelService jsonToExcelService,
+                                Path outputDirectory, ConversionDirection direction) {
+        this.excelToJsonConverter = excelToJsonConverter;
+        this.jsonToExcelService = jsonToExcelService;
+        this.outputDirectory = outputDirectory;
+        this.direction = direction;
+    }
+
+    @Override
+    public void write(Chunk<? extends Path> files) throws Exception {
+        Files.createDirectories(outputDirectory);
+        for (Path file : files) {
+            long start = System.nanoTime();
+            Path target = outputDirectory.resolve(direction.targetName(file.getFileName().toString()));
+            try {
+                if (direction == ConversionDirection.EXCEL_TO_JSON) {
+                    try (InputStream inputStream = Files.newInputStream(file)) {
+                        excelToJsonConverter.convertExcelToJson(inputStream, target.toString());
+                    }
+                } else {
+                    jsonToExcelService.convertJsonToExcel(file.toString(), target.toString());
+                }
+            } catch (Exception e) {
+                throw new FileConversionException(file, e);
+            }
+            LOGGER.info("Converted " + file + " to " + target + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+    }
+}
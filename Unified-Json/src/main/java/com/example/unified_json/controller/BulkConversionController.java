@@ -0,0 +1,121 @@
+package com.example.unified_json.controller;
+
+import com.example.unified_json.batch.ConversionDirection;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/excel/bulk")
+public class BulkConversionController {
+
+    @Autowired
+    @Qualifier("bulkConversionJobLauncher")
+    private JobLauncher jobLauncher;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private Job bulkConversionJob;
+
+    // The directories of a run are resolved under this one, and must stay inside it
+    @Value("${excel.bulk.base-directory:bulk}")
+    private String baseDirectory = "bulk";
+
+    /**
+     * Starts the bulk conversion job over a directory and answers with its
+     * execution id, to follow the run at /api/excel/bulk/{id}. Both
+     * directories are relative to the base directory; others are refused.
+     * Runs are told
+     * apart by the run parameter, today's date by default; posting the same
+     * parameters after a failure restarts the run from its last committed
+     * chunks. Files that fail to convert are skipped, up to skipLimit per
+     * partition.
+     */
+    @PostMapping
+    public ResponseEntity<String> convertDirectory(@RequestParam("inputDirectory") String inputDirectory,
+                                                   @RequestParam("outputDirectory") String outputDirectory,
+                                                   @RequestParam(value = "direction", defaultValue = "excel-to-json") String direction,
+                                                   @RequestParam(value = "run", required = false) String run,
+                                                   @RequestParam(value = "skipLimit", required = false) Long skipLimit) {
+        try {
+            ConversionDirection.parse(direction);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unknown direction '" + direction
+                    + "', expected excel-to-json or json-to-excel");
+        }
+
+        Path input = underBase(inputDirectory);
+        Path output = underBase(outputDirectory);
+        if (input == null || output == null) {
+            return ResponseEntity.badRequest().body("The input and output directories must be inside the base directory");
+        }
+
+        JobParametersBuilder parameters = new JobParametersBuilder()
+                .addString("inputDirectory", input.toString())
+                .addString("outputDirectory", output.toString())
+                .addString("direction", direction)
+                .addString("run", run != null ? run : LocalDate.now().toString());
+        if (skipLimit != null) {
+            parameters.addLong("skipLimit", skipLimit);
+        }
+        try {
+            JobExecution execution = jobLauncher.run(bulkConversionJob, parameters.toJobParameters());
+            return ResponseEntity.accepted().body(String.valueOf(execution.getId()));
+        } catch (JobInstanceAlreadyCompleteException e) {
+            return ResponseEntity.status(409).body("This run has already completed; pass another run value to convert again");
+        } catch (JobExecutionAlreadyRunningException e) {
+            return ResponseEntity.status(409).body("This run is still in progress");
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error starting bulk conversion: " + e.getMessage());
+        }
+    }
+
+    /** The status of a run, with the files it has converted and skipped so far. */
+    @GetMapping("/{executionId}")
+    public ResponseEntity<String> status(@PathVariable("executionId") long executionId) {
+        JobExecution execution = jobExplorer.getJobExecution(executionId);
+        if (execution == null || !bulkConversionJob.getName().equals(execution.getJobInstance().getJobName())) {
+            return ResponseEntity.status(404).body("No bulk conversion " + executionId);
+        }
+        long converted = 0;
+        long skipped = 0;
+        for (StepExecution step : execution.getStepExecutions()) {
+            if (step.getStepName().startsWith("fileConversionStep")) {
+                converted += step.getWriteCount();
+                skipped += step.getWriteSkipCount();
+            }
+        }
+        String summary = "Bulk conversion " + execution.getId() + " " + execution.getStatus()
+                + ": " + converted + " files converted, " + skipped + " skipped";
+        // A failed run is a state of the job like any other, not an error of this request
+        return ResponseEntity.ok(execution.getStatus().isUnsuccessful()
+                ? summary + ", post the same parameters again to restart" : summary);
+    }
+
+    // The directory resolved under the base directory, or null if it leads outside it
+    private Path underBase(String directory) {
+        Path base = Path.of(baseDirectory).toAbsolutePath().normalize();
+        try {
+            Path resolved = base.resolve(directory).normalize();
+            return resolved.startsWith(base) ? resolved : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+}
@@ -2,33 +2,72 @@ package com.example.unified_json.controller;
 
 import com.example.unified_json.service.ExcelToJsonConverter;
 import com.example.unified_json.service.JsonToExcelService;
+import com.example.unified_json.service.SpillingBuffer;
+import com.example.unified_json.service.WorkbookRows;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @RestController
 @RequestMapping("/api/excel")
 public class ExcelController {
 
+    private static final Logger LOGGER = Logger.getLogger(ExcelController.class.getName());
+
+    private static final MediaType XLSX =
+            MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
     @Autowired
     private ExcelToJsonConverter excelToJsonConverter;
 
     @Autowired
     private JsonToExcelService jsonToExcelService;
 
+    // Each request writes its files to a directory of its own below this one
+    @Value("${excel.output-directory:src/main/resources}")
+    private String outputDirectory = "src/main/resources";
+
+    // The files outlive the response that names them for this long, then the next request deletes them
+    @Value("${excel.output-retention-minutes:60}")
+    private long outputRetentionMinutes = 60;
+
+    // Intermediate and streamed results larger than this move from memory to a temporary file
+    @Value("${excel.spill-threshold-bytes:16777216}")
+    private long spillThreshold = 16 * 1024 * 1024;
+
     @PostMapping("/convert")
     public ResponseEntity<String> convertExcelToJsonAndExcel(@RequestParam("file") MultipartFile file) {
+        deleteExpiredRequestDirectories();
+        Path requestDirectory = Paths.get(outputDirectory, UUID.randomUUID().toString());
         try (InputStream inputStream = file.getInputStream()) {
             // Define output file paths
-            String jsonFilePath = "src/main/resources/output.json";
-            String excelFilePath = "src/main/resources/output.xlsx";
+            Files.createDirectories(requestDirectory);
+            String jsonFilePath = requestDirectory.resolve("output.json").toString();
+            String excelFilePath = requestDirectory.resolve("output.xlsx").toString();
 
             // Convert Excel to JSON
             excelToJsonConverter.convertExcelToJson(inputStream, jsonFilePath);
@@ -41,7 +80,139 @@ public class ExcelController {
                     "JSON File: " + jsonFilePath + "\n" +
                     "Excel File: " + excelFilePath);
         } catch (Exception e) {
+            deleteQuietly(requestDirectory);
             return ResponseEntity.status(500).body("Error processing file: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // Only directories named by a request's UUID are removed; anything else in the output directory is left alone
+    private void deleteExpiredRequestDirectories() {
+        Path root = Paths.get(outputDirectory);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(outputRetentionMinutes);
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : directories) {
+                if (isRequestDirectory(directory) && Files.getLastModifiedTime(directory).toMillis() < cutoff) {
+                    deleteQuietly(directory);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Could not look for expired conversion results: " + e.getMessage());
+        }
+    }
+
+    private static boolean isRequestDirectory(Path directory) {
+        try {
+            String name = directory.getFileName().toString();
+            return UUID.fromString(name).toString().equals(name);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void deleteQuietly(Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            LOGGER.warning("Could not delete conversion results in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The same round trip without files of its own: the requested result
+     * (json, xlsx, or both in a zip) is built in memory, or on disk past the
+     * spill threshold, and sent in the response. The xlsx is written from
+     * the rows as they are read from the upload, without the JSON in between;
+     * for a zip, the same read of the upload writes the JSON too.
+     */
+    @PostMapping(value = "/convert", params = "output")
+    public ResponseEntity<StreamingResponseBody> convertInMemory(@RequestParam("file") MultipartFile file,
+                                                                 @RequestParam("output") String output) {
+        if (!List.of("json", "xlsx", "zip").contains(output)) {
+            return message(HttpStatus.BAD_REQUEST, "Unknown output '" + output + "', expected json, xlsx or zip");
+        }
+        List<SpillingBuffer> buffers = new ArrayList<>();
+        try (InputStream inputStream = file.getInputStream()) {
+            if ("json".equals(output)) {
+                SpillingBuffer json = new SpillingBuffer(spillThreshold);
+                buffers.add(json);
+                try (OutputStream jsonOutput = json.getOutputStream()) {
+                    excelToJsonConverter.convertExcelToJson(inputStream, jsonOutput);
+                }
+                return stream(buffers, MediaType.APPLICATION_JSON, "output.json", out -> copy(json, out));
+            }
+
+            SpillingBuffer excel = new SpillingBuffer(spillThreshold);
+            buffers.add(excel);
+            SpillingBuffer json = "zip".equals(output) ? new SpillingBuffer(spillThreshold) : null;
+            if (json != null) {
+                buffers.add(json);
+            }
+            try (WorkbookRows rows = excelToJsonConverter.openRows(inputStream);
+                 OutputStream excelOutput = excel.getOutputStream()) {
+                if (json == null) {
+                    jsonToExcelService.convertRowsToExcel(rows, excelOutput);
+                } else {
+                    try (OutputStream jsonOutput = json.getOutputStream()) {
+                        jsonToExcelService.convertRowsToExcel(rows, excelOutput, jsonOutput);
+                    }
+                }
+            }
+            if ("xlsx".equals(output)) {
+                return stream(buffers, XLSX, "output.xlsx", out -> copy(excel, out));
+            }
+
+            return stream(buffers, MediaType.parseMediaType("application/zip"), "output.zip", out -> {
+                ZipOutputStream zip = new ZipOutputStream(out);
+                zip.putNextEntry(new ZipEntry("output.json"));
+                copy(json, zip);
+                zip.putNextEntry(new ZipEntry("output.xlsx"));
+                copy(excel, zip);
+                zip.finish();
+            });
+        } catch (Exception e) {
+            close(buffers);
+            return message(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing file: " + e.getMessage());
+        }
+    }
+
+    // The buffers are released once the body is written, or the client has gone
+    private ResponseEntity<StreamingResponseBody> stream(List<SpillingBuffer> buffers, MediaType type, String fileName,
+                                                         StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(type)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(out -> {
+                    try {
+                        body.writeTo(out);
+                    } finally {
+                        close(buffers);
+                    }
+                });
+    }
+
+    private static ResponseEntity<StreamingResponseBody> message(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void copy(SpillingBuffer buffer, OutputStream out) throws IOException {
+        try (InputStream in = buffer.getInputStream()) {
+            in.transferTo(out);
+        }
+    }
+
+    private static void close(List<SpillingBuffer> buffers) {
+        for (SpillingBuffer buffer : buffers) {
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                LOGGER.warning("Could not delete a spilled conversion result: " + e.getMessage());
+            }
+        }
+    }
+}
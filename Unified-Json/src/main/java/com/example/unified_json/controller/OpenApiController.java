@@ -0,0 +1,90 @@
+package com.example.unified_json.controller;
+
+import com.example.unified_json.service.OpenApiImporter;
+import com.example.unified_json.service.OpenApiToJsonConverter;
+import com.example.unified_json.service.SpillingBuffer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/api/openapi")
+public class OpenApiController {
+
+    private static final Logger LOGGER = Logger.getLogger(OpenApiController.class.getName());
+
+    @Autowired
+    private OpenApiToJsonConverter openApiToJsonConverter;
+
+    @Autowired
+    private OpenApiImporter openApiImporter;
+
+    // Results larger than this move from memory to a temporary file
+    @Value("${excel.spill-threshold-bytes:16777216}")
+    private long spillThreshold = 16 * 1024 * 1024;
+
+    /**
+     * Converts an OpenAPI spec, JSON or YAML, to the unified template. The
+     * result is complete before it is sent, so a spec that cannot be read
+     * gets an error rather than a truncated document.
+     */
+    @PostMapping("/convert")
+    public ResponseEntity<StreamingResponseBody> convertOpenApiToJson(@RequestParam("file") MultipartFile file) {
+        SpillingBuffer json = new SpillingBuffer(spillThreshold);
+        try (InputStream inputStream = file.getInputStream(); OutputStream jsonOutput = json.getOutputStream()) {
+            openApiToJsonConverter.convertOpenApiToJson(inputStream, jsonOutput);
+        } catch (Exception e) {
+            close(json);
+            return ResponseEntity.status(500)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(("Error processing file: " + e.getMessage()).getBytes(StandardCharsets.UTF_8)));
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("output.json").build().toString())
+                .body(out -> {
+                    try (InputStream in = json.getInputStream()) {
+                        in.transferTo(out);
+                    } finally {
+                        close(json);
+                    }
+                });
+    }
+
+    /**
+     * Sends the assets of a spec that changed since the last import of its
+     * API to the pre-validation queue, and answers how many were added,
+     * changed, removed and left as they were.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importOpenApi(@RequestParam("file") MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return ResponseEntity.ok(openApiImporter.importSpec(inputStream));
+        } catch (Exception e) {
+            return ResponseEntity.status(500)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Error importing file: " + e.getMessage());
+        }
+    }
+
+    private static void close(SpillingBuffer buffer) {
+        try {
+            buffer.close();
+        } catch (IOException e) {
+            LOGGER.warning("Could not delete a spilled conversion result: " + e.getMessage());
+        }
+    }
+}
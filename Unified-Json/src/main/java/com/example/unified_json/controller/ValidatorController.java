@@ -0,0 +1,26 @@
+package com.example.unified_json.controller;
+
+import com.example.unified_json.validation.RuleStats;
+import com.example.unified_json.validation.ValidatorService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/validator")
+public class ValidatorController {
+
+    @Autowired
+    private ValidatorService validatorService;
+
+    /**
+     * The rules in use for each source, with the checks they were compiled
+     * to, how often they ran and failed, and what they cost on average.
+     */
+    @GetMapping("/stats")
+    public Map<String, List<RuleStats>> stats() {
+        return validatorService.stats();
+    }
+}
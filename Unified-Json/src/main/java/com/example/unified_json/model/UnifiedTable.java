@@ -0,0 +1,322 @@
+package com.example.unified_json.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows of a unified sheet stored by column: the headers once, a primitive
+ * array per column for numbers and booleans, dictionary codes for strings,
+ * and bitmaps recording which cells are present and which are null.
+ * <p>
+ * A column's type is inferred from the values set in it. The first value
+ * decides, and a column that later receives a value of another type holds
+ * boxed values from then on. Tables can be cleared and refilled, keeping
+ * their arrays and string dictionaries, to read a sheet in batches; each
+ * batch infers its column types afresh.
+ */
+public class UnifiedTable {
+
+    public enum ColumnType { EMPTY, DOUBLE, LONG, BOOLEAN, STRING, OBJECT }
+
+    // Distinct strings in a column's dictionary; further strings are stored as they are
+    static final int DICTIONARY_LIMIT = 4096;
+
+    private final List<String> headers;
+    private final Column[] columns;
+    private int size;
+    private int capacity = 16;
+
+    /** Headers may repeat; each is a column of its own. */
+    public UnifiedTable(List<String> headers) {
+        this.headers = List.copyOf(headers);
+        columns = new Column[headers.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(capacity);
+        }
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /** The number of rows. */
+    public int size() {
+        return size;
+    }
+
+    /** Appends a row without cells and returns its index. */
+    public int addRow() {
+        if (size == capacity) {
+            capacity *= 2;
+            for (Column column : columns) {
+                column.grow(capacity);
+            }
+        }
+        return size++;
+    }
+
+    /** Removes the rows, keeping the storage for the next ones. */
+    public void clear() {
+        for (Column column : columns) {
+            column.clear(size);
+        }
+        size = 0;
+    }
+
+    public void setDouble(int row, int column, double value) {
+        Column target = cell(row, column, ColumnType.DOUBLE);
+        if (target.type == ColumnType.OBJECT) {
+            target.objects[row] = value;
+        } else {
+            target.doubles[row] = value;
+        }
+    }
+
+    public void setLong(int row, int column, long value) {
+        Column target = cell(row, column, ColumnType.LONG);
+        if (target.type == ColumnType.OBJECT) {
+            target.objects[row] = value;
+        } else {
+            target.longs[row] = value;
+        }
+    }
+
+    public void setBoolean(int row, int column, boolean value) {
+        Column target = cell(row, column, ColumnType.BOOLEAN);
+        if (target.type == ColumnType.OBJECT) {
+            target.objects[row] = value;
+        } else if (value) {
+            set(target.booleans, row);
+        } else {
+            unset(target.booleans, row);
+        }
+    }
+
+    public void setString(int row, int column, String value) {
+        if (value == null) {
+            setNull(row, column);
+            return;
+        }
+        Column target = cell(row, column, ColumnType.STRING);
+        if (target.type == ColumnType.OBJECT) {
+            target.objects[row] = value;
+        } else {
+            target.setString(row, value);
+        }
+    }
+
+    /** Sets a value of any type; those without a column type of their own are kept boxed. */
+    public void setValue(int row, int column, Object value) {
+        if (value == null) {
+            setNull(row, column);
+        } else if (value instanceof Double) {
+            setDouble(row, column, (Double) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            setLong(row, column, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            setBoolean(row, column, (Boolean) value);
+        } else if (value instanceof String) {
+            setString(row, column, (String) value);
+        } else {
+            cell(row, column, ColumnType.OBJECT).objects[row] = value;
+        }
+    }
+
+    public void setNull(int row, int column) {
+        Column target = columns[column];
+        set(target.present, row);
+        set(target.nulls, row);
+        if (target.type == ColumnType.OBJECT) {
+            target.objects[row] = null;
+        }
+    }
+
+    public boolean isPresent(int row, int column) {
+        return get(columns[column].present, row);
+    }
+
+    public boolean isNull(int row, int column) {
+        return get(columns[column].nulls, row);
+    }
+
+    /** The type of every non-null value in the column, or OBJECT when they differ. */
+    public ColumnType getType(int column) {
+        return columns[column].type;
+    }
+
+    public double getDouble(int row, int column) {
+        return columns[column].doubles[row];
+    }
+
+    public long getLong(int row, int column) {
+        return columns[column].longs[row];
+    }
+
+    public boolean getBoolean(int row, int column) {
+        return get(columns[column].booleans, row);
+    }
+
+    public String getString(int row, int column) {
+        return columns[column].getString(row);
+    }
+
+    /** The value of a cell in any column, boxed; null when the cell is absent or null. */
+    public Object getValue(int row, int column) {
+        Column source = columns[column];
+        if (!get(source.present, row) || get(source.nulls, row)) {
+            return null;
+        }
+        return source.box(row);
+    }
+
+    // Marks the cell present and not null, giving the column the value's type or widening it to OBJECT
+    private Column cell(int row, int column, ColumnType type) {
+        Column target = columns[column];
+        if (target.type == ColumnType.EMPTY) {
+            target.setType(type, capacity);
+        } else if (target.type != type && target.type != ColumnType.OBJECT) {
+            target.widen(size, capacity);
+        }
+        set(target.present, row);
+        unset(target.nulls, row);
+        return target;
+    }
+
+    private static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void unset(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    private static long[] bitmap(int capacity) {
+        return new long[(capacity + 63) >>> 6];
+    }
+
+    private static final class Column {
+        private ColumnType type = ColumnType.EMPTY;
+        private long[] present;
+        private long[] nulls;
+        private double[] doubles;
+        private long[] longs;
+        private long[] booleans;
+        // Index into the dictionary, or -1 for a string stored in plain
+        private int[] codes;
+        private String[] plain;
+        private Object[] objects;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> dictionaryCodes = new HashMap<>();
+
+        private Column(int capacity) {
+            present = bitmap(capacity);
+            nulls = bitmap(capacity);
+        }
+
+        private void setType(ColumnType type, int capacity) {
+            this.type = type;
+            switch (type) {
+                case DOUBLE -> doubles = doubles != null && doubles.length >= capacity ? doubles : new double[capacity];
+                case LONG -> longs = longs != null && longs.length >= capacity ? longs : new long[capacity];
+                case BOOLEAN -> booleans = booleans != null && booleans.length * 64 >= capacity
+                        ? booleans : bitmap(capacity);
+                case STRING -> codes = codes != null && codes.length >= capacity ? codes : new int[capacity];
+                case OBJECT -> objects = objects != null && objects.length >= capacity
+                        ? objects : new Object[capacity];
+                default -> {
+                }
+            }
+        }
+
+        // Boxes the values set so far, for a column whose values turn out to differ in type
+        private void widen(int size, int capacity) {
+            Object[] boxed = objects != null && objects.length >= capacity ? objects : new Object[capacity];
+            for (int row = 0; row < size; row++) {
+                boxed[row] = get(present, row) && !get(nulls, row) ? box(row) : null;
+            }
+            objects = boxed;
+            type = ColumnType.OBJECT;
+        }
+
+        private Object box(int row) {
+            return switch (type) {
+                case DOUBLE -> doubles[row];
+                case LONG -> longs[row];
+                case BOOLEAN -> get(booleans, row);
+                case STRING -> getString(row);
+                case OBJECT -> objects[row];
+                case EMPTY -> null;
+            };
+        }
+
+        private void setString(int row, String value) {
+            Integer code = dictionaryCodes.get(value);
+            if (code == null && dictionary.size() < DICTIONARY_LIMIT) {
+                code = dictionary.size();
+                dictionary.add(value);
+                dictionaryCodes.put(value, code);
+            }
+            if (code != null) {
+                codes[row] = code;
+            } else {
+                if (plain == null || plain.length < codes.length) {
+                    plain = plain == null ? new String[codes.length] : Arrays.copyOf(plain, codes.length);
+                }
+                codes[row] = -1;
+                plain[row] = value;
+            }
+        }
+
+        private String getString(int row) {
+            int code = codes[row];
+            return code >= 0 ? dictionary.get(code) : plain[row];
+        }
+
+        private void grow(int capacity) {
+            present = Arrays.copyOf(present, (capacity + 63) >>> 6);
+            nulls = Arrays.copyOf(nulls, (capacity + 63) >>> 6);
+            switch (type) {
+                case DOUBLE -> doubles = Arrays.copyOf(doubles, capacity);
+                case LONG -> longs = Arrays.copyOf(longs, capacity);
+                case BOOLEAN -> booleans = Arrays.copyOf(booleans, (capacity + 63) >>> 6);
+                case STRING -> {
+                    codes = Arrays.copyOf(codes, capacity);
+                    if (plain != null) {
+                        plain = Arrays.copyOf(plain, capacity);
+                    }
+                }
+                case OBJECT -> objects = Arrays.copyOf(objects, capacity);
+                default -> {
+                }
+            }
+        }
+
+        private void clear(int size) {
+            Arrays.fill(present, 0L);
+            Arrays.fill(nulls, 0L);
+            if (objects != null) {
+                Arrays.fill(objects, 0, Math.min(size, objects.length), null);
+            }
+            if (plain != null) {
+                Arrays.fill(plain, 0, Math.min(size, plain.length), null);
+            }
+            // A full dictionary means the column's values rarely repeat; start over rather than keep them
+            if (dictionary.size() >= DICTIONARY_LIMIT) {
+                dictionary.clear();
+                dictionaryCodes.clear();
+            }
+            type = ColumnType.EMPTY;
+        }
+    }
+}
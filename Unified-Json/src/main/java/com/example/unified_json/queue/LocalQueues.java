@@ -0,0 +1,103 @@
+package com.example.unified_json.queue;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * The importer pipeline's queues, each a {@link MappedLogQueue} in a
+ * directory of its own, opened when first asked for. One thread flushes
+ * them all to the disk at a fixed interval.
+ */
+@Component
+public class LocalQueues {
+
+    private static final Logger LOGGER = Logger.getLogger(LocalQueues.class.getName());
+
+    public static final String PRE_VALIDATION = "pre-validation";
+    public static final String INVALID_DATA = "invalid-data";
+    public static final String POST_VALIDATION = "post-validation";
+    public static final String SYNC = "sync";
+
+    private static final Pattern QUEUE_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    @Value("${queue.directory:queues}")
+    private String directory = "queues";
+
+    // Size of each file of a queue's log; a message must fit in one
+    @Value("${queue.segment-bytes:67108864}")
+    private int segmentBytes = 64 * 1024 * 1024;
+
+    // Sends and acknowledgements made within this interval share one write to the disk; 0 writes each before it returns
+    @Value("${queue.flush-interval-ms:50}")
+    private long flushIntervalMillis = 50;
+
+    private final Map<String, MappedLogQueue> queues = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    public MessageQueue queue(String name) {
+        if (!QUEUE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Queue names are made of letters, digits, '.', '_' and '-', not '"
+                    + name + "'");
+        }
+        return queues.computeIfAbsent(name, this::open);
+    }
+
+    private MappedLogQueue open(String name) {
+        try {
+            MappedLogQueue queue = new MappedLogQueue(Path.of(directory, name), segmentBytes, flushIntervalMillis <= 0);
+            startFlusher();
+            return queue;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open queue " + name, e);
+        }
+    }
+
+    private synchronized void startFlusher() {
+        if (flusher == null && flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "queue-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        for (MappedLogQueue queue : queues.values()) {
+            try {
+                queue.flush();
+            } catch (RuntimeException e) {
+                LOGGER.warning("Could not flush a queue: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        for (Map.Entry<String, MappedLogQueue> queue : queues.entrySet()) {
+            try {
+                queue.getValue().close();
+            } catch (IOException e) {
+                LOGGER.warning("Could not close queue " + queue.getKey() + ": " + e.getMessage());
+            }
+        }
+        queues.clear();
+    }
+}
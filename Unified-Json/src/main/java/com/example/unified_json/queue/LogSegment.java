@@ -0,0 +1,163 @@
+package com.example.unified_json.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of a queue's log, mapped into memory whole. Records follow one
+ * another from the start of the file: the payload's length, its CRC-32C,
+ * then the payload. A zero length marks the end, as the file starts out
+ * zeroed.
+ * <p>
+ * One thread appends at a time; any number read what has been published,
+ * the records below {@link #published()}.
+ */
+final class LogSegment implements Closeable {
+
+    static final int HEADER_BYTES = 8;
+    static final String SUFFIX = ".log";
+
+    private final long baseOffset;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private int writePosition;
+    private int count;
+    private volatile int published;
+
+    private LogSegment(long baseOffset, Path file, int size) throws IOException {
+        this.baseOffset = baseOffset;
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Mapping past the end of the file extends it with zeros
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+    }
+
+    static LogSegment create(Path directory, long baseOffset, int size) throws IOException {
+        return new LogSegment(baseOffset, directory.resolve(fileName(baseOffset)), size);
+    }
+
+    /**
+     * Opens an existing file, keeping the records up to the first that is
+     * incomplete or damaged, as the last ones written before a crash can be.
+     */
+    static LogSegment open(Path file, int size) throws IOException {
+        String name = file.getFileName().toString();
+        LogSegment segment = new LogSegment(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())),
+                file, size);
+        segment.recover();
+        return segment;
+    }
+
+    static String fileName(long baseOffset) {
+        return String.format("%020d", baseOffset) + SUFFIX;
+    }
+
+    private void recover() {
+        int position = 0;
+        int limit = buffer.capacity();
+        while (position + HEADER_BYTES <= limit) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > limit - position - HEADER_BYTES
+                    || checksum(position + HEADER_BYTES, length) != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+            count++;
+        }
+        writePosition = position;
+        published = position;
+    }
+
+    /**
+     * Zeroes whatever follows the records, so that appending to the segment
+     * cannot leave the remains of a damaged record looking like one.
+     */
+    void clearTail() {
+        int end = writePosition;
+        for (int i = writePosition; i + 8 <= buffer.capacity(); i += 8) {
+            if (buffer.getLong(i) != 0) {
+                end = Math.min(i + 8, buffer.capacity());
+            }
+        }
+        byte[] zeros = new byte[8192];
+        for (int i = writePosition; i < end; i += zeros.length) {
+            buffer.put(i, zeros, 0, Math.min(zeros.length, end - i));
+        }
+    }
+
+    private int checksum(int position, int length) {
+        crc.reset();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    /** The offset following the last record. */
+    long endOffset() {
+        return baseOffset + count;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    boolean fits(int length) {
+        return writePosition + HEADER_BYTES + length <= buffer.capacity();
+    }
+
+    /** Writes the record; readers see it once {@link #publish()} is called. */
+    void append(byte[] payload) {
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.put(writePosition + HEADER_BYTES, payload);
+        // The length goes last, so a record cut short by a crash most likely reads as the end
+        buffer.putInt(writePosition, payload.length);
+        writePosition += HEADER_BYTES + payload.length;
+        count++;
+    }
+
+    void publish() {
+        published = writePosition;
+    }
+
+    int published() {
+        return published;
+    }
+
+    int length(int position) {
+        return buffer.getInt(position);
+    }
+
+    byte[] payload(int position, int length) {
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_BYTES, payload);
+        return payload;
+    }
+
+    /** Writes the mapped pages out to the disk. */
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.unified_json.queue;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link MessageQueue} in a directory on the local disk: an append-only
+ * log split into segment files that are mapped into memory, and a small
+ * mapped file per consumer holding the offset it has acknowledged up to.
+ * <p>
+ * Sends and acknowledgements are written to the mapped files straight away
+ * and reach the disk when {@link #flush()} is called, so that any number of
+ * them share one fsync; with flushEveryWrite each is flushed before it
+ * returns. A crash loses at most what was written since the last flush.
+ * <p>
+ * A consumer seen for the first time starts at the oldest message kept.
+ * Once every known consumer has acknowledged a whole segment, it is deleted
+ * when the next one is started.
+ */
+public class MappedLogQueue implements MessageQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(MappedLogQueue.class.getName());
+
+    private static final Pattern CONSUMER_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String CONSUMERS = "consumers";
+    private static final String OFFSET_SUFFIX = ".offset";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean flushEveryWrite;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, Consumer> consumers = new ConcurrentHashMap<>();
+    private final Set<LogSegment> unflushedSegments = ConcurrentHashMap.newKeySet();
+    private final Set<Consumer> unflushedConsumers = ConcurrentHashMap.newKeySet();
+    // Guarded by appendLock
+    private LogSegment active;
+    private volatile long endOffset;
+    private volatile boolean closed;
+
+    public MappedLogQueue(Path directory, int segmentBytes, boolean flushEveryWrite) throws IOException {
+        if (segmentBytes <= LogSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Segments of " + segmentBytes + " bytes cannot hold a message");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.flushEveryWrite = flushEveryWrite;
+        Files.createDirectories(directory.resolve(CONSUMERS));
+
+        List<Path> files = list(directory, "*" + LogSegment.SUFFIX);
+        Collections.sort(files);
+        for (Path file : files) {
+            LogSegment segment = LogSegment.open(file, segmentBytes);
+            Map.Entry<Long, LogSegment> previous = segments.lastEntry();
+            if (previous != null && previous.getValue().endOffset() < segment.baseOffset()) {
+                LOGGER.warning("Messages " + previous.getValue().endOffset() + " to " + (segment.baseOffset() - 1)
+                        + " of queue " + directory + " were damaged and are skipped.");
+            }
+            segments.put(segment.baseOffset(), segment);
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, LogSegment.create(directory, 0, segmentBytes));
+        }
+        active = segments.lastEntry().getValue();
+        active.clearTail();
+        endOffset = active.endOffset();
+
+        for (Path file : list(directory.resolve(CONSUMERS), "*" + OFFSET_SUFFIX)) {
+            String name = file.getFileName().toString();
+            consumer(name.substring(0, name.length() - OFFSET_SUFFIX.length()));
+        }
+    }
+
+    private static List<Path> list(Path directory, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    @Override
+    public long send(List<byte[]> messages) throws IOException {
+        for (byte[] message : messages) {
+            if (message.length == 0 || message.length > segmentBytes - LogSegment.HEADER_BYTES) {
+                throw new IllegalArgumentException("Messages must have between 1 and "
+                        + (segmentBytes - LogSegment.HEADER_BYTES) + " bytes, not " + message.length);
+            }
+        }
+        appendLock.lock();
+        try {
+            ensureOpen();
+            long first = endOffset;
+            for (byte[] message : messages) {
+                if (!active.fits(message.length)) {
+                    roll();
+                }
+                active.append(message);
+            }
+            active.publish();
+            unflushedSegments.add(active);
+            endOffset = active.endOffset();
+            appended.signalAll();
+            if (flushEveryWrite) {
+                flush();
+            }
+            return first;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // A full segment goes to the disk as the next one starts
+    private void roll() throws IOException {
+        LogSegment full = active;
+        full.publish();
+        LogSegment next = LogSegment.create(directory, full.endOffset(), segmentBytes);
+        segments.put(next.baseOffset(), next);
+        active = next;
+        full.force();
+        unflushedSegments.remove(full);
+        deleteConsumed();
+    }
+
+    private void deleteConsumed() throws IOException {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long acknowledged = Long.MAX_VALUE;
+        for (Consumer consumer : consumers.values()) {
+            acknowledged = Math.min(acknowledged, consumer.committed);
+        }
+        for (Map.Entry<Long, LogSegment> entry : segments.entrySet()) {
+            Long nextBase = segments.higherKey(entry.getKey());
+            if (nextBase == null || nextBase > acknowledged) {
+                break;
+            }
+            segments.remove(entry.getKey());
+            entry.getValue().delete();
+        }
+    }
+
+    @Override
+    public List<QueueMessage> poll(String consumerName, int max) throws IOException {
+        Consumer consumer = consumer(consumerName);
+        synchronized (consumer) {
+            ensureOpen();
+            long end = endOffset;
+            List<QueueMessage> messages = new ArrayList<>((int) Math.min(max, Math.max(0, end - consumer.position)));
+            while (messages.size() < max && consumer.position < end) {
+                if (consumer.segment == null) {
+                    locate(consumer);
+                } else if (consumer.filePosition >= consumer.segment.published()) {
+                    // Only a full segment runs out before the end of the queue
+                    Map.Entry<Long, LogSegment> next = segments.higherEntry(consumer.segment.baseOffset());
+                    consumer.segment = next.getValue();
+                    consumer.filePosition = 0;
+                    consumer.position = Math.max(consumer.position, next.getKey());
+                } else {
+                    LogSegment segment = consumer.segment;
+                    int length = segment.length(consumer.filePosition);
+                    messages.add(new QueueMessage(consumer.position, segment.payload(consumer.filePosition, length)));
+                    consumer.filePosition += LogSegment.HEADER_BYTES + length;
+                    consumer.position++;
+                }
+            }
+            return messages;
+        }
+    }
+
+    // Finds the consumer's position in the log, from the start of its segment
+    private void locate(Consumer consumer) {
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(consumer.position);
+        if (entry == null) {
+            entry = segments.firstEntry();
+            consumer.position = entry.getKey();
+        }
+        LogSegment segment = entry.getValue();
+        int filePosition = 0;
+        for (long offset = segment.baseOffset(); offset < consumer.position && filePosition < segment.published(); offset++) {
+            filePosition += LogSegment.HEADER_BYTES + segment.length(filePosition);
+        }
+        consumer.segment = segment;
+        consumer.filePosition = filePosition;
+    }
+
+    @Override
+    public List<QueueMessage> poll(String consumerName, int max, long timeout, TimeUnit unit)
+            throws IOException, InterruptedException {
+        List<QueueMessage> messages = poll(consumerName, max);
+        if (!messages.isEmpty() || timeout <= 0) {
+            return messages;
+        }
+        Consumer consumer = consumer(consumerName);
+        long nanos = unit.toNanos(timeout);
+        appendLock.lock();
+        try {
+            while (consumer.position >= endOffset && nanos > 0 && !closed) {
+                nanos = appended.awaitNanos(nanos);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        return poll(consumerName, max);
+    }
+
+    @Override
+    public void ack(String consumerName, long offset) throws IOException {
+        Consumer consumer = consumer(consumerName);
+        synchronized (consumer) {
+            ensureOpen();
+            if (offset >= consumer.position) {
+                throw new IllegalArgumentException("Message " + offset + " has not been polled by " + consumerName);
+            }
+            if (offset < consumer.committed) {
+                return;
+            }
+            consumer.committed = offset + 1;
+            consumer.offsetBuffer.putLong(0, consumer.committed);
+            unflushedConsumers.add(consumer);
+        }
+        if (flushEveryWrite) {
+            flush();
+        }
+    }
+
+    @Override
+    public void rewind(String consumerName) throws IOException {
+        Consumer consumer = consumer(consumerName);
+        synchronized (consumer) {
+            ensureOpen();
+            consumer.position = consumer.committed;
+            consumer.segment = null;
+        }
+    }
+
+    @Override
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /** Writes what has been sent and acknowledged since the last flush to the disk. */
+    public void flush() {
+        for (LogSegment segment : unflushedSegments) {
+            unflushedSegments.remove(segment);
+            segment.force();
+        }
+        for (Consumer consumer : unflushedConsumers) {
+            unflushedConsumers.remove(consumer);
+            consumer.offsetBuffer.force();
+        }
+    }
+
+    private Consumer consumer(String name) throws IOException {
+        Consumer consumer = consumers.get(name);
+        if (consumer != null) {
+            return consumer;
+        }
+        if (!CONSUMER_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Consumer names are made of letters, digits, '.', '_' and '-', not '"
+                    + name + "'");
+        }
+        synchronized (consumers) {
+            consumer = consumers.get(name);
+            if (consumer == null) {
+                consumer = new Consumer(directory.resolve(CONSUMERS).resolve(name + OFFSET_SUFFIX));
+                if (consumer.committed > endOffset) {
+                    LOGGER.warning("Consumer " + name + " of queue " + directory + " had acknowledged messages up to "
+                            + consumer.committed + ", past the end of the queue; it starts again at its end.");
+                    consumer.committed = endOffset;
+                    consumer.position = endOffset;
+                }
+                consumers.put(name, consumer);
+            }
+            return consumer;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Queue " + directory + " is closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+        flush();
+        for (LogSegment segment : segments.values()) {
+            segment.close();
+        }
+        for (Consumer consumer : consumers.values()) {
+            consumer.channel.close();
+        }
+    }
+
+    private static final class Consumer {
+        private final FileChannel channel;
+        private final MappedByteBuffer offsetBuffer;
+        // The offset following the last message acknowledged
+        private volatile long committed;
+        // The offset of the next message to poll, and where it is
+        private volatile long position;
+        private LogSegment segment;
+        private int filePosition;
+
+        private Consumer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            offsetBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+            committed = offsetBuffer.getLong(0);
+            position = committed;
+        }
+    }
+}
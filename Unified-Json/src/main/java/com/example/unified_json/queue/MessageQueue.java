@@ -0,0 +1,39 @@
+package com.example.unified_json.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue of messages between the stages of the importer pipeline. Messages
+ * keep the order they were sent in and are delivered at least once to each
+ * named consumer: a consumer polls them in order and acknowledges how far it
+ * has got, and after a restart it is given again everything it had not
+ * acknowledged.
+ */
+public interface MessageQueue extends Closeable {
+
+    /** Appends the messages, in order; returns the offset of the first. Empty messages are not allowed. */
+    long send(List<byte[]> messages) throws IOException;
+
+    default long send(byte[] message) throws IOException {
+        return send(List.of(message));
+    }
+
+    /** Up to max messages following the last one polled by the consumer; none when it has caught up. */
+    List<QueueMessage> poll(String consumer, int max) throws IOException;
+
+    /** As {@link #poll(String, int)}, waiting up to the timeout for a message when the consumer has caught up. */
+    List<QueueMessage> poll(String consumer, int max, long timeout, TimeUnit unit)
+            throws IOException, InterruptedException;
+
+    /** Acknowledges the message at the offset and every one before it. */
+    void ack(String consumer, long offset) throws IOException;
+
+    /** Has the consumer poll again from the first message it has not acknowledged, as after a restart. */
+    void rewind(String consumer) throws IOException;
+
+    /** The offset the next message sent will have. */
+    long endOffset();
+}
@@ -0,0 +1,27 @@
+package com.example.unified_json.queue;
+
+import java.nio.charset.StandardCharsets;
+
+/** A message as it was sent, with its position in the queue. */
+public final class QueueMessage {
+
+    private final long offset;
+    private final byte[] payload;
+
+    public QueueMessage(long offset, byte[] payload) {
+        this.offset = offset;
+        this.payload = payload;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public String getText() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
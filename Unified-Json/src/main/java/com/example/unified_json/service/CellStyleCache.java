@@ -0,0 +1,29 @@
+package com.example.unified_json.service;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One cell style per number format for a workbook. A workbook holds at most
+ * 64000 styles, so cells must share them rather than each get their own.
+ */
+class CellStyleCache {
+
+    private final Workbook workbook;
+    private final Map<String, CellStyle> styles = new HashMap<>();
+
+    CellStyleCache(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    CellStyle forFormat(String format) {
+        return styles.computeIfAbsent(format, f -> {
+            CellStyle style = workbook.createCellStyle();
+            style.setDataFormat(workbook.createDataFormat().getFormat(f));
+            return style;
+        });
+    }
+}
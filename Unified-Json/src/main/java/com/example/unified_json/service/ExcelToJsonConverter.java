@@ -1,15 +1,28 @@
 package com.example.unified_json.service;
 
+import com.example.unified_json.model.UnifiedTable;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 
@@ -19,12 +32,102 @@ public class ExcelToJsonConverter {
 
     private static final Logger LOGGER = Logger.getLogger(ExcelToJsonConverter.class.getName());
 
+    // Stream the sheets row by row instead of loading the whole workbook; the output is the same
+    @Value("${excel.streaming-read:true}")
+    private boolean streamingRead = true;
+
+    // Sheets of one workbook converted at once by the streaming reader, across all requests; 1 converts them in turn
+    @Value("${excel.sheet-threads:4}")
+    private int sheetThreads = 4;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ExecutorService sheetPool;
+
+    // Written next to the output and moved into place once complete, so a failed conversion leaves no partial file
     public void convertExcelToJson(InputStream inputStream, String outputFilePath) throws Exception {
+        Path outputFile = Path.of(outputFilePath).toAbsolutePath();
+        Path tempFile = Files.createTempFile(outputFile.getParent(), outputFile.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                convertExcelToJson(inputStream, outputStream);
+            }
+            Files.move(tempFile, outputFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /** Writes the JSON to the stream, which is left open. */
+    public void convertExcelToJson(InputStream inputStream, OutputStream outputStream) throws Exception {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            if (streamingRead) {
+                convertStreaming(inputStream, generator);
+            } else {
+                convertWorkbook(inputStream, generator);
+            }
+        }
+    }
+
+    // The package is opened from a file, so its parts are inflated as they are read rather than all up front
+    private void convertStreaming(InputStream inputStream, JsonGenerator generator) throws Exception {
+        Path workbookFile = Files.createTempFile("upload", ".xlsx");
+        try {
+            Files.copy(inputStream, workbookFile, StandardCopyOption.REPLACE_EXISTING);
+            try (OPCPackage workbookPackage = OPCPackage.open(workbookFile.toFile(), PackageAccess.READ)) {
+                generator.useDefaultPrettyPrinter();
+                generator.writeStartObject();
+                new StreamingExcelReader(workbookPackage, generator, sheetPool()).writeSheets();
+                generator.writeEndObject();
+            }
+        } finally {
+            Files.deleteIfExists(workbookFile);
+        }
+    }
+
+    /**
+     * Opens the workbook for reading its rows without writing the JSON. The
+     * upload is copied to a temporary file, which closing the rows deletes.
+     */
+    public WorkbookRows openRows(InputStream inputStream) throws Exception {
+        Path workbookFile = Files.createTempFile("upload", ".xlsx");
+        try {
+            Files.copy(inputStream, workbookFile, StandardCopyOption.REPLACE_EXISTING);
+            return new WorkbookRows(workbookFile, OPCPackage.open(workbookFile.toFile(), PackageAccess.READ),
+                    objectMapper.getFactory());
+        } catch (Exception e) {
+            Files.deleteIfExists(workbookFile);
+            throw e;
+        }
+    }
+
+    private synchronized ExecutorService sheetPool() {
+        if (sheetPool == null && sheetThreads > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            sheetPool = Executors.newFixedThreadPool(sheetThreads, runnable -> {
+                Thread thread = new Thread(runnable, "excel-sheet-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sheetPool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (sheetPool != null) {
+            sheetPool.shutdownNow();
+        }
+    }
+
+    private void convertWorkbook(InputStream inputStream, JsonGenerator generator) throws Exception {
         Workbook workbook = new XSSFWorkbook(inputStream);
-        Map<String, Object> unifiedJson = new HashMap<>();
 
         // Process each sheet
-        List<Map<String, Object>> sheetsData = new ArrayList<>();
+        List<String> sheetNames = new ArrayList<>();
+        List<Integer> rowCounts = new ArrayList<>();
+        List<UnifiedTable> sheetsData = new ArrayList<>();
 
         for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
             Sheet sheet = workbook.getSheetAt(i);
@@ -35,8 +138,6 @@ public class ExcelToJsonConverter {
                 continue;
             }
 
-            Map<String, Object> sheetJson = new LinkedHashMap<>();
-            List<Map<String, Object>> sheetData = new ArrayList<>();
             Row headerRow = sheet.getRow(0);
 
             if (headerRow == null) {
@@ -49,13 +150,14 @@ public class ExcelToJsonConverter {
             for (Cell cell : headerRow) {
                 headers.add(cell.getStringCellValue());
             }
+            UnifiedTable sheetData = new UnifiedTable(headers);
 
             // Process rows
             for (int j = 2; j <= sheet.getLastRowNum(); j++) {
                 Row row = sheet.getRow(j);
                 if (row == null) continue;
 
-                Map<String, Object> rowData = new LinkedHashMap<>();
+                int tableRow = sheetData.addRow();
                 for (int k = 0; k < headers.size(); k++) {
                     Cell cell = row.getCell(k);
                     String header = headers.get(k);
@@ -63,7 +165,7 @@ public class ExcelToJsonConverter {
                     if (cell != null) {
                         switch (cell.getCellType()) {
                             case STRING:
-                                rowData.put(header, cell.getStringCellValue());
+                                sheetData.setString(tableRow, k, cell.getStringCellValue());
                                 break;
                             case NUMERIC:
                                 if (DateUtil.isCellDateFormatted(cell)) {
@@ -71,35 +173,46 @@ public class ExcelToJsonConverter {
                                     LocalDate date = cell.getDateCellValue().toInstant()
                                             .atZone(ZoneId.systemDefault())
                                             .toLocalDate();
-                                    rowData.put(header, date.toString());
+                                    sheetData.setString(tableRow, k, date.toString());
                                 }
                                 else{
-                                    rowData.put(header, cell.getNumericCellValue());
+                                    sheetData.setDouble(tableRow, k, cell.getNumericCellValue());
                                 }
                                 break;
                             case BOOLEAN:
-                                rowData.put(header, cell.getBooleanCellValue());
+                                sheetData.setBoolean(tableRow, k, cell.getBooleanCellValue());
                                 break;
                             default:
-                                rowData.put(header, null);
+                                sheetData.setNull(tableRow, k);
                                 LOGGER.warning("Invalid cell type in row " + (j + 1) + " under header '" + header + "'. Setting to null.");
                         }
                     }
                 }
-                sheetData.add(rowData);
             }
 
-            sheetJson.put("sheetName", sheetName);
-            sheetJson.put("rowCount", sheet.getLastRowNum());
-            sheetJson.put("data", sheetData);
-
-            sheetsData.add(sheetJson);
+            sheetNames.add(sheetName);
+            rowCounts.add(sheet.getLastRowNum());
+            sheetsData.add(sheetData);
         }
 
         workbook.close();
-        unifiedJson.put("sheets", sheetsData);
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(outputFilePath), unifiedJson);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartObject();
+        generator.writeFieldName("sheets");
+        generator.writeStartArray();
+        for (int i = 0; i < sheetsData.size(); i++) {
+            UnifiedTable sheetData = sheetsData.get(i);
+            generator.writeStartObject();
+            generator.writeStringField("sheetName", sheetNames.get(i));
+            generator.writeNumberField("rowCount", rowCounts.get(i));
+            generator.writeFieldName("data");
+            generator.writeStartArray();
+            new UnifiedTableJson.RowWriter(sheetData.getHeaders()).write(generator, sheetData);
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.example.unified_json.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** JSON specs, read with Jackson's streaming parser. */
+class JsonSpecParser implements SpecParser {
+
+    private final JsonParser parser;
+    private Token current;
+
+    JsonSpecParser(JsonFactory jsonFactory, InputStream in) throws IOException {
+        parser = jsonFactory.createParser(in);
+    }
+
+    @Override
+    public Token next() throws IOException {
+        JsonToken token = parser.nextToken();
+        current = token == null ? null : switch (token) {
+            case START_OBJECT -> Token.START_OBJECT;
+            case END_OBJECT -> Token.END_OBJECT;
+            case START_ARRAY -> Token.START_ARRAY;
+            case END_ARRAY -> Token.END_ARRAY;
+            case FIELD_NAME -> Token.FIELD_NAME;
+            default -> Token.SCALAR;
+        };
+        return current;
+    }
+
+    @Override
+    public Token current() {
+        return current;
+    }
+
+    @Override
+    public String text() {
+        try {
+            return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+        } catch (IOException e) {
+            // The token has already been read; its text cannot fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Jackson skips nested values without building their text
+    @Override
+    public void skipChildren() throws IOException {
+        parser.skipChildren();
+        if (parser.currentToken() == JsonToken.END_OBJECT) {
+            current = Token.END_OBJECT;
+        } else if (parser.currentToken() == JsonToken.END_ARRAY) {
+            current = Token.END_ARRAY;
+        }
+    }
+
+    @Override
+    public String location() {
+        JsonLocation location = parser.currentTokenLocation();
+        return "line " + location.getLineNr() + ", column " + location.getColumnNr();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
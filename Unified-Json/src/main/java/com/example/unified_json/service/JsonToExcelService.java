@@ -1,90 +1,145 @@
-package com.example.unified_json.service;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.springframework.stereotype.Service;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.util.*;
-
-@Service
-public class JsonToExcelService {
-
-    public void convertJsonToExcel(String inputJsonFilePath, String outputExcelFilePath) throws Exception {
-        // Read the unified JSON file
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Object> unifiedJson = objectMapper.readValue(new File(inputJsonFilePath), Map.class);
-
-        // Get the data from the "sheets" field
-        List<Map<String, Object>> sheetsData = (List<Map<String, Object>>) unifiedJson.get("sheets");
-
-        // Create a new Workbook for the Excel file
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("UnifiedData");
-
-        // Collect all unique headers from all sheets
-        Set<String> allHeaders = new LinkedHashSet<>();
-        for (Map<String, Object> sheetData : sheetsData) {
-            List<Map<String, Object>> rowsData = (List<Map<String, Object>>) sheetData.get("data");
-            if (!rowsData.isEmpty()) {
-                // Add all headers from the first row of this sheet to the global headers set
-                allHeaders.addAll(rowsData.get(0).keySet());
-            }
-        }
-
-        // Create the header row in the Unified Excel sheet
-        Row headerRow = sheet.createRow(0);
-        int colIndex = 0;
-        Map<String, Integer> headerColumnIndexMap = new HashMap<>();
-        for (String header : allHeaders) {
-            headerColumnIndexMap.put(header, colIndex);
-            Cell cell = headerRow.createCell(colIndex++);
-            cell.setCellValue(header);
-        }
-
-        // Write data rows below the header
-        int rowIndex = 1;  // Start inserting data from the second row
-        for (Map<String, Object> sheetData : sheetsData) {
-            List<Map<String, Object>> rowsData = (List<Map<String, Object>>) sheetData.get("data");
-            for (Map<String, Object> rowData : rowsData) {
-                Row row = sheet.createRow(rowIndex++);
-                for (Map.Entry<String, Object> entry : rowData.entrySet()) {
-                    String header = entry.getKey();
-                    Object value = entry.getValue();
-
-                    // Get the column index based on the header
-                    Integer col = headerColumnIndexMap.get(header);
-                    if (col != null) {
-                        Cell cell = row.createCell(col);
-
-                        // Set the appropriate value depending on the type
-                        if (value instanceof String) {
-                            cell.setCellValue((String) value);
-                        } else if (value instanceof Double) {
-                            cell.setCellValue((Double) value);
-                        } else if (value instanceof Boolean) {
-                            cell.setCellValue((Boolean) value);
-                        } else if (value instanceof String && ((String) value).matches("\\d{4}-\\d{2}-\\d{2}")) {
-                            cell.setCellValue((String) value);
-                            CellStyle dateCellStyle = workbook.createCellStyle();
-                            short dateFormat = workbook.createDataFormat().getFormat("yyyy-mm-dd");
-                            dateCellStyle.setDataFormat(dateFormat);
-                            cell.setCellStyle(dateCellStyle);
-                        } else {
-                            cell.setCellValue(value != null ? value.toString() : "");
-                        }
-                    }
-                }
-            }
-        }
-
-        //Output path
-        try (FileOutputStream fileOut = new FileOutputStream(new File(outputExcelFilePath))) {
-            workbook.write(fileOut);
-        }
-
-        workbook.close();
-    }
-}
\ No newline at end of file
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.regex.Pattern;
+
+@Service
+public class JsonToExcelService {
+
+    static final String DATE_FORMAT = "yyyy-mm-dd";
+    static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    // Parse the JSON incrementally and write through a window of rows instead of holding both in memory
+    @Value("${excel.streaming-write:true}")
+    private boolean streamingWrite = true;
+
+    // Rows kept in memory by the streaming writer before they are flushed to disk
+    @Value("${excel.write-window:100}")
+    private int writeWindow = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public void convertJsonToExcel(String inputJsonFilePath, String outputExcelFilePath) throws Exception {
+        try (OutputStream outputStream = new FileOutputStream(outputExcelFilePath)) {
+            convertJsonToExcel(new FileSystemResource(inputJsonFilePath), outputStream);
+        }
+    }
+
+    /** Writes the workbook to the stream, which is left open. The streaming writer opens the JSON twice. */
+    public void convertJsonToExcel(InputStreamSource inputJson, OutputStream outputStream) throws Exception {
+        if (streamingWrite) {
+            new StreamingExcelWriter(objectMapper.getFactory(), writeWindow).write(inputJson, outputStream);
+        } else {
+            convertWorkbook(inputJson, outputStream);
+        }
+    }
+
+    private void convertWorkbook(InputStreamSource inputJson, OutputStream outputStream) throws Exception {
+        // Collect all unique headers from all sheets
+        Map<String, Integer> headerColumnIndexMap = UnifiedTableJson.readHeaders(objectMapper.getFactory(), inputJson);
+
+        // Read the rows of every sheet
+        UnifiedTable rowsData = new UnifiedTable(new ArrayList<>(headerColumnIndexMap.keySet()));
+        try (InputStream inputStream = inputJson.getInputStream();
+             JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            UnifiedTableJson.forEachData(parser, () ->
+                    UnifiedTableJson.readRows(parser, rowsData, headerColumnIndexMap, Integer.MAX_VALUE));
+        }
+
+        // Create a new Workbook for the Excel file
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("UnifiedData");
+        CellStyleCache styles = new CellStyleCache(workbook);
+
+        // Create the header row in the Unified Excel sheet
+        writeHeaderRow(sheet, headerColumnIndexMap);
+
+        // Write data rows below the header
+        for (int row = 0; row < rowsData.size(); row++) {
+            writeCells(rowsData, row, sheet.createRow(row + 1), styles, null);
+        }
+
+        workbook.write(outputStream);
+
+        workbook.close();
+    }
+
+    static void writeHeaderRow(Sheet sheet, Map<String, Integer> headerColumnIndexMap) {
+        Row headerRow = sheet.createRow(0);
+        for (Map.Entry<String, Integer> header : headerColumnIndexMap.entrySet()) {
+            headerRow.createCell(header.getValue()).setCellValue(header.getKey());
+        }
+    }
+
+    /**
+     * Writes the rows of the workbook as they would be read back from its
+     * JSON, through the streaming writer. The rows are read twice: once for
+     * the headers, then for the cells.
+     */
+    public void convertRowsToExcel(WorkbookRows rows, OutputStream outputStream) throws Exception {
+        new StreamingExcelWriter(objectMapper.getFactory(), writeWindow).write(rows, outputStream);
+    }
+
+    /** As above, writing the rows' JSON to the json stream from the same read of the workbook. */
+    public void convertRowsToExcel(WorkbookRows rows, OutputStream outputStream, OutputStream json) throws Exception {
+        new StreamingExcelWriter(objectMapper.getFactory(), writeWindow).write(rows, outputStream, json);
+    }
+
+    /**
+     * Set the appropriate value depending on the type. The cell of each
+     * column is in the Excel column of the same index, or of its target
+     * when targets are given; a target of -1 leaves the column out.
+     */
+    static void writeCells(UnifiedTable rows, int row, Row excelRow, CellStyleCache styles, int[] targets) {
+        for (int col = 0; col < rows.getColumnCount(); col++) {
+            int target = targets == null ? col : targets[col];
+            if (target < 0 || !rows.isPresent(row, col)) {
+                continue;
+            }
+            // Creating a cell replaces the one in its place, so of columns sharing a target the last present wins
+            Cell cell = excelRow.createCell(target);
+            if (rows.isNull(row, col)) {
+                cell.setCellValue("");
+                continue;
+            }
+            switch (rows.getType(col)) {
+                case STRING -> setString(cell, rows.getString(row, col), styles);
+                case DOUBLE -> cell.setCellValue(rows.getDouble(row, col));
+                case BOOLEAN -> cell.setCellValue(rows.getBoolean(row, col));
+                case LONG -> cell.setCellValue(Long.toString(rows.getLong(row, col)));
+                default -> {
+                    Object value = rows.getValue(row, col);
+                    if (value instanceof String) {
+                        setString(cell, (String) value, styles);
+                    } else if (value instanceof Double) {
+                        cell.setCellValue((Double) value);
+                    } else if (value instanceof Boolean) {
+                        cell.setCellValue((Boolean) value);
+                    } else {
+                        cell.setCellValue(value.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void setString(Cell cell, String value, CellStyleCache styles) {
+        cell.setCellValue(value);
+        if (DATE.matcher(value).matches()) {
+            cell.setCellStyle(styles.forFormat(DATE_FORMAT));
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.unified_json.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * The {@code components} of a spec, each kept as a small model as the reader
+ * passes it, by its {@code #/components/...} pointer; and the descriptions of
+ * references to them, worked out when first asked for and remembered.
+ * <p>
+ * The paths of a spec usually come before its components, so a reference is
+ * often met before what it points to. Until {@link #complete()} is called a
+ * description that needs a component not read yet is null, and the caller
+ * asks again later. After it, such a reference is described by its name.
+ */
+final class OpenApiComponents {
+
+    private static final Logger LOGGER = Logger.getLogger(OpenApiComponents.class.getName());
+
+    static final String SCHEMAS = "schemas";
+    static final String PARAMETERS = "parameters";
+    static final String REQUEST_BODIES = "requestBodies";
+    static final String RESPONSES = "responses";
+
+    private static final String PREFIX = "#/components/";
+    // Longest chain of references from one parameter or body to another
+    private static final int MAX_HOPS = 16;
+
+    private final Map<String, Object> components = new HashMap<>();
+    // Descriptions of schema references, once every schema they lead to has been read
+    private final Map<String, String> schemaTypes = new HashMap<>();
+    // Where a chain of renames still waiting on a schema has been followed to, so it is not walked again
+    private final Map<String, String> renamedTo = new HashMap<>();
+    private final Set<String> resolving = new HashSet<>();
+    private final Set<String> dangling = new HashSet<>();
+    private boolean complete;
+
+    void putSchema(String name, Shape shape) {
+        // A schema without a shape still answers references to it
+        components.put(pointer(SCHEMAS, name), shape != null ? shape : Shape.OBJECT);
+    }
+
+    void putParameter(String name, Parameter parameter) {
+        components.put(pointer(PARAMETERS, name), parameter);
+    }
+
+    void putRequestBody(String name, Body body) {
+        components.put(pointer(REQUEST_BODIES, name), body);
+    }
+
+    void putResponse(String name, Body body) {
+        components.put(pointer(RESPONSES, name), body);
+    }
+
+    /** Every component has been read; references still unresolved will not be. */
+    void complete() {
+        complete = true;
+    }
+
+    /**
+     * The type of values of the shape: a type name such as "integer" or
+     * "string(date)", a schema's name, "[]" after an array's items; null
+     * while it depends on schemas not read yet.
+     */
+    String describe(Shape shape) {
+        return switch (shape.kind) {
+            case REF -> describeRef(shape.text);
+            case TYPE -> shape.text;
+            case OBJECT -> "object";
+            case ARRAY -> {
+                if (shape.parts.isEmpty()) {
+                    yield "array";
+                }
+                String items = describe(shape.parts.get(0));
+                yield items == null ? null : items + "[]";
+            }
+            case ALL_OF, ONE_OF -> {
+                StringBuilder text = new StringBuilder();
+                for (Shape part : shape.parts) {
+                    String type = describe(part);
+                    if (type == null) {
+                        yield null;
+                    }
+                    if (text.length() > 0) {
+                        text.append(shape.kind == Shape.Kind.ALL_OF ? " & " : " | ");
+                    }
+                    text.append(type);
+                }
+                yield text.toString();
+            }
+        };
+    }
+
+    // A named schema is described by its name, unless it only renames another or is an array of it.
+    // Chains of renames are followed in a loop, as specs can have long ones, and remembered as a whole.
+    private String describeRef(String pointer) {
+        List<String> chain = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        String current = pointer;
+        String type;
+        while (true) {
+            String shortcut = renamedTo.get(current);
+            if (shortcut != null && seen.add(current)) {
+                chain.add(current);
+                current = shortcut;
+                continue;
+            }
+            String known = schemaTypes.get(current);
+            if (known != null) {
+                type = known;
+                break;
+            }
+            if (!current.startsWith(PREFIX + SCHEMAS + "/")) {
+                // Outside this document; only its name is known
+                type = name(current);
+                break;
+            }
+            Object target = components.get(current);
+            if (target == null) {
+                if (!complete) {
+                    for (String renamed : chain) {
+                        renamedTo.put(renamed, current);
+                    }
+                    return null;
+                }
+                type = dangling(current);
+                break;
+            }
+            Shape shape = (Shape) target;
+            if (shape.kind == Shape.Kind.REF && seen.add(current)) {
+                chain.add(current);
+                current = shape.text;
+                continue;
+            }
+            if (shape.kind != Shape.Kind.ARRAY || !resolving.add(current)) {
+                // Named types, and references back into a schema being described
+                type = name(current);
+                break;
+            }
+            try {
+                type = describe(shape);
+            } finally {
+                resolving.remove(current);
+            }
+            if (type == null) {
+                return null;
+            }
+            chain.add(current);
+            break;
+        }
+        for (String renamed : chain) {
+            schemaTypes.put(renamed, type);
+            renamedTo.remove(renamed);
+        }
+        return type;
+    }
+
+    /** "bookId (path, integer, required)", or null while it depends on components not read yet. */
+    String describe(Parameter parameter) {
+        Parameter target = follow(parameter, Parameter.class, p -> p.ref);
+        if (target == null) {
+            return null;
+        }
+        if (target.ref != null) {
+            return name(target.ref);
+        }
+        StringBuilder text = new StringBuilder(target.name == null ? "" : target.name).append(" (");
+        text.append(target.in == null ? "query" : target.in);
+        if (target.schema != null) {
+            String type = describe(target.schema);
+            if (type == null) {
+                return null;
+            }
+            text.append(", ").append(type);
+        }
+        if (target.required) {
+            text.append(", required");
+        }
+        return text.append(')').toString();
+    }
+
+    /** The type of the body's content, "" without one, or null while it depends on components not read yet. */
+    String describe(Body body) {
+        Body target = follow(body, Body.class, b -> b.ref);
+        if (target == null) {
+            return null;
+        }
+        if (target.ref != null) {
+            return name(target.ref);
+        }
+        return target.schema == null ? "" : describe(target.schema);
+    }
+
+    // The component a chain of references ends at; the last reference when it cannot be followed further
+    private <T> T follow(T model, Class<T> type, Function<T, String> ref) {
+        T current = model;
+        for (int hop = 0; hop < MAX_HOPS && ref.apply(current) != null; hop++) {
+            Object target = components.get(ref.apply(current));
+            if (!type.isInstance(target)) {
+                if (!complete) {
+                    return null;
+                }
+                dangling(ref.apply(current));
+                return current;
+            }
+            current = type.cast(target);
+        }
+        return current;
+    }
+
+    private String dangling(String pointer) {
+        if (dangling.add(pointer)) {
+            LOGGER.warning("Reference '" + pointer + "' does not resolve; it is described by its name only.");
+        }
+        return name(pointer);
+    }
+
+    static String pointer(String section, String name) {
+        return PREFIX + section + "/" + name.replace("~", "~0").replace("/", "~1");
+    }
+
+    // The last segment of a pointer, unescaped
+    static String name(String pointer) {
+        String segment = pointer.substring(pointer.lastIndexOf('/') + 1);
+        return segment.replace("~1", "/").replace("~0", "~");
+    }
+
+    /** A schema as far as describing its values goes. */
+    static final class Shape {
+
+        enum Kind { REF, TYPE, OBJECT, ARRAY, ALL_OF, ONE_OF }
+
+        static final Shape OBJECT = new Shape(Kind.OBJECT, null, List.of());
+
+        final Kind kind;
+        // The pointer of a reference, or the name of a type
+        final String text;
+        // An array's items, or the schemas combined
+        final List<Shape> parts;
+
+        private Shape(Kind kind, String text, List<Shape> parts) {
+            this.kind = kind;
+            this.text = text;
+            this.parts = parts;
+        }
+
+        static Shape ref(String pointer) {
+            return new Shape(Kind.REF, pointer, List.of());
+        }
+
+        static Shape type(String type, String format) {
+            return new Shape(Kind.TYPE, format == null ? type : type + "(" + format + ")", List.of());
+        }
+
+        static Shape array(Shape items) {
+            return new Shape(Kind.ARRAY, null, items == null ? List.of() : List.of(items));
+        }
+
+        static Shape combined(Kind kind, List<Shape> parts) {
+            return new Shape(kind, null, List.copyOf(parts));
+        }
+    }
+
+    /** A parameter, or a reference to one. */
+    static final class Parameter {
+        final String ref;
+        final String name;
+        final String in;
+        final boolean required;
+        final Shape schema;
+
+        Parameter(String ref, String name, String in, boolean required, Shape schema) {
+            this.ref = ref;
+            this.name = name;
+            this.in = in;
+            this.required = required;
+            this.schema = schema;
+        }
+    }
+
+    /** A request body or a response, or a reference to one. */
+    static final class Body {
+        final String ref;
+        final Shape schema;
+
+        Body(String ref, Shape schema) {
+            this.ref = ref;
+            this.schema = schema;
+        }
+    }
+}
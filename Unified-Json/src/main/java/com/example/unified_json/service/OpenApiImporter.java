@@ -0,0 +1,364 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.example.unified_json.queue.LocalQueues;
+import com.example.unified_json.queue.MessageQueue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Imports OpenAPI specs into the pipeline incrementally. Each asset of a
+ * spec, a row of the unified template, is identified by its sheet and
+ * required columns and fingerprinted by all its cells; the fingerprints of
+ * the last import of the API are kept in an index, and only the assets
+ * added, changed or removed since are sent to the pre-validation queue.
+ * A removed asset is sent with its identifying columns only.
+ * <p>
+ * Messages are {@code {"source": "openapi", "sheetName": ..., "change":
+ * "added"|"changed"|"removed", "row": {...}}}. The index is written once
+ * they have all been sent, so an import that fails is sent in full again.
+ */
+@Service
+public class OpenApiImporter {
+
+    private static final Logger LOGGER = Logger.getLogger(OpenApiImporter.class.getName());
+
+    static final String SOURCE = "openapi";
+
+    private static final char SEPARATOR = '\u001f';
+
+    @Autowired
+    private LocalQueues localQueues;
+
+    // One index file per API, named after its title
+    @Value("${openapi.index-directory:openapi-index}")
+    private String indexDirectory = "openapi-index";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ReentrantLock> apiLocks = new ConcurrentHashMap<>();
+
+    /** What an import sent on, by kind of change. */
+    public static final class Summary {
+        private final String api;
+        private final int added;
+        private final int changed;
+        private final int removed;
+        private final int unchanged;
+
+        Summary(String api, int added, int changed, int removed, int unchanged) {
+            this.api = api;
+            this.added = added;
+            this.changed = changed;
+            this.removed = removed;
+            this.unchanged = unchanged;
+        }
+
+        public String getApi() {
+            return api;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+    }
+
+    public Summary importSpec(InputStream inputStream) throws IOException {
+        return importSpec(inputStream, localQueues.queue(LocalQueues.PRE_VALIDATION));
+    }
+
+    /** Reads the spec, JSON or YAML, and sends the assets that differ from its last import to the queue. */
+    public Summary importSpec(InputStream inputStream, MessageQueue queue) throws IOException {
+        long start = System.nanoTime();
+        InputStream in = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        Changes changes = new Changes(queue);
+        try (SpecParser parser = OpenApiToJsonConverter.isJson(in)
+                ? new JsonSpecParser(objectMapper.getFactory(), in) : new YamlSpecParser(in)) {
+            OpenApiReader reader = new OpenApiReader(parser, changes);
+            changes.reader = reader;
+            reader.read();
+            changes.finish();
+        } finally {
+            changes.unlock();
+        }
+        LOGGER.info("OpenAPI spec '" + changes.api + "' imported in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms: " + changes.added + " added, "
+                + changes.changed + " changed, " + changes.removed + " removed, " + changes.unchanged + " unchanged");
+        return new Summary(changes.api, changes.added, changes.changed, changes.removed, changes.unchanged);
+    }
+
+    /**
+     * Compares each row with the index as it arrives. The index is known once
+     * the API's title has been read, which is usually before any row; rows
+     * that come first wait for it.
+     */
+    private final class Changes implements OpenApiReader.SheetSink {
+
+        private final MessageQueue queue;
+        private final Map<String, Long> fingerprints = new HashMap<>();
+        private final List<PendingRow> pending = new ArrayList<>();
+        private OpenApiReader reader;
+        private String api;
+        private ReentrantLock lock;
+        private Map<String, Long> previous;
+        private int added;
+        private int changed;
+        private int removed;
+        private int unchanged;
+
+        private Changes(MessageQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void write(OpenApiReader.Sheet sheet, UnifiedTable rows) throws IOException {
+            if (previous == null && reader.getTitle() != null) {
+                open(reader.getTitle());
+            }
+            List<byte[]> messages = new ArrayList<>();
+            for (int row = 0; row < rows.size(); row++) {
+                String[] cells = cells(rows, row);
+                String key = key(sheet, cells);
+                long fingerprint = fingerprint(cells);
+                fingerprints.put(key, fingerprint);
+                if (previous == null) {
+                    pending.add(new PendingRow(sheet, cells, key, fingerprint));
+                } else {
+                    String change = change(key, fingerprint);
+                    if (change != null) {
+                        messages.add(message(sheet, change, cells));
+                    }
+                }
+            }
+            if (!messages.isEmpty()) {
+                queue.send(messages);
+            }
+        }
+
+        private void open(String title) throws IOException {
+            api = title;
+            lock = apiLocks.computeIfAbsent(title, key -> new ReentrantLock());
+            lock.lock();
+            previous = readIndex(indexFile(title));
+            if (!pending.isEmpty()) {
+                List<byte[]> messages = new ArrayList<>();
+                for (PendingRow row : pending) {
+                    String change = change(row.key, row.fingerprint);
+                    if (change != null) {
+                        messages.add(message(row.sheet, change, row.cells));
+                    }
+                }
+                pending.clear();
+                if (!messages.isEmpty()) {
+                    queue.send(messages);
+                }
+            }
+        }
+
+        private String change(String key, long fingerprint) {
+            Long before = previous.get(key);
+            if (before == null) {
+                added++;
+                return "added";
+            }
+            if (before != fingerprint) {
+                changed++;
+                return "changed";
+            }
+            unchanged++;
+            return null;
+        }
+
+        void finish() throws IOException {
+            if (previous == null) {
+                open(reader.getTitle());
+            }
+            List<byte[]> messages = new ArrayList<>();
+            for (String key : previous.keySet()) {
+                if (!fingerprints.containsKey(key)) {
+                    messages.add(removedMessage(key));
+                    removed++;
+                }
+            }
+            if (!messages.isEmpty()) {
+                queue.send(messages);
+            }
+            writeIndex(indexFile(api), fingerprints);
+        }
+
+        void unlock() {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private record PendingRow(OpenApiReader.Sheet sheet, String[] cells, String key, long fingerprint) {
+    }
+
+    private static String[] cells(UnifiedTable rows, int row) {
+        String[] cells = new String[rows.getColumnCount()];
+        for (int column = 0; column < cells.length; column++) {
+            if (rows.isPresent(row, column)) {
+                cells[column] = rows.getString(row, column);
+            }
+        }
+        return cells;
+    }
+
+    // The sheet and the required columns, which name the asset
+    private static String key(OpenApiReader.Sheet sheet, String[] cells) {
+        StringBuilder key = new StringBuilder(sheet.sheetName);
+        for (int column = 0; column < cells.length; column++) {
+            if (sheet.headers.get(column).endsWith("*")) {
+                key.append(SEPARATOR);
+                if (cells[column] != null) {
+                    key.append(cells[column]);
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    // FNV-1a over every cell, absent cells included, so that moving a value to another column changes it
+    private static long fingerprint(String[] cells) {
+        long hash = 0xcbf29ce484222325L;
+        for (String value : cells) {
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+                }
+            }
+            hash = (hash ^ (value == null ? 0x10000 : 0x10001)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private byte[] message(OpenApiReader.Sheet sheet, String change, String[] cells) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("source", SOURCE);
+            generator.writeStringField("sheetName", sheet.sheetName);
+            generator.writeStringField("change", change);
+            generator.writeObjectFieldStart("row");
+            for (int column = 0; column < cells.length; column++) {
+                if (cells[column] != null) {
+                    generator.writeStringField(sheet.headers.get(column), cells[column]);
+                }
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] removedMessage(String key) throws IOException {
+        String[] parts = key.split(String.valueOf(SEPARATOR), -1);
+        OpenApiReader.Sheet sheet = null;
+        for (OpenApiReader.Sheet candidate : OpenApiReader.Sheet.values()) {
+            if (candidate.sheetName.equals(parts[0])) {
+                sheet = candidate;
+            }
+        }
+        if (sheet == null) {
+            throw new IOException("The index names an unknown sheet '" + parts[0] + "'");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("source", SOURCE);
+            generator.writeStringField("sheetName", sheet.sheetName);
+            generator.writeStringField("change", "removed");
+            generator.writeObjectFieldStart("row");
+            int part = 1;
+            for (String header : sheet.headers) {
+                if (header.endsWith("*")) {
+                    String value = part < parts.length ? parts[part] : "";
+                    part++;
+                    if (!value.isEmpty()) {
+                        generator.writeStringField(header, value);
+                    }
+                }
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    // Titles are free text; anything but letters and digits becomes '_', and a hash tells similar titles apart
+    private Path indexFile(String title) {
+        String name = title.replaceAll("[^A-Za-z0-9.-]", "_");
+        if (name.length() > 100) {
+            name = name.substring(0, 100);
+        }
+        return Path.of(indexDirectory, name + "-" + Integer.toHexString(title.hashCode()) + ".json");
+    }
+
+    private Map<String, Long> readIndex(Path file) throws IOException {
+        Map<String, Long> index = new HashMap<>();
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Index " + file + " is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.currentName();
+                parser.nextToken();
+                index.put(key, Long.parseUnsignedLong(parser.getText(), 16));
+            }
+        }
+        return index;
+    }
+
+    // Written beside the old index and moved over it, so that a crash leaves one or the other
+    private void writeIndex(Path file, Map<String, Long> index) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                generator.writeStringField(entry.getKey(), Long.toHexString(entry.getValue()));
+            }
+            generator.writeEndObject();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,661 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.example.unified_json.service.OpenApiComponents.Body;
+import com.example.unified_json.service.OpenApiComponents.Parameter;
+import com.example.unified_json.service.OpenApiComponents.Shape;
+import com.example.unified_json.service.SpecParser.Token;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads an OpenAPI spec in one pass and hands its assets to a sink as rows
+ * of the unified template, a batch at a time: the API, its operations, its
+ * schemas as data structures and their properties as data attributes.
+ * <p>
+ * No tree of the document is built. Components are kept as small models
+ * (see {@link OpenApiComponents}); an operation or attribute whose
+ * description needs a component not read yet waits, in document order, until
+ * it has been.
+ */
+final class OpenApiReader {
+
+    enum Sheet {
+        API("1. API", "Name*", "Version", "Description", "Servers", "OpenAPI Version"),
+        OPERATIONS("2. API Operations", "Name*", "API*", "Path*", "Method*", "Operation Id", "Summary",
+                "Description", "Parameters", "Request Body", "Responses"),
+        DATA_STRUCTURES("3. Data Structures", "Name*", "API*", "Type", "Description"),
+        DATA_ATTRIBUTES("4. Data Attributes", "Name*", "Data Structure*", "Type", "Required", "Description");
+
+        final String sheetName;
+        final List<String> headers;
+
+        Sheet(String sheetName, String... headers) {
+            this.sheetName = sheetName;
+            this.headers = List.of(headers);
+        }
+    }
+
+    @FunctionalInterface
+    interface SheetSink {
+        /** The rows are only valid during the call. */
+        void write(Sheet sheet, UnifiedTable rows) throws IOException;
+    }
+
+    // A cell worked out from components; null until they have been read
+    @FunctionalInterface
+    private interface Deferred {
+        String value();
+    }
+
+    private static final Set<String> METHODS = Set.of("get", "put", "post", "delete", "options", "head", "patch", "trace");
+
+    private final SpecParser parser;
+    private final SheetSink sink;
+    private final OpenApiComponents components = new OpenApiComponents();
+    private final UnifiedTable[] batches = new UnifiedTable[Sheet.values().length];
+    private final List<ArrayDeque<Object[]>> waiting = new ArrayList<>();
+    private final Deferred apiName = () -> this.title;
+
+    private String openApiVersion;
+    private String title;
+    private String version;
+    private String description;
+    private final List<String> servers = new ArrayList<>();
+    private int operationCount;
+    private int schemaCount;
+
+    OpenApiReader(SpecParser parser, SheetSink sink) {
+        this.parser = parser;
+        this.sink = sink;
+        for (Sheet sheet : Sheet.values()) {
+            batches[sheet.ordinal()] = new UnifiedTable(sheet.headers);
+            waiting.add(new ArrayDeque<>());
+        }
+    }
+
+    void read() throws IOException {
+        if (parser.next() != Token.START_OBJECT) {
+            throw new IOException("Expected an OpenAPI document at " + parser.location());
+        }
+        while (nextField()) {
+            String field = parser.text();
+            parser.next();
+            switch (field) {
+                case "openapi", "swagger" -> openApiVersion = scalar();
+                case "info" -> readInfo();
+                case "servers" -> readServers();
+                case "paths" -> readPaths();
+                case "components" -> readComponents();
+                default -> parser.skipChildren();
+            }
+        }
+
+        components.complete();
+        if (title == null) {
+            title = "";
+        }
+        drain();
+        emit(Sheet.API, title, version, description, String.join(", ", servers), openApiVersion);
+        for (Sheet sheet : Sheet.values()) {
+            if (!waiting.get(sheet.ordinal()).isEmpty()) {
+                throw new IllegalStateException("Rows of " + sheet.sheetName + " are still waiting on components");
+            }
+            UnifiedTable batch = batches[sheet.ordinal()];
+            if (batch.size() > 0) {
+                sink.write(sheet, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    String getTitle() {
+        return title;
+    }
+
+    int getOperationCount() {
+        return operationCount;
+    }
+
+    int getSchemaCount() {
+        return schemaCount;
+    }
+
+    private void readInfo() throws IOException {
+        if (!enterObject()) {
+            return;
+        }
+        while (nextField()) {
+            String field = parser.text();
+            parser.next();
+            switch (field) {
+                case "title" -> title = scalar();
+                case "version" -> version = scalar();
+                case "description" -> description = scalar();
+                default -> parser.skipChildren();
+            }
+        }
+        // Rows naming the API can go now
+        drain();
+    }
+
+    private void readServers() throws IOException {
+        if (!enterArray()) {
+            return;
+        }
+        while (nextElement()) {
+            if (!enterObject()) {
+                continue;
+            }
+            while (nextField()) {
+                String field = parser.text();
+                parser.next();
+                if ("url".equals(field)) {
+                    String url = scalar();
+                    if (url != null) {
+                        servers.add(url);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void readPaths() throws IOException {
+        if (!enterObject()) {
+            return;
+        }
+        while (nextField()) {
+            String path = parser.text();
+            parser.next();
+            readPathItem(path);
+        }
+    }
+
+    // Parameters of the path item apply to each of its operations, wherever they are listed
+    private void readPathItem(String path) throws IOException {
+        if (!enterObject()) {
+            return;
+        }
+        List<Parameter> shared = new ArrayList<>();
+        List<Operation> operations = new ArrayList<>();
+        while (nextField()) {
+            String field = parser.text();
+            parser.next();
+            if ("parameters".equals(field)) {
+                readParameters(shared);
+            } else if (METHODS.contains(field)) {
+                operations.add(readOperation(path, field));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        for (Operation operation : operations) {
+            emitOperation(operation, shared);
+        }
+    }
+
+    private Operation readOperation(String path, String method) throws IOException {
+        Operation operation = new Operation(path, method.toUpperCase(Locale.ROOT));
+        if (!enterObject()) {
+            return operation;
+        }
+        while (nextField()) {
+            String field = parser.text();
+            parser.next();
+            switch (field) {
+                case "operationId" -> operation.operationId = scalar();
+                case "summary" -> operation.summary = scalar();
+                case "description" -> operation.description = scalar();
+                case "parameters" -> readParameters(operation.parameters);
+                case "requestBody" -> operation.requestBody = readBody();
+                case "responses" -> {
+                    if (!enterObject()) {
+                        continue;
+                    }
+                    while (nextField()) {
+                        operation.responseCodes.add(parser.text());
+                        parser.next();
+                        operation.responses.add(readBody());
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return operation;
+    }
+
+    private void emitOperation(Operation operation, List<Parameter> shared) throws IOException {
+        // An operation's own parameter replaces a path item's one with the same name and location
+        Set<String> own = new HashSet<>();
+        for (Parameter parameter : operation.parameters) {
+            own.add(parameter.in + " " + parameter.name);
+        }
+        List<Parameter> parameters = new ArrayList<>();
+        for (Parameter parameter : shared) {
+            if (parameter.ref != null || !own.contains(parameter.in + " " + parameter.name)) {
+                parameters.add(parameter);
+            }
+        }
+        parameters.addAll(operation.parameters);
+
+        Body requestBody = operation.requestBody;
+        operationCount++;
+        emit(Sheet.OPERATIONS,
+                operation.method + " " + operation.path,
+                apiName,
+                operation.path,
+                operation.method,
+                operation.operationId,
+                operation.summary,
+                operation.description,
+                parameters.isEmpty() ? null : (Deferred) () -> describeParameters(parameters),
+                requestBody == null ? null : (Deferred) () -> components.describe(requestBody),
+                operation.responses.isEmpty() ? null : (Deferred) () -> describeResponses(operation));
+    }
+
+    private String describeParameters(List<Parameter> parameters) {
+        StringBuilder text = new StringBuilder();
+        for (Parameter parameter : parameters) {
+            String described = components.describe(parameter);
+            if (described == null) {
+                return null;
+            }
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(described);
+        }
+        return text.toString();
+    }
+
+    // "200: Book[]; 404"
+    private String describeResponses(Operation operation) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < operation.responses.size(); i++) {
+            String type = components.describe(operation.responses.get(i));
+            if (type == null) {
+                return null;
+            }
+            if (text.length() > 0) {
+                text.append("; ");
+            }
+            text.append(operation.responseCodes.get(i));
+            if (!type.isEmpty()) {
+                text.append(": ").append(type);
+            }
+        }
+        return text.toString();
+    }
+
+    private void readParameters(List<Parameter> parameters) throws IOException {
+        if (!enterArray()) {
+            return;
+        }
+        while (nextElement()) {
+            parameters.add(readParameter());
+        }
+    }
+
+    private Parameter readParameter() throws IOException {
+        String ref = null;
+        String name = null;
+        String in = null;
+        boolean required = false;
+        Shape schema = null;
+        if (enterObject()) {
+            while (nextField()) {
+                String field = parser.text();
+                parser.next();
+                switch (field) {
+                    case "$ref" -> ref = scalar();
+                    case "name" -> name = scalar();
+                    case "in" -> in = scalar();
+                    case "required" -> required = "true".equals(scalar());
+                    case "schema" -> schema = readShape(null);
+                    case "content" -> schema = readContent();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new Parameter(ref, name, in, required, schema);
+    }
+
+    private Body readBody() throws IOException {
+        String ref = null;
+        Shape schema = null;
+        if (enterObject()) {
+            while (nextField()) {
+                String field = parser.text();
+                parser.next();
+                switch (field) {
+                    case "$ref" -> ref = scalar();
+                    case "content" -> schema = readContent();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new Body(ref, schema);
+    }
+
+    // The schema of the first JSON media type, or else of the first one
+    private Shape readContent() throws IOException {
+        Shape chosen = null;
+        boolean json = false;
+        if (!enterObject()) {
+            return null;
+        }
+        while (nextField()) {
+            String mediaType = parser.text();
+            parser.next();
+            Shape schema = null;
+            if (enterObject()) {
+                while (nextField()) {
+                    String field = parser.text();
+                    parser.next();
+                    if ("schema".equals(field)) {
+                        schema = readShape(null);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            boolean isJson = mediaType.contains("json");
+            if (schema != null && (chosen == null || isJson && !json)) {
+                chosen = schema;
+                json = isJson;
+            }
+        }
+        return chosen;
+    }
+
+    private void readComponents() throws IOException {
+        if (!enterObject()) {
+            return;
+        }
+        while (nextField()) {
+            String section = parser.text();
+            parser.next();
+            if (OpenApiComponents.SCHEMAS.equals(section)) {
+                readSchemas();
+                continue;
+            }
+            if (!OpenApiComponents.PARAMETERS.equals(section) && !OpenApiComponents.REQUEST_BODIES.equals(section)
+                    && !OpenApiComponents.RESPONSES.equals(section)) {
+                parser.skipChildren();
+                continue;
+            }
+            if (!enterObject()) {
+                continue;
+            }
+            while (nextField()) {
+                String name = parser.text();
+                parser.next();
+                switch (section) {
+                    case OpenApiComponents.PARAMETERS -> components.putParameter(name, readParameter());
+                    case OpenApiComponents.REQUEST_BODIES -> components.putRequestBody(name, readBody());
+                    default -> components.putResponse(name, readBody());
+                }
+                drain();
+            }
+        }
+    }
+
+    private void readSchemas() throws IOException {
+        if (!enterObject()) {
+            return;
+        }
+        while (nextField()) {
+            String name = parser.text();
+            parser.next();
+            SchemaDetails details = new SchemaDetails(true);
+            Shape shape = readShape(details);
+            components.putSchema(name, shape);
+            schemaCount++;
+            emit(Sheet.DATA_STRUCTURES, name, apiName,
+                    shape == null ? null : (Deferred) () -> components.describe(shape), details.description);
+            for (Property property : details.properties) {
+                Shape type = property.shape;
+                emit(Sheet.DATA_ATTRIBUTES, property.name, name,
+                        type == null ? null : (Deferred) () -> components.describe(type),
+                        details.required.contains(property.name) ? "Yes" : "No",
+                        property.description);
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Reads a schema object; with details, also its description and, if
+     * asked for, its properties and required ones. Null for a schema that
+     * says nothing about its values.
+     */
+    private Shape readShape(SchemaDetails details) throws IOException {
+        if (!enterObject()) {
+            return null;
+        }
+        String ref = null;
+        String type = null;
+        String format = null;
+        Shape items = null;
+        Shape.Kind combination = null;
+        List<Shape> parts = null;
+        boolean hasProperties = false;
+        while (nextField()) {
+            String field = parser.text();
+            parser.next();
+            switch (field) {
+                case "$ref" -> ref = scalar();
+                case "type" -> type = readType();
+                case "format" -> format = scalar();
+                case "items" -> items = readShape(null);
+                case "allOf", "oneOf", "anyOf" -> {
+                    combination = "allOf".equals(field) ? Shape.Kind.ALL_OF : Shape.Kind.ONE_OF;
+                    parts = new ArrayList<>();
+                    if (enterArray()) {
+                        while (nextElement()) {
+                            Shape part = readShape(null);
+                            if (part != null) {
+                                parts.add(part);
+                            }
+                        }
+                    }
+                }
+                case "properties" -> {
+                    hasProperties = true;
+                    if (details != null && details.withProperties) {
+                        readProperties(details.properties);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "required" -> {
+                    if (details != null && details.withProperties && enterArray()) {
+                        while (nextElement()) {
+                            details.required.add(scalar());
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "description" -> {
+                    String text = scalar();
+                    if (details != null) {
+                        details.description = text;
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (ref != null) {
+            return Shape.ref(ref);
+        }
+        if (parts != null && !parts.isEmpty()) {
+            return Shape.combined(combination, parts);
+        }
+        if ("array".equals(type)) {
+            return Shape.array(items);
+        }
+        if (type != null && !"object".equals(type)) {
+            return Shape.type(type, format);
+        }
+        return type != null || hasProperties ? Shape.OBJECT : null;
+    }
+
+    private void readProperties(List<Property> properties) throws IOException {
+        if (!enterObject()) {
+            return;
+        }
+        while (nextField()) {
+            String name = parser.text();
+            parser.next();
+            SchemaDetails details = new SchemaDetails(false);
+            Shape shape = readShape(details);
+            properties.add(new Property(name, shape, details.description));
+        }
+    }
+
+    // A type, or the first type other than null of a list of them
+    private String readType() throws IOException {
+        if (!enterArray()) {
+            return scalar();
+        }
+        String type = null;
+        while (nextElement()) {
+            String text = scalar();
+            if (type == null && text != null && !"null".equals(text)) {
+                type = text;
+            }
+        }
+        return type;
+    }
+
+    /** Adds a row, or queues it behind the rows of its sheet that wait on components. */
+    private void emit(Sheet sheet, Object... cells) throws IOException {
+        ArrayDeque<Object[]> queue = waiting.get(sheet.ordinal());
+        if (!queue.isEmpty() || !add(sheet, cells)) {
+            queue.add(cells);
+        }
+    }
+
+    private void drain() throws IOException {
+        for (Sheet sheet : Sheet.values()) {
+            ArrayDeque<Object[]> queue = waiting.get(sheet.ordinal());
+            while (!queue.isEmpty() && add(sheet, queue.peek())) {
+                queue.poll();
+            }
+        }
+    }
+
+    // False, adding nothing, when a cell still waits on components
+    private boolean add(Sheet sheet, Object[] cells) throws IOException {
+        String[] values = new String[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] instanceof Deferred) {
+                values[i] = ((Deferred) cells[i]).value();
+                if (values[i] == null) {
+                    return false;
+                }
+            } else {
+                values[i] = (String) cells[i];
+            }
+        }
+        UnifiedTable batch = batches[sheet.ordinal()];
+        int row = batch.addRow();
+        for (int i = 0; i < values.length; i++) {
+            // Empty cells are left out, as they are when reading a workbook
+            if (values[i] != null && !values[i].isEmpty()) {
+                batch.setString(row, i, values[i]);
+            }
+        }
+        if (batch.size() == UnifiedTableJson.BATCH_ROWS) {
+            sink.write(sheet, batch);
+            batch.clear();
+        }
+        return true;
+    }
+
+    private String scalar() throws IOException {
+        if (parser.current() == Token.SCALAR) {
+            return parser.text();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private boolean enterObject() throws IOException {
+        if (parser.current() == Token.START_OBJECT) {
+            return true;
+        }
+        parser.skipChildren();
+        return false;
+    }
+
+    private boolean enterArray() throws IOException {
+        if (parser.current() == Token.START_ARRAY) {
+            return true;
+        }
+        parser.skipChildren();
+        return false;
+    }
+
+    private boolean nextField() throws IOException {
+        return parser.next() == Token.FIELD_NAME;
+    }
+
+    // Moves onto the next element of an array; false at its end
+    private boolean nextElement() throws IOException {
+        Token token = parser.next();
+        if (token == null) {
+            throw new IOException("Unexpected end of document");
+        }
+        return token != Token.END_ARRAY;
+    }
+
+    private static final class Operation {
+        final String path;
+        final String method;
+        String operationId;
+        String summary;
+        String description;
+        final List<Parameter> parameters = new ArrayList<>();
+        Body requestBody;
+        final List<String> responseCodes = new ArrayList<>();
+        final List<Body> responses = new ArrayList<>();
+
+        Operation(String path, String method) {
+            this.path = path;
+            this.method = method;
+        }
+    }
+
+    private static final class SchemaDetails {
+        final boolean withProperties;
+        String description;
+        final List<Property> properties = new ArrayList<>();
+        final Set<String> required = new HashSet<>();
+
+        SchemaDetails(boolean withProperties) {
+            this.withProperties = withProperties;
+        }
+    }
+
+    private static final class Property {
+        final String name;
+        final Shape shape;
+        final String description;
+
+        Property(String name, Shape shape, String description) {
+            this.name = name;
+            this.shape = shape;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Turns an OpenAPI spec, JSON or YAML, into the unified template: one sheet
+ * each for the API, its operations, its data structures and their
+ * attributes, in the same shape as a converted workbook.
+ */
+@Service
+public class OpenApiToJsonConverter {
+
+    private static final Logger LOGGER = Logger.getLogger(OpenApiToJsonConverter.class.getName());
+
+    private static final JsonFactory FRAGMENTS = new JsonFactory();
+
+    // Sheets larger than this are collected in temporary files until the document is written
+    @Value("${excel.spill-threshold-bytes:16777216}")
+    private long spillThreshold = 16 * 1024 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public void convertOpenApiToJson(InputStream inputStream, String outputFilePath) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(Path.of(outputFilePath))) {
+            convertOpenApiToJson(inputStream, outputStream);
+        }
+    }
+
+    /** Writes the JSON to the stream, which is left open. The spec's format is told from its first character. */
+    public void convertOpenApiToJson(InputStream inputStream, OutputStream outputStream) throws IOException {
+        long start = System.nanoTime();
+        InputStream in = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        SheetFragments fragments = new SheetFragments();
+        OpenApiReader reader;
+        try (SpecParser parser = isJson(in) ? new JsonSpecParser(objectMapper.getFactory(), in) : new YamlSpecParser(in)) {
+            reader = new OpenApiReader(parser, fragments);
+            reader.read();
+            fragments.finish();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.useDefaultPrettyPrinter();
+                generator.writeStartObject();
+                fragments.writeSheets(generator);
+                generator.writeEndObject();
+            }
+        } finally {
+            fragments.close();
+        }
+        LOGGER.info("OpenAPI spec '" + reader.getTitle() + "' converted: " + reader.getOperationCount()
+                + " operations, " + reader.getSchemaCount() + " schemas in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    // JSON starts with an object; anything else is taken for YAML
+    static boolean isJson(InputStream in) throws IOException {
+        in.mark(1024);
+        try {
+            for (int i = 0; i < 1024; i++) {
+                int b = in.read();
+                if (b == '{') {
+                    return true;
+                }
+                // Whitespace and a UTF-8 byte order mark come before the first value
+                if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != 0xEF && b != 0xBB && b != 0xBF) {
+                    return false;
+                }
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Each sheet's rows as they arrive, as the compact elements of a JSON
+     * array in a buffer of its own; the document lists the sheets in a fixed
+     * order, while the spec yields their rows interleaved.
+     */
+    private final class SheetFragments implements OpenApiReader.SheetSink {
+
+        private final OpenApiReader.Sheet[] sheets = OpenApiReader.Sheet.values();
+        private final SpillingBuffer[] buffers = new SpillingBuffer[sheets.length];
+        private final JsonGenerator[] generators = new JsonGenerator[sheets.length];
+        private final UnifiedTableJson.RowWriter[] writers = new UnifiedTableJson.RowWriter[sheets.length];
+        private final int[] rowCounts = new int[sheets.length];
+
+        @Override
+        public void write(OpenApiReader.Sheet sheet, UnifiedTable rows) throws IOException {
+            int index = sheet.ordinal();
+            if (generators[index] == null) {
+                buffers[index] = new SpillingBuffer(spillThreshold);
+                generators[index] = FRAGMENTS.createGenerator(buffers[index].getOutputStream(), JsonEncoding.UTF8);
+                generators[index].writeStartArray();
+                writers[index] = new UnifiedTableJson.RowWriter(sheet.headers);
+            }
+            writers[index].write(generators[index], rows);
+            rowCounts[index] += rows.size();
+        }
+
+        void finish() throws IOException {
+            for (JsonGenerator generator : generators) {
+                if (generator != null) {
+                    generator.writeEndArray();
+                    generator.close();
+                }
+            }
+        }
+
+        // Sheets without rows are left out, as empty sheets of a workbook are
+        void writeSheets(JsonGenerator generator) throws IOException {
+            generator.writeFieldName("sheets");
+            generator.writeStartArray();
+            for (OpenApiReader.Sheet sheet : sheets) {
+                SpillingBuffer buffer = buffers[sheet.ordinal()];
+                if (buffer == null) {
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeStringField("sheetName", sheet.sheetName);
+                generator.writeNumberField("rowCount", rowCounts[sheet.ordinal()]);
+                generator.writeFieldName("data");
+                try (InputStream in = buffer.getInputStream(); JsonParser parser = FRAGMENTS.createParser(in)) {
+                    parser.nextToken();
+                    generator.copyCurrentStructure(parser);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+
+        void close() throws IOException {
+            for (SpillingBuffer buffer : buffers) {
+                if (buffer != null) {
+                    buffer.close();
+                }
+            }
+        }
+    }
+}
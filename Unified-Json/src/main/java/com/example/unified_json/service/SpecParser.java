@@ -0,0 +1,44 @@
+package com.example.unified_json.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A forward-only cursor over the tokens of a JSON or YAML document, the
+ * little that reading a spec needs from either format.
+ */
+interface SpecParser extends Closeable {
+
+    enum Token { START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, SCALAR }
+
+    /** Moves to the next token; null at the end of the document. */
+    Token next() throws IOException;
+
+    Token current();
+
+    /** The field name, or the scalar as written; null for a null scalar. */
+    String text();
+
+    /** On the start of an object or array, moves to its end; otherwise does nothing. */
+    default void skipChildren() throws IOException {
+        Token token = current();
+        if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            token = next();
+            if (token == null) {
+                throw new IOException("Unexpected end of document");
+            }
+            if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+                depth++;
+            } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+                depth--;
+            }
+        }
+    }
+
+    /** Where the current token is, for messages. */
+    String location();
+}
@@ -0,0 +1,107 @@
+package com.example.unified_json.service;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Bytes written once and then read any number of times, kept in memory
+ * until they pass a threshold and moved to a temporary file from then on.
+ * Used to hand a converter's output to the next converter or to a response
+ * without a fixed file that concurrent requests would share.
+ * <p>
+ * Reading starts after the output stream is closed; closing the buffer
+ * deletes the file.
+ */
+public class SpillingBuffer implements InputStreamSource, Closeable {
+
+    private final long threshold;
+    private final Memory memory = new Memory();
+    private final OutputStream output = new Output();
+    private Path file;
+    private OutputStream fileOutput;
+    private long size;
+
+    public SpillingBuffer(long threshold) {
+        this.threshold = threshold;
+    }
+
+    public OutputStream getOutputStream() {
+        return output;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return file != null ? Files.newInputStream(file) : memory.inputStream();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOutput != null) {
+            fileOutput.close();
+        }
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private OutputStream target(int length) throws IOException {
+        if (file == null && size + length > threshold) {
+            file = Files.createTempFile("spill", ".tmp");
+            fileOutput = new BufferedOutputStream(Files.newOutputStream(file));
+            memory.writeTo(fileOutput);
+            memory.reset();
+        }
+        size += length;
+        return file != null ? fileOutput : memory;
+    }
+
+    private final class Output extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            target(1).write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target(len).write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOutput != null) {
+                fileOutput.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOutput != null) {
+                fileOutput.close();
+            }
+        }
+    }
+
+    // Reads the written bytes in place rather than copying them
+    private static final class Memory extends ByteArrayOutputStream {
+        InputStream inputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,679 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.ExcelNumberFormat;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the sheets of an .xlsx package with POI's event API and writes
+ * them to a JSON generator as {@link ExcelToJsonConverter} does from a
+ * {@code XSSFWorkbook}, row by row, so only the row being read and the
+ * shared strings are held in memory.
+ * <p>
+ * The sheet's row count precedes its rows in the output, so each sheet is
+ * read twice: once scanning the raw XML for its row numbers, then parsed.
+ * <p>
+ * Sheets are independent, so with a pool they are converted concurrently,
+ * each into a compact temporary file that is copied into the output in the
+ * workbook's order once it and the sheets before it are done. A worker holds
+ * one row at a time, so memory does not grow with the number of workers.
+ * <p>
+ * The rows can also be handed over as tables, in batches, for writing them
+ * elsewhere without a JSON document in between.
+ */
+class StreamingExcelReader {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingExcelReader.class.getName());
+
+    private static final Pattern ESCAPED_CHARACTER = Pattern.compile("_x([0-9A-Fa-f]{4})_");
+
+    private static final JsonFactory FRAGMENTS = new JsonFactory();
+
+    private static final byte DATE_STYLE = 1;
+    private static final byte OTHER_STYLE = 2;
+
+    private final OPCPackage workbookPackage;
+    private final JsonGenerator generator;
+    private final ExecutorService sheetPool;
+
+    private ReadOnlySharedStringsTable sharedStrings;
+    // Shared strings as read so far, by index; POI builds a new string on every lookup
+    private String[] sharedStringValues;
+    private StylesTable styles;
+    // Whether each cell style formats dates, by style index: 0 until looked up, then DATE_STYLE or OTHER_STYLE
+    private byte[] dateStyles;
+    private boolean date1904;
+
+    /** For reading the rows as tables only; sheets are read on the calling thread. */
+    StreamingExcelReader(OPCPackage workbookPackage) {
+        this(workbookPackage, null, null);
+    }
+
+    /** Without a pool, or for a single sheet, sheets are converted on the calling thread. */
+    StreamingExcelReader(OPCPackage workbookPackage, JsonGenerator generator, ExecutorService sheetPool) {
+        this.workbookPackage = workbookPackage;
+        this.generator = generator;
+        this.sheetPool = sheetPool;
+    }
+
+    /** Writes the "sheets" array; the generator is positioned inside the root object. */
+    void writeSheets() throws Exception {
+        writeSheets(null);
+    }
+
+    /**
+     * Writes the "sheets" array, and hands the rows written to the target
+     * too, as {@link #readRows} would. With a target, sheets are converted
+     * in turn on the calling thread, so their rows arrive in order.
+     */
+    void writeSheets(RowTarget rows) throws Exception {
+        Map<String, PackagePart> sheets = openSheets();
+        generator.writeFieldName("sheets");
+        generator.writeStartArray();
+        if (sheetPool == null || sheets.size() < 2 || rows != null) {
+            for (Map.Entry<String, PackagePart> sheet : sheets.entrySet()) {
+                writeSheet(sheet.getKey(), sheet.getValue(), generator, rows);
+            }
+        } else {
+            writeSheetsConcurrently(sheets);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * The union of the keys of every sheet's first data row, with their
+     * column index in the order they are first seen, as
+     * {@link UnifiedTableJson#readHeaders} collects them from the written
+     * document. Each sheet is only read up to its first data row.
+     */
+    Map<String, Integer> readHeaders() throws Exception {
+        Set<String> headers = new LinkedHashSet<>();
+        for (PackagePart sheetPart : openSheets().values()) {
+            try {
+                parse(sheetPart, new SheetHandler(1, batch -> {
+                    if (batch.size() == 0) {
+                        return;
+                    }
+                    // A header that repeats is one key of the row object
+                    for (int column = 0; column < batch.getColumnCount(); column++) {
+                        if (batch.isPresent(0, column)) {
+                            headers.add(batch.getHeaders().get(column));
+                        }
+                    }
+                    throw new FirstRowRead();
+                }));
+            } catch (FirstRowRead e) {
+                // The rest of the sheet is not needed
+            }
+        }
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (String header : headers) {
+            columns.put(header, columns.size());
+        }
+        return columns;
+    }
+
+    /**
+     * Hands the data rows of every sheet to the target in batches, in the
+     * workbook's order. A batch has its sheet's headers, which may repeat,
+     * and is reused for the next one. Sheets the JSON would leave out have
+     * no rows.
+     */
+    void readRows(RowTarget target) throws Exception {
+        for (PackagePart sheetPart : openSheets().values()) {
+            parse(sheetPart, new SheetHandler(UnifiedTableJson.BATCH_ROWS, target));
+        }
+    }
+
+    /** Receives a sheet's data rows, a batch at a time. */
+    @FunctionalInterface
+    interface RowTarget {
+        void rows(UnifiedTable batch) throws IOException;
+    }
+
+    // Reads what the sheets share and returns the sheets by name, in the workbook's order
+    private Map<String, PackagePart> openSheets() throws Exception {
+        XSSFReader reader = new XSSFReader(workbookPackage);
+        // Without phonetic runs, as XSSFWorkbook reads string cells
+        sharedStrings = new ReadOnlySharedStringsTable(workbookPackage, false);
+        sharedStringValues = new String[sharedStrings.getUniqueCount()];
+        styles = reader.getStylesTable();
+        dateStyles = new byte[styles == null ? 0 : styles.getNumCellStyles()];
+        date1904 = isDate1904(reader);
+
+        Map<String, PackagePart> sheets = new LinkedHashMap<>();
+        XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (iterator.hasNext()) {
+            iterator.next().close();
+            sheets.put(iterator.getSheetName(), iterator.getSheetPart());
+        }
+        return sheets;
+    }
+
+    private void writeSheetsConcurrently(Map<String, PackagePart> sheets) throws Exception {
+        List<Future<Path>> fragments = new ArrayList<>();
+        for (Map.Entry<String, PackagePart> sheet : sheets.entrySet()) {
+            fragments.add(sheetPool.submit(() -> writeFragment(sheet.getKey(), sheet.getValue())));
+        }
+        int copied = 0;
+        try {
+            for (Future<Path> fragment : fragments) {
+                Path file = await(fragment);
+                copied++;
+                if (file == null) {
+                    continue;
+                }
+                try (JsonParser parser = FRAGMENTS.createParser(file.toFile())) {
+                    parser.nextToken();
+                    generator.copyCurrentStructure(parser);
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } finally {
+            // After a failure, let the sheets already running finish and remove what they wrote
+            for (Future<Path> fragment : fragments.subList(copied, fragments.size())) {
+                if (!fragment.cancel(false)) {
+                    try {
+                        Path file = fragment.get();
+                        if (file != null) {
+                            Files.deleteIfExists(file);
+                        }
+                    } catch (ExecutionException | IOException e) {
+                        // Already reported by the first failure
+                    }
+                }
+            }
+        }
+    }
+
+    private static Path await(Future<Path> fragment) throws Exception {
+        try {
+            return fragment.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /** The sheet as a compact JSON object in a temporary file, or null when it is skipped. */
+    private Path writeFragment(String sheetName, PackagePart sheetPart) throws Exception {
+        Path file = Files.createTempFile("sheet", ".json");
+        boolean written = false;
+        try {
+            try (JsonGenerator fragment = FRAGMENTS.createGenerator(file.toFile(), JsonEncoding.UTF8)) {
+                written = writeSheet(sheetName, sheetPart, fragment, null);
+            }
+            return written ? file : null;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Writes the sheet's object to the generator, unless it is empty or has
+     * no header row, and hands its rows to the row target if there is one.
+     */
+    private boolean writeSheet(String sheetName, PackagePart sheetPart, JsonGenerator target, RowTarget rowTarget)
+            throws Exception {
+        long start = System.nanoTime();
+        RowRange rows;
+        try (InputStream in = sheetPart.getInputStream()) {
+            rows = RowRange.scan(in);
+        }
+        if (rows.last == 0) {
+            LOGGER.warning("Sheet '" + sheetName + "' is empty and will be skipped.");
+            return false;
+        }
+        if (rows.first != 0) {
+            LOGGER.warning("Sheet '" + sheetName + "' does not have a header row and will be skipped.");
+            return false;
+        }
+
+        target.writeStartObject();
+        target.writeStringField("sheetName", sheetName);
+        target.writeNumberField("rowCount", rows.last);
+        target.writeFieldName("data");
+        target.writeStartArray();
+        UnifiedTableJson.RowWriter[] rowWriter = new UnifiedTableJson.RowWriter[1];
+        parse(sheetPart, new SheetHandler(UnifiedTableJson.BATCH_ROWS, batch -> {
+            if (rowWriter[0] == null) {
+                rowWriter[0] = new UnifiedTableJson.RowWriter(batch.getHeaders());
+            }
+            rowWriter[0].write(target, batch);
+            if (rowTarget != null) {
+                rowTarget.rows(batch);
+            }
+        }));
+        target.writeEndArray();
+        target.writeEndObject();
+        LOGGER.info("Sheet '" + sheetName + "' converted in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return true;
+    }
+
+    private static void parse(PackagePart sheetPart, SheetHandler handler) throws Exception {
+        try (InputStream in = sheetPart.getInputStream()) {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(handler);
+            parser.parse(new InputSource(in));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Sheets read concurrently may both look a string up; either result is the same
+    private String sharedString(int index) {
+        if (index >= sharedStringValues.length) {
+            return sharedStrings.getItemAt(index).getString();
+        }
+        String value = sharedStringValues[index];
+        if (value == null) {
+            value = sharedStrings.getItemAt(index).getString();
+            sharedStringValues[index] = value;
+        }
+        return value;
+    }
+
+    // Matching a format against the date patterns is costly; it is done once per style
+    private boolean isDateStyle(int styleIndex) {
+        if (styleIndex >= dateStyles.length) {
+            return false;
+        }
+        byte known = dateStyles[styleIndex];
+        if (known == 0) {
+            XSSFCellStyle style = styles.getStyleAt(styleIndex);
+            ExcelNumberFormat format = style == null ? null : ExcelNumberFormat.from(style);
+            known = format != null && DateUtil.isADateFormat(format) ? DATE_STYLE : OTHER_STYLE;
+            dateStyles[styleIndex] = known;
+        }
+        return known == DATE_STYLE;
+    }
+
+    private static boolean isDate1904(XSSFReader reader) throws Exception {
+        boolean[] date1904 = new boolean[1];
+        try (InputStream in = reader.getWorkbookData()) {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equals(value);
+                    }
+                }
+            });
+            parser.parse(new InputSource(in));
+        }
+        return date1904[0];
+    }
+
+    // Shared and inline strings escape some characters as _xHHHH_
+    private static String decode(String text) {
+        if (text.indexOf("_x") < 0) {
+            return text;
+        }
+        Matcher matcher = ESCAPED_CHARACTER.matcher(text);
+        StringBuilder decoded = new StringBuilder(text.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(decoded,
+                    Matcher.quoteReplacement(String.valueOf((char) Integer.parseInt(matcher.group(1), 16))));
+        }
+        matcher.appendTail(decoded);
+        return decoded.toString();
+    }
+
+    /**
+     * The first and last row index of a sheet, as XSSFSheet reports them;
+     * -1 when there are no rows. Scans the XML bytes for row tags rather
+     * than parsing it, which is several times cheaper.
+     */
+    private static final class RowRange {
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+        private int limit;
+        private int first = -1;
+        private int last = -1;
+
+        private RowRange(InputStream in) {
+            this.in = in;
+        }
+
+        static RowRange scan(InputStream in) throws IOException {
+            RowRange range = new RowRange(in);
+            range.scanRows();
+            return range;
+        }
+
+        private void scanRows() throws IOException {
+            int previous = -1;
+            int b = read();
+            while (b != -1) {
+                if (b != '<') {
+                    b = read();
+                    continue;
+                }
+                // The tag's local name, without any namespace prefix
+                b = read();
+                int nameLength = 0;
+                boolean row = true;
+                while (b != -1 && b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != '>' && b != '/') {
+                    if (b == ':') {
+                        nameLength = 0;
+                        row = true;
+                    } else {
+                        row &= nameLength < 3 && b == "row".charAt(nameLength);
+                        nameLength++;
+                    }
+                    b = read();
+                }
+                if (!row || nameLength != 3) {
+                    continue;
+                }
+
+                // Rows without an r attribute follow the previous one
+                int index = previous + 1;
+                int before = ' ';
+                while (b != -1 && b != '>') {
+                    if (b == '"' || b == '\'') {
+                        // Attribute values may contain anything
+                        int quote = b;
+                        do {
+                            b = read();
+                        } while (b != -1 && b != quote);
+                    } else if (b == 'r' && Character.isWhitespace(before)) {
+                        before = b;
+                        b = read();
+                        if (b == '=') {
+                            int quote = read();
+                            int number = 0;
+                            b = read();
+                            while (b >= '0' && b <= '9') {
+                                number = number * 10 + (b - '0');
+                                b = read();
+                            }
+                            if (b != quote) {
+                                continue;
+                            }
+                            if (number > 0) {
+                                index = number - 1;
+                            }
+                        }
+                        before = b;
+                        b = read();
+                        continue;
+                    }
+                    before = b;
+                    b = read();
+                }
+                if (first < 0) {
+                    first = index;
+                }
+                last = Math.max(last, index);
+                previous = index;
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+    }
+
+    // Ends reading a sheet once its first data row has been seen
+    private static final class FirstRowRead extends RuntimeException {
+        private FirstRowRead() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Turns the cells of each data row into the same row object as the
+     * workbook converter: a value per header, by column position, from the
+     * third row on. Rows are handed to the target in batches of batchRows.
+     */
+    private final class SheetHandler extends DefaultHandler {
+        private final int batchRows;
+        private final RowTarget target;
+
+        private final List<String> headers = new ArrayList<>();
+        private final List<CellRangeAddress> arrayFormulas = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        // The data rows read since the last flush, and the one being read, or -1 outside data rows
+        private UnifiedTable table;
+        private int tableRow = -1;
+        private int rowIndex = -1;
+        private int columnIndex;
+        private String cellType;
+        private int styleIndex;
+        private boolean hasFormula;
+        private boolean hasValue;
+        private boolean inPhonetic;
+        private boolean collecting;
+
+        private SheetHandler(int batchRows, RowTarget target) {
+            this.batchRows = batchRows;
+            this.target = target;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row": {
+                    String r = attributes.getValue("r");
+                    rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+                    columnIndex = -1;
+                    tableRow = rowIndex >= 2 && table != null ? table.addRow() : -1;
+                    break;
+                }
+                case "c": {
+                    String r = attributes.getValue("r");
+                    columnIndex = r != null ? column(r) : columnIndex + 1;
+                    cellType = attributes.getValue("t");
+                    String s = attributes.getValue("s");
+                    styleIndex = s != null ? Integer.parseInt(s) : 0;
+                    hasFormula = false;
+                    hasValue = false;
+                    text.setLength(0);
+                    break;
+                }
+                case "f": {
+                    hasFormula = true;
+                    String ref = attributes.getValue("ref");
+                    if ("array".equals(attributes.getValue("t")) && ref != null) {
+                        arrayFormulas.add(CellRangeAddress.valueOf(ref));
+                    }
+                    break;
+                }
+                case "v":
+                    hasValue = true;
+                    collecting = true;
+                    break;
+                case "rPh":
+                    inPhonetic = true;
+                    break;
+                case "t":
+                    // Inline string text, without phonetic runs
+                    if (!inPhonetic) {
+                        hasValue = true;
+                        collecting = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    collecting = false;
+                    break;
+                case "rPh":
+                    inPhonetic = false;
+                    break;
+                case "c":
+                    endCell();
+                    break;
+                case "row":
+                    if (rowIndex == 0) {
+                        table = new UnifiedTable(headers);
+                    } else if (tableRow >= 0 && table.size() == batchRows) {
+                        flush();
+                    }
+                    tableRow = -1;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endDocument() {
+            if (table != null) {
+                flush();
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) {
+                text.append(ch, start, length);
+            }
+        }
+
+        private void endCell() {
+            boolean formula = hasFormula || isInArrayFormula();
+            if (rowIndex == 0) {
+                headers.add(headerValue(formula));
+                return;
+            }
+            if (tableRow < 0 || columnIndex >= headers.size()) {
+                return;
+            }
+
+            if (formula || !hasValue || "e".equals(cellType)) {
+                table.setNull(tableRow, columnIndex);
+                LOGGER.warning("Invalid cell type in row " + (rowIndex + 1) + " under header '"
+                        + headers.get(columnIndex) + "'. Setting to null.");
+            } else if ("s".equals(cellType)) {
+                table.setString(tableRow, columnIndex,
+                        sharedString(Integer.parseInt(text.toString())));
+            } else if ("inlineStr".equals(cellType) || "str".equals(cellType) || "d".equals(cellType)) {
+                table.setString(tableRow, columnIndex, decode(text.toString()));
+            } else if ("b".equals(cellType)) {
+                table.setBoolean(tableRow, columnIndex, "1".equals(text.toString()));
+            } else {
+                double value = Double.parseDouble(text.toString());
+                if (isDateFormatted(value)) {
+                    // Convert numeric value to LocalDate
+                    LocalDate date = DateUtil.getJavaDate(value, date1904).toInstant()
+                            .atZone(ZoneId.systemDefault())
+                            .toLocalDate();
+                    table.setString(tableRow, columnIndex, date.toString());
+                } else {
+                    table.setDouble(tableRow, columnIndex, value);
+                }
+            }
+        }
+
+        // Header cells are read as strings, which POI refuses for other types of cell
+        private String headerValue(boolean formula) {
+            if (!hasValue) {
+                return "";
+            }
+            if ("s".equals(cellType)) {
+                return sharedString(Integer.parseInt(text.toString()));
+            }
+            if ("inlineStr".equals(cellType) || formula && "str".equals(cellType)) {
+                return decode(text.toString());
+            }
+            String type = formula ? "FORMULA" : "b".equals(cellType) ? "BOOLEAN" : "e".equals(cellType)
+                    ? "ERROR" : "NUMERIC";
+            throw new IllegalStateException("Cannot get a STRING value from a " + type + " cell");
+        }
+
+        private boolean isDateFormatted(double value) {
+            return DateUtil.isValidExcelDate(value) && isDateStyle(styleIndex);
+        }
+
+        // The column of a cell reference like AB12
+        private int column(String reference) {
+            int column = 0;
+            for (int i = 0; i < reference.length(); i++) {
+                char c = reference.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+
+        private boolean isInArrayFormula() {
+            for (int i = 0; i < arrayFormulas.size(); i++) {
+                if (arrayFormulas.get(i).isInRange(rowIndex, columnIndex)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void flush() {
+            try {
+                target.rows(table);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            table.clear();
+        }
+    }
+}
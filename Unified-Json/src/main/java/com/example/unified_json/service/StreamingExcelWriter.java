@@ -0,0 +1,100 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a unified JSON file to Excel as {@link JsonToExcelService} does
+ * from the whole document, but reads the JSON in batches of rows and writes
+ * through an {@link SXSSFWorkbook}, so only a batch and the window of rows
+ * not yet flushed are held in memory.
+ * <p>
+ * The header row is the union of every sheet's first-row keys and precedes
+ * the data, so the file is read twice: once for the headers, then for the rows.
+ * <p>
+ * The rows of a workbook can be written the same way straight from the
+ * tables its reader fills, without the JSON in between.
+ */
+class StreamingExcelWriter {
+
+    private final JsonFactory jsonFactory;
+    private final int rowWindow;
+
+    /** The factory must have a codec, to read nested values as the document would have held them. */
+    StreamingExcelWriter(JsonFactory jsonFactory, int rowWindow) {
+        this.jsonFactory = jsonFactory;
+        this.rowWindow = rowWindow;
+    }
+
+    void write(InputStreamSource json, OutputStream excel) throws IOException {
+        Map<String, Integer> columns = UnifiedTableJson.readHeaders(jsonFactory, json);
+        UnifiedTable batch = new UnifiedTable(new ArrayList<>(columns.keySet()));
+        write(columns, handler -> {
+            try (InputStream in = json.getInputStream(); JsonParser parser = jsonFactory.createParser(in)) {
+                UnifiedTableJson.forEachData(parser, () -> {
+                    boolean more;
+                    do {
+                        more = UnifiedTableJson.readRows(parser, batch, columns, UnifiedTableJson.BATCH_ROWS);
+                        handler.handle(batch);
+                        batch.clear();
+                    } while (more);
+                });
+            }
+        }, excel);
+    }
+
+    /** Writes the rows with the headers their JSON would have, reading the workbook twice. */
+    void write(WorkbookRows rows, OutputStream excel) throws IOException {
+        write(rows.readHeaders(), rows::forEachBatch, excel);
+    }
+
+    /**
+     * Writes the rows as above while their JSON is written to the json
+     * stream. Only the first rows of each sheet are read for the headers;
+     * the sheets are then read once for both outputs.
+     */
+    void write(WorkbookRows rows, OutputStream excel, OutputStream json) throws IOException {
+        write(rows.readHeaders(), handler -> rows.writeJson(json, handler), excel);
+    }
+
+    private void write(Map<String, Integer> columns, BatchSource batches, OutputStream excel) throws IOException {
+        // Closing the workbook also deletes the temporary files holding the flushed rows
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow)) {
+            Sheet sheet = workbook.createSheet("UnifiedData");
+            CellStyleCache styles = new CellStyleCache(workbook);
+            JsonToExcelService.writeHeaderRow(sheet, columns);
+
+            int[] rowIndex = {1};
+            batches.forEachBatch(batch -> {
+                // A batch's headers may differ from the columns, and repeat
+                List<String> headers = batch.getHeaders();
+                int[] targets = new int[headers.size()];
+                for (int col = 0; col < targets.length; col++) {
+                    targets[col] = columns.getOrDefault(headers.get(col), -1);
+                }
+                for (int row = 0; row < batch.size(); row++) {
+                    JsonToExcelService.writeCells(batch, row, sheet.createRow(rowIndex[0]++), styles, targets);
+                }
+            });
+
+            workbook.write(excel);
+        }
+    }
+
+    // Hands each batch of rows to the handler, in order
+    @FunctionalInterface
+    private interface BatchSource {
+        void forEachBatch(WorkbookRows.BatchHandler handler) throws IOException;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves the rows of a {@link UnifiedTable} to and from the "data" arrays of
+ * a unified JSON document.
+ */
+final class UnifiedTableJson {
+
+    // Rows the streaming converters hold at once
+    static final int BATCH_ROWS = 1024;
+
+    private UnifiedTableJson() {
+    }
+
+    /**
+     * The union of the keys of every sheet's first row, with their column
+     * index in the order they are first seen.
+     */
+    static Map<String, Integer> readHeaders(JsonFactory jsonFactory, InputStreamSource json) throws IOException {
+        Set<String> headers = new LinkedHashSet<>();
+        try (InputStream in = json.getInputStream(); JsonParser parser = jsonFactory.createParser(in)) {
+            forEachData(parser, () -> {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    headers.add(parser.currentName());
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                }
+            });
+        }
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (String header : headers) {
+            columns.put(header, columns.size());
+        }
+        return columns;
+    }
+
+    /**
+     * Calls the handler with the parser on the opening token of each
+     * {@code sheets[].data} array; the handler consumes the array up to
+     * and including its closing token. Every other value is skipped.
+     */
+    static void forEachData(JsonParser parser, DataHandler handler) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean isSheets = "sheets".equals(parser.currentName());
+            if (parser.nextToken() != JsonToken.START_ARRAY || !isSheets) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    boolean isData = "data".equals(parser.currentName());
+                    if (parser.nextToken() == JsonToken.START_ARRAY && isData) {
+                        handler.handle();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface DataHandler {
+        void handle() throws IOException;
+    }
+
+    /**
+     * Reads up to maxRows row objects into the table, with the parser inside
+     * a data array. Keys without a column are skipped. Returns false once
+     * the array has ended.
+     */
+    static boolean readRows(JsonParser parser, UnifiedTable table, Map<String, Integer> columns, int maxRows)
+            throws IOException {
+        for (int read = 0; read < maxRows; read++) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            int row = table.addRow();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer column = columns.get(parser.currentName());
+                JsonToken token = parser.nextToken();
+                if (column == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (token) {
+                    case VALUE_STRING -> table.setString(row, column, parser.getText());
+                    case VALUE_NUMBER_FLOAT -> table.setDouble(row, column, parser.getDoubleValue());
+                    case VALUE_NUMBER_INT -> {
+                        if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                            table.setValue(row, column, parser.getBigIntegerValue());
+                        } else {
+                            table.setLong(row, column, parser.getLongValue());
+                        }
+                    }
+                    case VALUE_TRUE, VALUE_FALSE -> table.setBoolean(row, column, parser.getBooleanValue());
+                    case VALUE_NULL -> table.setNull(row, column);
+                    // Nested values are kept as the maps and lists the document would hold
+                    default -> table.setValue(row, column, parser.readValueAs(Object.class));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes tables with the same headers as row objects. A header that
+     * repeats is written once, where its first cell in the row is, with the
+     * value of its last cell, as putting the cells into a map in column
+     * order would.
+     */
+    static final class RowWriter {
+        private final SerializableString[] names;
+        // For a repeated header, the columns that share it; null for the others
+        private final int[][] sharedColumns;
+
+        RowWriter(List<String> headers) {
+            names = new SerializableString[headers.size()];
+            sharedColumns = new int[headers.size()][];
+            Map<String, List<Integer>> columnsByHeader = new HashMap<>();
+            for (int i = 0; i < headers.size(); i++) {
+                names[i] = new SerializedString(headers.get(i));
+                columnsByHeader.computeIfAbsent(headers.get(i), header -> new ArrayList<>()).add(i);
+            }
+            for (List<Integer> columns : columnsByHeader.values()) {
+                if (columns.size() > 1) {
+                    int[] shared = columns.stream().mapToInt(Integer::intValue).toArray();
+                    for (int column : shared) {
+                        sharedColumns[column] = shared;
+                    }
+                }
+            }
+        }
+
+        void write(JsonGenerator generator, UnifiedTable table) throws IOException {
+            int columnCount = table.getColumnCount();
+            for (int row = 0; row < table.size(); row++) {
+                generator.writeStartObject();
+                for (int column = 0; column < columnCount; column++) {
+                    if (!table.isPresent(row, column)) {
+                        continue;
+                    }
+                    int source = column;
+                    int[] shared = sharedColumns[column];
+                    if (shared != null) {
+                        if (firstPresent(table, row, shared) != column) {
+                            continue;
+                        }
+                        source = lastPresent(table, row, shared);
+                    }
+                    generator.writeFieldName(names[column]);
+                    writeValue(generator, table, row, source);
+                }
+                generator.writeEndObject();
+            }
+        }
+
+        private static int firstPresent(UnifiedTable table, int row, int[] columns) {
+            for (int column : columns) {
+                if (table.isPresent(row, column)) {
+                    return column;
+                }
+            }
+            return -1;
+        }
+
+        private static int lastPresent(UnifiedTable table, int row, int[] columns) {
+            for (int i = columns.length - 1; i >= 0; i--) {
+                if (table.isPresent(row, columns[i])) {
+                    return columns[i];
+                }
+            }
+            return -1;
+        }
+
+        private static void writeValue(JsonGenerator generator, UnifiedTable table, int row, int column)
+                throws IOException {
+            if (table.isNull(row, column)) {
+                generator.writeNull();
+                return;
+            }
+            switch (table.getType(column)) {
+                case STRING -> generator.writeString(table.getString(row, column));
+                case DOUBLE -> generator.writeNumber(table.getDouble(row, column));
+                case BOOLEAN -> generator.writeBoolean(table.getBoolean(row, column));
+                case LONG -> generator.writeNumber(table.getLong(row, column));
+                default -> {
+                    Object value = table.getValue(row, column);
+                    if (value instanceof String) {
+                        generator.writeString((String) value);
+                    } else if (value instanceof Double) {
+                        generator.writeNumber((Double) value);
+                    } else if (value instanceof Boolean) {
+                        generator.writeBoolean((Boolean) value);
+                    } else if (value instanceof Long) {
+                        generator.writeNumber((Long) value);
+                    } else {
+                        // Other numbers, and nested maps and lists, which need the generator's codec
+                        generator.writeObject(value);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.model.UnifiedTable;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * The data rows of an uploaded workbook, read with the streaming reader as
+ * {@link ExcelToJsonConverter} would write them to JSON, for callers that
+ * want the rows themselves rather than the document. The workbook is kept
+ * in a temporary file until this is closed, so it can be read more than once.
+ */
+public class WorkbookRows implements Closeable {
+
+    private final Path workbookFile;
+    private final OPCPackage workbookPackage;
+    private final JsonFactory jsonFactory;
+
+    WorkbookRows(Path workbookFile, OPCPackage workbookPackage, JsonFactory jsonFactory) {
+        this.workbookFile = workbookFile;
+        this.workbookPackage = workbookPackage;
+        this.jsonFactory = jsonFactory;
+    }
+
+    /** The headers the JSON's rows would have, in order, with their column index. */
+    public Map<String, Integer> readHeaders() throws IOException {
+        try {
+            return new StreamingExcelReader(workbookPackage).readHeaders();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to read the workbook's headers", e);
+        }
+    }
+
+    /**
+     * Hands the rows of every sheet to the handler in batches, in the
+     * workbook's order. Each batch has its sheet's headers, which may
+     * repeat, and is only valid until the handler returns.
+     */
+    public void forEachBatch(BatchHandler handler) throws IOException {
+        try {
+            new StreamingExcelReader(workbookPackage).readRows(handler::handle);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to read the workbook's rows", e);
+        }
+    }
+
+    /**
+     * Writes the workbook's JSON to the stream, which is left open, as
+     * {@link ExcelToJsonConverter} does, and hands the rows to the handler
+     * as {@link #forEachBatch} does, reading the sheets once for both.
+     */
+    public void writeJson(OutputStream outputStream, BatchHandler handler) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            new StreamingExcelReader(workbookPackage, generator, null).writeSheets(handler::handle);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to read the workbook's rows", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            workbookPackage.close();
+        } finally {
+            Files.deleteIfExists(workbookFile);
+        }
+    }
+
+    @FunctionalInterface
+    public interface BatchHandler {
+        void handle(UnifiedTable batch) throws IOException;
+    }
+}
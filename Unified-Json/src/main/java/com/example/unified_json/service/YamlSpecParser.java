@@ -0,0 +1,133 @@
+package com.example.unified_json.service;
+
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * YAML specs, read from SnakeYAML's parser events without composing nodes.
+ * Only the first document is read. Aliases are not supported: resolving
+ * them would mean keeping every anchored node.
+ */
+class YamlSpecParser implements SpecParser {
+
+    private static final Set<String> NULLS = Set.of("", "~", "null", "Null", "NULL");
+
+    private final Reader reader;
+    private final Iterator<Event> events;
+    // Per open mapping, whether its next scalar is a key; sequences have an empty entry
+    private final Deque<boolean[]> containers = new ArrayDeque<>();
+    private Token current;
+    private String text;
+    private Mark mark;
+
+    YamlSpecParser(InputStream in) {
+        LoaderOptions options = new LoaderOptions();
+        // The default limit of 3 MB is below the size of our larger specs
+        options.setCodePointLimit(Integer.MAX_VALUE);
+        reader = new UnicodeReader(in);
+        events = new Yaml(options).parse(reader).iterator();
+    }
+
+    @Override
+    public Token next() throws IOException {
+        try {
+            current = read();
+        } catch (YAMLException e) {
+            throw new IOException("Invalid YAML: " + e.getMessage(), e);
+        }
+        return current;
+    }
+
+    private Token read() throws IOException {
+        while (events.hasNext()) {
+            Event event = events.next();
+            mark = event.getStartMark();
+            text = null;
+            switch (event.getEventId()) {
+                case MappingStart -> {
+                    value();
+                    containers.push(new boolean[]{true});
+                    return Token.START_OBJECT;
+                }
+                case SequenceStart -> {
+                    value();
+                    containers.push(new boolean[0]);
+                    return Token.START_ARRAY;
+                }
+                case MappingEnd -> {
+                    containers.pop();
+                    return Token.END_OBJECT;
+                }
+                case SequenceEnd -> {
+                    containers.pop();
+                    return Token.END_ARRAY;
+                }
+                case Scalar -> {
+                    ScalarEvent scalar = (ScalarEvent) event;
+                    boolean[] mapping = containers.peek();
+                    if (mapping != null && mapping.length > 0 && mapping[0]) {
+                        mapping[0] = false;
+                        text = scalar.getValue();
+                        return Token.FIELD_NAME;
+                    }
+                    value();
+                    boolean plain = scalar.getImplicit().canOmitTagInPlainScalar();
+                    text = plain && NULLS.contains(scalar.getValue()) ? null : scalar.getValue();
+                    return Token.SCALAR;
+                }
+                case Alias -> throw new IOException("YAML aliases are not supported, at " + location());
+                case DocumentEnd, StreamEnd -> {
+                    return null;
+                }
+                default -> {
+                    // Stream and document starts, and comments
+                }
+            }
+        }
+        return null;
+    }
+
+    // A value in a mapping is followed by a key
+    private void value() throws IOException {
+        boolean[] mapping = containers.peek();
+        if (mapping != null && mapping.length > 0) {
+            if (mapping[0]) {
+                throw new IOException("Complex YAML keys are not supported, at " + location());
+            }
+            mapping[0] = true;
+        }
+    }
+
+    @Override
+    public Token current() {
+        return current;
+    }
+
+    @Override
+    public String text() {
+        return text;
+    }
+
+    @Override
+    public String location() {
+        return mark == null ? "start of document" : "line " + (mark.getLine() + 1) + ", column " + (mark.getColumn() + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
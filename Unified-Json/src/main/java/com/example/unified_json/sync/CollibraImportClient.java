@@ -0,0 +1,121 @@
+package com.example.unified_json.sync;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * The JSON import of the Collibra REST API, as the integration library
+ * calls it: the commands are posted as a file to /rest/2.0/import/json-job,
+ * and the job it starts is polled until it ends. A simulated import checks
+ * the commands and reports what it would have done without changing
+ * anything.
+ * <p>
+ * Failures that may pass, such as an unreachable server or a 5xx or 429
+ * answer, are thrown as IOException; an import Collibra turns down is
+ * thrown as {@link ImportRejectedException}.
+ */
+final class CollibraImportClient {
+
+    private static final String IMPORT_PATH = "rest/2.0/import/json-job";
+    private static final String JOBS_PATH = "rest/2.0/jobs/";
+
+    private final URI baseUrl;
+    private final String authorization;
+    private final long jobPollMillis;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    CollibraImportClient(String baseUrl, String username, String password, long jobPollMillis) {
+        this.baseUrl = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.authorization = username == null || username.isEmpty() ? null : "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.jobPollMillis = jobPollMillis;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /** Imports the commands, a JSON array, and answers the job once it has completed. */
+    JsonNode importJson(byte[] commands, boolean simulation) throws IOException, InterruptedException {
+        String boundary = "----import" + UUID.randomUUID().toString().replace("-", "");
+        ByteArrayOutputStream body = new ByteArrayOutputStream(commands.length + 512);
+        writePart(body, boundary, "file\"; filename=\"import.json", "application/json", commands);
+        writePart(body, boundary, "simulation", null, Boolean.toString(simulation).getBytes(StandardCharsets.UTF_8));
+        writePart(body, boundary, "sendNotification", null, "false".getBytes(StandardCharsets.UTF_8));
+        body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        JsonNode job = send(request(IMPORT_PATH)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build());
+        String id = job.path("id").asText(null);
+        if (id == null) {
+            throw new IOException("The import answer names no job: " + abbreviate(job.toString()));
+        }
+        while (true) {
+            String state = job.path("state").asText("");
+            switch (state) {
+                case "COMPLETED":
+                    return job;
+                case "ERROR":
+                case "CANCELED":
+                    throw new ImportRejectedException("Import job " + id + " ended in " + state + ": "
+                            + job.path("message").asText(job.path("result").asText("")));
+                default:
+                    Thread.sleep(jobPollMillis);
+                    job = send(request(JOBS_PATH + id).GET().build());
+            }
+        }
+    }
+
+    private static void writePart(ByteArrayOutputStream body, String boundary, String name, String contentType,
+                                  byte[] content) throws IOException {
+        StringBuilder header = new StringBuilder("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n");
+        if (contentType != null) {
+            header.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        body.write(header.append("\r\n").toString().getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(Duration.ofMinutes(2))
+                .header("Accept", "application/json");
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return request;
+    }
+
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        int status = response.statusCode();
+        String body = new String(response.body(), StandardCharsets.UTF_8);
+        if (status == 429 || status >= 500) {
+            throw new IOException("Collibra answered " + status + " to " + request.uri() + ": " + abbreviate(body));
+        }
+        if (status >= 300) {
+            throw new ImportRejectedException("Collibra answered " + status + " to " + request.uri() + ": "
+                    + abbreviate(body));
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 300 ? text : text.substring(0, 300) + "...";
+    }
+}
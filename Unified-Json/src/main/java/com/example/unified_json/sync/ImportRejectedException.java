@@ -0,0 +1,11 @@
+package com.example.unified_json.sync;
+
+import java.io.IOException;
+
+/** Collibra turned an import down; sending it again would not help. */
+class ImportRejectedException extends IOException {
+
+    ImportRejectedException(String message) {
+        super(message);
+    }
+}
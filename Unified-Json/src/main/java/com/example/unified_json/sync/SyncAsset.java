@@ -0,0 +1,136 @@
+package com.example.unified_json.sync;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An asset of a post-validation message, as the Collibra import API takes
+ * it. A message is a row of the unified template:
+ * {@code {"sheetName": "2. API Operations", "row": {"Name*": ..., ...}}}.
+ * The asset is named by the row's "Name" column and typed by the sheet,
+ * less its number, unless the message gives an "assetType". Its domain and
+ * community are the row's "Domain" and "Community" columns or the defaults;
+ * the other columns become attributes, without the '*' marking them
+ * required. An asset whose message has the change "removed" is marked
+ * obsolete rather than deleted, as the integration library does for assets
+ * gone from their source.
+ */
+final class SyncAsset {
+
+    static final String OBSOLETE = "Obsolete";
+
+    private final String name;
+    private final String type;
+    private final String domain;
+    private final String community;
+    private final Map<String, String> attributes;
+    private final String status;
+
+    SyncAsset(String name, String type, String domain, String community, Map<String, String> attributes,
+              String status) {
+        this.name = name;
+        this.type = type;
+        this.domain = domain;
+        this.community = community;
+        this.attributes = attributes;
+        this.status = status;
+    }
+
+    /** The asset of a message, or null if it does not name one. */
+    static SyncAsset fromMessage(JsonNode message, String defaultDomain, String defaultCommunity) {
+        JsonNode row = message.path("row");
+        String type = message.path("assetType").asText(null);
+        if (type == null) {
+            String sheetName = message.path("sheetName").asText("");
+            type = sheetName.replaceFirst("^\\d+\\.\\s*", "");
+        }
+        String name = null;
+        String domain = defaultDomain;
+        String community = defaultCommunity;
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = row.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String column = field.getKey().endsWith("*")
+                    ? field.getKey().substring(0, field.getKey().length() - 1) : field.getKey();
+            JsonNode value = field.getValue();
+            if (value.isNull() || value.isContainerNode() || value.asText().isEmpty()) {
+                continue;
+            }
+            switch (column) {
+                case "Name" -> name = value.asText();
+                case "Domain" -> domain = value.asText();
+                case "Community" -> community = value.asText();
+                default -> attributes.put(column, value.asText());
+            }
+        }
+        if (name == null || type.isEmpty()) {
+            return null;
+        }
+        if ("removed".equals(message.path("change").asText())) {
+            return new SyncAsset(name, type, domain, community, Map.of(), OBSOLETE);
+        }
+        return new SyncAsset(name, type, domain, community, attributes, null);
+    }
+
+    /** What Collibra identifies the asset by: its name in its domain. */
+    String identity() {
+        return community + "/" + domain + "/" + name;
+    }
+
+    /** Writes the asset as a command of a JSON import. */
+    void writeImportCommand(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("resourceType", "Asset");
+        generator.writeObjectFieldStart("identifier");
+        generator.writeStringField("name", name);
+        generator.writeObjectFieldStart("domain");
+        generator.writeStringField("name", domain);
+        generator.writeObjectFieldStart("community");
+        generator.writeStringField("name", community);
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("type");
+        generator.writeStringField("name", type);
+        generator.writeEndObject();
+        generator.writeStringField("displayName", name);
+        if (status != null) {
+            generator.writeObjectFieldStart("status");
+            generator.writeStringField("name", status);
+            generator.writeEndObject();
+        }
+        if (!attributes.isEmpty()) {
+            generator.writeObjectFieldStart("attributes");
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                generator.writeArrayFieldStart(attribute.getKey());
+                generator.writeStartObject();
+                generator.writeStringField("value", attribute.getValue());
+                generator.writeEndObject();
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    String getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.unified_json.sync;
+
+import com.example.unified_json.queue.LocalQueues;
+import com.example.unified_json.queue.MessageQueue;
+import com.example.unified_json.queue.QueueMessage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The sync step of the importer pipeline: takes the assets of the
+ * post-validation queue into Collibra with bulk JSON imports, and reports
+ * each import to the sync queue.
+ * <p>
+ * Messages are taken a window at a time. Within a window, assets are
+ * deduplicated by identity, the last message winning, and cut into batches
+ * that are imported a few at once. Imports that fail for a reason that may
+ * pass are retried with a growing, jittered delay; if one still fails, the
+ * window is left unacknowledged and taken again, which is safe as imports
+ * update the assets they name. An import Collibra turns down is reported
+ * and not retried. In simulation, Collibra checks the imports without
+ * applying them.
+ */
+@Service
+public class SyncService {
+
+    private static final Logger LOGGER = Logger.getLogger(SyncService.class.getName());
+
+    static final String CONSUMER = "sync";
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @Autowired
+    private LocalQueues localQueues;
+
+    @Value("${sync.base-url:http://localhost:4400}")
+    private String baseUrl = "http://localhost:4400";
+
+    @Value("${sync.username:}")
+    private String username = "";
+
+    @Value("${sync.password:}")
+    private String password = "";
+
+    // Where assets go whose messages name no domain or community
+    @Value("${sync.domain:Unified Assets}")
+    private String domain = "Unified Assets";
+
+    @Value("${sync.community:Unified Import}")
+    private String community = "Unified Import";
+
+    // Messages taken from the queue at a time, deduplicated together
+    @Value("${sync.window:20000}")
+    private int window = 20000;
+
+    // Assets per import; the integration library allows up to 50000
+    @Value("${sync.batch-size:1000}")
+    private int batchSize = 1000;
+
+    // Imports running at once
+    @Value("${sync.max-in-flight:4}")
+    private int maxInFlight = 4;
+
+    @Value("${sync.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    // Delay before the first retry, doubled for each one after
+    @Value("${sync.backoff-ms:500}")
+    private long backoffMillis = 500;
+
+    @Value("${sync.job-poll-ms:500}")
+    private long jobPollMillis = 500;
+
+    // Have Collibra check the imports without applying them
+    @Value("${sync.simulation:false}")
+    private boolean simulation;
+
+    // Move messages from the post-validation queue in the background from startup
+    @Value("${sync.enabled:false}")
+    private boolean enabled;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CollibraImportClient client;
+    private ExecutorService pool;
+    private Thread worker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            running = true;
+            worker = new Thread(this::run, "collibra-sync");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void run() {
+        MessageQueue input = localQueues.queue(LocalQueues.POST_VALIDATION);
+        MessageQueue results = localQueues.queue(LocalQueues.SYNC);
+        while (running) {
+            try {
+                syncNext(input, results, 1000);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                LOGGER.warning("Could not sync a window of assets, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Imports the assets of the next window of the input queue, waiting up
+     * to the timeout for a message to arrive, and sends a report of each
+     * import to the results queue. If an import or the reports fail, the
+     * next call takes the same window again.
+     *
+     * @return the number of messages taken
+     */
+    public int syncNext(MessageQueue input, MessageQueue results, long timeoutMillis)
+            throws IOException, InterruptedException {
+        List<QueueMessage> messages = input.poll(CONSUMER, window, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Map<String, SyncAsset> assets = new LinkedHashMap<>();
+        List<Long> skipped = new ArrayList<>();
+        for (QueueMessage message : messages) {
+            SyncAsset asset = null;
+            try {
+                asset = SyncAsset.fromMessage(objectMapper.readTree(message.getPayload()), domain, community);
+            } catch (IOException e) {
+                // Reported as skipped below
+            }
+            if (asset == null) {
+                skipped.add(message.getOffset());
+            } else {
+                assets.put(asset.identity(), asset);
+            }
+        }
+
+        List<SyncAsset> unique = new ArrayList<>(assets.values());
+        List<Future<byte[]>> imports = new ArrayList<>();
+        for (int from = 0; from < unique.size(); from += batchSize) {
+            List<SyncAsset> batch = unique.subList(from, Math.min(from + batchSize, unique.size()));
+            imports.add(pool().submit(() -> importBatch(batch)));
+        }
+        List<byte[]> reports = new ArrayList<>(imports.size() + 1);
+        try {
+            for (Future<byte[]> future : imports) {
+                reports.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            imports.forEach(future -> future.cancel(true));
+            input.rewind(CONSUMER);
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Could not import a batch", e.getCause());
+        } catch (InterruptedException e) {
+            imports.forEach(future -> future.cancel(true));
+            input.rewind(CONSUMER);
+            throw e;
+        }
+        if (!skipped.isEmpty()) {
+            reports.add(skippedReport(skipped));
+        }
+        try {
+            results.send(reports);
+            input.ack(CONSUMER, messages.get(messages.size() - 1).getOffset());
+        } catch (IOException | RuntimeException e) {
+            // The window is taken again, and imported again, which is harmless
+            input.rewind(CONSUMER);
+            throw e;
+        }
+        LOGGER.info((simulation ? "Simulated " : "Synced ") + unique.size() + " assets of " + messages.size()
+                + " messages in " + imports.size() + " imports in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms ("
+                + (messages.size() - unique.size() - skipped.size()) + " duplicates, " + skipped.size() + " skipped)");
+        return messages.size();
+    }
+
+    private byte[] importBatch(List<SyncAsset> batch) throws IOException, InterruptedException {
+        ByteArrayOutputStream commands = new ByteArrayOutputStream(batch.size() * 256);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(commands)) {
+            generator.writeStartArray();
+            for (SyncAsset asset : batch) {
+                asset.writeImportCommand(generator);
+            }
+            generator.writeEndArray();
+        }
+        try {
+            JsonNode job = importWithRetry(commands.toByteArray());
+            return report(batch, "COMPLETED", job.path("id").asText(), job.path("result").asText(null));
+        } catch (ImportRejectedException e) {
+            LOGGER.warning("An import of " + batch.size() + " assets was turned down: " + e.getMessage());
+            return report(batch, "REJECTED", null, e.getMessage());
+        }
+    }
+
+    private JsonNode importWithRetry(byte[] commands) throws IOException, InterruptedException {
+        long backoff = backoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return client().importJson(commands, simulation);
+            } catch (ImportRejectedException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                // Jittered, so that the imports in flight do not all retry at once
+                long delay = backoff > 1 ? ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1) : backoff;
+                LOGGER.warning("Import attempt " + attempt + " failed, retrying in " + delay + " ms: " + e.getMessage());
+                Thread.sleep(delay);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private byte[] report(List<SyncAsset> batch, String state, String jobId, String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(batch.size() * 64);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("state", state);
+            generator.writeBooleanField("simulation", simulation);
+            if (jobId != null) {
+                generator.writeStringField("jobId", jobId);
+            }
+            if (message != null) {
+                generator.writeStringField("message", message);
+            }
+            generator.writeNumberField("assets", batch.size());
+            generator.writeArrayFieldStart("identities");
+            for (SyncAsset asset : batch) {
+                generator.writeString(asset.identity());
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] skippedReport(List<Long> offsets) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("state", "SKIPPED");
+            generator.writeStringField("message", "Not an asset of the unified template");
+            generator.writeArrayFieldStart("offsets");
+            for (long offset : offsets) {
+                generator.writeNumber(offset);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private synchronized CollibraImportClient client() {
+        if (client == null) {
+            client = new CollibraImportClient(baseUrl, username, password, jobPollMillis);
+        }
+        return client;
+    }
+
+    private synchronized ExecutorService pool() {
+        if (pool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+                Thread thread = new Thread(runnable, "collibra-import-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
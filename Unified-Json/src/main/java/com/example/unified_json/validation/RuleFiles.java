@@ -0,0 +1,110 @@
+package com.example.unified_json.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled rule files of a directory, one per source, named
+ * {@code <source>.json}. A file is compiled when its source is first asked
+ * for and again once it has changed, which is checked at most once per
+ * interval. A file that no longer compiles leaves its last plan in use.
+ */
+final class RuleFiles {
+
+    private static final Logger LOGGER = Logger.getLogger(RuleFiles.class.getName());
+
+    private static final Pattern SOURCE_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final Path directory;
+    private final long checkIntervalNanos;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Loaded> plans = new ConcurrentHashMap<>();
+
+    RuleFiles(Path directory, long checkIntervalMillis) {
+        this.directory = directory;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkIntervalMillis);
+    }
+
+    /** The plan for the source, or null if it has no rule file. */
+    RulePlan plan(String source) {
+        if (!SOURCE_NAME.matcher(source).matches()) {
+            return null;
+        }
+        Loaded loaded = plans.get(source);
+        if (loaded == null || System.nanoTime() - loaded.checkedAt >= checkIntervalNanos) {
+            loaded = plans.compute(source, this::refresh);
+        }
+        return loaded.plan;
+    }
+
+    private Loaded refresh(String source, Loaded current) {
+        long now = System.nanoTime();
+        // Another thread may have checked while this one waited
+        if (current != null && now - current.checkedAt < checkIntervalNanos) {
+            return current;
+        }
+        Path file = directory.resolve(source + ".json");
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            if (current != null && current.plan != null) {
+                LOGGER.warning("Rule file " + file + " was removed; its last rules stay in use.");
+            }
+            return new Loaded(current != null ? current.plan : null, null, now);
+        } catch (IOException e) {
+            LOGGER.warning("Could not read rule file " + file + ": " + e.getMessage());
+            return new Loaded(current != null ? current.plan : null, current != null ? current.version : null, now);
+        }
+        String version = attributes.lastModifiedTime() + "/" + attributes.size();
+        if (current != null && version.equals(current.version)) {
+            current.checkedAt = now;
+            return current;
+        }
+        try {
+            RulePlan plan = RulePlan.compile(objectMapper.readTree(file.toFile()));
+            LOGGER.info("Compiled " + plan.getStats().size() + " rules for source " + source + " from " + file);
+            return new Loaded(plan, version, now);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warning("Rule file " + file + " could not be compiled"
+                    + (current != null && current.plan != null ? " and its last rules stay in use" : "")
+                    + ": " + e.getMessage());
+            return new Loaded(current != null ? current.plan : null, version, now);
+        }
+    }
+
+    /** The plans in use, by source. */
+    Map<String, RulePlan> loaded() {
+        Map<String, RulePlan> loaded = new TreeMap<>();
+        plans.forEach((source, plan) -> {
+            if (plan.plan != null) {
+                loaded.put(source, plan.plan);
+            }
+        });
+        return loaded;
+    }
+
+    private static final class Loaded {
+        private final RulePlan plan;
+        // The file's modification time and size when it was compiled
+        private final String version;
+        private volatile long checkedAt;
+
+        private Loaded(RulePlan plan, String version, long checkedAt) {
+            this.plan = plan;
+            this.version = version;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
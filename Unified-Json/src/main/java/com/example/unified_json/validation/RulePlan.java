@@ -0,0 +1,271 @@
+package com.example.unified_json.validation;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A rule file compiled once for every message it is applied to: paths are
+ * parsed into pointers, patterns into regexes, allowed values into sets,
+ * and the checks of all rules are ordered cheapest first, so that a message
+ * that fails is usually turned down before the costly checks run.
+ * <p>
+ * A rule file holds a list of rules, each naming a path in the message and
+ * any of the checks below:
+ * <pre>
+ * {"rules": [
+ *   {"name": "operation-path", "path": "/row/Path*", "required": true, "pattern": "^/"},
+ *   {"name": "operation-method", "path": "/row/Method*",
+ *    "allowed": ["GET", "PUT", "POST", "DELETE", "OPTIONS", "HEAD", "PATCH", "TRACE"]}
+ * ]}
+ * </pre>
+ * Checks other than required pass when the value is missing or null.
+ * Patterns match anywhere in the value unless anchored.
+ * <p>
+ * A plan is immutable and evaluated by any number of threads at once.
+ */
+public final class RulePlan {
+
+    /** One message in this many has its checks timed. */
+    static final int TIMING_SAMPLE = 16;
+
+    private static final Set<String> RULE_KEYS = Set.of("name", "path", "required", "type", "minLength", "maxLength",
+            "minimum", "maximum", "allowed", "pattern");
+
+    private final JsonPointer[] pointers;
+    private final Check[] checks;
+    private final List<RuleStats> stats;
+
+    private RulePlan(JsonPointer[] pointers, Check[] checks, List<RuleStats> stats) {
+        this.pointers = pointers;
+        this.checks = checks;
+        this.stats = stats;
+    }
+
+    /** Compiles a rule file, or throws IllegalArgumentException naming what is wrong with it. */
+    public static RulePlan compile(JsonNode ruleFile) {
+        JsonNode rules = ruleFile.path("rules");
+        if (!rules.isArray()) {
+            throw new IllegalArgumentException("A rule file holds a \"rules\" array");
+        }
+        Map<String, Integer> pointerIndexes = new HashMap<>();
+        List<JsonPointer> pointers = new ArrayList<>();
+        List<Check> checks = new ArrayList<>();
+        List<RuleStats> stats = new ArrayList<>();
+        for (JsonNode rule : rules) {
+            String path = rule.path("path").asText(null);
+            if (path == null) {
+                throw new IllegalArgumentException("Rule " + (stats.size() + 1) + " has no path");
+            }
+            String name = rule.path("name").asText(path);
+            for (Iterator<String> keys = rule.fieldNames(); keys.hasNext(); ) {
+                String key = keys.next();
+                if (!RULE_KEYS.contains(key)) {
+                    throw new IllegalArgumentException("Rule " + name + " has an unknown check '" + key + "'");
+                }
+            }
+            Integer pointer = pointerIndexes.get(path);
+            if (pointer == null) {
+                pointer = pointers.size();
+                try {
+                    pointers.add(JsonPointer.compile(path));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Rule " + name + " has an invalid path: " + e.getMessage());
+                }
+                pointerIndexes.put(path, pointer);
+            }
+
+            List<Check> ruleChecks = compileChecks(name, path, pointer, rule);
+            if (ruleChecks.isEmpty()) {
+                throw new IllegalArgumentException("Rule " + name + " has no checks");
+            }
+            StringBuilder description = new StringBuilder();
+            int cost = 0;
+            for (Check check : ruleChecks) {
+                description.append(description.length() == 0 ? "" : ", ").append(check.description);
+                cost += check.cost;
+            }
+            RuleStats ruleStats = new RuleStats(name, description.toString(), cost);
+            for (Check check : ruleChecks) {
+                check.rule = stats.size();
+                check.stats = ruleStats;
+            }
+            checks.addAll(ruleChecks);
+            stats.add(ruleStats);
+        }
+        // Stable, so that checks of the same cost keep the order of the file
+        checks.sort(Comparator.comparingInt(check -> check.cost));
+        return new RulePlan(pointers.toArray(new JsonPointer[0]), checks.toArray(new Check[0]),
+                Collections.unmodifiableList(stats));
+    }
+
+    private static List<Check> compileChecks(String name, String path, int pointer, JsonNode rule) {
+        List<Check> checks = new ArrayList<>();
+        if (rule.path("required").asBoolean(false)) {
+            checks.add(new Check(path, pointer, 1, "required",
+                    value -> !isMissing(value) && !(value.isTextual() && value.textValue().isEmpty())));
+        }
+        if (rule.has("type")) {
+            String type = rule.get("type").asText();
+            Predicate<JsonNode> isType = switch (type) {
+                case "string" -> JsonNode::isTextual;
+                case "number" -> JsonNode::isNumber;
+                case "integer" -> JsonNode::isIntegralNumber;
+                case "boolean" -> JsonNode::isBoolean;
+                case "object" -> JsonNode::isObject;
+                case "array" -> JsonNode::isArray;
+                default -> throw new IllegalArgumentException("Rule " + name + " has an unknown type '" + type + "'");
+            };
+            checks.add(new Check(path, pointer, 1, "type " + type, value -> isMissing(value) || isType.test(value)));
+        }
+        if (rule.has("minLength")) {
+            int minLength = intValue(name, rule, "minLength");
+            checks.add(new Check(path, pointer, 2, "minLength " + minLength,
+                    value -> isMissing(value) || length(value) >= minLength));
+        }
+        if (rule.has("maxLength")) {
+            int maxLength = intValue(name, rule, "maxLength");
+            checks.add(new Check(path, pointer, 2, "maxLength " + maxLength,
+                    value -> isMissing(value) || length(value) <= maxLength));
+        }
+        if (rule.has("minimum")) {
+            double minimum = numberValue(name, rule, "minimum");
+            checks.add(new Check(path, pointer, 3, "minimum " + rule.get("minimum").asText(),
+                    value -> isMissing(value) || number(value) >= minimum));
+        }
+        if (rule.has("maximum")) {
+            double maximum = numberValue(name, rule, "maximum");
+            checks.add(new Check(path, pointer, 3, "maximum " + rule.get("maximum").asText(),
+                    value -> isMissing(value) || number(value) <= maximum));
+        }
+        if (rule.has("allowed")) {
+            if (!rule.get("allowed").isArray()) {
+                throw new IllegalArgumentException("Rule " + name + " lists its allowed values in an array");
+            }
+            Set<String> allowed = new HashSet<>();
+            rule.get("allowed").forEach(value -> allowed.add(value.asText()));
+            checks.add(new Check(path, pointer, 4, "allowed " + allowed.size() + " values",
+                    value -> isMissing(value) || value.isValueNode() && allowed.contains(value.asText())));
+        }
+        if (rule.has("pattern")) {
+            String regex = rule.get("pattern").asText();
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Rule " + name + " has an invalid pattern: " + e.getMessage());
+            }
+            checks.add(new Check(path, pointer, 20, "pattern " + regex,
+                    value -> isMissing(value) || value.isValueNode() && pattern.matcher(value.asText()).find()));
+        }
+        return checks;
+    }
+
+    private static int intValue(String name, JsonNode rule, String key) {
+        if (!rule.get(key).canConvertToInt()) {
+            throw new IllegalArgumentException("Rule " + name + " needs a whole number for " + key);
+        }
+        return rule.get(key).intValue();
+    }
+
+    private static double numberValue(String name, JsonNode rule, String key) {
+        if (!rule.get(key).isNumber()) {
+            throw new IllegalArgumentException("Rule " + name + " needs a number for " + key);
+        }
+        return rule.get(key).doubleValue();
+    }
+
+    private static boolean isMissing(JsonNode value) {
+        return value.isMissingNode() || value.isNull();
+    }
+
+    private static int length(JsonNode value) {
+        return value.isContainerNode() ? value.size() : value.asText().length();
+    }
+
+    // Numbers written as text count, as spreadsheet cells often are; anything else fails the comparison
+    private static double number(JsonNode value) {
+        if (value.isNumber()) {
+            return value.doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.asText());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Applies the checks in turn, stopping at the first that fails; null if
+     * all pass. A rule counts as evaluated once per message, by the first of
+     * its checks that runs.
+     */
+    public RuleViolation evaluate(JsonNode message) {
+        // Each path is resolved once, by the first check reading it
+        JsonNode[] values = new JsonNode[pointers.length];
+        boolean[] evaluated = new boolean[stats.size()];
+        boolean timed = ThreadLocalRandom.current().nextInt(TIMING_SAMPLE) == 0;
+        for (Check check : checks) {
+            if (!evaluated[check.rule]) {
+                evaluated[check.rule] = true;
+                check.stats.evaluated(timed);
+            }
+            long start = timed ? System.nanoTime() : 0;
+            JsonNode value = values[check.pointer];
+            if (value == null) {
+                value = message.at(pointers[check.pointer]);
+                values[check.pointer] = value;
+            }
+            boolean passed = check.test.test(value);
+            if (timed) {
+                check.stats.timed(System.nanoTime() - start);
+            }
+            if (!passed) {
+                check.stats.failed();
+                return new RuleViolation(check.stats.getRule(), check.path, check.path + " fails " + check.description
+                        + (isMissing(value) ? " as it is missing" : ": " + abbreviate(value.toString())));
+            }
+        }
+        return null;
+    }
+
+    private static String abbreviate(String value) {
+        return value.length() <= 100 ? value : value.substring(0, 100) + "...";
+    }
+
+    /** The rules in the order of the file. */
+    public List<RuleStats> getStats() {
+        return stats;
+    }
+
+    private static final class Check {
+        private final String path;
+        private final int pointer;
+        private final int cost;
+        private final String description;
+        private final Predicate<JsonNode> test;
+        // Set once the rule's checks are all compiled: the rule's index in the file, and its stats
+        private int rule;
+        private RuleStats stats;
+
+        private Check(String path, int pointer, int cost, String description, Predicate<JsonNode> test) {
+            this.path = path;
+            this.pointer = pointer;
+            this.cost = cost;
+            this.description = description;
+            this.test = test;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.unified_json.validation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What evaluating one rule has cost so far. A rule is counted once for each
+ * message its checks run on; one message in {@link RulePlan#TIMING_SAMPLE}
+ * is timed, so the time is an average over those of the rule's checks
+ * together.
+ */
+public final class RuleStats {
+
+    private final String rule;
+    private final String checks;
+    private final int cost;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timedEvaluations = new LongAdder();
+    private final LongAdder timedNanos = new LongAdder();
+
+    RuleStats(String rule, String checks, int cost) {
+        this.rule = rule;
+        this.checks = checks;
+        this.cost = cost;
+    }
+
+    void evaluated(boolean timed) {
+        evaluations.increment();
+        if (timed) {
+            timedEvaluations.increment();
+        }
+    }
+
+    void failed() {
+        failures.increment();
+    }
+
+    // Called for each check of a timed evaluation
+    void timed(long nanos) {
+        timedNanos.add(nanos);
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    /** The rule's checks, in the order they are evaluated. */
+    public String getChecks() {
+        return checks;
+    }
+
+    /** The estimated cost the checks are ordered by. */
+    public int getCost() {
+        return cost;
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public double getAverageNanos() {
+        long timed = timedEvaluations.sum();
+        return timed == 0 ? 0 : (double) timedNanos.sum() / timed;
+    }
+}
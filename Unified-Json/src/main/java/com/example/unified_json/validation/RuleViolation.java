@@ -0,0 +1,32 @@
+package com.example.unified_json.validation;
+
+/** The first check a message failed. */
+public final class RuleViolation {
+
+    private final String rule;
+    private final String path;
+    private final String message;
+
+    public RuleViolation(String rule, String path, String message) {
+        this.rule = rule;
+        this.path = path;
+        this.message = message;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return rule + ": " + message;
+    }
+}
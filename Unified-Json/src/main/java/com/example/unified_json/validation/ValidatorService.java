@@ -0,0 +1,290 @@
+package com.example.unified_json.validation;
+
+import com.example.unified_json.queue.LocalQueues;
+import com.example.unified_json.queue.MessageQueue;
+import com.example.unified_json.queue.QueueMessage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The validator of the importer pipeline. Messages of the unified template,
+ * each naming its source, are checked against the rules of that source,
+ * or of the "default" source if it has none, and moved from the
+ * pre-validation queue to the post-validation queue, or to the invalid-data
+ * queue with the rule they failed.
+ */
+@Service
+public class ValidatorService {
+
+    private static final Logger LOGGER = Logger.getLogger(ValidatorService.class.getName());
+
+    static final String CONSUMER = "validator";
+    static final String DEFAULT_SOURCE = "default";
+    static final String JSON_RULE = "json";
+    static final String RULES_RULE = "rules";
+
+    // Batches smaller than this per thread are validated on the calling thread alone
+    private static final int MIN_SLICE = 64;
+
+    @Autowired
+    private LocalQueues localQueues;
+
+    // One <source>.json rule file per source
+    @Value("${validator.rules-directory:src/main/resources/rules}")
+    private String rulesDirectory = "src/main/resources/rules";
+
+    // Where messages name their source
+    @Value("${validator.source-pointer:/source}")
+    private String sourcePointer = "/source";
+
+    // Rule files are checked for changes at most this often
+    @Value("${validator.reload-check-ms:1000}")
+    private long reloadCheckMillis = 1000;
+
+    // Threads validating one batch between them, the calling thread included
+    @Value("${validator.threads:4}")
+    private int threads = 4;
+
+    @Value("${validator.batch-size:500}")
+    private int batchSize = 500;
+
+    // Move messages along the queues in the background from startup
+    @Value("${validator.enabled:false}")
+    private boolean enabled;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RuleFiles ruleFiles;
+    private JsonPointer source;
+    private ExecutorService pool;
+    private Thread worker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            running = true;
+            worker = new Thread(this::run, "validator");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void run() {
+        MessageQueue input = localQueues.queue(LocalQueues.PRE_VALIDATION);
+        MessageQueue valid = localQueues.queue(LocalQueues.POST_VALIDATION);
+        MessageQueue invalid = localQueues.queue(LocalQueues.INVALID_DATA);
+        while (running) {
+            try {
+                validateNext(input, valid, invalid, batchSize, 1000);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                LOGGER.warning("Could not validate a batch, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates the next messages of the input queue, up to max, waiting up
+     * to the timeout for one to arrive, and sends each on to the valid or
+     * invalid queue. They are acknowledged once sent, so a crash in between
+     * sends them on again; if they cannot be validated or sent, the next
+     * poll returns them again.
+     *
+     * @return the number of messages validated
+     */
+    public int validateNext(MessageQueue input, MessageQueue valid, MessageQueue invalid, int max, long timeoutMillis)
+            throws IOException, InterruptedException {
+        List<QueueMessage> messages = input.poll(CONSUMER, max, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<byte[]> payloads = new ArrayList<>(messages.size());
+            for (QueueMessage message : messages) {
+                payloads.add(message.getPayload());
+            }
+            List<RuleViolation> violations = validate(payloads);
+            List<byte[]> passed = new ArrayList<>(payloads.size());
+            List<byte[]> failed = new ArrayList<>();
+            for (int i = 0; i < payloads.size(); i++) {
+                RuleViolation violation = violations.get(i);
+                if (violation == null) {
+                    passed.add(payloads.get(i));
+                } else {
+                    failed.add(invalidMessage(payloads.get(i), violation));
+                }
+            }
+            if (!passed.isEmpty()) {
+                valid.send(passed);
+            }
+            if (!failed.isEmpty()) {
+                invalid.send(failed);
+            }
+            input.ack(CONSUMER, messages.get(messages.size() - 1).getOffset());
+        } catch (IOException | RuntimeException e) {
+            // Poll the messages again rather than past them
+            input.rewind(CONSUMER);
+            throw e;
+        }
+        return messages.size();
+    }
+
+    /**
+     * Validates the messages, splitting a large batch between threads.
+     *
+     * @return the violation of each message, in the order given, null for those that pass
+     */
+    public List<RuleViolation> validate(List<byte[]> messages) {
+        RuleFiles files = ruleFiles();
+        JsonPointer source = source();
+        RuleViolation[] violations = new RuleViolation[messages.size()];
+        int slices = Math.min(threads, messages.size() / MIN_SLICE);
+        if (slices <= 1) {
+            validate(messages, violations, 0, messages.size(), files, source);
+            return Arrays.asList(violations);
+        }
+        int sliceSize = (messages.size() + slices - 1) / slices;
+        List<Future<?>> futures = new ArrayList<>(slices - 1);
+        for (int from = sliceSize; from < messages.size(); from += sliceSize) {
+            int start = from;
+            futures.add(pool().submit(() -> validate(messages, violations, start,
+                    Math.min(start + sliceSize, messages.size()), files, source)));
+        }
+        validate(messages, violations, 0, sliceSize, files, source);
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not validate a batch", e.getCause());
+        }
+        return Arrays.asList(violations);
+    }
+
+    private void validate(List<byte[]> messages, RuleViolation[] violations, int from, int to,
+                          RuleFiles files, JsonPointer source) {
+        for (int i = from; i < to; i++) {
+            violations[i] = validate(messages.get(i), files, source);
+        }
+    }
+
+    private RuleViolation validate(byte[] message, RuleFiles files, JsonPointer source) {
+        JsonNode document;
+        try {
+            document = objectMapper.readTree(message);
+        } catch (IOException e) {
+            return new RuleViolation(JSON_RULE, "", "Not a JSON document: " + e.getMessage());
+        }
+        if (document == null || !document.isObject()) {
+            return new RuleViolation(JSON_RULE, "", "Not a JSON object");
+        }
+        String messageSource = document.at(source).textValue();
+        RulePlan plan = messageSource != null ? files.plan(messageSource) : null;
+        if (plan == null) {
+            plan = files.plan(DEFAULT_SOURCE);
+        }
+        if (plan == null) {
+            return new RuleViolation(RULES_RULE, sourcePointer, "No rules for source '" + messageSource + "'");
+        }
+        return plan.evaluate(document);
+    }
+
+    // The message as it was sent, with the rule it failed
+    private byte[] invalidMessage(byte[] payload, RuleViolation violation) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 200);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("rule", violation.getRule());
+            generator.writeStringField("path", violation.getPath());
+            generator.writeStringField("error", violation.getMessage());
+            String text = new String(payload, StandardCharsets.UTF_8);
+            if (JSON_RULE.equals(violation.getRule())) {
+                generator.writeStringField("message", text);
+            } else {
+                generator.writeFieldName("message");
+                generator.writeRawValue(text);
+            }
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /** What each rule of the plans in use has cost so far, by source. */
+    public Map<String, List<RuleStats>> stats() {
+        Map<String, List<RuleStats>> stats = new LinkedHashMap<>();
+        ruleFiles().loaded().forEach((name, plan) -> stats.put(name, plan.getStats()));
+        return stats;
+    }
+
+    private synchronized RuleFiles ruleFiles() {
+        if (ruleFiles == null) {
+            ruleFiles = new RuleFiles(Path.of(rulesDirectory), reloadCheckMillis);
+        }
+        return ruleFiles;
+    }
+
+    private synchronized JsonPointer source() {
+        if (source == null) {
+            source = JsonPointer.compile(sourcePointer);
+        }
+        return source;
+    }
+
+    private synchronized ExecutorService pool() {
+        if (pool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "validator-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
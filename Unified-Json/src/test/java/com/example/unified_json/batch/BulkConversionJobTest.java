@@ -0,0 +1,177 @@
+package com.example.unified_json.batch;
+
+import com.example.unified_json.controller.BulkConversionController;
+import com.example.unified_json.service.ExcelToJsonConverter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBatchTest
+@SpringBootTest(properties = {"excel.bulk.threads=2", "excel.bulk.chunk-size=1"})
+class BulkConversionJobTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private BulkConversionController controller;
+
+    @TempDir
+    Path tempDir;
+
+    private Path input;
+    private Path output;
+    private byte[] template;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        input = Files.createDirectories(tempDir.resolve("input"));
+        output = tempDir.resolve("output");
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("CDIP-excel-template.xlsx")) {
+            template = in.readAllBytes();
+        }
+    }
+
+    @Test
+    void convertsEveryWorkbookInTheDirectory() throws Exception {
+        for (String name : new String[]{"a.xlsx", "b.xlsx", "c.xlsx", "d.xlsx", "e.xlsx"}) {
+            Files.write(input.resolve(name), template);
+        }
+        Files.writeString(input.resolve("notes.txt"), "not a workbook");
+        Files.write(input.resolve("~$a.xlsx"), new byte[]{1});
+
+        JobExecution execution = jobLauncherTestUtils.launchJob(parameters("excel-to-json"));
+
+        assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        // The manager step and one step per partition
+        assertThat(execution.getStepExecutions()).hasSize(3);
+        String expected = convert(template);
+        try (Stream<Path> files = Files.list(output)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                    .containsExactlyInAnyOrder("a.json", "b.json", "c.json", "d.json", "e.json");
+        }
+        assertThat(Files.readString(output.resolve("c.json"))).isEqualTo(expected);
+
+        Path excel = tempDir.resolve("excel");
+        JobExecution back = jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addString("inputDirectory", output.toString())
+                .addString("outputDirectory", excel.toString())
+                .addString("direction", "json-to-excel")
+                .toJobParameters());
+        assertThat(back.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        try (Stream<Path> files = Files.list(excel)) {
+            assertThat(files).hasSize(5);
+        }
+    }
+
+    @Test
+    void restartContinuesFromTheLastCommittedChunk() throws Exception {
+        // Two partitions: a, b and c, d
+        for (String name : new String[]{"a.xlsx", "b.xlsx", "c.xlsx"}) {
+            Files.write(input.resolve(name), template);
+        }
+        Files.writeString(input.resolve("d.xlsx"), "not a workbook");
+        // Without skips, the bad file fails its partition
+        JobParameters parameters = new JobParametersBuilder(parameters("excel-to-json"))
+                .addLong("skipLimit", 0L)
+                .toJobParameters();
+
+        JobExecution failed = jobLauncherTestUtils.launchJob(parameters);
+        assertThat(failed.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(output.resolve("c.json")).exists();
+
+        // Work that was committed is not done again
+        Files.delete(output.resolve("a.json"));
+        Files.delete(output.resolve("c.json"));
+        Files.write(input.resolve("d.xlsx"), template);
+
+        JobExecution restarted = jobLauncherTestUtils.launchJob(parameters);
+        assertThat(restarted.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(restarted.getJobInstance()).isEqualTo(failed.getJobInstance());
+        assertThat(output.resolve("a.json")).doesNotExist();
+        assertThat(output.resolve("c.json")).doesNotExist();
+        assertThat(Files.readString(output.resolve("d.json"))).isEqualTo(convert(template));
+    }
+
+    @Test
+    void filesThatFailToConvertAreSkippedUpToTheLimit() throws Exception {
+        // Two partitions: a, b and c, d, e
+        for (String name : new String[]{"a.xlsx", "c.xlsx"}) {
+            Files.write(input.resolve(name), template);
+        }
+        for (String name : new String[]{"b.xlsx", "d.xlsx", "e.xlsx"}) {
+            Files.writeString(input.resolve(name), "not a workbook");
+        }
+
+        JobExecution execution = jobLauncherTestUtils.launchJob(new JobParametersBuilder(parameters("excel-to-json"))
+                .addLong("skipLimit", 1L)
+                .toJobParameters());
+
+        assertThat(execution.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(execution.getStepExecutions())
+                .filteredOn(step -> step.getStepName().startsWith("fileConversionStep"))
+                .extracting(StepExecution::getStatus, StepExecution::getWriteSkipCount)
+                .containsExactlyInAnyOrder(tuple(BatchStatus.COMPLETED, 1L), tuple(BatchStatus.FAILED, 1L));
+        try (Stream<Path> files = Files.list(output)) {
+            assertThat(files.map(path -> path.getFileName().toString())).containsExactlyInAnyOrder("a.json", "c.json");
+        }
+    }
+
+    @Test
+    void directoriesOutsideTheBaseDirectoryAreRefused() throws Exception {
+        ReflectionTestUtils.setField(controller, "baseDirectory", tempDir.toString());
+        assertThat(controller.convertDirectory("../elsewhere", "output", "excel-to-json", null, null)
+                .getStatusCode().value()).isEqualTo(400);
+        assertThat(controller.convertDirectory("input", "/tmp", "excel-to-json", null, null)
+                .getStatusCode().value()).isEqualTo(400);
+
+        // A run that fails is reported like any other
+        Files.writeString(input.resolve("a.xlsx"), "not a workbook");
+        ResponseEntity<String> started = controller.convertDirectory("input", "output", "excel-to-json", "refused", 0L);
+        assertThat(started.getStatusCode().value()).isEqualTo(202);
+        long executionId = Long.parseLong(started.getBody());
+        ResponseEntity<String> status = controller.status(executionId);
+        for (int i = 0; i < 200 && !status.getBody().contains("FAILED"); i++) {
+            Thread.sleep(50);
+            status = controller.status(executionId);
+        }
+        assertThat(status.getStatusCode().value()).isEqualTo(200);
+        assertThat(status.getBody()).startsWith("Bulk conversion " + executionId + " FAILED");
+    }
+
+    private JobParameters parameters(String direction) {
+        return new JobParametersBuilder()
+                .addString("inputDirectory", input.toString())
+                .addString("outputDirectory", output.toString())
+                .addString("direction", direction)
+                .toJobParameters();
+    }
+
+    private String convert(byte[] workbook) throws Exception {
+        Path file = Files.createTempFile(tempDir, "expected", ".json");
+        try (InputStream in = new ByteArrayInputStream(workbook)) {
+            new ExcelToJsonConverter().convertExcelToJson(in, file.toString());
+        }
+        return Files.readString(file);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.unified_json.controller;
+
+import com.example.unified_json.service.ExcelToJsonConverter;
+import com.example.unified_json.service.JsonToExcelService;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ExcelControllerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MockMvc mockMvc;
+    private MockMultipartFile upload;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ExcelController controller = new ExcelController();
+        ReflectionTestUtils.setField(controller, "excelToJsonConverter", new ExcelToJsonConverter());
+        ReflectionTestUtils.setField(controller, "jsonToExcelService", new JsonToExcelService());
+        ReflectionTestUtils.setField(controller, "outputDirectory", tempDir.toString());
+        // Small enough for the template's results to spill to disk
+        ReflectionTestUtils.setField(controller, "spillThreshold", 1024L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("CDIP-excel-template.xlsx")) {
+            upload = new MockMultipartFile("file", "CDIP-excel-template.xlsx", null, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void streamedResultsMatchWrittenFiles() throws Exception {
+        String paths = mockMvc.perform(multipart("/api/excel/convert").file(upload))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String jsonFile = paths.substring(paths.indexOf("JSON File: ") + "JSON File: ".length());
+        Path directory = Path.of(jsonFile.substring(0, jsonFile.indexOf('\n'))).getParent();
+        byte[] json = Files.readAllBytes(directory.resolve("output.json"));
+
+        assertThat(streamed("json")).isEqualTo(json);
+
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(streamed("zip")))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        assertThat(entries).containsOnlyKeys("output.json", "output.xlsx");
+        assertThat(entries.get("output.json")).isEqualTo(json);
+        assertThat(cells(entries.get("output.xlsx"))).isEqualTo(cells(Files.readAllBytes(directory.resolve("output.xlsx"))));
+        assertThat(cells(streamed("xlsx"))).isEqualTo(cells(entries.get("output.xlsx")));
+    }
+
+    @Test
+    void concurrentRequestsWriteSeparateFiles() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<String>> requests = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                requests.add(() -> mockMvc.perform(multipart("/api/excel/convert").file(upload))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString());
+            }
+            List<String> responses = new ArrayList<>();
+            for (Future<String> response : pool.invokeAll(requests)) {
+                responses.add(response.get());
+            }
+            assertThat(responses).doesNotHaveDuplicates();
+            try (Stream<Path> directories = Files.list(tempDir)) {
+                assertThat(directories).hasSize(8);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredAndFailedRequestDirectoriesAreDeleted() throws Exception {
+        Path expired = Files.createDirectories(tempDir.resolve(UUID.randomUUID().toString()));
+        Files.setLastModifiedTime(expired, FileTime.fromMillis(System.currentTimeMillis() - 61 * 60 * 1000L));
+        Path unrelated = Files.createDirectories(tempDir.resolve("templates"));
+        Files.setLastModifiedTime(unrelated, FileTime.fromMillis(0));
+
+        mockMvc.perform(multipart("/api/excel/convert")
+                        .file(new MockMultipartFile("file", "broken.xlsx", null, "not a workbook".getBytes())))
+                .andExpect(status().isInternalServerError());
+
+        try (Stream<Path> directories = Files.list(tempDir)) {
+            assertThat(directories).containsExactly(unrelated);
+        }
+    }
+
+    @Test
+    void unknownOutputIsRejected() throws Exception {
+        MvcResult result = mockMvc.perform(multipart("/api/excel/convert").file(upload).param("output", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    private byte[] streamed(String output) throws Exception {
+        MvcResult result = mockMvc.perform(multipart("/api/excel/convert").file(upload).param("output", output))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"output." + output + "\""))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private static List<String> cells(byte[] workbook) throws Exception {
+        List<String> cells = new ArrayList<>();
+        try (XSSFWorkbook excel = new XSSFWorkbook(new ByteArrayInputStream(workbook))) {
+            for (Row row : excel.getSheetAt(0)) {
+                for (Cell cell : row) {
+                    cells.add(cell.getAddress() + " " + cell);
+                }
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.unified_json.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UnifiedTableTest {
+
+    @Test
+    void infersColumnTypesFromTheirValues() {
+        UnifiedTable table = new UnifiedTable(List.of("Name", "Amount", "Active", "Count", "Empty"));
+        for (int i = 0; i < 100; i++) {
+            int row = table.addRow();
+            table.setString(row, 0, "name-" + (i % 3));
+            table.setDouble(row, 1, i * 1.5);
+            table.setBoolean(row, 2, i % 2 == 0);
+            if (i % 10 == 0) {
+                table.setNull(row, 3);
+            } else {
+                table.setLong(row, 3, i);
+            }
+        }
+
+        assertThat(table.size()).isEqualTo(100);
+        assertThat(table.getType(0)).isEqualTo(UnifiedTable.ColumnType.STRING);
+        assertThat(table.getType(1)).isEqualTo(UnifiedTable.ColumnType.DOUBLE);
+        assertThat(table.getType(2)).isEqualTo(UnifiedTable.ColumnType.BOOLEAN);
+        assertThat(table.getType(3)).isEqualTo(UnifiedTable.ColumnType.LONG);
+        assertThat(table.getType(4)).isEqualTo(UnifiedTable.ColumnType.EMPTY);
+
+        assertThat(table.getString(98, 0)).isEqualTo("name-2");
+        // Repeated strings share one instance
+        assertThat(table.getString(98, 0)).isSameAs(table.getString(2, 0));
+        assertThat(table.getDouble(99, 1)).isEqualTo(148.5);
+        assertThat(table.getBoolean(98, 2)).isTrue();
+        assertThat(table.getBoolean(99, 2)).isFalse();
+        assertThat(table.isNull(90, 3)).isTrue();
+        assertThat(table.getValue(90, 3)).isNull();
+        assertThat(table.getLong(91, 3)).isEqualTo(91);
+        assertThat(table.isPresent(5, 4)).isFalse();
+        assertThat(table.getValue(5, 4)).isNull();
+    }
+
+    @Test
+    void widensColumnsWhoseValuesDiffer() {
+        UnifiedTable table = new UnifiedTable(List.of("Value"));
+        table.setDouble(table.addRow(), 0, 1.5);
+        table.setNull(table.addRow(), 0);
+        table.addRow();
+        table.setString(table.addRow(), 0, "text");
+        table.setValue(table.addRow(), 0, Map.of("a", 1));
+        table.setValue(table.addRow(), 0, BigInteger.TEN.pow(30));
+
+        assertThat(table.getType(0)).isEqualTo(UnifiedTable.ColumnType.OBJECT);
+        assertThat(table.getValue(0, 0)).isEqualTo(1.5);
+        assertThat(table.isNull(1, 0)).isTrue();
+        assertThat(table.isPresent(2, 0)).isFalse();
+        assertThat(table.getValue(3, 0)).isEqualTo("text");
+        assertThat(table.getValue(4, 0)).isEqualTo(Map.of("a", 1));
+        assertThat(table.getValue(5, 0)).isEqualTo(BigInteger.TEN.pow(30));
+    }
+
+    @Test
+    void setsOverwriteEarlierValuesOfTheRow() {
+        UnifiedTable table = new UnifiedTable(List.of("Value"));
+        int row = table.addRow();
+        table.setString(row, 0, "first");
+        table.setNull(row, 0);
+        assertThat(table.isNull(row, 0)).isTrue();
+        table.setString(row, 0, "last");
+        assertThat(table.isNull(row, 0)).isFalse();
+        assertThat(table.getString(row, 0)).isEqualTo("last");
+    }
+
+    @Test
+    void clearedTablesInferTypesAfresh() {
+        UnifiedTable table = new UnifiedTable(List.of("Value"));
+        table.setString(table.addRow(), 0, "text");
+        table.setDouble(table.addRow(), 0, 2.0);
+        assertThat(table.getType(0)).isEqualTo(UnifiedTable.ColumnType.OBJECT);
+
+        table.clear();
+        assertThat(table.size()).isZero();
+        for (int i = 0; i < 40; i++) {
+            table.setDouble(table.addRow(), 0, i);
+        }
+        assertThat(table.getType(0)).isEqualTo(UnifiedTable.ColumnType.DOUBLE);
+        assertThat(table.isPresent(0, 0)).isTrue();
+        assertThat(table.getDouble(39, 0)).isEqualTo(39.0);
+        table.setNull(table.addRow(), 0);
+        assertThat(table.isNull(40, 0)).isTrue();
+    }
+
+    @Test
+    void storesStringsPastTheDictionaryLimitAsTheyAre() {
+        UnifiedTable table = new UnifiedTable(List.of("Id"));
+        int rows = UnifiedTable.DICTIONARY_LIMIT + 500;
+        for (int i = 0; i < rows; i++) {
+            table.setString(table.addRow(), 0, "id-" + i);
+        }
+        for (int i = 0; i < rows; i += 97) {
+            assertThat(table.getString(i, 0)).isEqualTo("id-" + i);
+        }
+
+        // A full dictionary is dropped with the rows
+        table.clear();
+        table.setString(table.addRow(), 0, "again");
+        assertThat(table.getString(0, 0)).isEqualTo("again");
+    }
+}
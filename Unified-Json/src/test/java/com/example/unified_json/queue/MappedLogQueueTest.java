@@ -0,0 +1,141 @@
+package com.example.unified_json.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedLogQueueTest {
+
+    // Small segments, so that a few hundred messages span several
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void consumersReadEveryMessageInOrderAcrossSegments() throws Exception {
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, false)) {
+            List<byte[]> batch = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                batch.add(message(i));
+            }
+            assertThat(queue.send(batch.subList(0, 200))).isEqualTo(0);
+            assertThat(queue.send(batch.subList(200, 500))).isEqualTo(200);
+            assertThat(queue.endOffset()).isEqualTo(500);
+
+            for (String consumer : new String[]{"validator", "exporter"}) {
+                List<String> texts = new ArrayList<>();
+                List<QueueMessage> messages;
+                while (!(messages = queue.poll(consumer, 64)).isEmpty()) {
+                    for (QueueMessage message : messages) {
+                        assertThat(message.getOffset()).isEqualTo(texts.size());
+                        texts.add(message.getText());
+                    }
+                }
+                assertThat(texts).hasSize(500);
+                assertThat(texts.get(499)).isEqualTo(text(499));
+            }
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files.filter(file -> file.toString().endsWith(".log")).count()).isGreaterThan(1);
+        }
+    }
+
+    @Test
+    void unacknowledgedMessagesAreDeliveredAgainAfterReopening() throws Exception {
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, false)) {
+            for (int i = 0; i < 10; i++) {
+                queue.send(message(i));
+            }
+            List<QueueMessage> messages = queue.poll("validator", 6);
+            queue.ack("validator", messages.get(3).getOffset());
+            assertThatThrownBy(() -> queue.ack("validator", 8)).isInstanceOf(IllegalArgumentException.class);
+            queue.rewind("validator");
+            assertThat(queue.poll("validator", 1).get(0).getOffset()).isEqualTo(4);
+        }
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, false)) {
+            assertThat(queue.endOffset()).isEqualTo(10);
+            List<QueueMessage> messages = queue.poll("validator", 100);
+            assertThat(messages).extracting(QueueMessage::getOffset).containsExactly(4L, 5L, 6L, 7L, 8L, 9L);
+            assertThat(messages.get(0).getText()).isEqualTo(text(4));
+            assertThat(queue.send(message(10))).isEqualTo(10);
+        }
+    }
+
+    @Test
+    void aDamagedLastRecordIsDroppedOnReopening() throws Exception {
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, true)) {
+            queue.send(List.of(message(0), message(1), message(2)));
+        }
+        // Corrupts the payload of the last record, as a crash part way through writing it would
+        Path segment = tempDir.resolve(LogSegment.fileName(0));
+        int lastPayload = 2 * (LogSegment.HEADER_BYTES + text(0).length()) + LogSegment.HEADER_BYTES;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(lastPayload);
+            file.write('#');
+        }
+
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, true)) {
+            assertThat(queue.endOffset()).isEqualTo(2);
+            queue.send(message(5));
+            assertThat(queue.poll("validator", 10)).extracting(QueueMessage::getText)
+                    .containsExactly(text(0), text(1), text(5));
+        }
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, true)) {
+            assertThat(queue.endOffset()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void acknowledgedSegmentsAreDeleted() throws Exception {
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, false)) {
+            for (int i = 0; i < 400; i++) {
+                queue.send(message(i));
+                List<QueueMessage> messages = queue.poll("sync", 1);
+                queue.ack("sync", messages.get(0).getOffset());
+            }
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertThat(files.filter(file -> file.toString().endsWith(".log")).count()).isEqualTo(1);
+            }
+            // A consumer seen for the first time starts at the oldest message kept
+            assertThat(queue.poll("exporter", 1).get(0).getOffset()).isGreaterThan(0);
+        }
+    }
+
+    @Test
+    void pollingWaitsForTheNextMessage() throws Exception {
+        try (MappedLogQueue queue = new MappedLogQueue(tempDir, SEGMENT_BYTES, false)) {
+            CompletableFuture<List<QueueMessage>> polled = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return queue.poll("validator", 10, 10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            queue.send(message(7));
+            assertThat(polled.get(5, TimeUnit.SECONDS)).extracting(QueueMessage::getText).containsExactly(text(7));
+            assertThat(queue.poll("validator", 10, 50, TimeUnit.MILLISECONDS)).isEmpty();
+        }
+    }
+
+    private static byte[] message(int i) {
+        return text(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(int i) {
+        return String.format("{\"asset\":\"Book %05d\"}", i);
+    }
+}
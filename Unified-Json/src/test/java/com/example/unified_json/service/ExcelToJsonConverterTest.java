@@ -0,0 +1,230 @@
+package com.example.unified_json.service;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExcelToJsonConverterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void streamingMatchesWorkbookForTemplates() throws Exception {
+        for (String template : new String[]{"CDIP-excel-template.xlsx", "CDIP-excel-template_new.xlsx"}) {
+            byte[] workbook;
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream(template)) {
+                workbook = in.readAllBytes();
+            }
+            assertSameOutput(workbook);
+        }
+    }
+
+    @Test
+    void streamingMatchesWorkbookForEveryCellType() throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            fill(workbook);
+            // Cells of an array formula other than its first have no formula of their own
+            workbook.getSheet("Data").setArrayFormula("B3:B4*2", CellRangeAddress.valueOf("G3:G4"));
+            assertSameOutput(write(workbook));
+        }
+    }
+
+    @Test
+    void streamingMatchesWorkbookForInlineStrings() throws Exception {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(10)) {
+            fill(workbook);
+            assertSameOutput(write(workbook));
+        }
+    }
+
+    @Test
+    void concurrentSheetsKeepWorkbookOrder() throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            // Sheets of very different sizes, so they finish out of order
+            for (int s = 0; s < 12; s++) {
+                Sheet sheet = workbook.createSheet("Sheet " + s);
+                Row header = sheet.createRow(0);
+                header.createCell(0).setCellValue("Id");
+                header.createCell(1).setCellValue("Value");
+                int rows = s % 3 == 0 ? 5000 : 3 + s;
+                for (int r = 2; r < rows; r++) {
+                    Row row = sheet.createRow(r);
+                    row.createCell(0).setCellValue(s + "-" + r);
+                    row.createCell(1).setCellValue(r * 0.5);
+                }
+            }
+            workbook.createSheet("Empty");
+            byte[] bytes = write(workbook);
+
+            String concurrent = convert(bytes, true);
+            ExcelToJsonConverter sequential = new ExcelToJsonConverter();
+            ReflectionTestUtils.setField(sequential, "sheetThreads", 1);
+            File output = Files.createTempFile(tempDir, "output", ".json").toFile();
+            sequential.convertExcelToJson(new ByteArrayInputStream(bytes), output.getPath());
+
+            assertThat(concurrent).isEqualTo(Files.readString(output.toPath()));
+            assertThat(concurrent).isEqualTo(convert(bytes, false));
+            assertThat(concurrent.indexOf("\"Sheet 2\"")).isLessThan(concurrent.indexOf("\"Sheet 3\""));
+            assertThat(new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith("sheet")
+                    && name.endsWith(".json"))).isEmpty();
+        }
+    }
+
+    private void fill(Workbook workbook) {
+        CellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+        CellStyle blankStyle = workbook.createCellStyle();
+        blankStyle.setWrapText(true);
+
+        Sheet data = workbook.createSheet("Data");
+        String[] headers = {"Name", "Amount", "When", "Active", "Doubled", "Name", "Array"};
+        Row header = data.createRow(0);
+        Row description = data.createRow(1);
+        for (int c = 0; c < headers.length; c++) {
+            header.createCell(c).setCellValue(headers[c]);
+            description.createCell(c).setCellValue(headers[c] + " of the record");
+        }
+        for (int r = 2; r < 40; r++) {
+            if (r == 7) {
+                // A missing row
+                continue;
+            }
+            Row row = data.createRow(r);
+            if (r == 9) {
+                // A row without cells
+                continue;
+            }
+            row.createCell(0).setCellValue(r % 5 == 0 ? "Zoë & \"friends\" <" + r + ">" : "name-" + r);
+            row.createCell(1).setCellValue(r * 12.5);
+            Cell when = row.createCell(2);
+            when.setCellValue(Date.from(LocalDate.of(2024, 1, 1).plusDays(r * 17L)
+                    .atStartOfDay(ZoneId.systemDefault()).toInstant()));
+            when.setCellStyle(dateStyle);
+            if (r % 3 != 0) {
+                row.createCell(3).setCellValue(r % 2 == 0);
+            }
+            if (r < 12) {
+                row.createCell(4).setCellFormula("B" + (r + 1) + "*2");
+            } else if (r == 12) {
+                row.createCell(4).setCellErrorValue(FormulaError.DIV0.getCode());
+            } else if (r == 13) {
+                row.createCell(4).setCellStyle(blankStyle);
+            }
+            row.createCell(5).setCellValue("second " + r);
+            // Beyond the headers
+            row.createCell(9).setCellValue("ignored");
+        }
+
+        workbook.createSheet("Empty");
+        workbook.createSheet("HeaderOnly").createRow(0).createCell(0).setCellValue("Name");
+        Sheet noHeader = workbook.createSheet("NoHeader");
+        for (int r = 1; r < 4; r++) {
+            noHeader.createRow(r).createCell(0).setCellValue(r);
+        }
+        Sheet sparse = workbook.createSheet("SparseHeader");
+        Row sparseHeader = sparse.createRow(0);
+        sparseHeader.createCell(0).setCellValue("First");
+        sparseHeader.createCell(2).setCellValue("Third");
+        sparse.createRow(1);
+        Row sparseRow = sparse.createRow(2);
+        for (int c = 0; c < 3; c++) {
+            sparseRow.createCell(c).setCellValue(c);
+        }
+    }
+
+    @Test
+    void failedConversionLeavesNoOutput() throws Exception {
+        Path output = tempDir.resolve("broken.json");
+        assertThatThrownBy(() -> new ExcelToJsonConverter().convertExcelToJson(
+                new ByteArrayInputStream("not a workbook".getBytes()), output.toString()));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void rowsWriteTheSameExcelAsTheirJson() throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            fill(workbook);
+            byte[] bytes = write(workbook);
+            ExcelToJsonConverter converter = new ExcelToJsonConverter();
+            JsonToExcelService service = new JsonToExcelService();
+
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            converter.convertExcelToJson(new ByteArrayInputStream(bytes), json);
+            ByteArrayOutputStream fromJson = new ByteArrayOutputStream();
+            service.convertJsonToExcel(new ByteArrayResource(json.toByteArray()), fromJson);
+
+            ByteArrayOutputStream fromRows = new ByteArrayOutputStream();
+            try (WorkbookRows rows = converter.openRows(new ByteArrayInputStream(bytes))) {
+                service.convertRowsToExcel(rows, fromRows);
+            }
+
+            List<String> cells = cells(fromJson.toByteArray());
+            // The second Name column is written in the first one's place
+            assertThat(cells).contains("A1 STRING Name General", "A2 STRING second 2 General");
+            assertThat(cells(fromRows.toByteArray())).isEqualTo(cells);
+        }
+    }
+
+    // Every cell of the first sheet, with its type, value and number format
+    private static List<String> cells(byte[] excel) throws Exception {
+        List<String> cells = new ArrayList<>();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excel))) {
+            for (Row row : workbook.getSheetAt(0)) {
+                for (Cell cell : row) {
+                    cells.add(cell.getAddress() + " " + cell.getCellType() + " " + cell + " "
+                            + cell.getCellStyle().getDataFormatString());
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static byte[] write(Workbook workbook) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+
+    private void assertSameOutput(byte[] workbook) throws Exception {
+        String streamed = convert(workbook, true);
+        String loaded = convert(workbook, false);
+        assertThat(streamed).isEqualTo(loaded);
+    }
+
+    private String convert(byte[] workbook, boolean streaming) throws Exception {
+        ExcelToJsonConverter converter = new ExcelToJsonConverter();
+        ReflectionTestUtils.setField(converter, "streamingRead", streaming);
+        File output = Files.createTempFile(tempDir, "output", ".json").toFile();
+        converter.convertExcelToJson(new ByteArrayInputStream(workbook), output.getPath());
+        return Files.readString(output.toPath());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.unified_json.service;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonToExcelServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void streamingMatchesWorkbookForEveryValueType() throws Exception {
+        String json = """
+                {
+                  "version": {"nested": [1, 2, {"sheets": []}]},
+                  "sheets": [
+                    {
+                      "sheetName": "First",
+                      "rowCount": 3,
+                      "data": [
+                        {"Name": "alpha", "Amount": 12.5, "Count": 3, "Active": true, "When": "2024-02-29",
+                         "Missing": null, "Nested": {"a": 1, "b": [true, null]}, "List": [1, "two"]},
+                        {"Name": "beta", "Amount": -0.0, "Count": -7, "Active": false, "When": "29/02/2024",
+                         "Unknown": "not a header", "Name": "beta again"},
+                        {"Amount": 1e300, "Count": 12345678901234567890, "When": "2024-02-29T00:00"}
+                      ]
+                    },
+                    {"sheetName": "Empty", "rowCount": 0, "data": []},
+                    {
+                      "data": [
+                        {"Other": "x", "Name": "gamma"},
+                        {"Other": "y", "Amount": 1.0}
+                      ],
+                      "sheetName": "Second"
+                    }
+                  ]
+                }
+                """;
+        File input = tempDir.resolve("input.json").toFile();
+        Files.writeString(input.toPath(), json);
+
+        List<String> streamed = cells(convert(input, true));
+        List<String> loaded = cells(convert(input, false));
+        assertThat(streamed).isEqualTo(loaded);
+        assertThat(streamed).contains("0,0 STRING Name General", "1,4 STRING 2024-02-29 yyyy-mm-dd",
+                "2,4 STRING 29/02/2024 General", "0,8 STRING Other General");
+    }
+
+    @Test
+    void streamingMatchesWorkbookForConvertedTemplate() throws Exception {
+        File workbook = tempDir.resolve("template.xlsx").toFile();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("CDIP-excel-template.xlsx")) {
+            Files.copy(in, workbook.toPath());
+        }
+        File json = tempDir.resolve("template.json").toFile();
+        try (InputStream in = Files.newInputStream(workbook.toPath())) {
+            new ExcelToJsonConverter().convertExcelToJson(in, json.getPath());
+        }
+
+        assertThat(cells(convert(json, true))).isEqualTo(cells(convert(json, false)));
+    }
+
+    private File convert(File input, boolean streaming) throws Exception {
+        JsonToExcelService service = new JsonToExcelService();
+        ReflectionTestUtils.setField(service, "streamingWrite", streaming);
+        // A window smaller than the data so rows are flushed while writing
+        ReflectionTestUtils.setField(service, "writeWindow", 2);
+        File output = Files.createTempFile(tempDir, "output", ".xlsx").toFile();
+        service.convertJsonToExcel(input.getPath(), output.getPath());
+        return output;
+    }
+
+    /** Every cell as "row,column type value format". */
+    private static List<String> cells(File excel) throws Exception {
+        List<String> cells = new ArrayList<>();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(excel)) {
+            assertThat(workbook.getNumberOfSheets()).isEqualTo(1);
+            Sheet sheet = workbook.getSheet("UnifiedData");
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    String value = switch (cell.getCellType()) {
+                        case NUMERIC -> String.valueOf(cell.getNumericCellValue());
+                        case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
+                        default -> cell.getStringCellValue();
+                    };
+                    cells.add(cell.getRowIndex() + "," + cell.getColumnIndex() + " " + cell.getCellType()
+                            + " " + value + " " + cell.getCellStyle().getDataFormatString());
+                }
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.unified_json.service;
+
+import com.example.unified_json.queue.MappedLogQueue;
+import com.example.unified_json.queue.QueueMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenApiImporterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String YAML_SPEC = """
+            openapi: 3.0.3
+            info:
+              title: Library API
+              version: 2.1.0
+            paths:
+              /books:
+                get:
+                  operationId: listBooks
+                  summary: Lists the books
+                post:
+                  operationId: addBook
+                  summary: Adds a book
+              /books/{id}:
+                delete:
+                  operationId: deleteBook
+                  summary: Deletes a book
+            components:
+              schemas:
+                Book:
+                  type: object
+                  properties:
+                    title:
+                      type: string
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private OpenApiImporter importer;
+    private MappedLogQueue queue;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        importer = new OpenApiImporter();
+        ReflectionTestUtils.setField(importer, "indexDirectory", tempDir.resolve("index").toString());
+        queue = new MappedLogQueue(tempDir.resolve("pre-validation"), 1 << 20, false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        queue.close();
+    }
+
+    @Test
+    void firstImportSendsEveryAsset() throws Exception {
+        OpenApiImporter.Summary summary = importer.importSpec(spec(YAML_SPEC), queue);
+
+        List<JsonNode> messages = messages();
+        assertThat(summary.getApi()).isEqualTo("Library API");
+        assertThat(summary.getAdded()).isEqualTo(messages.size());
+        assertThat(summary.getChanged() + summary.getRemoved() + summary.getUnchanged()).isZero();
+        assertThat(messages).allSatisfy(message -> {
+            assertThat(message.path("source").asText()).isEqualTo("openapi");
+            assertThat(message.path("change").asText()).isEqualTo("added");
+        });
+        assertThat(messages).extracting(message -> message.path("sheetName").asText())
+                .contains("1. API", "2. API Operations", "3. Data Structures", "4. Data Attributes");
+    }
+
+    @Test
+    void unchangedSpecSendsNothing() throws Exception {
+        importer.importSpec(spec(YAML_SPEC), queue);
+        int sent = messages().size();
+
+        OpenApiImporter.Summary summary = importer.importSpec(spec(YAML_SPEC), queue);
+
+        assertThat(messages()).isEmpty();
+        assertThat(summary.getUnchanged()).isEqualTo(sent);
+        assertThat(summary.getAdded() + summary.getChanged() + summary.getRemoved()).isZero();
+    }
+
+    @Test
+    void changedSpecSendsOnlyWhatChanged() throws Exception {
+        importer.importSpec(spec(YAML_SPEC), queue);
+        messages();
+        String changed = YAML_SPEC.replace("version: 2.1.0", "version: 2.2.0")
+                .replace("summary: Lists the books", "summary: Lists the books on the shelves")
+                .replace("""
+                          /books/{id}:
+                            delete:
+                              operationId: deleteBook
+                              summary: Deletes a book
+                        """, """
+                          /books/{id}:
+                            get:
+                              operationId: getBook
+                              summary: Gets a book
+                        """);
+
+        OpenApiImporter.Summary summary = importer.importSpec(spec(changed), queue);
+
+        List<JsonNode> messages = messages();
+        assertThat(messages).extracting(message -> message.path("change").asText() + " "
+                        + message.path("sheetName").asText() + " " + message.path("row").path("Name*").asText())
+                .containsExactlyInAnyOrder("changed 1. API Library API", "changed 2. API Operations GET /books",
+                        "added 2. API Operations GET /books/{id}", "removed 2. API Operations DELETE /books/{id}");
+        assertThat(summary.getChanged()).isEqualTo(2);
+        assertThat(summary.getAdded()).isEqualTo(1);
+        assertThat(summary.getRemoved()).isEqualTo(1);
+        JsonNode removed = messages.stream().filter(message -> "removed".equals(message.path("change").asText()))
+                .findFirst().orElseThrow();
+        assertThat(removed.path("row").has("Summary")).isFalse();
+        assertThat(removed.path("row").path("Path*").asText()).isEqualTo("/books/{id}");
+    }
+
+    private List<JsonNode> messages() throws IOException {
+        List<JsonNode> messages = new ArrayList<>();
+        for (QueueMessage message : queue.poll("test", 1000)) {
+            messages.add(objectMapper.readTree(message.getPayload()));
+            queue.ack("test", message.getOffset());
+        }
+        return messages;
+    }
+
+    private static InputStream spec(String yaml) {
+        return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.unified_json.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenApiToJsonConverterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Components first, references between them, and a path parameter listed after its operation
+    private static final String YAML_SPEC = """
+            openapi: 3.0.3
+            info:
+              title: Library API
+              version: 2.1.0
+            components:
+              parameters:
+                LibraryId:
+                  name: libraryId
+                  in: path
+                  required: true
+                  schema:
+                    type: string
+                    format: uuid
+              schemas:
+                BookList:
+                  type: array
+                  items:
+                    $ref: '#/components/schemas/Book'
+                Book:
+                  type: object
+                  description: A book on the shelves
+                  required: [title]
+                  properties:
+                    title:
+                      type: string
+                    author:
+                      $ref: '#/components/schemas/Author'
+                    tags:
+                      type: array
+                      items:
+                        type: string
+                Author:
+                  allOf:
+                    - $ref: '#/components/schemas/Person'
+                    - type: object
+                Person:
+                  type: object
+            paths:
+              /libraries/{libraryId}/books:
+                get:
+                  operationId: listBooks
+                  responses:
+                    '200':
+                      description: The books
+                      content:
+                        application/json:
+                          schema:
+                            $ref: '#/components/schemas/BookList'
+                    '404':
+                      $ref: '#/components/responses/NotFound'
+                parameters:
+                  - $ref: '#/components/parameters/LibraryId'
+            """;
+
+    @Test
+    void bookSampleBecomesUnifiedTemplate() throws Exception {
+        JsonNode sheets = convert(resource("book-sample.json")).get("sheets");
+
+        assertThat(sheetNames(sheets)).containsExactly(
+                "1. API", "2. API Operations", "3. Data Structures", "4. Data Attributes");
+        JsonNode api = sheets.get(0).get("data").get(0);
+        assertThat(api.get("Name*").asText()).isEqualTo("Bookstore API");
+        assertThat(api.get("Version").asText()).isEqualTo("1.0.2");
+        assertThat(api.get("Servers").asText()).isEqualTo("https://api.example.com/v3");
+
+        JsonNode operations = sheets.get(1);
+        assertThat(operations.get("rowCount").asInt()).isEqualTo(5);
+        JsonNode list = operations.get("data").get(0);
+        assertThat(list.get("Name*").asText()).isEqualTo("GET /books");
+        assertThat(list.get("API*").asText()).isEqualTo("Bookstore API");
+        assertThat(list.get("Responses").asText()).isEqualTo("200: Book[]; 500");
+        assertThat(list.has("Parameters")).isFalse();
+        assertThat(operations.get("data").get(1).get("Request Body").asText()).isEqualTo("Book");
+        JsonNode update = operations.get("data").get(3);
+        assertThat(update.get("Name*").asText()).isEqualTo("PUT /books/{bookId}");
+        assertThat(update.get("Parameters").asText()).isEqualTo("bookId (path, integer, required)");
+
+        JsonNode attributes = sheets.get(3).get("data");
+        assertThat(attributes).hasSize(5);
+        assertThat(attributes.get(3).get("Name*").asText()).isEqualTo("publishedDate");
+        assertThat(attributes.get(3).get("Data Structure*").asText()).isEqualTo("Book");
+        assertThat(attributes.get(3).get("Type").asText()).isEqualTo("string(date)");
+        assertThat(attributes.get(0).get("Required").asText()).isEqualTo("Yes");
+        assertThat(attributes.get(4).get("Required").asText()).isEqualTo("No");
+    }
+
+    @Test
+    void yamlGivesTheSameTemplateAsJson() throws Exception {
+        byte[] yaml = YAML_SPEC.getBytes(StandardCharsets.UTF_8);
+        byte[] json = objectMapper.writeValueAsBytes(new Yaml().load(YAML_SPEC));
+
+        assertThat(new String(convertBytes(yaml), StandardCharsets.UTF_8))
+                .isEqualTo(new String(convertBytes(json), StandardCharsets.UTF_8));
+
+        JsonNode sheets = objectMapper.readTree(convertBytes(yaml)).get("sheets");
+        JsonNode operation = sheets.get(1).get("data").get(0);
+        assertThat(operation.get("Parameters").asText()).isEqualTo("libraryId (path, string(uuid), required)");
+        // The alias resolves through to its items; the missing response is named
+        assertThat(operation.get("Responses").asText()).isEqualTo("200: Book[]; 404: NotFound");
+
+        JsonNode structures = sheets.get(2).get("data");
+        assertThat(structures.get(0).get("Type").asText()).isEqualTo("Book[]");
+        assertThat(structures.get(1).get("Description").asText()).isEqualTo("A book on the shelves");
+        assertThat(structures.get(2).get("Type").asText()).isEqualTo("Person & object");
+        JsonNode attributes = sheets.get(3).get("data");
+        assertThat(attributes.get(1).get("Type").asText()).isEqualTo("Author");
+        assertThat(attributes.get(2).get("Type").asText()).isEqualTo("string[]");
+    }
+
+    @Test
+    void referencesToLaterSchemasKeepDocumentOrder() throws Exception {
+        int count = 2000;
+        StringBuilder spec = new StringBuilder("{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Large\"},\"paths\":{");
+        for (int i = 0; i < count; i++) {
+            spec.append(i == 0 ? "" : ",").append("\"/items/").append(i).append("\":{\"get\":{\"responses\":{\"200\":")
+                    .append("{\"content\":{\"application/json\":{\"schema\":{\"$ref\":\"#/components/schemas/Item")
+                    .append(i).append("\"}}}}}}}");
+        }
+        spec.append("},\"components\":{\"schemas\":{");
+        // Each schema but the last is an alias of the next one
+        for (int i = 0; i < count; i++) {
+            spec.append(i == 0 ? "" : ",").append("\"Item").append(i).append("\":");
+            spec.append(i + 1 < count
+                    ? "{\"$ref\":\"#/components/schemas/Item" + (i + 1) + "\"}"
+                    : "{\"type\":\"object\",\"properties\":{\"id\":{\"type\":\"integer\"}}}");
+        }
+        spec.append("}}}");
+
+        JsonNode operations = convert(spec.toString().getBytes(StandardCharsets.UTF_8)).get("sheets").get(1).get("data");
+        assertThat(operations).hasSize(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(operations.get(i).get("Path*").asText()).isEqualTo("/items/" + i);
+            assertThat(operations.get(i).get("Responses").asText()).isEqualTo("200: Item" + (count - 1));
+        }
+    }
+
+    private JsonNode convert(byte[] spec) throws Exception {
+        return objectMapper.readTree(convertBytes(spec));
+    }
+
+    private static byte[] convertBytes(byte[] spec) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new OpenApiToJsonConverter().convertOpenApiToJson(new ByteArrayInputStream(spec), out);
+        return out.toByteArray();
+    }
+
+    private byte[] resource(String name) throws Exception {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static List<String> sheetNames(JsonNode sheets) {
+        List<String> names = new ArrayList<>();
+        sheets.forEach(sheet -> names.add(sheet.get("sheetName").asText()));
+        return names;
+    }
+}
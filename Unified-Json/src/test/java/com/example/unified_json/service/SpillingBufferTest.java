@@ -0,0 +1,53 @@
+package com.example.unified_json.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpillingBufferTest {
+
+    @Test
+    void keepsSmallResultsInMemory() throws Exception {
+        try (SpillingBuffer buffer = new SpillingBuffer(16)) {
+            try (OutputStream out = buffer.getOutputStream()) {
+                out.write("0123456789".getBytes());
+                out.write('!');
+            }
+            assertThat(buffer.isSpilled()).isFalse();
+            assertThat(buffer.size()).isEqualTo(11);
+            assertThat(read(buffer)).isEqualTo("0123456789!");
+            // Readable more than once
+            assertThat(read(buffer)).isEqualTo("0123456789!");
+        }
+    }
+
+    @Test
+    void spillsPastTheThresholdAndDeletesOnClose() throws Exception {
+        SpillingBuffer buffer = new SpillingBuffer(16);
+        try (OutputStream out = buffer.getOutputStream()) {
+            out.write("0123456789".getBytes());
+            out.write("abcdefghij".getBytes());
+            out.write('!');
+        }
+        assertThat(buffer.isSpilled()).isTrue();
+        assertThat(buffer.size()).isEqualTo(21);
+        assertThat(read(buffer)).isEqualTo("0123456789abcdefghij!");
+        assertThat(read(buffer)).isEqualTo("0123456789abcdefghij!");
+
+        buffer.close();
+        try (InputStream in = buffer.getInputStream()) {
+            throw new AssertionError("The spilled file should be gone");
+        } catch (java.nio.file.NoSuchFileException expected) {
+            // Deleted
+        }
+    }
+
+    private static String read(SpillingBuffer buffer) throws Exception {
+        try (InputStream in = buffer.getInputStream()) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.unified_json.sync;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for the Collibra import API: takes JSON imports, answers a
+ * running job and completes it when it is polled. Assets named "reject"
+ * make their job end in error, and a number of imports can be made to fail
+ * with 503 first. It counts what it imported and how fast.
+ */
+class CollibraStubServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+    private final long latencyMillis;
+    private final Map<String, Integer> imported = new ConcurrentHashMap<>();
+    private final Map<String, String> jobStates = new ConcurrentHashMap<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger imports = new AtomicInteger();
+    private final AtomicInteger simulations = new AtomicInteger();
+    private final AtomicLong assets = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long firstImportNanos;
+    private volatile long lastImportNanos;
+
+    CollibraStubServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/rest/2.0/import/json-job", this::importJson);
+        server.createContext("/rest/2.0/jobs/", this::job);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void failNext(int imports) {
+        failuresLeft.set(imports);
+    }
+
+    private void importJson(HttpExchange exchange) throws IOException {
+        int running = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(running, Math::max);
+        try {
+            if (firstImportNanos == 0) {
+                firstImportNanos = System.nanoTime();
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (failuresLeft.getAndDecrement() > 0) {
+                respond(exchange, 503, "{\"errorMessage\":\"Service unavailable\"}");
+                return;
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            String boundary = "--" + contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            String file = null;
+            boolean simulation = false;
+            for (String part : new String(body, StandardCharsets.UTF_8).split(boundary)) {
+                int content = part.indexOf("\r\n\r\n");
+                if (content < 0) {
+                    continue;
+                }
+                String value = part.substring(content + 4, part.length() - 2);
+                if (part.contains("name=\"file\"")) {
+                    file = value;
+                } else if (part.contains("name=\"simulation\"")) {
+                    simulation = Boolean.parseBoolean(value);
+                }
+            }
+            Thread.sleep(latencyMillis);
+
+            JsonNode commands = objectMapper.readTree(file);
+            boolean rejected = false;
+            for (JsonNode command : commands) {
+                rejected |= "reject".equals(command.at("/identifier/name").asText());
+            }
+            if (!rejected) {
+                for (JsonNode command : commands) {
+                    String identity = command.at("/identifier/domain/community/name").asText() + "/"
+                            + command.at("/identifier/domain/name").asText() + "/" + command.at("/identifier/name").asText();
+                    if (!simulation) {
+                        imported.merge(identity, 1, Integer::sum);
+                    }
+                }
+                assets.addAndGet(commands.size());
+            }
+            (simulation ? simulations : imports).incrementAndGet();
+            String id = UUID.randomUUID().toString();
+            jobStates.put(id, rejected ? "ERROR" : "COMPLETED");
+            lastImportNanos = System.nanoTime();
+            respond(exchange, 200, "{\"id\":\"" + id + "\",\"state\":\"RUNNING\"}");
+        } catch (InterruptedException e) {
+            respond(exchange, 500, "{}");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void job(HttpExchange exchange) throws IOException {
+        String id = exchange.getRequestURI().getPath().substring("/rest/2.0/jobs/".length());
+        String state = jobStates.get(id);
+        if (state == null) {
+            respond(exchange, 404, "{\"errorMessage\":\"No job " + id + "\"}");
+        } else {
+            respond(exchange, 200, "{\"id\":\"" + id + "\",\"state\":\"" + state + "\",\"message\":\""
+                    + ("ERROR".equals(state) ? "Asset reject is not allowed" : "Imported") + "\"}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** How often each asset was imported, by identity. */
+    Map<String, Integer> imported() {
+        return imported;
+    }
+
+    int imports() {
+        return imports.get();
+    }
+
+    int simulations() {
+        return simulations.get();
+    }
+
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    String report() {
+        double seconds = Math.max(lastImportNanos - firstImportNanos, 1) / 1e9;
+        return assets.get() + " assets in " + (imports.get() + simulations.get()) + " imports, "
+                + Math.round(assets.get() / seconds) + " assets/s, at most " + maxInFlight.get() + " at once";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.unified_json.sync;
+
+import com.example.unified_json.queue.MappedLogQueue;
+import com.example.unified_json.queue.QueueMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SyncServiceTest {
+
+    private static final Logger LOGGER = Logger.getLogger(SyncServiceTest.class.getName());
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    private CollibraStubServer collibra;
+    private SyncService sync;
+    private MappedLogQueue input;
+    private MappedLogQueue results;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        collibra = new CollibraStubServer(20);
+        sync = new SyncService();
+        ReflectionTestUtils.setField(sync, "baseUrl", collibra.baseUrl());
+        ReflectionTestUtils.setField(sync, "batchSize", 100);
+        ReflectionTestUtils.setField(sync, "maxInFlight", 4);
+        ReflectionTestUtils.setField(sync, "backoffMillis", 1L);
+        ReflectionTestUtils.setField(sync, "jobPollMillis", 1L);
+        input = new MappedLogQueue(tempDir.resolve("post-validation"), 1 << 22, false);
+        results = new MappedLogQueue(tempDir.resolve("sync"), 1 << 22, false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        sync.shutdown();
+        collibra.close();
+        input.close();
+        results.close();
+    }
+
+    @Test
+    void duplicateAssetsAreImportedOnceInConcurrentBatches() throws Exception {
+        List<byte[]> messages = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            messages.add(message("2. API Operations", "operation " + (i % 2000), "/books/" + i));
+        }
+        input.send(messages);
+
+        assertThat(sync.syncNext(input, results, 0)).isEqualTo(2500);
+        LOGGER.info("Stub Collibra: " + collibra.report());
+
+        assertThat(collibra.imported()).hasSize(2000).allSatisfy((identity, times) -> assertThat(times).isEqualTo(1));
+        assertThat(collibra.imported()).containsKey("Unified Import/Unified Assets/operation 0");
+        assertThat(collibra.imports()).isEqualTo(20);
+        assertThat(collibra.maxInFlight()).isBetween(2, 4);
+        List<QueueMessage> reports = results.poll("test", 100);
+        assertThat(reports).hasSize(20);
+        assertThat(reports).allSatisfy(report -> assertThat(json(report).path("state").asText()).isEqualTo("COMPLETED"));
+        assertThat(sync.syncNext(input, results, 0)).isZero();
+    }
+
+    @Test
+    void failedImportsAreRetriedAndTheWindowTakenAgain() throws Exception {
+        input.send(List.of(message("3. Data Structures", "Book", null), message("3. Data Structures", "Author", null)));
+
+        collibra.failNext(2);
+        assertThat(sync.syncNext(input, results, 0)).isEqualTo(2);
+        assertThat(collibra.imported()).containsOnlyKeys("Unified Import/Unified Assets/Book",
+                "Unified Import/Unified Assets/Author");
+
+        input.send(message("3. Data Structures", "Publisher", null));
+        collibra.failNext(10);
+        ReflectionTestUtils.setField(sync, "maxAttempts", 3);
+        assertThatThrownBy(() -> sync.syncNext(input, results, 0)).isInstanceOf(IOException.class)
+                .hasMessageContaining("503");
+        collibra.failNext(0);
+        assertThat(sync.syncNext(input, results, 0)).isEqualTo(1);
+        assertThat(collibra.imported()).containsKey("Unified Import/Unified Assets/Publisher");
+    }
+
+    @Test
+    void windowsWhoseReportsCannotBeSentAreTakenAgain() throws Exception {
+        input.send(message("3. Data Structures", "Book", null));
+        results.close();
+
+        assertThatThrownBy(() -> sync.syncNext(input, results, 0)).isInstanceOf(IOException.class)
+                .hasMessageContaining("closed");
+
+        results = new MappedLogQueue(tempDir.resolve("sync"), 1 << 22, false);
+        assertThat(sync.syncNext(input, results, 0)).isEqualTo(1);
+        assertThat(results.poll("test", 10)).hasSize(1);
+    }
+
+    @Test
+    void rejectedImportsAndUnreadableMessagesAreReported() throws Exception {
+        ReflectionTestUtils.setField(sync, "batchSize", 2);
+        input.send(List.of(message("1. API", "Library API", null), message("1. API", "reject", null),
+                message("1. API", "Store API", null), "{\"row\": {}}".getBytes()));
+
+        assertThat(sync.syncNext(input, results, 0)).isEqualTo(4);
+
+        List<JsonNode> reports = new ArrayList<>();
+        results.poll("test", 10).forEach(report -> reports.add(json(report)));
+        assertThat(reports).extracting(report -> report.path("state").asText())
+                .containsExactly("REJECTED", "COMPLETED", "SKIPPED");
+        assertThat(reports.get(0).path("message").asText()).contains("Asset reject is not allowed");
+        assertThat(reports.get(2).path("offsets").get(0).asLong()).isEqualTo(3);
+        assertThat(collibra.imported()).containsOnlyKeys("Unified Import/Unified Assets/Store API");
+    }
+
+    @Test
+    void simulationsChangeNothing() throws Exception {
+        ReflectionTestUtils.setField(sync, "simulation", true);
+        input.send(message("1. API", "Library API", null));
+
+        assertThat(sync.syncNext(input, results, 0)).isEqualTo(1);
+
+        assertThat(collibra.simulations()).isEqualTo(1);
+        assertThat(collibra.imported()).isEmpty();
+        JsonNode report = json(results.poll("test", 10).get(0));
+        assertThat(report.path("simulation").asBoolean()).isTrue();
+        assertThat(report.path("identities").get(0).asText()).isEqualTo("Unified Import/Unified Assets/Library API");
+    }
+
+    @Test
+    void rowsAreMappedToImportCommands() throws Exception {
+        SyncAsset asset = SyncAsset.fromMessage(objectMapper.readTree(message("2. API Operations", "listBooks", "/books")),
+                "Assets", "Import");
+
+        assertThat(asset.getType()).isEqualTo("API Operations");
+        assertThat(asset.getAttributes()).containsOnlyKeys("Path");
+        assertThat(asset.identity()).isEqualTo("Import/Assets/listBooks");
+        assertThat(asset.getStatus()).isNull();
+
+        ObjectNode removed = (ObjectNode) objectMapper.readTree(message("2. API Operations", "listBooks", "/books"));
+        removed.put("change", "removed");
+        SyncAsset obsolete = SyncAsset.fromMessage(removed, "Assets", "Import");
+        assertThat(obsolete.identity()).isEqualTo(asset.identity());
+        assertThat(obsolete.getStatus()).isEqualTo("Obsolete");
+        assertThat(obsolete.getAttributes()).isEmpty();
+    }
+
+    private JsonNode json(QueueMessage message) {
+        try {
+            return objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] message(String sheetName, String name, String path) throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("Name*", name);
+        if (path != null) {
+            row.put("Path*", path);
+        }
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("source", "openapi");
+        message.put("sheetName", sheetName);
+        message.put("row", row);
+        return objectMapper.writeValueAsBytes(message);
+    }
+}
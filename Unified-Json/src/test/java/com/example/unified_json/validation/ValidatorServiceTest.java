@@ -0,0 +1,187 @@
+package com.example.unified_json.validation;
+
+import com.example.unified_json.queue.MappedLogQueue;
+import com.example.unified_json.queue.QueueMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ValidatorServiceTest {
+
+    private static final String RULES = """
+            {"rules": [
+              {"name": "method", "path": "/row/Method*", "allowed": ["GET", "POST"]},
+              {"name": "path", "path": "/row/Path*", "required": true, "pattern": "^/"},
+              {"name": "count", "path": "/row/Count", "minimum": 0, "maximum": 10}
+            ]}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    private ValidatorService validator;
+
+    @AfterEach
+    void shutdown() {
+        if (validator != null) {
+            validator.shutdown();
+        }
+    }
+
+    @Test
+    void checksAreOrderedCheapestFirst() throws Exception {
+        RulePlan plan = RulePlan.compile(objectMapper.readTree(RULES));
+
+        // The pattern of the first rule listed runs last, so the missing path is reported before the method
+        RuleViolation violation = plan.evaluate(objectMapper.readTree("{\"row\": {\"Method*\": \"PUT\"}}"));
+        assertThat(violation.getRule()).isEqualTo("path");
+        assertThat(violation.getMessage()).contains("required");
+
+        assertThat(plan.evaluate(objectMapper.readTree("{\"row\": {\"Method*\": \"PUT\", \"Path*\": \"/books\"}}"))
+                .getRule()).isEqualTo("method");
+        assertThat(plan.evaluate(objectMapper.readTree("{\"row\": {\"Path*\": \"books\"}}")).getMessage())
+                .contains("pattern ^/");
+        assertThat(plan.evaluate(objectMapper.readTree("{\"row\": {\"Path*\": \"/books\", \"Count\": \"11\"}}"))
+                .getRule()).isEqualTo("count");
+        assertThat(plan.evaluate(objectMapper.readTree("{\"row\": {\"Path*\": \"/books\", \"Count\": 3}}"))).isNull();
+
+        assertThat(plan.getStats()).extracting(RuleStats::getRule).containsExactly("method", "path", "count");
+        assertThat(plan.getStats().get(1).getChecks()).isEqualTo("required, pattern ^/");
+        assertThat(plan.getStats().get(1).getFailures()).isEqualTo(2);
+        assertThat(plan.getStats().get(1).getEvaluations()).isEqualTo(5);
+    }
+
+    @Test
+    void rulesThatCannotBeCompiledAreRejected() {
+        assertThatThrownBy(() -> RulePlan.compile(objectMapper.readTree("{\"rules\": [{\"path\": \"/a\", \"patern\": \"x\"}]}")))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("patern");
+        assertThatThrownBy(() -> RulePlan.compile(objectMapper.readTree("{\"rules\": [{\"path\": \"/a\", \"pattern\": \"(\"}]}")))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("invalid pattern");
+        assertThatThrownBy(() -> RulePlan.compile(objectMapper.readTree("{\"rules\": [{\"path\": \"a\", \"required\": true}]}")))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("invalid path");
+    }
+
+    @Test
+    void largeBatchesAreValidatedInParallelAndKeepTheirOrder() throws Exception {
+        Files.writeString(tempDir.resolve("openapi.json"), RULES);
+        validator = validator(0);
+        List<byte[]> messages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            messages.add(message("openapi", i % 3 == 0 ? "books" : "/books/" + i));
+        }
+        messages.add("{not json".getBytes(StandardCharsets.UTF_8));
+        messages.add(message("elsewhere", "/books"));
+
+        List<RuleViolation> violations = validator.validate(messages);
+
+        assertThat(violations).hasSize(1002);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(violations.get(i) == null).isEqualTo(i % 3 != 0);
+        }
+        assertThat(violations.get(1000).getRule()).isEqualTo(ValidatorService.JSON_RULE);
+        assertThat(violations.get(1001).getRule()).isEqualTo(ValidatorService.RULES_RULE);
+        Map<String, List<RuleStats>> stats = validator.stats();
+        assertThat(stats.get("openapi").get(1).getFailures()).isEqualTo(334);
+        // Once per message, although the rule has two checks
+        assertThat(stats.get("openapi").get(1).getEvaluations()).isEqualTo(1000);
+    }
+
+    @Test
+    void changedRuleFilesAreCompiledAgain() throws Exception {
+        Path ruleFile = tempDir.resolve("default.json");
+        Files.writeString(ruleFile, RULES);
+        validator = validator(0);
+        byte[] message = message("default", "books");
+        assertThat(validator.validate(List.of(message)).get(0).getRule()).isEqualTo("path");
+
+        Files.writeString(ruleFile, "{\"rules\": [{\"path\": \"/row/Path*\", \"required\": true}]}");
+        Files.setLastModifiedTime(ruleFile, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertThat(validator.validate(List.of(message)).get(0)).isNull();
+
+        // A broken file leaves the last rules in use
+        Files.writeString(ruleFile, "{\"rules\": [{\"path\": \"/row/Path*\", \"required\": \"yes\", \"typo\": 1}]}");
+        Files.setLastModifiedTime(ruleFile, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        assertThat(validator.validate(List.of(message)).get(0)).isNull();
+        assertThat(validator.validate(List.of(message("default", null))).get(0).getRule()).isEqualTo("/row/Path*");
+    }
+
+    @Test
+    void messagesMoveToTheValidOrInvalidQueue() throws Exception {
+        Files.writeString(tempDir.resolve("default.json"), RULES);
+        validator = validator(0);
+        try (MappedLogQueue input = new MappedLogQueue(tempDir.resolve("pre-validation"), 1 << 20, false);
+             MappedLogQueue valid = new MappedLogQueue(tempDir.resolve("post-validation"), 1 << 20, false);
+             MappedLogQueue invalid = new MappedLogQueue(tempDir.resolve("invalid-data"), 1 << 20, false)) {
+            input.send(List.of(message("openapi", "/books"), message("openapi", "books"), message("openapi", "/authors")));
+
+            assertThat(validator.validateNext(input, valid, invalid, 10, 0)).isEqualTo(3);
+            assertThat(validator.validateNext(input, valid, invalid, 10, 0)).isZero();
+
+            assertThat(valid.poll("test", 10)).extracting(QueueMessage::getText)
+                    .containsExactly(new String(message("openapi", "/books"), StandardCharsets.UTF_8),
+                            new String(message("openapi", "/authors"), StandardCharsets.UTF_8));
+            List<QueueMessage> failed = invalid.poll("test", 10);
+            assertThat(failed).hasSize(1);
+            JsonNode report = objectMapper.readTree(failed.get(0).getPayload());
+            assertThat(report.path("rule").asText()).isEqualTo("path");
+            assertThat(report.path("path").asText()).isEqualTo("/row/Path*");
+            assertThat(report.at("/message/row/Path*").asText()).isEqualTo("books");
+        }
+    }
+
+    @Test
+    void messagesThatCannotBeSentArePolledAgain() throws Exception {
+        Files.writeString(tempDir.resolve("default.json"), RULES);
+        validator = validator(0);
+        try (MappedLogQueue input = new MappedLogQueue(tempDir.resolve("pre-validation"), 1 << 20, false);
+             MappedLogQueue invalid = new MappedLogQueue(tempDir.resolve("invalid-data"), 1 << 20, false)) {
+            input.send(List.of(message("openapi", "/books"), message("openapi", "books")));
+            MappedLogQueue closed = new MappedLogQueue(tempDir.resolve("post-validation"), 1 << 20, false);
+            closed.close();
+
+            assertThatThrownBy(() -> validator.validateNext(input, closed, invalid, 10, 0))
+                    .hasMessageContaining("closed");
+
+            try (MappedLogQueue valid = new MappedLogQueue(tempDir.resolve("post-validation"), 1 << 20, false)) {
+                assertThat(validator.validateNext(input, valid, invalid, 10, 0)).isEqualTo(2);
+                assertThat(valid.poll("test", 10)).hasSize(1);
+            }
+        }
+    }
+
+    private ValidatorService validator(long reloadCheckMillis) {
+        ValidatorService service = new ValidatorService();
+        ReflectionTestUtils.setField(service, "rulesDirectory", tempDir.toString());
+        ReflectionTestUtils.setField(service, "reloadCheckMillis", reloadCheckMillis);
+        return service;
+    }
+
+    private byte[] message(String source, String path) throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("Name*", "listBooks");
+        row.put("Method*", "GET");
+        row.put("Path*", path);
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("source", source);
+        message.put("sheetName", "2. API Operations");
+        message.put("row", row);
+        return objectMapper.writeValueAsBytes(message);
+    }
+}
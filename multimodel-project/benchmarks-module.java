@@ -0,0 +1,775 @@
+// Benchmarks/BenchmarkRunner.java
+package com.example.dap.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line and
+ * writes the results as JSON to jmh-result-&lt;version&gt;.json by default, so
+ * runs from different releases can be compared file by file.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("jmh-result-" + (version != null ? version : "dev") + ".json"))
+                .build();
+        new Runner(options).run();
+    }
+}
+
+// Benchmarks/BenchmarkData.java
+package com.example.dap.benchmarks;
+
+import com.example.unified_json.service.ExcelToJsonConverter;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.hadoop.util.HadoopOutputFile;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Locates the sample inputs and generates the synthetic datasets.
+ * <p>
+ * Sample files are read from {@code benchmark.data.dir} (default "parquets")
+ * and {@code benchmark.excel.dir} (default "Unified-Json/src/main/resources").
+ * A dataset named {@code synthetic_<rows>}, e.g. synthetic_100k or
+ * synthetic_1m, is generated on first use with a fixed seed and cached under
+ * {@code benchmark.work.dir} (default: dap-benchmarks in the temp directory),
+ * so every fork and every release measures the same bytes. Synthetic zips
+ * are deflated unless the name ends in -stored.
+ */
+final class BenchmarkData {
+
+    static final String SYNTHETIC_PREFIX = "synthetic_";
+    static final String STORED_SUFFIX = "-stored";
+
+    private static final Schema SYNTHETIC_SCHEMA = SchemaBuilder.record("synthetic").fields()
+            .requiredLong("id")
+            .requiredString("name")
+            .requiredString("category")
+            .requiredDouble("score")
+            .requiredInt("quantity")
+            .requiredBoolean("active")
+            .name("created").type(LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG))).noDefault()
+            .optionalString("note")
+            .endRecord();
+
+    private static final String[] CATEGORIES = {"alpha", "beta", "gamma", "delta", "epsilon"};
+    private static final String[] SHEET_HEADERS = {"ID", "Name", "Category", "Score", "Active", "Created"};
+    private static final long BASE_TIME = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    private static final int WORKBOOK_SHEETS = 4;
+
+    private BenchmarkData() {
+    }
+
+    static File parquetDir() {
+        return new File(System.getProperty("benchmark.data.dir", "parquets"));
+    }
+
+    static File excelDir() {
+        return new File(System.getProperty("benchmark.excel.dir", "Unified-Json/src/main/resources"));
+    }
+
+    static File workDir() throws IOException {
+        File dir = new File(System.getProperty("benchmark.work.dir",
+                new File(System.getProperty("java.io.tmpdir"), "dap-benchmarks").getPath()));
+        Files.createDirectories(dir.toPath());
+        return dir;
+    }
+
+    static boolean isSynthetic(String dataset) {
+        return dataset.startsWith(SYNTHETIC_PREFIX);
+    }
+
+    /** Parses the row count of a synthetic dataset name: synthetic_10k, synthetic_1m, synthetic_5000. */
+    static int rows(String dataset) {
+        String size = dataset.substring(SYNTHETIC_PREFIX.length()).toLowerCase();
+        if (size.endsWith("m")) {
+            return Integer.parseInt(size.substring(0, size.length() - 1)) * 1_000_000;
+        }
+        if (size.endsWith("k")) {
+            return Integer.parseInt(size.substring(0, size.length() - 1)) * 1_000;
+        }
+        return Integer.parseInt(size);
+    }
+
+    static File parquet(String dataset) throws IOException {
+        return isSynthetic(dataset) ? syntheticParquet(rows(dataset)) : new File(parquetDir(), dataset + ".parquet");
+    }
+
+    static File zip(String archive) throws IOException {
+        if (!isSynthetic(archive)) {
+            return new File(parquetDir(), archive + ".zip");
+        }
+        boolean stored = archive.endsWith(STORED_SUFFIX);
+        String dataset = stored ? archive.substring(0, archive.length() - STORED_SUFFIX.length()) : archive;
+        return syntheticZip(rows(dataset), stored);
+    }
+
+    static File workbook(String name) throws IOException {
+        return isSynthetic(name) ? syntheticWorkbook(rows(name)) : new File(excelDir(), name + ".xlsx");
+    }
+
+    static File json(String name) throws Exception {
+        return isSynthetic(name) ? syntheticJson(rows(name)) : new File(excelDir(), name + ".json");
+    }
+
+    static synchronized File syntheticParquet(int rows) throws IOException {
+        File file = new File(workDir(), SYNTHETIC_PREFIX + rows + ".parquet");
+        if (file.exists()) {
+            return file;
+        }
+
+        File tmp = new File(workDir(), file.getName() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+        Random random = new Random(42);
+        Configuration conf = new Configuration();
+        // Several row groups, so the worker pool has more than one task per file
+        try (ParquetWriter<GenericRecord> writer = AvroParquetWriter
+                .<GenericRecord>builder(HadoopOutputFile.fromPath(new Path(tmp.getAbsolutePath()), conf))
+                .withSchema(SYNTHETIC_SCHEMA)
+                .withConf(conf)
+                .withCompressionCodec(CompressionCodecName.SNAPPY)
+                .withRowGroupSize(8L * 1024 * 1024)
+                .build()) {
+            for (int i = 0; i < rows; i++) {
+                GenericRecord record = new GenericData.Record(SYNTHETIC_SCHEMA);
+                record.put("id", (long) i);
+                record.put("name", "name-" + random.nextInt(rows));
+                record.put("category", CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                record.put("score", random.nextDouble() * 1000);
+                record.put("quantity", random.nextInt(10_000));
+                record.put("active", random.nextBoolean());
+                record.put("created", BASE_TIME + random.nextInt(365 * 86_400) * 1000L);
+                record.put("note", i % 3 == 0 ? null : "note " + Long.toHexString(random.nextLong()));
+                writer.write(record);
+            }
+        }
+        return moveIntoPlace(tmp, file);
+    }
+
+    static synchronized File syntheticZip(int rows, boolean stored) throws IOException {
+        File file = new File(workDir(), SYNTHETIC_PREFIX + rows + (stored ? STORED_SUFFIX : "") + ".zip");
+        if (file.exists()) {
+            return file;
+        }
+
+        File parquet = syntheticParquet(rows);
+        File tmp = new File(workDir(), file.getName() + ".tmp");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(tmp))) {
+            ZipEntry entry = new ZipEntry(parquet.getName());
+            if (stored) {
+                // Stored entries need their size and CRC up front
+                CRC32 crc = new CRC32();
+                try (InputStream in = new CheckedInputStream(new FileInputStream(parquet), crc)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(parquet.length());
+                entry.setCrc(crc.getValue());
+            }
+            zip.putNextEntry(entry);
+            Files.copy(parquet.toPath(), zip);
+            zip.closeEntry();
+        }
+        return moveIntoPlace(tmp, file);
+    }
+
+    /**
+     * A workbook laid out like the CDIP template: a header row, a description
+     * row and then the data, spread over a few sheets.
+     */
+    static synchronized File syntheticWorkbook(int rows) throws IOException {
+        File file = new File(workDir(), SYNTHETIC_PREFIX + rows + ".xlsx");
+        if (file.exists()) {
+            return file;
+        }
+
+        File tmp = new File(workDir(), file.getName() + ".tmp");
+        Random random = new Random(42);
+        // Closing the workbook also deletes the temporary files holding the flushed rows
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(1000); OutputStream out = new FileOutputStream(tmp)) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+            int perSheet = rows / WORKBOOK_SHEETS;
+            for (int s = 0; s < WORKBOOK_SHEETS; s++) {
+                Sheet sheet = workbook.createSheet("Sheet" + (s + 1));
+                Row header = sheet.createRow(0);
+                Row description = sheet.createRow(1);
+                for (int c = 0; c < SHEET_HEADERS.length; c++) {
+                    header.createCell(c).setCellValue(SHEET_HEADERS[c]);
+                    description.createCell(c).setCellValue(SHEET_HEADERS[c] + " of the record");
+                }
+
+                int sheetRows = s == WORKBOOK_SHEETS - 1 ? rows - perSheet * s : perSheet;
+                for (int r = 0; r < sheetRows; r++) {
+                    Row row = sheet.createRow(r + 2);
+                    row.createCell(0).setCellValue(s * perSheet + r);
+                    row.createCell(1).setCellValue("name-" + random.nextInt(rows));
+                    row.createCell(2).setCellValue(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                    row.createCell(3).setCellValue(random.nextDouble() * 1000);
+                    row.createCell(4).setCellValue(random.nextBoolean());
+                    Cell created = row.createCell(5);
+                    created.setCellValue(new Date(BASE_TIME + random.nextInt(365 * 86_400) * 1000L));
+                    created.setCellStyle(dateStyle);
+                }
+            }
+            workbook.write(out);
+        }
+        return moveIntoPlace(tmp, file);
+    }
+
+    /** The unified JSON the converter produces for the synthetic workbook of the same size. */
+    static synchronized File syntheticJson(int rows) throws Exception {
+        File file = new File(workDir(), SYNTHETIC_PREFIX + rows + ".json");
+        if (file.exists()) {
+            return file;
+        }
+
+        File tmp = new File(workDir(), file.getName() + ".tmp");
+        try (InputStream in = new FileInputStream(syntheticWorkbook(rows))) {
+            new ExcelToJsonConverter().convertExcelToJson(in, tmp.getPath());
+        }
+        return moveIntoPlace(tmp, file);
+    }
+
+    // Generated files only appear under their final name once complete
+    private static File moveIntoPlace(File tmp, File file) throws IOException {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+}
+
+// Benchmarks/RecordConverterBenchmark.java
+package com.example.dap.benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.processor.service.RecordJsonConverter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.avro.AvroReadSupport;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the schema-compiled {@link RecordJsonConverter} with the previous
+ * convertToMap + ObjectMapper path. One operation converts every record of the
+ * dataset (held in memory) to JSON written to a discarding stream.
+ * userdata is not included because the old path cannot serialize its INT96 column.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordConverterBenchmark {
+
+    @Param({"titanic", "gold_vs_bitcoin", "synthetic_100k"})
+    private String dataset;
+
+    private List<GenericRecord> records;
+    private ObjectWriter legacyWriter;
+    private RecordJsonConverter converter;
+    private JsonGenerator generator;
+
+    @Setup
+    public void setup() throws IOException {
+        File file = BenchmarkData.parquet(dataset);
+        Configuration conf = new Configuration();
+        conf.setBoolean(AvroReadSupport.READ_INT96_AS_FIXED, true);
+
+        records = new ArrayList<>();
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader
+                .<GenericRecord>builder(HadoopInputFile.fromPath(new Path(file.getAbsolutePath()), conf))
+                .withConf(conf)
+                .build()) {
+            GenericRecord record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        legacyWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        converter = RecordJsonConverter.compile(records.get(0).getSchema(), column -> true);
+        generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream(), JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        generator.close();
+    }
+
+    @Benchmark
+    public void legacyConvertToMap() throws IOException {
+        for (GenericRecord record : records) {
+            legacyWriter.writeValue(generator, convertToMap(record));
+        }
+        generator.flush();
+    }
+
+    @Benchmark
+    public void compiledConverter() throws IOException {
+        for (GenericRecord record : records) {
+            converter.write(generator, record);
+        }
+        generator.flush();
+    }
+
+    // The reflective conversion ParquetService used before the compiled converter
+    private static Map<String, Object> convertToMap(GenericRecord record) {
+        Map<String, Object> map = new HashMap<>();
+        record.getSchema().getFields().forEach(field -> {
+            String fieldName = field.name();
+            Object value = record.get(fieldName);
+
+            if (value instanceof GenericRecord) {
+                value = convertToMap((GenericRecord) value);
+            } else if (value instanceof List) {
+                List<Object> result = new ArrayList<>();
+                for (Object item : (List<?>) value) {
+                    result.add(item instanceof GenericRecord ? convertToMap((GenericRecord) item) : item);
+                }
+                value = result;
+            }
+
+            map.put(fieldName, value);
+        });
+        return map;
+    }
+}
+
+// Benchmarks/ParquetConversionBenchmark.java
+package com.example.dap.benchmarks;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.processor.service.OutputSinks;
+import com.processor.service.ParquetProcessingEngine;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end conversion as ParquetService runs it: footer planning, row-group
+ * tasks on the worker pool, record conversion and output assembly. One
+ * operation converts one file; the output's size is printed when a trial
+ * ends, to compare the formats by size as well as by time. columnar=false
+ * forces the Avro record path for formats that can be written from batches.
+ * iris is not included: its dotted column names are not valid Avro names,
+ * so the Avro read path cannot open it (it is still covered by the zip suite).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Arrow's memory allocator needs access to java.nio on Java 17
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-opens=java.base/java.nio=ALL-UNNAMED"})
+public class ParquetConversionBenchmark {
+
+    @Param({"titanic", "userdata", "gold_vs_bitcoin", "synthetic_1m"})
+    private String dataset;
+
+    @Param({"JSON", "NDJSON", "ARROW", "PARQUET"})
+    private OutputFormat format;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    @Param({"true", "false"})
+    private boolean columnar;
+
+    private ForkJoinPool workerPool;
+    private ParquetProcessingEngine engine;
+    private List<File> files;
+    private File outputDir;
+
+    @Setup
+    public void setup() throws IOException {
+        workerPool = new ForkJoinPool(parallelism);
+        engine = new ParquetProcessingEngine(workerPool, true, columnar, null, new OutputSinks());
+        files = Collections.singletonList(BenchmarkData.parquet(dataset));
+        outputDir = Files.createTempDirectory(BenchmarkData.workDir().toPath(), "conversion").toFile();
+    }
+
+    @TearDown
+    public void tearDown() {
+        workerPool.shutdown();
+        System.out.printf("%n%s as %s: %,d bytes in, %,d bytes out%n", dataset, format,
+                FileUtils.sizeOf(files.get(0)), FileUtils.sizeOf(outputDir));
+        FileUtils.deleteQuietly(outputDir);
+    }
+
+    @Benchmark
+    public long convert() throws IOException {
+        return engine.process(files, outputDir, format, ParquetQuery.ALL, (rowsDone, totalRows, fileName) -> { });
+    }
+}
+
+// Benchmarks/ExtractZipBenchmark.java
+package com.example.dap.benchmarks;
+
+import com.processor.model.ParquetSource;
+import com.processor.util.FileUtils;
+import com.processor.util.ZipArchive;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FileUtils#extractZip} on the sample archives and a synthetic one,
+ * against reading the same entries in place with {@link ZipArchive}. Both
+ * variants end with every parquet file readable: extracted to disk, or
+ * mapped (stored) / inflated (deflated) with its footer read.
+ * full-parquet holds all five sample files, iris included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractZipBenchmark {
+
+    @Param({"titanic-praq", "userdata-parq", "gold_vs_bitcoin-parq", "full-parquet", "synthetic_1m",
+            "synthetic_1m-stored"})
+    private String archive;
+
+    private final FileUtils fileUtils = new FileUtils();
+    private final Configuration conf = new Configuration();
+    private File zipFile;
+    private File extractDir;
+
+    @Setup
+    public void setup() throws IOException {
+        zipFile = BenchmarkData.zip(archive);
+    }
+
+    // Extraction takes milliseconds, so per-invocation cleanup does not skew the timing
+    @TearDown(Level.Invocation)
+    public void cleanUp() {
+        org.apache.commons.io.FileUtils.deleteQuietly(extractDir);
+    }
+
+    @Benchmark
+    public File extract() throws IOException {
+        extractDir = fileUtils.extractZip(zipFile);
+        return extractDir;
+    }
+
+    @Benchmark
+    public long readInPlace() throws IOException {
+        long rowGroups = 0;
+        try (ZipArchive archive = ZipArchive.open(zipFile)) {
+            for (ParquetSource source : archive.parquetSources()) {
+                try (ParquetFileReader reader = ParquetFileReader.open(source.newInputFile(conf))) {
+                    rowGroups += reader.getRowGroups().size();
+                }
+            }
+        }
+        return rowGroups;
+    }
+}
+
+// Benchmarks/ExcelToJsonBenchmark.java
+package com.example.dap.benchmarks;
+
+import com.example.unified_json.service.ExcelToJsonConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExcelToJsonConverter#convertExcelToJson} from a workbook held in
+ * memory, as the controller receives it, to a JSON file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExcelToJsonBenchmark {
+
+    @Param({"CDIP-excel-template", "synthetic_10k", "synthetic_100k"})
+    private String workbook;
+
+    private final ExcelToJsonConverter converter = new ExcelToJsonConverter();
+    private byte[] workbookBytes;
+    private File outputFile;
+
+    @Setup
+    public void setup() throws IOException {
+        workbookBytes = Files.readAllBytes(BenchmarkData.workbook(workbook).toPath());
+        outputFile = File.createTempFile("excel-to-json", ".json", BenchmarkData.workDir());
+    }
+
+    @TearDown
+    public void tearDown() {
+        outputFile.delete();
+    }
+
+    @Benchmark
+    public void convert() throws Exception {
+        converter.convertExcelToJson(new ByteArrayInputStream(workbookBytes), outputFile.getPath());
+    }
+}
+
+// Benchmarks/JsonToExcelBenchmark.java
+package com.example.dap.benchmarks;
+
+import com.example.unified_json.service.JsonToExcelService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JsonToExcelService#convertJsonToExcel} from a unified JSON file to a
+ * workbook file. The synthetic inputs are the converter's own output for the
+ * synthetic workbooks of the same size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JsonToExcelBenchmark {
+
+    @Param({"output", "synthetic_10k", "synthetic_100k"})
+    private String json;
+
+    private final JsonToExcelService service = new JsonToExcelService();
+    private File inputFile;
+    private File outputFile;
+
+    @Setup
+    public void setup() throws Exception {
+        inputFile = BenchmarkData.json(json);
+        outputFile = File.createTempFile("json-to-excel", ".xlsx", BenchmarkData.workDir());
+    }
+
+    @TearDown
+    public void tearDown() {
+        outputFile.delete();
+    }
+
+    @Benchmark
+    public void convert() throws Exception {
+        service.convertJsonToExcel(inputFile.getPath(), outputFile.getPath());
+    }
+}
+
+// Benchmarks/MessageQueueBenchmark.java
+package com.example.dap.benchmarks;
+
+import com.example.unified_json.queue.MappedLogQueue;
+import com.example.unified_json.queue.QueueMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link MappedLogQueue} sending batches of unified-template rows and a
+ * consumer polling and acknowledging them, flushed as the queue's scheduled
+ * flusher would between iterations. Scores are messages per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MessageQueueBenchmark {
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private Path directory;
+    private MappedLogQueue queue;
+    private List<byte[]> batch;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory(BenchmarkData.workDir().toPath(), "queue");
+        queue = new MappedLogQueue(directory, 64 * 1024 * 1024, false);
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(("{\"sheetName\":\"1. Reference Data Assets\",\"row\":{\"Asset Name\":\"Country " + i
+                    + "\",\"Asset Type\":\"Code Set\",\"Domain\":\"Reference Data\",\"Status\":\"Candidate\","
+                    + "\"Description\":\"ISO 3166 country codes\"}}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        queue.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        queue.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public long sendPollAck() throws IOException {
+        long last = 0;
+        for (int sent = 0; sent < 100; sent += batchSize) {
+            queue.send(batch);
+            List<QueueMessage> messages = queue.poll("validator", batchSize);
+            last = messages.get(messages.size() - 1).getOffset();
+            queue.ack("validator", last);
+        }
+        return last;
+    }
+}
+
+// Benchmarks/ValidatorBenchmark.java
+package com.example.dap.benchmarks;
+
+import com.example.unified_json.validation.ValidatorService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.DirectFieldAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ValidatorService#validate} over a batch of API operation rows
+ * against the shipped default rules, one row in ten failing. Scores are
+ * messages per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ValidatorBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    @Param({"1", "4"})
+    private int threads;
+
+    private ValidatorService validator;
+    private List<byte[]> messages;
+
+    @Setup
+    public void setup() {
+        validator = new ValidatorService();
+        // The fields Spring would set from the properties
+        DirectFieldAccessor fields = new DirectFieldAccessor(validator);
+        fields.setPropertyValue("rulesDirectory",
+                System.getProperty("benchmark.excel.dir", "Unified-Json/src/main/resources") + "/rules");
+        fields.setPropertyValue("threads", threads);
+        messages = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            messages.add(("{\"source\":\"openapi\",\"sheetName\":\"2. API Operations\",\"row\":{\"Name*\":\"getBook" + i
+                    + "\",\"API*\":\"Library API\",\"Path*\":\"" + (i % 10 == 0 ? "" : "/") + "books/" + i
+                    + "\",\"Method*\":\"GET\",\"Operation Id\":\"getBook" + i + "\",\"Summary\":\"Finds a book\","
+                    + "\"Description\":\"Returns the book with the given id\"}}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        validator.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int validate() {
+        return validator.validate(messages).size();
+    }
+}
@@ -3,10 +3,8 @@ package com.processor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
 
 @SpringBootApplication
-@EnableAsync
 public class ParquetProcessorApplication {
     public static void main(String[] args) {
         SpringApplication.run(ParquetProcessorApplication.class, args);
@@ -16,22 +14,49 @@ public class ParquetProcessorApplication {
 // Config/AsyncConfig.java
 package com.processor.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
+@Slf4j
 public class AsyncConfig {
-    @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(4);
-        executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("ParquetThread-");
-        executor.initialize();
-        return executor;
+    // Row-group conversion workers; 0 means one per available core
+    @Value("${app.processing.parallelism:0}")
+    private int parallelism;
+
+    // Job drivers mostly wait on downloads and conversions; needs Java 21, otherwise platform threads are used
+    @Value("${app.jobs.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    // Runs job drivers; how many run at once is limited by the JobScheduler, not by this executor
+    @Bean(name = "jobExecutor", destroyMethod = "shutdown")
+    public ExecutorService jobExecutor() {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads are not available on Java {}, using platform threads",
+                        Runtime.version().feature());
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ParquetJob-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean(name = "parquetWorkerPool", destroyMethod = "shutdown")
+    public ForkJoinPool parquetWorkerPool() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads);
     }
 }
 
@@ -84,6 +109,11 @@ public class ProcessingResponse {
     private String status;
     private String message;
     private Double progress;
+    // Counters behind the progress value; null when a job has no download or has not started converting
+    private Long bytesDone;
+    private Long bytesTotal;
+    private Long rowsDone;
+    private Long rowsTotal;
     
     public ProcessingResponse(String jobId, String message) {
         this.jobId = jobId;
@@ -306,3 +336,32 @@ server.port=8080
 spring.servlet.multipart.max-file-size=100MB
 spring.servlet.multipart.max-request-size=100MB
 logging.level.com.processor=DEBUG
+app.output.format=JSON
+app.processing.parallelism=0
+app.processing.ordered-output=true
+app.processing.columnar=true
+app.zip.read-in-place=true
+app.zip.max-buffered-bytes=536870912
+app.download.pipelined=true
+app.download.connections=4
+app.download.chunk-size=8388608
+app.download.concurrent-entries=2
+app.cache.directory=cache
+app.cache.max-bytes=10737418240
+app.output.parquet.codec=SNAPPY
+app.output.parquet.row-group-size=134217728
+app.output.arrow.batch-size=65536
+app.jobs.concurrency=4
+app.jobs.queue-capacity=100
+app.jobs.tenant-concurrency=2
+app.jobs.tenant-queue-capacity=20
+app.jobs.virtual-threads=false
+app.jobs.status-store=jobs.db
+app.jobs.status-ttl-hours=168
+app.watch.manifest=watch-manifest.db
+app.watch.quiet-period-ms=2000
+app.watch.max-batch-delay-ms=30000
+app.watch.poll-interval-ms=30000
+app.watch.use-watch-service=true
+app.jobs.status-cache-size=10000
+management.endpoints.web.exposure.include=health,metrics
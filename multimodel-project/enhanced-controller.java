@@ -1,24 +1,46 @@
 package com.processor.controller;
 
+import com.processor.model.JobPriority;
+import com.processor.model.ParquetQuery;
 import com.processor.model.ProcessingResponse;
+import com.processor.service.JobRejectedException;
 import com.processor.service.ParquetService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.File;
 import java.io.IOException;
 
 @RestController
 @RequestMapping("/api/parquet")
 public class ParquetController {
+    // Jobs without the header share the default tenant's limits
+    private static final String TENANT_HEADER = "X-Tenant-Id";
+
     @Autowired
     private ParquetService parquetService;
     
     @PostMapping("/process/url")
     public ResponseEntity<ProcessingResponse> processParquetFromUrl(
-            @RequestParam("url") String fileUrl) {
+            @RequestParam("url") String fileUrl,
+            @RequestParam(value = "columns", required = false) String columns,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "priority", defaultValue = "NORMAL") JobPriority priority,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenant) {
         try {
-            String jobId = parquetService.processParquetFromUrl(fileUrl);
+            String jobId = parquetService.processParquetFromUrl(fileUrl, ParquetQuery.parse(columns, filter),
+                    tenant, priority);
             return ResponseEntity.ok(new ProcessingResponse(jobId, "Processing Started"));
+        } catch (JobRejectedException e) {
+            return tooManyRequests(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(new ProcessingResponse(null, "Invalid request: " + e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                 .body(new ProcessingResponse(null, "Error: " + e.getMessage()));
@@ -27,16 +49,97 @@ public class ParquetController {
     
     @PostMapping("/process/directory")
     public ResponseEntity<ProcessingResponse> processParquetFromDirectory(
-            @RequestParam("path") String directoryPath) {
+            @RequestParam("path") String directoryPath,
+            @RequestParam(value = "columns", required = false) String columns,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "priority", defaultValue = "NORMAL") JobPriority priority,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenant) {
         try {
-            String jobId = parquetService.processParquetFromDirectory(directoryPath);
+            String jobId = parquetService.processParquetFromDirectory(directoryPath,
+                    ParquetQuery.parse(columns, filter), tenant, priority);
             return ResponseEntity.ok(new ProcessingResponse(jobId, "Processing Started"));
+        } catch (JobRejectedException e) {
+            return tooManyRequests(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(new ProcessingResponse(null, "Invalid request: " + e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                 .body(new ProcessingResponse(null, "Error: " + e.getMessage()));
         }
     }
     
+    @PostMapping("/watch/directory")
+    public ResponseEntity<ProcessingResponse> watchDirectory(
+            @RequestParam("path") String directoryPath,
+            @RequestParam(value = "columns", required = false) String columns,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "priority", defaultValue = "NORMAL") JobPriority priority,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenant) {
+        try {
+            String watchId = parquetService.watchDirectory(directoryPath, ParquetQuery.parse(columns, filter),
+                    tenant, priority);
+            return ResponseEntity.ok(new ProcessingResponse(watchId, "Watching"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(new ProcessingResponse(null, "Invalid request: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500)
+                .body(new ProcessingResponse(null, "Error: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/watch/{watchId}")
+    public ResponseEntity<ProcessingResponse> unwatchDirectory(@PathVariable String watchId) {
+        if (!parquetService.unwatchDirectory(watchId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new ProcessingResponse(watchId, "Stopped"));
+    }
+
+    // Column statistics without converting any rows; row filters do not apply to profiles
+    @PostMapping("/profile/directory")
+    public ResponseEntity<ProcessingResponse> profileParquetFromDirectory(
+            @RequestParam("path") String directoryPath,
+            @RequestParam(value = "columns", required = false) String columns,
+            @RequestParam(value = "sketches", defaultValue = "true") boolean sketches,
+            @RequestParam(value = "priority", defaultValue = "NORMAL") JobPriority priority,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenant) {
+        try {
+            String jobId = parquetService.profileParquetFromDirectory(directoryPath,
+                    ParquetQuery.parse(columns, null), sketches, tenant, priority);
+            return ResponseEntity.ok(new ProcessingResponse(jobId, "Profiling Started"));
+        } catch (JobRejectedException e) {
+            return tooManyRequests(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(new ProcessingResponse(null, "Invalid request: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500)
+                .body(new ProcessingResponse(null, "Error: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/profile/{jobId}")
+    public ResponseEntity<Resource> getProfile(@PathVariable String jobId) {
+        File profile;
+        try {
+            profile = parquetService.getProfile(jobId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (profile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(new FileSystemResource(profile));
+    }
+
+    private static ResponseEntity<ProcessingResponse> tooManyRequests(JobRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(new ProcessingResponse(null, "Rejected: " + e.getMessage()));
+    }
+
     @GetMapping("/status/{jobId}")
     public ResponseEntity<ProcessingResponse> getStatus(@PathVariable String jobId) {
         return ResponseEntity.ok(parquetService.getStatus(jobId));
@@ -2,60 +2,184 @@
 package com.processor.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.processor.model.JobPriority;
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetProfile;
+import com.processor.model.ParquetQuery;
+import com.processor.model.ParquetSource;
 import com.processor.model.ProcessingResponse;
 import com.processor.util.FileProcessingUtils;
+import com.processor.util.ZipArchive;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.Path;
-import org.apache.parquet.avro.AvroParquetReader;
-import org.apache.avro.generic.GenericRecord;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.schema.MessageType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class ParquetService {
     @Autowired
     private FileProcessingUtils fileProcessingUtils;
-    
+
+    @Autowired
+    private ParquetProcessingEngine processingEngine;
+
+    @Autowired
+    private ZipDownloadPipeline downloadPipeline;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Autowired
+    private JobRegistry jobRegistry;
+
+    @Autowired
+    private DirectoryWatcher directoryWatcher;
+
+    @Autowired
+    private ParquetProfiler parquetProfiler;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, ProcessingResponse> jobStatus = new ConcurrentHashMap<>();
     
     @Value("${app.output.directory:output}")
     private String outputDirectory;
 
-    // Method to process files from URL
-    @Async
-    public String processParquetFromUrl(String fileUrl) throws IOException {
+    @Value("${app.output.format:JSON}")
+    private OutputFormat outputFormat;
+
+    @Value("${app.download.pipelined:true}")
+    private boolean pipelinedDownload;
+
+    @Value("${app.zip.read-in-place:true}")
+    private boolean readZipInPlace;
+
+    // Deflated entries are inflated into memory when read in place; beyond this the zip is extracted
+    @Value("${app.zip.max-buffered-bytes:536870912}")
+    private long maxBufferedZipBytes;
+
+    @FunctionalInterface
+    private interface Job {
+        void run(String jobId) throws Exception;
+    }
+
+    // Queues a job and returns its id; the scheduler rejects it with JobRejectedException when full
+    private String submit(String tenant, JobPriority priority, String startMessage, Job job) {
         String jobId = UUID.randomUUID().toString();
-        jobStatus.put(jobId, new ProcessingResponse(jobId, "Started URL Processing"));
-        
+        jobRegistry.register(jobId, "Queued");
         try {
+            jobScheduler.submit(jobId, tenant, priority, () -> {
+                updateStatus(jobId, startMessage, 0.0);
+                try {
+                    job.run(jobId);
+                } catch (Exception e) {
+                    // Already recorded in the job status
+                    log.debug("Job {} failed", jobId, e);
+                }
+            });
+        } catch (JobRejectedException e) {
+            jobRegistry.remove(jobId);
+            throw e;
+        }
+        return jobId;
+    }
+
+    // Method to process files from URL
+    public String processParquetFromUrl(String fileUrl, ParquetQuery query, String tenant, JobPriority priority) {
+        return submit(tenant, priority, "Started URL Processing", jobId -> processUrl(fileUrl, jobId, query));
+    }
+
+    // Method to process files from local directory
+    public String processParquetFromDirectory(String directoryPath, ParquetQuery query, String tenant,
+                                              JobPriority priority) {
+        validateQuery(directoryPath, query);
+        return submit(tenant, priority, "Started Directory Processing",
+                jobId -> processDirectory(directoryPath, jobId, query));
+    }
+
+    // Converts the parquet files already in the directory, then new and changed ones as they arrive
+    public String watchDirectory(String directoryPath, ParquetQuery query, String tenant,
+                                 JobPriority priority) throws IOException {
+        File directory = new File(directoryPath);
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Invalid directory path: " + directoryPath);
+        }
+        validateQuery(directoryPath, query);
+        String settings = outputFormat + "\n" + query.canonical();
+        // The watcher reports files under the real path, which outputs are named relative to
+        File root = directory.toPath().toRealPath().toFile();
+        return directoryWatcher.watch(directory.toPath(), settings, (watchId, files) ->
+                submit(tenant, priority, "Started Watch Batch",
+                        jobId -> processWatchBatch(watchId, root, files, jobId, query)));
+    }
+
+    public boolean unwatchDirectory(String watchId) {
+        return directoryWatcher.unwatch(watchId);
+    }
+
+    // Profiles the directory's parquet files as one dataset; the profile is kept as JSON next to the outputs
+    public String profileParquetFromDirectory(String directoryPath, ParquetQuery query, boolean sketches,
+                                              String tenant, JobPriority priority) {
+        validateQuery(directoryPath, query);
+        return submit(tenant, priority, "Started Profiling",
+                jobId -> profileDirectory(directoryPath, jobId, query, sketches));
+    }
+
+    // Checks the query against the footers of the directory's files, so that a bad query is refused with
+    // the request rather than failing the job; files whose footers cannot be read are left to the job
+    private void validateQuery(String directoryPath, ParquetQuery query) {
+        File directory = new File(directoryPath);
+        if (query.getColumns().isEmpty() && query.getFilter() == null || !directory.isDirectory()) {
+            return;
+        }
+        Configuration conf = new Configuration();
+        for (File file : fileProcessingUtils.findParquetFiles(directory)) {
+            MessageType schema;
+            try (ParquetFileReader reader = ParquetFileReader.open(ParquetSource.of(file).newInputFile(conf))) {
+                schema = reader.getFooter().getFileMetaData().getSchema();
+            } catch (IOException | RuntimeException e) {
+                continue;
+            }
+            query.validate(schema);
+        }
+    }
+
+    // The profile written by a profiling job, or null while there is none
+    public File getProfile(String jobId) {
+        File profile = profileFile(UUID.fromString(jobId).toString());
+        return profile.isFile() ? profile : null;
+    }
+
+    private String processUrl(String fileUrl, String jobId, ParquetQuery query) throws IOException {
+        try {
+            if (pipelinedDownload) {
+                return processUrlPipelined(fileUrl, jobId, query);
+            }
+
             // Download and process the zip file
             updateStatus(jobId, "Downloading from URL", 0.2);
             File zipFile = fileProcessingUtils.downloadFile(fileUrl);
-            return processDownloadedFile(zipFile, jobId);
+            return processDownloadedFile(zipFile, jobId, query);
         } catch (Exception e) {
             handleProcessingError(jobId, e);
             throw e;
         }
     }
 
-    // Method to process files from local directory
-    @Async
-    public String processParquetFromDirectory(String directoryPath) throws IOException {
-        String jobId = UUID.randomUUID().toString();
-        jobStatus.put(jobId, new ProcessingResponse(jobId, "Started Directory Processing"));
-        
+    private String processDirectory(String directoryPath, String jobId, ParquetQuery query) throws IOException {
         try {
             File directory = new File(directoryPath);
             if (!directory.exists() || !directory.isDirectory()) {
@@ -70,7 +194,7 @@ public class ParquetService {
                 return jobId;
             }
 
-            processParquetFiles(parquetFiles, jobId);
+            processParquetFiles(parquetFiles, directory, jobId, query);
             updateStatus(jobId, "Completed", 1.0);
             return jobId;
             
@@ -80,9 +204,110 @@ public class ParquetService {
         }
     }
 
+    private void processWatchBatch(String watchId, File root, List<DirectoryWatcher.FileState> files, String jobId,
+                                   ParquetQuery query) throws IOException {
+        try {
+            updateStatus(jobId, "Processing Parquet Files", 0.4);
+            // Outputs mirror the files' paths under the watched directory, so same-named files do not collide
+            Map<DirectoryWatcher.FileState, ParquetSource> sources = new LinkedHashMap<>();
+            files.forEach(file -> sources.put(file, ParquetSource.of(file.getFile(), root)));
+            ParquetProcessingEngine.Result result =
+                    processParquetSources(new ArrayList<>(sources.values()), jobId, query);
+
+            // A file that failed has no fresh output; it is batched again when it changes or is rescanned
+            List<DirectoryWatcher.FileState> converted = files.stream()
+                    .filter(file -> result.isConverted(sources.get(file).getName()))
+                    .collect(Collectors.toList());
+            directoryWatcher.markProcessed(watchId, converted);
+            updateStatus(jobId, "Completed", 1.0);
+        } catch (Exception e) {
+            handleProcessingError(jobId, e);
+            throw e;
+        }
+    }
+
+    private void profileDirectory(String directoryPath, String jobId, ParquetQuery query, boolean sketches)
+            throws IOException {
+        try {
+            File directory = new File(directoryPath);
+            if (!directory.exists() || !directory.isDirectory()) {
+                throw new IOException("Invalid directory path: " + directoryPath);
+            }
+
+            updateStatus(jobId, "Scanning Directory", 0.2);
+            List<File> parquetFiles = fileProcessingUtils.findParquetFiles(directory);
+            if (parquetFiles.isEmpty()) {
+                updateStatus(jobId, "No parquet files found", -1.0);
+                return;
+            }
+
+            updateStatus(jobId, "Profiling", 0.4);
+            ParquetProfile profile = parquetProfiler.profile(
+                    parquetFiles.stream().map(ParquetSource::of).collect(Collectors.toList()), query, sketches);
+            writeProfile(jobId, profile);
+            log.info("Job {}: profiled {} rows in {} files, {} of {} row groups read", jobId, profile.getRows(),
+                    profile.getFiles(), profile.getRowGroupsScanned(), profile.getRowGroups());
+            updateStatus(jobId, "Completed", 1.0);
+        } catch (Exception e) {
+            handleProcessingError(jobId, e);
+            throw e;
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a profile that is found is always complete
+    private void writeProfile(String jobId, ParquetProfile profile) throws IOException {
+        Path temp = Files.createTempFile(outputDir().toPath(), jobId, ".profile.tmp");
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), profile);
+            Files.move(temp, profileFile(jobId).toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private File profileFile(String jobId) {
+        return new File(outputDir(), jobId + ".profile.json");
+    }
+
+    // Downloads the zip and converts each entry as soon as its bytes have arrived, unless its entries are too
+    // large to read in place, in which case it is extracted once downloaded
+    private String processUrlPipelined(String fileUrl, String jobId, ParquetQuery query) throws IOException {
+        updateStatus(jobId, "Downloading and processing", 0.0);
+        File zipFile = File.createTempFile("download", ".zip");
+        try {
+            ZipDownloadPipeline.Result result = downloadPipeline.run(URI.create(fileUrl), zipFile, outputDir(),
+                    outputFormat, query, (bytesDone, bytesTotal, rowsDone, rowsTotal) ->
+                            jobRegistry.updateCounters(jobId, "Downloading and processing", null,
+                                    0.45 * fraction(bytesDone, bytesTotal) + 0.45 * fraction(rowsDone, rowsTotal),
+                                    bytesDone, bytesTotal, rowsDone, rowsTotal));
+            if (result.isExtractionRequired()) {
+                // Too large to read in place; the download is complete, so it is converted like any other
+                return processDownloadedFile(zipFile, jobId, query);
+            }
+            if (result.getFiles() == 0) {
+                updateStatus(jobId, "No parquet files found in zip", -1.0);
+                return jobId;
+            }
+            log.info("Job {}: converted {} records from {} files", jobId, result.getRecords(), result.getFiles());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing " + fileUrl);
+        } finally {
+            Files.deleteIfExists(zipFile.toPath());
+        }
+
+        updateStatus(jobId, "Completed", 1.0);
+        return jobId;
+    }
+
     // Helper method to process downloaded zip file
-    private String processDownloadedFile(File zipFile, String jobId) throws IOException {
+    private String processDownloadedFile(File zipFile, String jobId, ParquetQuery query) throws IOException {
         try {
+            if (readZipInPlace && processZipInPlace(zipFile, jobId, query)) {
+                return jobId;
+            }
+
             // Extract the zip file
             updateStatus(jobId, "Extracting Files", 0.4);
             File extractedDir = fileProcessingUtils.extractZip(zipFile);
@@ -96,7 +321,7 @@ public class ParquetService {
                 return jobId;
             }
 
-            processParquetFiles(parquetFiles, jobId);
+            processParquetFiles(parquetFiles, extractedDir, jobId, query);
             
             // Cleanup temporary files
             updateStatus(jobId, "Cleaning up", 0.8);
@@ -111,115 +336,81 @@ public class ParquetService {
         }
     }
 
-    // Core method to process parquet files
-    private void processParquetFiles(List<File> parquetFiles, String jobId) throws IOException {
-        // Create output directory if it doesn't exist
-        File outputDir = new File(outputDirectory);
-        if (!outputDir.exists()) {
-            outputDir.mkdirs();
-        }
+    // Converts the zip's parquet entries without extracting them; false if the zip has to be extracted instead
+    private boolean processZipInPlace(File zipFile, String jobId, ParquetQuery query) throws IOException {
+        updateStatus(jobId, "Reading Zip Directory", 0.4);
+        boolean found;
+        try (ZipArchive archive = ZipArchive.open(zipFile)) {
+            ZipArchive.Entry tooLarge = archive.firstEntryTooLargeInPlace(maxBufferedZipBytes);
+            if (tooLarge != null) {
+                log.info("Job {}: {} is too large to read in place, extracting", jobId, tooLarge.getName());
+                return false;
+            }
 
-        double progressIncrement = 0.4 / parquetFiles.size();
-        double currentProgress = 0.4; // Starting from 40% progress
-
-        for (File parquetFile : parquetFiles) {
-            try {
-                processParquetFile(parquetFile, jobId, outputDir);
-                currentProgress += progressIncrement;
-                updateStatus(jobId, "Processing file: " + parquetFile.getName(), currentProgress);
-            } catch (Exception e) {
-                log.error("Error processing file {}: {}", parquetFile.getName(), e.getMessage());
-                // Continue processing other files even if one fails
+            List<ParquetSource> sources = archive.parquetSources();
+            found = !sources.isEmpty();
+            if (found) {
+                updateStatus(jobId, "Processing Parquet Files", 0.4);
+                processParquetSources(sources, jobId, query);
             }
         }
-    }
 
-    // Process individual parquet file
-    private void processParquetFile(File parquetFile, String jobId, File outputDir) throws IOException {
-        Configuration conf = new Configuration();
-        Path path = new Path(parquetFile.getAbsolutePath());
-        
-        try (ParquetReader<GenericRecord> reader = AvroParquetReader
-                .<GenericRecord>builder(path)
-                .withConf(conf)
-                .build()) {
-            
-            List<Map<String, Object>> records = new ArrayList<>();
-            GenericRecord record;
-            
-            while ((record = reader.read()) != null) {
-                Map<String, Object> recordMap = convertToMap(record);
-                records.add(recordMap);
-            }
-            
-            // Generate output filename
-            String jsonFileName = parquetFile.getName().replace(".parquet", ".json");
-            File outputFile = new File(outputDir, jsonFileName);
-            
-            // Write JSON with pretty printing
-            objectMapper.writerWithDefaultPrettyPrinter()
-                       .writeValue(outputFile, records);
-            
-            log.info("Successfully processed file: {} to {}", 
-                    parquetFile.getName(), outputFile.getPath());
+        // Nothing was extracted, so the download is all there is to clean up
+        Files.deleteIfExists(zipFile.toPath());
+        if (found) {
+            updateStatus(jobId, "Completed", 1.0);
+        } else {
+            updateStatus(jobId, "No parquet files found in zip", -1.0);
         }
+        return true;
     }
 
-    // Convert GenericRecord to Map
-    private Map<String, Object> convertToMap(GenericRecord record) {
-        Map<String, Object> map = new HashMap<>();
-        record.getSchema().getFields().forEach(field -> {
-            String fieldName = field.name();
-            Object value = record.get(fieldName);
-            
-            // Handle nested records
-            if (value instanceof GenericRecord) {
-                value = convertToMap((GenericRecord) value);
-            } else if (value instanceof List) {
-                value = handleListValues((List<?>) value);
-            }
-            
-            map.put(fieldName, value);
-        });
-        return map;
-    }
-
-    // Handle list values in records
-    private List<Object> handleListValues(List<?> list) {
-        List<Object> result = new ArrayList<>();
-        for (Object item : list) {
-            if (item instanceof GenericRecord) {
-                result.add(convertToMap((GenericRecord) item));
-            } else {
-                result.add(item);
-            }
-        }
+    // Outputs mirror the files' paths under root, or are named after the files alone without one
+    private void processParquetFiles(List<File> parquetFiles, File root, String jobId, ParquetQuery query)
+            throws IOException {
+        processParquetSources(parquetFiles.stream().map(file -> ParquetSource.of(file, root))
+                .collect(Collectors.toList()), jobId, query);
+    }
+
+    // Core method to process parquet files
+    private ParquetProcessingEngine.Result processParquetSources(List<ParquetSource> sources, String jobId,
+                                                                 ParquetQuery query) throws IOException {
+        // Files and their row groups are converted in parallel; progress covers 40% to 80%
+        ParquetProcessingEngine.Result result = processingEngine.processSources(sources, outputDir(), outputFormat,
+                query, (rowsDone, totalRows, fileName) -> jobRegistry.updateCounters(jobId, "Processing file",
+                        fileName, 0.4 + 0.4 * fraction(rowsDone, totalRows), -1, -1, rowsDone, totalRows));
+        log.info("Job {}: converted {} records from {} files", jobId, result.getRecords(), sources.size());
         return result;
     }
 
+    // Create output directory if it doesn't exist
+    private File outputDir() {
+        File outputDir = new File(outputDirectory);
+        if (!outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+        return outputDir;
+    }
+
+    private static double fraction(long done, long total) {
+        return total > 0 ? Math.min(1.0, (double) done / total) : 0.0;
+    }
+
     // Error handling helper method
     private void handleProcessingError(String jobId, Exception e) {
         log.error("Processing error for job {}: {}", jobId, e.getMessage());
         updateStatus(jobId, "Failed: " + e.getMessage(), -1.0);
     }
 
-    // Status update helper method
+    // Status update helper method; byte and row counters carry over from the previous status
     private void updateStatus(String jobId, String message, Double progress) {
-        ProcessingResponse response = new ProcessingResponse(jobId, "PROCESSING");
-        response.setMessage(message);
-        response.setProgress(progress);
-        if (progress >= 1.0) {
-            response.setStatus("COMPLETED");
-        } else if (progress < 0) {
-            response.setStatus("FAILED");
-        }
-        jobStatus.put(jobId, response);
+        jobRegistry.update(jobId, message, progress);
         log.info("Job {}: {}", jobId, message);
     }
 
     // Get processing status
     public ProcessingResponse getStatus(String jobId) {
-        return jobStatus.getOrDefault(jobId, 
-            new ProcessingResponse(jobId, "Job not found"));
+        ProcessingResponse status = jobRegistry.get(jobId);
+        return status != null ? status : new ProcessingResponse(jobId, "Job not found");
     }
 }
@@ -0,0 +1,596 @@
+// Service/ColumnarBatch.java
+package com.processor.service;
+
+import org.apache.parquet.column.Dictionary;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.PrimitiveConverter;
+import org.apache.parquet.schema.PrimitiveType;
+
+import java.util.List;
+
+/**
+ * Rows of a flat parquet file held column by column in primitive arrays.
+ * The arrays are allocated once and refilled for every batch, so reading a
+ * batch allocates nothing for numbers, booleans and dictionary-encoded
+ * strings.
+ */
+public final class ColumnarBatch {
+
+    private final Column[] columns;
+    private int rowCount;
+
+    ColumnarBatch(List<PrimitiveType> types, int capacity) {
+        this.columns = new Column[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(types.get(i), capacity);
+        }
+    }
+
+    public Column[] getColumns() {
+        return columns;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    void reset() {
+        rowCount = 0;
+        for (Column column : columns) {
+            column.size = 0;
+        }
+    }
+
+    void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * One column's values for the rows of a batch. Only the array for the
+     * column's physical type is allocated. Binary values are either an id
+     * into the column chunk's dictionary or, on pages that are not
+     * dictionary encoded, the value itself.
+     */
+    public static final class Column extends PrimitiveConverter {
+        private final PrimitiveType type;
+        private final boolean[] nulls;
+        private boolean[] booleans;
+        private int[] ints;
+        private long[] longs;
+        private float[] floats;
+        private double[] doubles;
+        private Binary[] binaries;
+        private int[] dictionaryIds;
+        private byte[][] dictionary;
+        private int size;
+
+        private Column(PrimitiveType type, int capacity) {
+            this.type = type;
+            this.nulls = new boolean[capacity];
+            switch (type.getPrimitiveTypeName()) {
+                case BOOLEAN:
+                    booleans = new boolean[capacity];
+                    break;
+                case INT32:
+                    ints = new int[capacity];
+                    break;
+                case INT64:
+                    longs = new long[capacity];
+                    break;
+                case FLOAT:
+                    floats = new float[capacity];
+                    break;
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                default:
+                    binaries = new Binary[capacity];
+                    dictionaryIds = new int[capacity];
+            }
+        }
+
+        public PrimitiveType getType() {
+            return type;
+        }
+
+        public boolean isNull(int row) {
+            return nulls[row];
+        }
+
+        public boolean getBoolean(int row) {
+            return booleans[row];
+        }
+
+        public int getInt(int row) {
+            return ints[row];
+        }
+
+        public long getLong(int row) {
+            return longs[row];
+        }
+
+        public float getFloat(int row) {
+            return floats[row];
+        }
+
+        public double getDouble(int row) {
+            return doubles[row];
+        }
+
+        /** The value's bytes; the array must not be modified. */
+        public byte[] getBytes(int row) {
+            int id = dictionaryIds[row];
+            return id >= 0 ? dictionary[id] : binaries[row].getBytesUnsafe();
+        }
+
+        void addNull() {
+            nulls[size++] = true;
+        }
+
+        @Override
+        public boolean hasDictionarySupport() {
+            return binaries != null;
+        }
+
+        // Decoded once per column chunk, so dictionary-encoded values are written without copying
+        @Override
+        public void setDictionary(Dictionary dictionary) {
+            this.dictionary = new byte[dictionary.getMaxId() + 1][];
+            for (int id = 0; id < this.dictionary.length; id++) {
+                this.dictionary[id] = dictionary.decodeToBinary(id).getBytes();
+            }
+        }
+
+        @Override
+        public void addValueFromDictionary(int dictionaryId) {
+            dictionaryIds[size] = dictionaryId;
+            binaries[size] = null;
+            nulls[size++] = false;
+        }
+
+        @Override
+        public void addBinary(Binary value) {
+            dictionaryIds[size] = -1;
+            binaries[size] = value;
+            nulls[size++] = false;
+        }
+
+        @Override
+        public void addBoolean(boolean value) {
+            booleans[size] = value;
+            nulls[size++] = false;
+        }
+
+        @Override
+        public void addInt(int value) {
+            ints[size] = value;
+            nulls[size++] = false;
+        }
+
+        @Override
+        public void addLong(long value) {
+            longs[size] = value;
+            nulls[size++] = false;
+        }
+
+        @Override
+        public void addFloat(float value) {
+            floats[size] = value;
+            nulls[size++] = false;
+        }
+
+        @Override
+        public void addDouble(double value) {
+            doubles[size] = value;
+            nulls[size++] = false;
+        }
+    }
+}
+
+// Service/ColumnarRowGroupReader.java
+package com.processor.service;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.HadoopReadOptions;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.api.Converter;
+import org.apache.parquet.io.api.GroupConverter;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Reads a row group of a flat parquet file column by column into
+ * {@link ColumnarBatch}es, without building a record per row or boxing any
+ * values. Each column is decoded a batch at a time into its primitive array
+ * through parquet's column readers, which hand over dictionary ids instead
+ * of values for dictionary-encoded strings.
+ * <p>
+ * Only files whose output columns are all top-level primitives qualify, and
+ * only queries without a row filter; everything else is read through Avro.
+ * A file written through Avro is read column by column only if its stored
+ * Avro schema would give the same output.
+ */
+public final class ColumnarRowGroupReader {
+
+    public static final int BATCH_SIZE = 4096;
+
+    private static final Set<Schema.Type> AVRO_PRIMITIVES = EnumSet.of(Schema.Type.BOOLEAN, Schema.Type.INT,
+            Schema.Type.LONG, Schema.Type.FLOAT, Schema.Type.DOUBLE, Schema.Type.STRING, Schema.Type.BYTES,
+            Schema.Type.FIXED, Schema.Type.ENUM);
+    private static final Set<String> AVRO_LOGICAL_TYPES = Set.of("date", "time-millis", "time-micros",
+            "timestamp-millis", "timestamp-micros", "decimal");
+
+    private ColumnarRowGroupReader() {
+    }
+
+    /**
+     * Returns the output columns of the file as a projection to read column
+     * by column, or null if the file has to be read through Avro.
+     */
+    public static MessageType projection(MessageType fileSchema, Map<String, String> keyValueMetadata,
+                                         Predicate<String> outputColumns) {
+        List<Type> fields = new ArrayList<>();
+        for (Type field : fileSchema.getFields()) {
+            if (!outputColumns.test(field.getName())) {
+                continue;
+            }
+            if (!field.isPrimitive() || field.isRepetition(Type.Repetition.REPEATED)
+                    || field.getLogicalTypeAnnotation() instanceof LogicalTypeAnnotation.UUIDLogicalTypeAnnotation) {
+                return null;
+            }
+            fields.add(field);
+        }
+        if (fields.isEmpty() || !matchesStoredAvroSchema(fields, keyValueMetadata)) {
+            return null;
+        }
+        return new MessageType(fileSchema.getName(), fields);
+    }
+
+    /**
+     * Reads the row groups that start within the byte range, handing each
+     * batch to the writer, and returns the number of rows read.
+     */
+    public static long read(InputFile inputFile, Configuration conf, long start, long end, MessageType projection,
+                            OutputSink.BatchPartWriter writer) throws IOException {
+        List<PrimitiveType> types = new ArrayList<>();
+        for (Type field : projection.getFields()) {
+            types.add(field.asPrimitiveType());
+        }
+        ColumnarBatch batch = new ColumnarBatch(types, BATCH_SIZE);
+        ColumnarBatch.Column[] columns = batch.getColumns();
+        GroupConverter converter = new BatchConverter(columns);
+        List<ColumnDescriptor> descriptors = projection.getColumns();
+
+        long rows = 0;
+        try (ParquetFileReader reader = ParquetFileReader.open(inputFile,
+                HadoopReadOptions.builder(conf).withRange(start, end).build())) {
+            reader.setRequestedSchema(projection);
+            String createdBy = reader.getFileMetaData().getCreatedBy();
+            PageReadStore pages;
+            while ((pages = reader.readNextRowGroup()) != null) {
+                ColumnReadStoreImpl store = new ColumnReadStoreImpl(pages, converter, projection, createdBy);
+                ColumnReader[] readers = new ColumnReader[columns.length];
+                int[] maxDefinitionLevels = new int[columns.length];
+                for (int i = 0; i < readers.length; i++) {
+                    readers[i] = store.getColumnReader(descriptors.get(i));
+                    maxDefinitionLevels[i] = descriptors.get(i).getMaxDefinitionLevel();
+                }
+
+                long remaining = pages.getRowCount();
+                while (remaining > 0) {
+                    int batchRows = (int) Math.min(BATCH_SIZE, remaining);
+                    batch.reset();
+                    for (int i = 0; i < readers.length; i++) {
+                        ColumnReader column = readers[i];
+                        for (int row = 0; row < batchRows; row++) {
+                            if (column.getCurrentDefinitionLevel() == maxDefinitionLevels[i]) {
+                                column.writeCurrentValueToConverter();
+                            } else {
+                                columns[i].addNull();
+                            }
+                            column.consume();
+                        }
+                    }
+                    batch.setRowCount(batchRows);
+                    writer.write(batch);
+                    remaining -= batchRows;
+                    rows += batchRows;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Avro reads use the stored schema, whose logical types may format values differently
+    private static boolean matchesStoredAvroSchema(List<Type> fields, Map<String, String> keyValueMetadata) {
+        String stored = keyValueMetadata.get("parquet.avro.schema");
+        if (stored == null) {
+            stored = keyValueMetadata.get("avro.schema");
+        }
+        if (stored == null) {
+            return true;
+        }
+
+        Schema schema = new Schema.Parser().parse(stored);
+        for (Type field : fields) {
+            Schema.Field avroField = schema.getField(field.getName());
+            if (avroField == null) {
+                return false;
+            }
+            Schema fieldSchema = avroField.schema();
+            if (fieldSchema.getType() == Schema.Type.UNION) {
+                List<Schema> branches = fieldSchema.getTypes();
+                if (branches.size() != 2) {
+                    return false;
+                }
+                fieldSchema = branches.get(0).getType() == Schema.Type.NULL ? branches.get(1) : branches.get(0);
+            }
+            LogicalType logicalType = fieldSchema.getLogicalType();
+            if (!AVRO_PRIMITIVES.contains(fieldSchema.getType())
+                    || logicalType != null && !AVRO_LOGICAL_TYPES.contains(logicalType.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class BatchConverter extends GroupConverter {
+        private final ColumnarBatch.Column[] columns;
+
+        private BatchConverter(ColumnarBatch.Column[] columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public Converter getConverter(int fieldIndex) {
+            return columns[fieldIndex];
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
+
+// Service/ColumnarJsonConverter.java
+package com.processor.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.PrimitiveType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Writes the rows of {@link ColumnarBatch}es as JSON objects, formatting
+ * each column as {@link RecordJsonConverter} formats the Avro value read
+ * from it, so both read paths produce the same output. Dates and
+ * timestamps are formatted into a reused buffer rather than through
+ * java.time, which would allocate several objects per value.
+ */
+public final class ColumnarJsonConverter {
+
+    @FunctionalInterface
+    private interface ColumnWriter {
+        // The value is never null; nulls are written by the row
+        void write(JsonGenerator generator, ColumnarBatch.Column column, int row) throws IOException;
+    }
+
+    private final SerializedString[] names;
+    private final ColumnWriter[] writers;
+
+    private ColumnarJsonConverter(SerializedString[] names, ColumnWriter[] writers) {
+        this.names = names;
+        this.writers = writers;
+    }
+
+    /** Compiles a converter for batches of these columns; the converter is not thread-safe. */
+    public static ColumnarJsonConverter compile(ColumnarBatch.Column[] columns) {
+        SerializedString[] names = new SerializedString[columns.length];
+        ColumnWriter[] writers = new ColumnWriter[columns.length];
+        char[] buffer = new char[32];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = new SerializedString(columns[i].getType().getName());
+            writers[i] = writerFor(columns[i].getType(), buffer);
+        }
+        return new ColumnarJsonConverter(names, writers);
+    }
+
+    public void writeRow(JsonGenerator generator, ColumnarBatch batch, int row) throws IOException {
+        ColumnarBatch.Column[] columns = batch.getColumns();
+        generator.writeStartObject();
+        for (int i = 0; i < columns.length; i++) {
+            generator.writeFieldName(names[i]);
+            if (columns[i].isNull(row)) {
+                generator.writeNull();
+            } else {
+                writers[i].write(generator, columns[i], row);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    // Mirrors how Avro reads each parquet type, and how RecordJsonConverter writes the result
+    private static ColumnWriter writerFor(PrimitiveType type, char[] buffer) {
+        LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+        switch (type.getPrimitiveTypeName()) {
+            case BOOLEAN:
+                return (generator, column, row) -> generator.writeBoolean(column.getBoolean(row));
+            case INT32:
+                if (annotation instanceof LogicalTypeAnnotation.DateLogicalTypeAnnotation) {
+                    return (generator, column, row) -> writeDate(generator, column.getInt(row), buffer);
+                }
+                if (isTime(annotation, LogicalTypeAnnotation.TimeUnit.MILLIS)) {
+                    return (generator, column, row) ->
+                            generator.writeString(LocalTime.ofNanoOfDay(column.getInt(row) * 1_000_000L).toString());
+                }
+                return (generator, column, row) -> generator.writeNumber(column.getInt(row));
+            case INT64:
+                if (isTimestamp(annotation, LogicalTypeAnnotation.TimeUnit.MILLIS)) {
+                    return (generator, column, row) -> {
+                        long millis = column.getLong(row);
+                        writeInstant(generator, Math.floorDiv(millis, 1_000L),
+                                (int) Math.floorMod(millis, 1_000L) * 1_000_000, buffer);
+                    };
+                }
+                if (isTimestamp(annotation, LogicalTypeAnnotation.TimeUnit.MICROS)) {
+                    return (generator, column, row) -> {
+                        long micros = column.getLong(row);
+                        writeInstant(generator, Math.floorDiv(micros, 1_000_000L),
+                                (int) Math.floorMod(micros, 1_000_000L) * 1_000, buffer);
+                    };
+                }
+                if (isTime(annotation, LogicalTypeAnnotation.TimeUnit.MICROS)) {
+                    return (generator, column, row) ->
+                            generator.writeString(LocalTime.ofNanoOfDay(column.getLong(row) * 1_000L).toString());
+                }
+                return (generator, column, row) -> generator.writeNumber(column.getLong(row));
+            case FLOAT:
+                return (generator, column, row) -> generator.writeNumber(column.getFloat(row));
+            case DOUBLE:
+                return (generator, column, row) -> generator.writeNumber(column.getDouble(row));
+            case INT96:
+                return (generator, column, row) -> {
+                    Instant instant = RecordJsonConverter.int96ToInstant(column.getBytes(row));
+                    writeInstant(generator, instant.getEpochSecond(), instant.getNano(), buffer);
+                };
+            case BINARY:
+                if (annotation instanceof LogicalTypeAnnotation.StringLogicalTypeAnnotation
+                        || annotation instanceof LogicalTypeAnnotation.EnumLogicalTypeAnnotation) {
+                    return ColumnarJsonConverter::writeString;
+                }
+                return decimalOrBinary(annotation);
+            case FIXED_LEN_BYTE_ARRAY:
+                return decimalOrBinary(annotation);
+            default:
+                throw new IllegalArgumentException("Unsupported parquet type: " + type);
+        }
+    }
+
+    private static ColumnWriter decimalOrBinary(LogicalTypeAnnotation annotation) {
+        if (annotation instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) {
+            int scale = ((LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) annotation).getScale();
+            return (generator, column, row) ->
+                    generator.writeNumber(new BigDecimal(new BigInteger(column.getBytes(row)), scale));
+        }
+        return (generator, column, row) -> generator.writeBinary(column.getBytes(row));
+    }
+
+    private static void writeString(JsonGenerator generator, ColumnarBatch.Column column, int row)
+            throws IOException {
+        byte[] bytes = column.getBytes(row);
+        // Byte-based generators can copy the UTF-8 bytes without decoding them
+        if (generator instanceof UTF8JsonGenerator) {
+            generator.writeUTF8String(bytes, 0, bytes.length);
+        } else {
+            generator.writeString(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    // As LocalDate.toString for years 0 to 9999, which covers any date in practice
+    private static void writeDate(JsonGenerator generator, long epochDay, char[] buffer) throws IOException {
+        int length = formatDate(epochDay, buffer);
+        if (length < 0) {
+            generator.writeString(LocalDate.ofEpochDay(epochDay).toString());
+        } else {
+            generator.writeString(buffer, 0, length);
+        }
+    }
+
+    // As Instant.toString: seconds always, then the fraction in groups of three digits as needed
+    private static void writeInstant(JsonGenerator generator, long epochSecond, int nanos, char[] buffer)
+            throws IOException {
+        int length = formatDate(Math.floorDiv(epochSecond, 86_400L), buffer);
+        if (length < 0) {
+            generator.writeString(Instant.ofEpochSecond(epochSecond, nanos).toString());
+            return;
+        }
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+        buffer[length++] = 'T';
+        length = digits(secondOfDay / 3_600, 2, buffer, length);
+        buffer[length++] = ':';
+        length = digits(secondOfDay / 60 % 60, 2, buffer, length);
+        buffer[length++] = ':';
+        length = digits(secondOfDay % 60, 2, buffer, length);
+        if (nanos != 0) {
+            buffer[length++] = '.';
+            if (nanos % 1_000_000 == 0) {
+                length = digits(nanos / 1_000_000, 3, buffer, length);
+            } else if (nanos % 1_000 == 0) {
+                length = digits(nanos / 1_000, 6, buffer, length);
+            } else {
+                length = digits(nanos, 9, buffer, length);
+            }
+        }
+        buffer[length++] = 'Z';
+        generator.writeString(buffer, 0, length);
+    }
+
+    // yyyy-MM-dd from days since 1970-01-01 (proleptic Gregorian), or -1 outside years 0 to 9999
+    private static int formatDate(long epochDay, char[] buffer) {
+        long days = epochDay + 719_468;
+        long era = Math.floorDiv(days, 146_097);
+        long dayOfEra = days - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9_999) {
+            return -1;
+        }
+        int length = digits((int) year, 4, buffer, 0);
+        buffer[length++] = '-';
+        length = digits(month, 2, buffer, length);
+        buffer[length++] = '-';
+        return digits(day, 2, buffer, length);
+    }
+
+    private static int digits(int value, int width, char[] buffer, int offset) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + width;
+    }
+
+    private static boolean isTimestamp(LogicalTypeAnnotation annotation, LogicalTypeAnnotation.TimeUnit unit) {
+        return annotation instanceof LogicalTypeAnnotation.TimestampLogicalTypeAnnotation
+                && ((LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) annotation).getUnit() == unit;
+    }
+
+    private static boolean isTime(LogicalTypeAnnotation annotation, LogicalTypeAnnotation.TimeUnit unit) {
+        return annotation instanceof LogicalTypeAnnotation.TimeLogicalTypeAnnotation
+                && ((LogicalTypeAnnotation.TimeLogicalTypeAnnotation) annotation).getUnit() == unit;
+    }
+}
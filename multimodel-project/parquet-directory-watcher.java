@@ -0,0 +1,469 @@
+// Service/DirectoryWatcher.java
+package com.processor.service;
+
+import com.processor.util.ContentHash;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches landing directories for new and changed parquet files and hands
+ * them over in batches. Each watch keeps a manifest of the files it has
+ * converted (size, modification time and content hash) in an embedded H2
+ * MVStore, so a directory that is watched again, also after a restart,
+ * only yields the files that changed in between.
+ * <p>
+ * Directories are watched with the file system's {@link WatchService}, so
+ * after the initial scan the work done is proportional to what changed,
+ * not to the size of the tree. Where the file system offers no watch
+ * service, or events were lost, the tree is scanned instead; a scan only
+ * compares sizes and modification times with the manifest and hashes the
+ * files that differ. Arrivals are collected until the directory has been
+ * quiet for a moment, or until the batch has waited long enough, and files
+ * that were only touched, their content unchanged, are not converted again.
+ */
+@Component
+@Slf4j
+public class DirectoryWatcher implements Closeable {
+
+    /** Starts converting a batch of files without blocking; the files are then passed to {@link #markProcessed}. */
+    @FunctionalInterface
+    public interface BatchHandler {
+        void process(String watchId, List<FileState> files);
+    }
+
+    /** A file as it was when it was batched. */
+    public static final class FileState {
+        private final File file;
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        FileState(File file, long size, long lastModified, String hash) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        private String manifestValue() {
+            return size + ":" + lastModified + ":" + hash;
+        }
+    }
+
+    private static final long TICK_MILLIS = 100;
+
+    private final Path excludedDirectory;
+    private final long quietPeriodNanos;
+    private final long maxBatchDelayNanos;
+    private final long pollIntervalNanos;
+    private final boolean useWatchService;
+    private final MVStore store;
+    private final Thread thread;
+
+    // All guarded by this
+    private final Map<String, Watch> watches = new LinkedHashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private WatchService watchService;
+    private boolean closed;
+
+    @Autowired
+    public DirectoryWatcher(@Value("${app.watch.manifest:watch-manifest.db}") String manifestPath,
+                            @Value("${app.output.directory:output}") String outputDirectory,
+                            @Value("${app.watch.quiet-period-ms:2000}") long quietPeriodMillis,
+                            @Value("${app.watch.max-batch-delay-ms:30000}") long maxBatchDelayMillis,
+                            @Value("${app.watch.poll-interval-ms:30000}") long pollIntervalMillis,
+                            @Value("${app.watch.use-watch-service:true}") boolean useWatchService) {
+        this.excludedDirectory = new File(outputDirectory).toPath().toAbsolutePath().normalize();
+        this.quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis);
+        this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+        this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis);
+        this.useWatchService = useWatchService;
+
+        // An empty manifest path keeps the manifest in memory only
+        MVStore.Builder builder = new MVStore.Builder();
+        if (manifestPath != null && !manifestPath.isBlank()) {
+            File parent = new File(manifestPath).getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            builder.fileName(manifestPath).compress();
+        }
+        this.store = builder.open();
+
+        this.thread = new Thread(this::run, "directory-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching a directory tree and returns the watch id. The id is
+     * derived from the directory and the key, which should describe what the
+     * files are converted to; watching the same directory with the same key
+     * again resumes the watch and its manifest.
+     */
+    public String watch(Path directory, String key, BatchHandler handler) throws IOException {
+        Path root = directory.toRealPath();
+        String watchId = ContentHash.of(root + "\n" + key).substring(0, 16);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The directory watcher is closed");
+            }
+            if (watches.containsKey(watchId)) {
+                return watchId;
+            }
+            Watch watch = new Watch(watchId, root, handler, store.openMap("files." + watchId));
+            watches.put(watchId, watch);
+            if (useWatchService) {
+                try {
+                    if (watchService == null) {
+                        watchService = root.getFileSystem().newWatchService();
+                    }
+                    watch.watchService = watchService;
+                } catch (IOException | UnsupportedOperationException e) {
+                    log.warn("No watch service for {}, scanning every {} ms instead: {}", root,
+                            TimeUnit.NANOSECONDS.toMillis(pollIntervalNanos), e.getMessage());
+                }
+            }
+            scan(watch, root, System.nanoTime());
+        }
+        log.info("Watching {} as {}", root, watchId);
+        return watchId;
+    }
+
+    public synchronized boolean unwatch(String watchId) {
+        Watch watch = watches.remove(watchId);
+        if (watch == null) {
+            return false;
+        }
+        for (WatchKey key : watch.keys) {
+            if (watches.values().stream().noneMatch(other -> other.keys.contains(key))) {
+                key.cancel();
+                watchedDirectories.remove(key);
+            }
+        }
+        log.info("Stopped watching {}", watch.root);
+        return true;
+    }
+
+    public synchronized Set<String> getWatchIds() {
+        return new HashSet<>(watches.keySet());
+    }
+
+    /** Records converted files in their watch's manifest, so they are not batched again unless they change. */
+    public void markProcessed(String watchId, Collection<FileState> files) {
+        MVMap<String, String> manifest = store.openMap("files." + watchId);
+        for (FileState file : files) {
+            manifest.put(file.file.getPath(), file.manifestValue());
+        }
+        store.commit();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    log.debug("Could not close the watch service", e);
+                }
+            }
+        }
+        thread.interrupt();
+        store.close();
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                WatchService service;
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    service = watchService;
+                }
+                WatchKey key = service == null ? null : service.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+                if (service == null) {
+                    Thread.sleep(TICK_MILLIS);
+                }
+                long now = System.nanoTime();
+                Map<Watch, List<FileState>> settled = new LinkedHashMap<>();
+                synchronized (this) {
+                    while (key != null) {
+                        handleEvents(key, now);
+                        key = service.poll();
+                    }
+                    for (Watch watch : watches.values()) {
+                        if (watch.watchService == null && now - watch.lastScan >= pollIntervalNanos) {
+                            scan(watch, watch.root, now);
+                        }
+                        if (watch.isDue(now, quietPeriodNanos, maxBatchDelayNanos)) {
+                            settled.put(watch, settle(watch, now));
+                        }
+                    }
+                }
+                // Hashing reads the whole file, so it is done without holding up events, watch and unwatch
+                for (Map.Entry<Watch, List<FileState>> entry : settled.entrySet()) {
+                    List<FileState> hashed = hash(entry.getValue());
+                    synchronized (this) {
+                        Watch watch = entry.getKey();
+                        if (watches.get(watch.id) == watch) {
+                            dispatch(watch, hashed, now);
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Directory watcher error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void handleEvents(WatchKey key, long now) {
+        Path directory = watchedDirectories.get(key);
+        List<WatchEvent<?>> events = key.pollEvents();
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+        if (directory == null) {
+            return;
+        }
+        for (Watch watch : watches.values()) {
+            if (!watch.keys.contains(key)) {
+                continue;
+            }
+            for (WatchEvent<?> event : events) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost, so the whole tree has to be compared with the manifest
+                    scan(watch, watch.root, now);
+                    continue;
+                }
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    watch.pending.remove(path);
+                    watch.manifest.remove(path.toString());
+                } else if (Files.isDirectory(path)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        scan(watch, path, now);
+                    }
+                } else if (isParquet(path)) {
+                    watch.arrived(path, now);
+                }
+            }
+        }
+    }
+
+    // Registers the directories under start and batches the parquet files that differ from the manifest
+    private void scan(Watch watch, Path start, long now) {
+        watch.lastScan = now;
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+                        throws IOException {
+                    if (directory.toAbsolutePath().normalize().startsWith(excludedDirectory)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if (watch.watchService != null) {
+                        WatchKey key = directory.register(watch.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                        watchedDirectories.put(key, directory);
+                        watch.keys.add(key);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (isParquet(file) && !watch.matchesManifest(file.toString(), attributes.size(),
+                            attributes.lastModifiedTime().toMillis())) {
+                        watch.found(file, now);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    log.warn("Cannot read {}: {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.error("Error scanning {}: {}", start, e.getMessage());
+        }
+    }
+
+    // Takes the files that are no longer being written off the pending list and returns those that differ from
+    // the manifest, not yet hashed
+    private List<FileState> settle(Watch watch, long now) {
+        List<FileState> changed = new ArrayList<>();
+        List<Path> settled = new ArrayList<>();
+        long nowMillis = System.currentTimeMillis();
+        long quietMillis = TimeUnit.NANOSECONDS.toMillis(quietPeriodNanos);
+        for (Path path : watch.pending.keySet()) {
+            try {
+                if (!Files.isRegularFile(path)) {
+                    settled.add(path);
+                    continue;
+                }
+                long size = Files.size(path);
+                long lastModified = Files.getLastModifiedTime(path).toMillis();
+                if (nowMillis - lastModified < quietMillis) {
+                    // Still being written
+                    continue;
+                }
+                settled.add(path);
+                if (!watch.matchesManifest(path.toString(), size, lastModified)) {
+                    changed.add(new FileState(path.toFile(), size, lastModified, null));
+                }
+            } catch (IOException e) {
+                log.warn("Cannot read {}: {}", path, e.getMessage());
+                settled.add(path);
+            }
+        }
+        settled.forEach(watch.pending::remove);
+        watch.firstPending = watch.pending.isEmpty() ? 0 : now;
+        return changed;
+    }
+
+    private static List<FileState> hash(List<FileState> files) {
+        List<FileState> hashed = new ArrayList<>(files.size());
+        for (FileState file : files) {
+            try {
+                hashed.add(new FileState(file.file, file.size, file.lastModified, ContentHash.of(file.file)));
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Cannot read {}: {}", file.file, e.getMessage());
+            }
+        }
+        return hashed;
+    }
+
+    private void dispatch(Watch watch, List<FileState> hashed, long now) {
+        List<FileState> batch = new ArrayList<>();
+        for (FileState state : hashed) {
+            String recorded = watch.manifest.get(state.file.getPath());
+            if (recorded != null && recorded.endsWith(":" + state.hash)) {
+                // Touched, not changed
+                watch.manifest.put(state.file.getPath(), state.manifestValue());
+                continue;
+            }
+            batch.add(state);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            watch.handler.process(watch.id, batch);
+            log.info("Watch {}: batched {} new or changed files", watch.id, batch.size());
+        } catch (RuntimeException e) {
+            long retryAfterSeconds = e instanceof JobRejectedException
+                    ? ((JobRejectedException) e).getRetryAfterSeconds() : 1;
+            log.warn("Watch {}: could not start a batch of {} files, retrying in {} s: {}", watch.id, batch.size(),
+                    retryAfterSeconds, e.getMessage());
+            long retryAt = now + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+            for (FileState file : batch) {
+                watch.pending.put(file.file.toPath(), retryAt);
+            }
+            watch.firstPending = retryAt;
+        }
+    }
+
+    private static boolean isParquet(Path path) {
+        return path.getFileName().toString().endsWith(".parquet");
+    }
+
+    private static final class Watch {
+        private final String id;
+        private final Path root;
+        private final BatchHandler handler;
+        // path -> size:lastModified:hash of the version last converted
+        private final MVMap<String, String> manifest;
+        private final Set<WatchKey> keys = new HashSet<>();
+        // path -> when its latest event arrived
+        private final Map<Path, Long> pending = new LinkedHashMap<>();
+        private WatchService watchService;
+        private long firstPending;
+        private long lastScan;
+
+        private Watch(String id, Path root, BatchHandler handler, MVMap<String, String> manifest) {
+            this.id = id;
+            this.root = root;
+            this.handler = handler;
+            this.manifest = manifest;
+        }
+
+        void arrived(Path path, long now) {
+            if (pending.isEmpty()) {
+                firstPending = now;
+            }
+            pending.put(path, now);
+        }
+
+        // Found by a scan; files still being written are held back by their modification time instead
+        void found(Path path, long now) {
+            if (!pending.containsKey(path)) {
+                arrived(path, now);
+            }
+        }
+
+        // Quiet for the quiet period, or waiting for longer than the maximum delay
+        boolean isDue(long now, long quietPeriod, long maxDelay) {
+            if (pending.isEmpty()) {
+                return false;
+            }
+            // Arrivals are nanoTime readings, which may be negative and are only compared by their difference
+            Iterator<Long> arrivals = pending.values().iterator();
+            long lastArrival = arrivals.next();
+            while (arrivals.hasNext()) {
+                long arrival = arrivals.next();
+                if (arrival - lastArrival > 0) {
+                    lastArrival = arrival;
+                }
+            }
+            return now - lastArrival >= quietPeriod || now - firstPending >= maxDelay;
+        }
+
+        boolean matchesManifest(String path, long size, long lastModified) {
+            String recorded = manifest.get(path);
+            return recorded != null && recorded.startsWith(size + ":" + lastModified + ":");
+        }
+    }
+}
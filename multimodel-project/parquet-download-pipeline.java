@@ -0,0 +1,533 @@
+// Util/RangedDownload.java
+package com.processor.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a URL into a preallocated file over several connections, one
+ * HTTP range request per chunk. Bytes are written at their offset as they
+ * arrive and callers can wait for any byte range to be complete, so the
+ * file can be read while the rest of it is still downloading.
+ * <p>
+ * Chunks are fetched in file order, except the last one, which goes first
+ * because that is where a zip keeps its central directory, and ranges
+ * moved ahead with {@link #prioritize}. A failed chunk is retried from the
+ * last byte written before the download is failed.
+ */
+public final class RangedDownload implements Closeable {
+
+    @FunctionalInterface
+    public interface Listener {
+        // bytesTotal is -1 when the server does not send a length
+        void onProgress(long bytesDone, long bytesTotal);
+    }
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private final Listener listener;
+    private final ExecutorService workers;
+
+    // All guarded by this
+    private final Deque<long[]> pending = new ArrayDeque<>();
+    private final TreeMap<Long, Long> completed = new TreeMap<>();
+    private long bytesDone;
+    private IOException failure;
+
+    private RangedDownload(HttpClient httpClient, URI uri, File target, long length, int chunkSize,
+                           int connections, Listener listener) throws IOException {
+        this.httpClient = httpClient;
+        this.uri = uri;
+        this.length = length;
+        this.listener = listener;
+        this.file = new RandomAccessFile(target, "rw");
+        this.file.setLength(length);
+        this.channel = file.getChannel();
+
+        for (long start = 0; start < length; start += chunkSize) {
+            pending.add(new long[]{start, Math.min(start + chunkSize, length)});
+        }
+        if (pending.size() > 1) {
+            pending.addFirst(pending.removeLast());
+        }
+
+        int threads = Math.max(1, Math.min(connections, pending.size()));
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "download-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Returns the length of the resource if the server accepts range
+     * requests for it, or -1 if it has to be downloaded in one stream.
+     */
+    public static long rangeLength(HttpClient httpClient, URI uri) throws IOException, InterruptedException {
+        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(uri)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.discarding());
+        boolean acceptsRanges = response.statusCode() == 200 && response.headers().firstValue("Accept-Ranges")
+                .map("bytes"::equalsIgnoreCase)
+                .orElse(false);
+        return acceptsRanges ? response.headers().firstValueAsLong("Content-Length").orElse(-1) : -1;
+    }
+
+    /** Starts downloading a resource of the given length into target. */
+    public static RangedDownload start(HttpClient httpClient, URI uri, File target, long length, int chunkSize,
+                                       int connections, Listener listener) throws IOException {
+        return new RangedDownload(httpClient, uri, target, length, chunkSize, connections, listener);
+    }
+
+    /** Downloads a resource in a single request, for servers that do not accept ranges. */
+    public static void downloadWhole(HttpClient httpClient, URI uri, File target, Listener listener)
+            throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        long total = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        try (InputStream body = response.body(); OutputStream out = Files.newOutputStream(target.toPath())) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Download of " + uri + " failed with HTTP " + response.statusCode());
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long done = 0;
+            long reported = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                done += read;
+                if (done - reported >= 1024 * 1024) {
+                    listener.onProgress(done, total);
+                    reported = done;
+                }
+            }
+            listener.onProgress(done, total);
+        }
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public synchronized long getBytesDone() {
+        return bytesDone;
+    }
+
+    /** Moves the not yet started chunks overlapping [start, end) to the front of the queue. */
+    public synchronized void prioritize(long start, long end) {
+        List<long[]> moved = new ArrayList<>();
+        for (Iterator<long[]> it = pending.iterator(); it.hasNext(); ) {
+            long[] chunk = it.next();
+            if (chunk[0] < end && chunk[1] > start) {
+                moved.add(chunk);
+                it.remove();
+            }
+        }
+        for (int i = moved.size() - 1; i >= 0; i--) {
+            pending.addFirst(moved.get(i));
+        }
+    }
+
+    public synchronized boolean isAvailable(long start, long end) {
+        if (start >= end) {
+            return true;
+        }
+        Map.Entry<Long, Long> range = completed.floorEntry(start);
+        return range != null && range.getValue() >= end;
+    }
+
+    /** Blocks until every byte in [start, end) is on disk; throws if the download failed. */
+    public synchronized void awaitAvailable(long start, long end) throws IOException, InterruptedException {
+        while (!isAvailable(start, end)) {
+            if (failure != null) {
+                throw new IOException("Download of " + uri + " failed: " + failure.getMessage(), failure);
+            }
+            wait();
+        }
+    }
+
+    public void awaitCompletion() throws IOException, InterruptedException {
+        awaitAvailable(0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        file.close();
+    }
+
+    private void work() {
+        long[] chunk;
+        while ((chunk = nextChunk()) != null) {
+            try {
+                fetch(chunk[0], chunk[1]);
+                listener.onProgress(getBytesDone(), length);
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                fail(new InterruptedIOException("Download interrupted"));
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized long[] nextChunk() {
+        return failure == null ? pending.pollFirst() : null;
+    }
+
+    private void fetch(long start, long end) throws IOException, InterruptedException {
+        // Retries resume from the last byte written
+        long[] position = {start};
+        for (int attempt = 1; ; attempt++) {
+            try {
+                fetchRange(position, end);
+                return;
+            } catch (IOException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Advances position[0] as bytes are written, so a failed request can be resumed
+    private void fetchRange(long[] position, long end) throws IOException, InterruptedException {
+        long start = position[0];
+        HttpResponse<InputStream> response = httpClient.send(HttpRequest.newBuilder(uri)
+                .header("Range", "bytes=" + start + "-" + (end - 1))
+                .GET()
+                .build(), HttpResponse.BodyHandlers.ofInputStream());
+
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 206) {
+                throw new IOException("Expected a partial response for bytes " + start + "-" + (end - 1)
+                        + ", got HTTP " + response.statusCode());
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (position[0] < end) {
+                int read = body.read(buffer, 0, (int) Math.min(buffer.length, end - position[0]));
+                if (read == -1) {
+                    throw new EOFException("Connection closed at byte " + position[0] + " of " + uri);
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                long at = position[0];
+                while (bytes.hasRemaining()) {
+                    at += channel.write(bytes, at);
+                }
+                markDone(position[0], at);
+                position[0] = at;
+            }
+        }
+    }
+
+    private synchronized void markDone(long start, long end) {
+        bytesDone += end - start;
+        // Merge with the neighbouring ranges so that lookups stay a single floor query
+        Map.Entry<Long, Long> before = completed.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> after;
+        while ((after = completed.ceilingEntry(start)) != null && after.getKey() <= end) {
+            end = Math.max(end, after.getValue());
+            completed.remove(after.getKey());
+        }
+        completed.put(start, end);
+        notifyAll();
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        pending.clear();
+        notifyAll();
+    }
+}
+
+// Service/ZipDownloadPipeline.java
+package com.processor.service;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.processor.model.ParquetSource;
+import com.processor.util.RangedDownload;
+import com.processor.util.ZipArchive;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a zip and converts its parquet entries while the download is
+ * still running. When the server accepts range requests the zip is fetched
+ * in parallel chunks, its central directory first, and each parquet entry
+ * is handed to the processing engine, read in place with
+ * {@link ZipArchive}, as soon as all of its bytes have landed. Otherwise
+ * the zip is downloaded in one stream and converted afterwards. Zips with
+ * entries too large to read in place are only downloaded, for the caller
+ * to extract.
+ */
+@Component
+@Slf4j
+public class ZipDownloadPipeline {
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        // bytesTotal is -1 while unknown; rowsTotal grows as entries are planned
+        void onProgress(long bytesDone, long bytesTotal, long rowsDone, long rowsTotal);
+    }
+
+    public static final class Result {
+        private final int files;
+        private final long records;
+        private final boolean extractionRequired;
+
+        Result(int files, long records) {
+            this(files, records, false);
+        }
+
+        private Result(int files, long records, boolean extractionRequired) {
+            this.files = files;
+            this.records = records;
+            this.extractionRequired = extractionRequired;
+        }
+
+        // The zip was downloaded but not converted, as its entries are too large to read in place
+        static Result extractionRequired(int files) {
+            return new Result(files, 0, true);
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public boolean isExtractionRequired() {
+            return extractionRequired;
+        }
+    }
+
+    private final ParquetProcessingEngine engine;
+    private final HttpClient httpClient;
+    private final int connections;
+    private final int chunkSize;
+    private final int concurrentEntries;
+    private final long maxBufferedBytes;
+
+    public ZipDownloadPipeline(ParquetProcessingEngine engine,
+                               @Value("${app.download.connections:4}") int connections,
+                               @Value("${app.download.chunk-size:8388608}") int chunkSize,
+                               @Value("${app.download.concurrent-entries:2}") int concurrentEntries,
+                               @Value("${app.zip.max-buffered-bytes:536870912}") long maxBufferedBytes) {
+        this.engine = engine;
+        this.connections = connections;
+        this.chunkSize = chunkSize;
+        this.concurrentEntries = concurrentEntries;
+        this.maxBufferedBytes = maxBufferedBytes;
+        // HTTP/1.1 so that every range gets its own connection
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    /**
+     * Downloads uri into zipFile and converts its parquet entries into
+     * outputDir. If an entry is too large to read in place, under the same
+     * limits as a downloaded zip, the download is finished without converting
+     * anything and the result says the zip has to be extracted instead.
+     */
+    public Result run(URI uri, File zipFile, File outputDir, OutputFormat format, ParquetQuery query,
+                      ProgressListener listener) throws IOException, InterruptedException {
+        Progress progress = new Progress(listener);
+        long length = RangedDownload.rangeLength(httpClient, uri);
+
+        if (length < 0) {
+            log.info("{} does not accept range requests, downloading in one stream", uri);
+            RangedDownload.downloadWhole(httpClient, uri, zipFile, progress::onBytes);
+            try (ZipArchive archive = ZipArchive.open(zipFile)) {
+                if (tooLargeInPlace(archive, uri)) {
+                    return Result.extractionRequired(archive.parquetEntries().size());
+                }
+                List<ParquetSource> sources = archive.parquetSources();
+                long records = sources.isEmpty() ? 0
+                        : engine.processSources(sources, outputDir, format, query, progress.newEntryListener())
+                                .getRecords();
+                return new Result(sources.size(), records);
+            }
+        }
+
+        try (RangedDownload download = RangedDownload.start(httpClient, uri, zipFile, length, chunkSize,
+                connections, progress::onBytes)) {
+            // The end records locate the central directory, which is needed before any entry
+            long tailStart = Math.max(0, length - ZipArchive.MAX_TAIL_SIZE);
+            download.prioritize(tailStart, length);
+            download.awaitAvailable(tailStart, length);
+            long directoryOffset = ZipArchive.centralDirectoryOffset(zipFile);
+            download.prioritize(directoryOffset, length);
+            download.awaitAvailable(directoryOffset, length);
+
+            try (ZipArchive archive = ZipArchive.open(zipFile)) {
+                if (tooLargeInPlace(archive, uri)) {
+                    download.awaitCompletion();
+                    return Result.extractionRequired(archive.parquetEntries().size());
+                }
+                Result result = convertEntriesAsTheyLand(archive, download, directoryOffset,
+                        outputDir, format, query, progress);
+                download.awaitCompletion();
+                return result;
+            }
+        }
+    }
+
+    private boolean tooLargeInPlace(ZipArchive archive, URI uri) {
+        ZipArchive.Entry tooLarge = archive.firstEntryTooLargeInPlace(maxBufferedBytes);
+        if (tooLarge != null) {
+            log.info("{}: {} is too large to read in place, the zip will be extracted", uri, tooLarge.getName());
+            return true;
+        }
+        return false;
+    }
+
+    private Result convertEntriesAsTheyLand(ZipArchive archive, RangedDownload download, long directoryOffset,
+                                            File outputDir, OutputFormat format, ParquetQuery query,
+                                            Progress progress) throws IOException, InterruptedException {
+        // An entry's bytes run from its local header to the next header or the central directory
+        TreeSet<Long> headerOffsets = new TreeSet<>();
+        archive.getEntries().forEach(entry -> headerOffsets.add(entry.getLocalHeaderOffset()));
+        headerOffsets.add(directoryOffset);
+
+        List<ZipArchive.Entry> entries = archive.parquetEntries();
+        List<ParquetSource> sources = archive.parquetSources();
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        // Chunks arrive in file order, so entries are awaited in the same order
+        order.sort(Comparator.comparingLong(i -> entries.get(i).getLocalHeaderOffset()));
+
+        ExecutorService drivers = Executors.newFixedThreadPool(Math.max(1, concurrentEntries));
+        List<Future<Long>> conversions = new ArrayList<>();
+        try {
+            for (int i : order) {
+                long start = entries.get(i).getLocalHeaderOffset();
+                download.awaitAvailable(start, headerOffsets.higher(start));
+                ParquetSource source = sources.get(i);
+                conversions.add(drivers.submit(() -> engine.processSources(Collections.singletonList(source),
+                        outputDir, format, query, progress.newEntryListener()).getRecords()));
+            }
+
+            long records = 0;
+            for (Future<Long> conversion : conversions) {
+                records += conversion.get();
+            }
+            return new Result(sources.size(), records);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Conversion failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            drivers.shutdownNow();
+        }
+    }
+
+    /** Adds up byte and row progress from the download and the per-entry conversions. */
+    private static final class Progress {
+        private final ProgressListener listener;
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicLong bytesTotal = new AtomicLong(-1);
+        private final AtomicLong rowsDone = new AtomicLong();
+        private final AtomicLong rowsTotal = new AtomicLong();
+
+        private Progress(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        void onBytes(long done, long total) {
+            bytesDone.accumulateAndGet(done, Math::max);
+            bytesTotal.set(total);
+            report();
+        }
+
+        // The engine reports cumulative rows per call, possibly out of order, so only increases are added
+        ParquetProcessingEngine.ProgressListener newEntryListener() {
+            long[] seen = new long[2];
+            return (done, total, fileName) -> {
+                synchronized (seen) {
+                    if (total > seen[1]) {
+                        rowsTotal.addAndGet(total - seen[1]);
+                        seen[1] = total;
+                    }
+                    if (done > seen[0]) {
+                        rowsDone.addAndGet(done - seen[0]);
+                        seen[0] = done;
+                    }
+                }
+                report();
+            };
+        }
+
+        private void report() {
+            listener.onProgress(bytesDone.get(), bytesTotal.get(), rowsDone.get(), rowsTotal.get());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+// Service/JobRegistry.java
+package com.processor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.processor.model.ProcessingResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job status, kept in memory while a job runs and written through to an
+ * embedded H2 MVStore so that {@code /status/{jobId}} survives restarts.
+ * <p>
+ * Running jobs hold mutable progress counters that are updated in place,
+ * so the frequent counter updates from a conversion allocate nothing and
+ * are not written to the store; every status change is. Finished jobs are
+ * kept in a bounded least-recently-used cache and otherwise read back from
+ * the store. Jobs older than the TTL are removed from both, using an index
+ * ordered by submission time so a sweep only visits expired jobs. Jobs that
+ * were still queued or running when the service stopped are marked failed
+ * on the next start.
+ */
+@Component
+@Slf4j
+public class JobRegistry implements Closeable {
+
+    private static final String QUEUED = "QUEUED";
+    private static final String PROCESSING = "PROCESSING";
+    private static final long SWEEP_INTERVAL_MINUTES = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Clock clock;
+    private final long ttlMillis;
+    private final int cacheSize;
+    private final MVStore store;
+    // jobId -> status JSON
+    private final MVMap<String, String> statuses;
+    // submission time and jobId -> jobId, in submission order
+    private final MVMap<String, String> submitted;
+    // jobId -> submission time, so a status read back from the store can be checked against the TTL
+    private final MVMap<String, Long> submittedAt;
+    // jobIds that have not finished
+    private final MVMap<String, String> unfinished;
+    private final ScheduledExecutorService sweeper;
+
+    private final Map<String, JobProgress> active = new ConcurrentHashMap<>();
+    // Guarded by itself
+    private final LinkedHashMap<String, JobProgress> finished;
+
+    @Autowired
+    public JobRegistry(@Value("${app.jobs.status-store:jobs.db}") String storePath,
+                       @Value("${app.jobs.status-ttl-hours:168}") long ttlHours,
+                       @Value("${app.jobs.status-cache-size:10000}") int cacheSize) {
+        this(storePath, TimeUnit.HOURS.toMillis(ttlHours), cacheSize, Clock.systemUTC());
+    }
+
+    // An empty store path keeps the statuses in memory only
+    JobRegistry(String storePath, long ttlMillis, int cacheSize, Clock clock) {
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.cacheSize = cacheSize;
+        this.finished = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JobProgress> eldest) {
+                return size() > JobRegistry.this.cacheSize;
+            }
+        };
+
+        MVStore.Builder builder = new MVStore.Builder();
+        if (storePath != null && !storePath.isBlank()) {
+            File parent = new File(storePath).getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            builder.fileName(storePath).compress();
+        }
+        this.store = builder.open();
+        this.statuses = store.openMap("statuses");
+        this.submitted = store.openMap("submitted");
+        this.submittedAt = store.openMap("submittedAt");
+        this.unfinished = store.openMap("unfinished");
+        failUnfinished();
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-registry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, SWEEP_INTERVAL_MINUTES, SWEEP_INTERVAL_MINUTES,
+                TimeUnit.MINUTES);
+    }
+
+    public void register(String jobId, String message) {
+        long now = clock.millis();
+        JobProgress job = new JobProgress(jobId, now);
+        job.update(QUEUED, message, 0.0);
+        active.put(jobId, job);
+        submitted.put(submissionKey(now, jobId), jobId);
+        submittedAt.put(jobId, now);
+        unfinished.put(jobId, jobId);
+        persist(job);
+    }
+
+    /** Records a status change; a progress of 1 completes the job and a negative one fails it. */
+    public void update(String jobId, String message, double progress) {
+        JobProgress job = active.get(jobId);
+        if (job == null) {
+            return;
+        }
+        String status = progress >= 1.0 ? "COMPLETED" : progress < 0 ? "FAILED" : PROCESSING;
+        job.update(status, message, progress);
+        persist(job);
+        if (job.isFinished()) {
+            active.remove(jobId);
+            synchronized (finished) {
+                finished.put(jobId, job);
+            }
+            unfinished.remove(jobId);
+            store.commit();
+        }
+    }
+
+    /**
+     * Updates a running job's counters in place. Counters that are not known
+     * are -1; progress only moves forward. The message is shown as
+     * {@code message: detail} when there is a detail.
+     */
+    public void updateCounters(String jobId, String message, String detail, double progress, long bytesDone,
+                               long bytesTotal, long rowsDone, long rowsTotal) {
+        JobProgress job = active.get(jobId);
+        if (job != null) {
+            job.updateCounters(message, detail, progress, bytesDone, bytesTotal, rowsDone, rowsTotal);
+        }
+    }
+
+    /** Forgets a job that was never started. */
+    public void remove(String jobId) {
+        JobProgress job = active.remove(jobId);
+        if (job != null) {
+            submitted.remove(submissionKey(job.submittedAt, jobId));
+        }
+        statuses.remove(jobId);
+        submittedAt.remove(jobId);
+        unfinished.remove(jobId);
+    }
+
+    /**
+     * Returns the job's status, or null if it is unknown or expired. Expired
+     * jobs are treated as absent as soon as they pass the TTL rather than
+     * when the next sweep removes them.
+     */
+    public ProcessingResponse get(String jobId) {
+        JobProgress job = active.get(jobId);
+        if (job != null) {
+            return job.toResponse();
+        }
+        synchronized (finished) {
+            job = finished.get(jobId);
+        }
+        if (job != null) {
+            return isExpired(job.submittedAt) ? null : job.toResponse();
+        }
+        Long submittedMillis = submittedAt.get(jobId);
+        if (submittedMillis != null && isExpired(submittedMillis)) {
+            return null;
+        }
+        String json = statuses.get(jobId);
+        return json == null ? null : read(json);
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    private boolean isExpired(long submittedMillis) {
+        return submittedMillis + ttlMillis < clock.millis();
+    }
+
+    void sweepExpired() {
+        String cutoff = submissionKey(clock.millis() - ttlMillis, "");
+        List<String> expired = new ArrayList<>();
+        Iterator<String> keys = submitted.keyIterator(null);
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (key.compareTo(cutoff) >= 0) {
+                break;
+            }
+            expired.add(key);
+        }
+
+        int removed = 0;
+        for (String key : expired) {
+            String jobId = submitted.get(key);
+            // A job that is still running outlives its TTL until it finishes
+            if (jobId == null || active.containsKey(jobId)) {
+                continue;
+            }
+            submitted.remove(key);
+            statuses.remove(jobId);
+            submittedAt.remove(jobId);
+            synchronized (finished) {
+                finished.remove(jobId);
+            }
+            removed++;
+        }
+        if (removed > 0) {
+            store.commit();
+            log.info("Removed {} expired job statuses", removed);
+        }
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        store.close();
+    }
+
+    private void failUnfinished() {
+        List<String> interrupted = new ArrayList<>(unfinished.keySet());
+        for (String jobId : interrupted) {
+            String json = statuses.get(jobId);
+            if (json != null) {
+                ProcessingResponse response = read(json);
+                response.setStatus("FAILED");
+                response.setMessage("Interrupted by a restart");
+                response.setProgress(-1.0);
+                statuses.put(jobId, write(response));
+            }
+            unfinished.remove(jobId);
+        }
+        if (!interrupted.isEmpty()) {
+            store.commit();
+            log.warn("Marked {} jobs interrupted by the restart as failed", interrupted.size());
+        }
+    }
+
+    private void persist(JobProgress job) {
+        statuses.put(job.jobId, write(job.toResponse()));
+    }
+
+    private String write(ProcessingResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ProcessingResponse read(String json) {
+        try {
+            return objectMapper.readValue(json, ProcessingResponse.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Zero-padded so keys sort by time
+    private static String submissionKey(long millis, String jobId) {
+        return String.format("%015d:%s", millis, jobId);
+    }
+
+    /** A job's status with counters that are updated in place. */
+    private static final class JobProgress {
+        private final String jobId;
+        private final long submittedAt;
+        private String status;
+        private String message;
+        private String detail;
+        private double progress;
+        private long bytesDone = -1;
+        private long bytesTotal = -1;
+        private long rowsDone = -1;
+        private long rowsTotal = -1;
+
+        private JobProgress(String jobId, long submittedAt) {
+            this.jobId = jobId;
+            this.submittedAt = submittedAt;
+        }
+
+        synchronized void update(String status, String message, double progress) {
+            this.status = status;
+            this.message = message;
+            this.detail = null;
+            this.progress = progress;
+        }
+
+        synchronized void updateCounters(String message, String detail, double progress, long bytesDone,
+                                         long bytesTotal, long rowsDone, long rowsTotal) {
+            if (!PROCESSING.equals(status)) {
+                return;
+            }
+            this.message = message;
+            this.detail = detail;
+            this.progress = Math.max(this.progress, progress);
+            this.bytesDone = bytesDone;
+            this.bytesTotal = bytesTotal;
+            this.rowsDone = rowsDone;
+            this.rowsTotal = rowsTotal;
+        }
+
+        synchronized boolean isFinished() {
+            return !QUEUED.equals(status) && !PROCESSING.equals(status);
+        }
+
+        synchronized ProcessingResponse toResponse() {
+            ProcessingResponse response = new ProcessingResponse(jobId, detail == null ? message : message + ": " + detail);
+            response.setStatus(status);
+            response.setProgress(progress);
+            response.setBytesDone(bytesDone < 0 ? null : bytesDone);
+            response.setBytesTotal(bytesTotal < 0 ? null : bytesTotal);
+            response.setRowsDone(rowsDone < 0 ? null : rowsDone);
+            response.setRowsTotal(rowsTotal < 0 ? null : rowsTotal);
+            return response;
+        }
+    }
+}
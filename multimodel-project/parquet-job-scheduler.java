@@ -0,0 +1,239 @@
+// Model/JobPriority.java
+package com.processor.model;
+
+/** Queued jobs start in priority order, and in submission order within a priority. */
+public enum JobPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
+
+// Service/JobRejectedException.java
+package com.processor.service;
+
+/** Thrown when the job queue is full; the caller should retry after the given delay. */
+public class JobRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public JobRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
+
+// Service/JobScheduler.java
+package com.processor.service;
+
+import com.processor.model.JobPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits, queues and starts processing jobs. At most {@code concurrency}
+ * jobs run at once, and at most {@code tenantConcurrency} of them for any
+ * one tenant; a tenant at its limit does not hold up other tenants' jobs
+ * queued behind it. When the queue, or a tenant's share of it, is full the
+ * job is rejected with an estimate of when to retry.
+ * <p>
+ * Jobs run on the job executor, which only drives them: downloading and
+ * waiting. The CPU-bound conversion runs on the separate, core-sized
+ * parquet worker pool, so the job executor can use virtual threads.
+ */
+@Component
+@Slf4j
+public class JobScheduler {
+
+    public static final String DEFAULT_TENANT = "default";
+
+    private final Executor executor;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final int tenantConcurrency;
+    private final int tenantQueueCapacity;
+
+    private final Map<JobPriority, Timer> waitTimers = new EnumMap<>(JobPriority.class);
+    private final Timer runTimer;
+    private final DistributionSummary queueDepth;
+    private final Counter rejected;
+
+    // All guarded by this
+    private final TreeSet<QueuedJob> queue = new TreeSet<>(Comparator
+            .comparing((QueuedJob job) -> job.priority)
+            .thenComparingLong(job -> job.sequence));
+    private final Map<String, Integer> queuedByTenant = new HashMap<>();
+    private final Map<String, Integer> runningByTenant = new HashMap<>();
+    private long sequence;
+    private int running;
+
+    public JobScheduler(@Qualifier("jobExecutor") Executor executor,
+                        @Value("${app.jobs.concurrency:4}") int concurrency,
+                        @Value("${app.jobs.queue-capacity:100}") int queueCapacity,
+                        @Value("${app.jobs.tenant-concurrency:2}") int tenantConcurrency,
+                        @Value("${app.jobs.tenant-queue-capacity:20}") int tenantQueueCapacity,
+                        MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.tenantConcurrency = tenantConcurrency;
+        this.tenantQueueCapacity = tenantQueueCapacity;
+
+        for (JobPriority priority : JobPriority.values()) {
+            waitTimers.put(priority, Timer.builder("parquet.jobs.wait")
+                    .description("Time jobs spend queued before starting")
+                    .tag("priority", priority.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.runTimer = Timer.builder("parquet.jobs.run")
+                .description("Time jobs spend running")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueDepth = DistributionSummary.builder("parquet.jobs.queue.depth")
+                .description("Jobs waiting in the queue, sampled on every submission")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("parquet.jobs.rejected")
+                .description("Jobs rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("parquet.jobs.queued", this, JobScheduler::getQueuedCount)
+                .description("Jobs waiting to start")
+                .register(meterRegistry);
+        Gauge.builder("parquet.jobs.running", this, JobScheduler::getRunningCount)
+                .description("Jobs running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a job, starting it right away if there is room.
+     *
+     * @throws JobRejectedException if the queue or the tenant's share of it is full
+     */
+    public void submit(String jobId, String tenant, JobPriority priority, Runnable job) {
+        String owner = tenant == null || tenant.isBlank() ? DEFAULT_TENANT : tenant;
+        List<QueuedJob> started;
+        synchronized (this) {
+            if (queue.size() >= queueCapacity) {
+                throw reject("Job queue is full");
+            }
+            if (queuedByTenant.getOrDefault(owner, 0) >= tenantQueueCapacity) {
+                throw reject("Too many queued jobs for tenant " + owner);
+            }
+            queue.add(new QueuedJob(jobId, owner, priority, job, sequence++, System.nanoTime()));
+            queuedByTenant.merge(owner, 1, Integer::sum);
+            queueDepth.record(queue.size());
+            started = dispatch();
+        }
+        launch(started);
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    // Takes the jobs that can start now off the queue; the caller launches them outside the lock
+    private List<QueuedJob> dispatch() {
+        List<QueuedJob> started = new ArrayList<>();
+        Iterator<QueuedJob> queued = queue.iterator();
+        while (running < concurrency && queued.hasNext()) {
+            QueuedJob job = queued.next();
+            if (runningByTenant.getOrDefault(job.tenant, 0) >= tenantConcurrency) {
+                continue;
+            }
+            queued.remove();
+            queuedByTenant.computeIfPresent(job.tenant, (tenant, count) -> count == 1 ? null : count - 1);
+            runningByTenant.merge(job.tenant, 1, Integer::sum);
+            running++;
+            started.add(job);
+        }
+        return started;
+    }
+
+    private void launch(List<QueuedJob> jobs) {
+        for (QueuedJob job : jobs) {
+            waitTimers.get(job.priority).record(System.nanoTime() - job.queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                executor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                log.error("Job {} could not be started: {}", job.jobId, e.getMessage());
+                finished(job);
+            }
+        }
+    }
+
+    private void run(QueuedJob job) {
+        long start = System.nanoTime();
+        try {
+            job.task.run();
+        } catch (RuntimeException e) {
+            log.error("Job {} failed: {}", job.jobId, e.getMessage(), e);
+        } finally {
+            runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            finished(job);
+        }
+    }
+
+    private void finished(QueuedJob job) {
+        List<QueuedJob> started;
+        synchronized (this) {
+            running--;
+            runningByTenant.computeIfPresent(job.tenant, (tenant, count) -> count == 1 ? null : count - 1);
+            started = dispatch();
+        }
+        launch(started);
+    }
+
+    // Roughly when a slot frees up for a new job: the queue ahead of it, spread over the running slots
+    private JobRejectedException reject(String message) {
+        rejected.increment();
+        double meanRunSeconds = runTimer.count() == 0 ? 1.0 : runTimer.mean(TimeUnit.SECONDS);
+        long retryAfter = (long) Math.ceil(meanRunSeconds * (queue.size() + 1) / Math.max(1, concurrency));
+        return new JobRejectedException(message, Math.max(1, retryAfter));
+    }
+
+    private static final class QueuedJob {
+        private final String jobId;
+        private final String tenant;
+        private final JobPriority priority;
+        private final Runnable task;
+        private final long sequence;
+        private final long queuedAt;
+
+        private QueuedJob(String jobId, String tenant, JobPriority priority, Runnable task, long sequence,
+                          long queuedAt) {
+            this.jobId = jobId;
+            this.tenant = tenant;
+            this.priority = priority;
+            this.task = task;
+            this.sequence = sequence;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
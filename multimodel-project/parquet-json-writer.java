@@ -0,0 +1,176 @@
+// Model/OutputFormat.java
+package com.processor.model;
+
+public enum OutputFormat {
+    // One pretty-printed JSON array per parquet file
+    JSON(".json"),
+    // One compact JSON object per line (newline-delimited JSON)
+    NDJSON(".ndjson"),
+    // An Arrow IPC stream, for flat schemas
+    ARROW(".arrow"),
+    // Parquet re-encoded with the configured codec and row-group size
+    PARQUET(".parquet");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
+
+// Service/ParquetJsonWriter.java
+package com.processor.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.processor.model.OutputFormat;
+import org.apache.avro.generic.GenericRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams records to a JSON array or NDJSON file one at a time, so memory
+ * use does not depend on the number of rows in the parquet file.
+ * <p>
+ * An unframed writer emits only the records and their separators (no array
+ * brackets), which lets row-group parts be concatenated into one output
+ * with {@link #writeHeader}, {@link #writePartSeparator} and {@link #writeFooter}.
+ * <p>
+ * The writer owns the stream it is given and closes it, also when the
+ * constructor fails. After a failed write the array is left unclosed, so a
+ * partial output cannot pass for a complete one.
+ */
+public class ParquetJsonWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] JSON_HEADER = "[\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_SEPARATOR = ",\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_FOOTER = "\n]\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_EMPTY_FOOTER = "]\n".getBytes(StandardCharsets.UTF_8);
+
+    private final JsonGenerator generator;
+    private final ObjectWriter recordWriter;
+    private final OutputFormat format;
+    private final boolean framed;
+    private long recordCount;
+    // Set while a record is being written, so still set if writing it failed
+    private boolean recordOpen;
+
+    public ParquetJsonWriter(File outputFile, OutputFormat format, ObjectMapper objectMapper) throws IOException {
+        this(new FileOutputStream(outputFile), format, objectMapper, true);
+    }
+
+    public ParquetJsonWriter(OutputStream out, OutputFormat format, ObjectMapper objectMapper,
+                             boolean framed) throws IOException {
+        this.format = format;
+        this.framed = framed;
+        // Flushing after every record would turn each row into a write syscall
+        this.recordWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try {
+            this.generator = objectMapper.getFactory().createGenerator(
+                    new BufferedOutputStream(out, BUFFER_SIZE), JsonEncoding.UTF8);
+            // Records are written as root values; separators are written explicitly
+            this.generator.setRootValueSeparator(null);
+
+            if (format == OutputFormat.JSON) {
+                generator.setPrettyPrinter(new DefaultPrettyPrinter().withRootSeparator((SerializableString) null));
+            }
+            if (framed && format == OutputFormat.JSON) {
+                generator.writeRaw("[\n");
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                out.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    public void write(Object record) throws IOException {
+        beforeRecord();
+        recordWriter.writeValue(generator, record);
+        afterRecord();
+    }
+
+    public void write(RecordJsonConverter converter, GenericRecord record) throws IOException {
+        beforeRecord();
+        converter.write(generator, record);
+        afterRecord();
+    }
+
+    /** Writes every row of the batch. */
+    public void write(ColumnarJsonConverter converter, ColumnarBatch batch) throws IOException {
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            beforeRecord();
+            converter.writeRow(generator, batch, row);
+            afterRecord();
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private void beforeRecord() throws IOException {
+        recordOpen = true;
+        if (format == OutputFormat.JSON && recordCount > 0) {
+            generator.writeRaw(",\n");
+        }
+    }
+
+    private void afterRecord() throws IOException {
+        if (format == OutputFormat.NDJSON) {
+            generator.writeRaw('\n');
+        }
+        recordCount++;
+        recordOpen = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (framed && format == OutputFormat.JSON && !recordOpen) {
+                generator.writeRaw(recordCount > 0 ? "\n]\n" : "]\n");
+            }
+        } finally {
+            generator.close();
+        }
+    }
+
+    // Framing helpers used when assembling unframed parts into one output
+
+    public static void writeHeader(OutputStream out, OutputFormat format) throws IOException {
+        if (format == OutputFormat.JSON) {
+            out.write(JSON_HEADER);
+        }
+    }
+
+    public static void writePartSeparator(OutputStream out, OutputFormat format) throws IOException {
+        if (format == OutputFormat.JSON) {
+            out.write(JSON_SEPARATOR);
+        }
+    }
+
+    public static void writeFooter(OutputStream out, OutputFormat format, boolean hasRecords) throws IOException {
+        if (format == OutputFormat.JSON) {
+            out.write(hasRecords ? JSON_FOOTER : JSON_EMPTY_FOOTER);
+        }
+    }
+}
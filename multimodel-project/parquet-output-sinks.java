@@ -0,0 +1,836 @@
+// Service/OutputSink.java
+package com.processor.service;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Writes converted records in one output format. Row groups are converted
+ * in parallel, each into a part file of its own, and the parts of a parquet
+ * file are then joined into its output in order. A new output format only
+ * has to provide these two steps; the read path does not change.
+ */
+public interface OutputSink {
+
+    /** Writes the records of one row group to a part file. */
+    interface PartWriter extends Closeable {
+        void write(GenericRecord record) throws IOException;
+
+        long getRecordCount();
+    }
+
+    /** A part writer that can also be given rows read column by column. */
+    interface BatchPartWriter extends PartWriter {
+        void write(ColumnarBatch batch) throws IOException;
+    }
+
+    /** Joins the parts of one parquet file into its output file. */
+    interface Assembly extends Closeable {
+        /** Appends a part that has records; parts are appended in output order. */
+        void append(File partFile) throws IOException;
+
+        /** Completes the output. Closing an unfinished assembly abandons it. */
+        void finish() throws IOException;
+    }
+
+    /**
+     * Formats with a schema up front need records read with exactly the
+     * output schema; they are given it in {@link #openPart} and {@link #startOutput}.
+     * Others get a null schema and see each record's own.
+     */
+    boolean needsSchema();
+
+    /** Whether the parts it opens are {@link BatchPartWriter}s, so row groups are planned for columnar reads. */
+    default boolean supportsBatches() {
+        return false;
+    }
+
+    /**
+     * @param outputSchema  the output columns, or null if {@link #needsSchema} is false
+     * @param outputColumns the record fields to write; the others were read only for the filter
+     */
+    PartWriter openPart(File partFile, Schema outputSchema, Predicate<String> outputColumns) throws IOException;
+
+    Assembly startOutput(File outputFile, Schema outputSchema) throws IOException;
+}
+
+// Service/OutputSinks.java
+package com.processor.service;
+
+import com.processor.model.OutputFormat;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/** The sink for each {@link OutputFormat}. */
+@Component
+public class OutputSinks {
+
+    private final Map<OutputFormat, OutputSink> sinks = new EnumMap<>(OutputFormat.class);
+
+    public OutputSinks() {
+        this(CompressionCodecName.SNAPPY, 128L * 1024 * 1024, 64 * 1024);
+    }
+
+    @Autowired
+    public OutputSinks(@Value("${app.output.parquet.codec:SNAPPY}") CompressionCodecName parquetCodec,
+                       @Value("${app.output.parquet.row-group-size:134217728}") long parquetRowGroupSize,
+                       @Value("${app.output.arrow.batch-size:65536}") int arrowBatchSize) {
+        sinks.put(OutputFormat.JSON, new JsonSink(OutputFormat.JSON));
+        sinks.put(OutputFormat.NDJSON, new JsonSink(OutputFormat.NDJSON));
+        sinks.put(OutputFormat.ARROW, new ArrowSink(arrowBatchSize));
+        sinks.put(OutputFormat.PARQUET, new ParquetSink(parquetCodec, parquetRowGroupSize));
+    }
+
+    public OutputSink get(OutputFormat format) {
+        return sinks.get(format);
+    }
+}
+
+// Service/JsonSink.java
+package com.processor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.processor.model.OutputFormat;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.function.Predicate;
+
+/** JSON arrays and NDJSON: parts are unframed records, joined with the format's separators. */
+final class JsonSink implements OutputSink {
+
+    private final OutputFormat format;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    JsonSink(OutputFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public boolean needsSchema() {
+        return false;
+    }
+
+    @Override
+    public boolean supportsBatches() {
+        return true;
+    }
+
+    @Override
+    public PartWriter openPart(File partFile, Schema outputSchema, Predicate<String> outputColumns) throws IOException {
+        ParquetJsonWriter writer = new ParquetJsonWriter(new FileOutputStream(partFile), format, objectMapper, false);
+        return new BatchPartWriter() {
+            private RecordJsonConverter converter;
+            private ColumnarJsonConverter batchConverter;
+
+            @Override
+            public void write(GenericRecord record) throws IOException {
+                // Columns read only to evaluate the filter are compiled out of the output
+                if (converter == null || converter.getSchema() != record.getSchema()) {
+                    converter = RecordJsonConverter.compile(record.getSchema(), outputColumns);
+                }
+                writer.write(converter, record);
+            }
+
+            @Override
+            public void write(ColumnarBatch batch) throws IOException {
+                // Batches only hold output columns, the same ones for the whole part
+                if (batchConverter == null) {
+                    batchConverter = ColumnarJsonConverter.compile(batch.getColumns());
+                }
+                writer.write(batchConverter, batch);
+            }
+
+            @Override
+            public long getRecordCount() {
+                return writer.getRecordCount();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    @Override
+    public Assembly startOutput(File outputFile, Schema outputSchema) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 64 * 1024);
+        ParquetJsonWriter.writeHeader(out, format);
+        return new Assembly() {
+            private boolean hasRecords;
+
+            @Override
+            public void append(File partFile) throws IOException {
+                if (hasRecords) {
+                    ParquetJsonWriter.writePartSeparator(out, format);
+                }
+                Files.copy(partFile.toPath(), out);
+                hasRecords = true;
+            }
+
+            @Override
+            public void finish() throws IOException {
+                ParquetJsonWriter.writeFooter(out, format, hasRecords);
+                out.close();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+}
+
+// Service/ArrowSink.java
+package com.processor.service;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Arrow IPC streams. Each part holds record batches only; the output is the
+ * schema message, the parts' batches in order and the end-of-stream marker,
+ * which is a valid stream because every message is padded to 8 bytes.
+ * <p>
+ * Only flat schemas are supported: primitive columns, optionally nullable,
+ * with date, time, timestamp and decimal logical types. INT96 timestamps
+ * become nanosecond timestamps.
+ */
+final class ArrowSink implements OutputSink {
+
+    private static final BufferAllocator ROOT_ALLOCATOR = new RootAllocator();
+    private static final long JULIAN_EPOCH_OFFSET_DAYS = 2_440_588L;
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    private final int batchSize;
+
+    ArrowSink(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean needsSchema() {
+        return true;
+    }
+
+    @Override
+    public PartWriter openPart(File partFile, Schema outputSchema, Predicate<String> outputColumns) throws IOException {
+        return new ArrowPartWriter(partFile, outputSchema);
+    }
+
+    @Override
+    public Assembly startOutput(File outputFile, Schema outputSchema) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 64 * 1024);
+        WriteChannel channel = new WriteChannel(Channels.newChannel(out));
+        MessageSerializer.serialize(channel, toArrow(outputSchema));
+        return new Assembly() {
+            @Override
+            public void append(File partFile) throws IOException {
+                Files.copy(partFile.toPath(), out);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                ArrowStreamWriter.writeEndOfStream(channel, IpcOption.DEFAULT);
+                out.close();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    static org.apache.arrow.vector.types.pojo.Schema toArrow(Schema schema) {
+        List<Field> fields = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            Schema fieldSchema = field.schema();
+            boolean nullable = fieldSchema.getType() == Schema.Type.UNION;
+            fields.add(new Field(field.name(),
+                    new FieldType(nullable, arrowType(field.name(), nonNull(field.name(), fieldSchema)), null), null));
+        }
+        return new org.apache.arrow.vector.types.pojo.Schema(fields);
+    }
+
+    private static ArrowType arrowType(String column, Schema schema) {
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType instanceof LogicalTypes.Decimal) {
+            LogicalTypes.Decimal decimal = (LogicalTypes.Decimal) logicalType;
+            return new ArrowType.Decimal(decimal.getPrecision(), decimal.getScale(), 128);
+        }
+        if (logicalType != null) {
+            switch (logicalType.getName()) {
+                case "date":
+                    return new ArrowType.Date(DateUnit.DAY);
+                case "time-millis":
+                    return new ArrowType.Time(TimeUnit.MILLISECOND, 32);
+                case "time-micros":
+                    return new ArrowType.Time(TimeUnit.MICROSECOND, 64);
+                case "timestamp-millis":
+                    return new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC");
+                case "timestamp-micros":
+                    return new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC");
+                case "local-timestamp-millis":
+                    return new ArrowType.Timestamp(TimeUnit.MILLISECOND, null);
+                case "local-timestamp-micros":
+                    return new ArrowType.Timestamp(TimeUnit.MICROSECOND, null);
+                default:
+                    // uuid and unknown logical types fall back to their underlying type
+            }
+        }
+
+        switch (schema.getType()) {
+            case BOOLEAN:
+                return ArrowType.Bool.INSTANCE;
+            case INT:
+                return new ArrowType.Int(32, true);
+            case LONG:
+                return new ArrowType.Int(64, true);
+            case FLOAT:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+            case DOUBLE:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+            case STRING:
+            case ENUM:
+                return ArrowType.Utf8.INSTANCE;
+            case BYTES:
+                return ArrowType.Binary.INSTANCE;
+            case FIXED:
+                if (isInt96(schema)) {
+                    return new ArrowType.Timestamp(TimeUnit.NANOSECOND, "UTC");
+                }
+                return new ArrowType.FixedSizeBinary(schema.getFixedSize());
+            default:
+                throw new IllegalArgumentException("Column " + column + " of type " + schema.getType()
+                        + " cannot be written as Arrow; only flat schemas are supported");
+        }
+    }
+
+    private static Schema nonNull(String column, Schema schema) {
+        if (schema.getType() != Schema.Type.UNION) {
+            return schema;
+        }
+        List<Schema> branches = schema.getTypes();
+        if (branches.size() == 2 && branches.get(0).getType() == Schema.Type.NULL) {
+            return branches.get(1);
+        }
+        if (branches.size() == 2 && branches.get(1).getType() == Schema.Type.NULL) {
+            return branches.get(0);
+        }
+        throw new IllegalArgumentException("Column " + column + " is a union, which cannot be written as Arrow");
+    }
+
+    static boolean isInt96(Schema schema) {
+        return "INT96".equals(schema.getName()) && schema.getFixedSize() == 12;
+    }
+
+    @FunctionalInterface
+    private interface ValueSetter {
+        void set(int index, Object value);
+    }
+
+    private static ValueSetter setterFor(FieldVector vector, Schema schema) {
+        if (vector instanceof DecimalVector) {
+            DecimalVector decimals = (DecimalVector) vector;
+            int scale = decimals.getScale();
+            return (index, value) -> {
+                if (value instanceof BigDecimal) {
+                    decimals.setSafe(index, ((BigDecimal) value).setScale(scale));
+                } else {
+                    decimals.setBigEndianSafe(index, value instanceof GenericFixed
+                            ? ((GenericFixed) value).bytes() : bytes((ByteBuffer) value));
+                }
+            };
+        }
+        if (vector instanceof TimeStampVector) {
+            TimeStampVector timestamps = (TimeStampVector) vector;
+            if (isInt96(schema)) {
+                return (index, value) -> timestamps.setSafe(index, int96ToNanos(((GenericFixed) value).bytes()));
+            }
+            return (index, value) -> timestamps.setSafe(index, (Long) value);
+        }
+        if (vector instanceof DateDayVector) {
+            return (index, value) -> ((DateDayVector) vector).setSafe(index, (Integer) value);
+        }
+        if (vector instanceof TimeMilliVector) {
+            return (index, value) -> ((TimeMilliVector) vector).setSafe(index, (Integer) value);
+        }
+        if (vector instanceof TimeMicroVector) {
+            return (index, value) -> ((TimeMicroVector) vector).setSafe(index, (Long) value);
+        }
+        if (vector instanceof BitVector) {
+            return (index, value) -> ((BitVector) vector).setSafe(index, (Boolean) value ? 1 : 0);
+        }
+        if (vector instanceof IntVector) {
+            return (index, value) -> ((IntVector) vector).setSafe(index, (Integer) value);
+        }
+        if (vector instanceof BigIntVector) {
+            return (index, value) -> ((BigIntVector) vector).setSafe(index, (Long) value);
+        }
+        if (vector instanceof Float4Vector) {
+            return (index, value) -> ((Float4Vector) vector).setSafe(index, (Float) value);
+        }
+        if (vector instanceof Float8Vector) {
+            return (index, value) -> ((Float8Vector) vector).setSafe(index, (Double) value);
+        }
+        if (vector instanceof VarCharVector) {
+            VarCharVector strings = (VarCharVector) vector;
+            return (index, value) -> {
+                // Parquet strings arrive as UTF-8 and are copied without decoding
+                if (value instanceof Utf8) {
+                    Utf8 utf8 = (Utf8) value;
+                    strings.setSafe(index, utf8.getBytes(), 0, utf8.getByteLength());
+                } else {
+                    strings.setSafe(index, value.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            };
+        }
+        if (vector instanceof VarBinaryVector) {
+            VarBinaryVector binaries = (VarBinaryVector) vector;
+            return (index, value) -> {
+                ByteBuffer buffer = (ByteBuffer) value;
+                binaries.setSafe(index, buffer, buffer.position(), buffer.remaining());
+            };
+        }
+        if (vector instanceof FixedSizeBinaryVector) {
+            return (index, value) -> ((FixedSizeBinaryVector) vector).setSafe(index, ((GenericFixed) value).bytes());
+        }
+        throw new IllegalArgumentException("No Arrow writer for " + vector.getField());
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        ByteBuffer copy = buffer.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+
+    // INT96: 8 bytes of nanoseconds within the day, then a 4 byte Julian day, little endian
+    static long int96ToNanos(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long nanosOfDay = buffer.getLong();
+        long epochDay = buffer.getInt() - JULIAN_EPOCH_OFFSET_DAYS;
+        return epochDay * NANOS_PER_DAY + nanosOfDay;
+    }
+
+    /** Fills a batch of vectors row by row and writes it out each time it is full. */
+    private final class ArrowPartWriter implements PartWriter {
+        private final Schema outputSchema;
+        private final BufferAllocator allocator;
+        private final VectorSchemaRoot root;
+        private final FieldVector[] vectors;
+        private final ValueSetter[] setters;
+        private final OutputStream out;
+        private final WriteChannel channel;
+        private Schema recordSchema;
+        private int[] positions;
+        private int rows;
+        private long recordCount;
+
+        private ArrowPartWriter(File partFile, Schema outputSchema) throws IOException {
+            this.outputSchema = outputSchema;
+            this.allocator = ROOT_ALLOCATOR.newChildAllocator(partFile.getName(), 0, Long.MAX_VALUE);
+            this.root = VectorSchemaRoot.create(toArrow(outputSchema), allocator);
+            this.vectors = root.getFieldVectors().toArray(new FieldVector[0]);
+            this.setters = new ValueSetter[vectors.length];
+            for (int i = 0; i < vectors.length; i++) {
+                Schema.Field field = outputSchema.getFields().get(i);
+                setters[i] = setterFor(vectors[i], nonNull(field.name(), field.schema()));
+            }
+            this.out = new BufferedOutputStream(new FileOutputStream(partFile), 64 * 1024);
+            this.channel = new WriteChannel(Channels.newChannel(out));
+        }
+
+        @Override
+        public void write(GenericRecord record) throws IOException {
+            // Records may carry columns read only for the filter, so output columns are found by name
+            if (record.getSchema() != recordSchema) {
+                recordSchema = record.getSchema();
+                positions = new int[vectors.length];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = recordSchema.getField(outputSchema.getFields().get(i).name()).pos();
+                }
+            }
+            for (int i = 0; i < vectors.length; i++) {
+                Object value = record.get(positions[i]);
+                if (value == null) {
+                    vectors[i].setNull(rows);
+                } else {
+                    setters[i].set(rows, value);
+                }
+            }
+            recordCount++;
+            if (++rows == batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                out.close();
+            } finally {
+                root.close();
+                allocator.close();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            root.setRowCount(rows);
+            try (ArrowRecordBatch batch = new VectorUnloader(root).getRecordBatch()) {
+                MessageSerializer.serialize(channel, batch);
+            }
+            for (FieldVector vector : vectors) {
+                vector.reset();
+            }
+            rows = 0;
+        }
+    }
+}
+
+// Service/ParquetSink.java
+package com.processor.service;
+
+import com.processor.util.ByteBufferInputFile;
+import com.processor.util.LocalOutputFile;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.avro.AvroSchemaConverter;
+import org.apache.parquet.column.ParquetProperties;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Re-encoded parquet, with the configured codec and row-group size. Each
+ * part is a parquet file of its own; the output is written by copying the
+ * parts' row groups into one file without decoding them again. INT96
+ * timestamps become INT64 microsecond timestamps rather than 12-byte
+ * fixed values, which readers would no longer know to be timestamps.
+ */
+final class ParquetSink implements OutputSink {
+
+    private final CompressionCodecName codec;
+    private final long rowGroupSize;
+    private final Configuration conf = new Configuration();
+
+    ParquetSink(CompressionCodecName codec, long rowGroupSize) {
+        this.codec = codec;
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    @Override
+    public boolean needsSchema() {
+        return true;
+    }
+
+    @Override
+    public PartWriter openPart(File partFile, Schema outputSchema, Predicate<String> outputColumns) throws IOException {
+        Schema writtenSchema = writtenSchema(outputSchema);
+        ParquetWriter<GenericRecord> writer = AvroParquetWriter
+                .<GenericRecord>builder(new LocalOutputFile(partFile.toPath()))
+                .withSchema(writtenSchema)
+                .withConf(conf)
+                .withCompressionCodec(codec)
+                .withRowGroupSize(rowGroupSize)
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .build();
+        GenericData.Record projected = new GenericData.Record(writtenSchema);
+        boolean[] int96 = new boolean[outputSchema.getFields().size()];
+        for (int i = 0; i < int96.length; i++) {
+            int96[i] = writtenSchema.getFields().get(i).schema() != outputSchema.getFields().get(i).schema();
+        }
+        return new PartWriter() {
+            private Schema recordSchema;
+            private int[] positions;
+            private long recordCount;
+
+            @Override
+            public void write(GenericRecord record) throws IOException {
+                // Drop the columns read only for the filter; the writer copies the values, so one record is reused
+                if (record.getSchema() != recordSchema) {
+                    recordSchema = record.getSchema();
+                    positions = new int[outputSchema.getFields().size()];
+                    for (int i = 0; i < positions.length; i++) {
+                        positions[i] = recordSchema.getField(outputSchema.getFields().get(i).name()).pos();
+                    }
+                }
+                for (int i = 0; i < positions.length; i++) {
+                    Object value = record.get(positions[i]);
+                    projected.put(i, int96[i] && value != null ? int96ToMicros((GenericFixed) value) : value);
+                }
+                writer.write(projected);
+                recordCount++;
+            }
+
+            @Override
+            public long getRecordCount() {
+                return recordCount;
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    @Override
+    public Assembly startOutput(File outputFile, Schema outputSchema) throws IOException {
+        Schema writtenSchema = writtenSchema(outputSchema);
+        LocalOutputFile output = new LocalOutputFile(outputFile.toPath());
+        // The parts' row groups are copied as they are, so there is nothing to pad
+        ParquetFileWriter writer = new ParquetFileWriter(output, new AvroSchemaConverter(conf).convert(writtenSchema),
+                ParquetFileWriter.Mode.OVERWRITE, rowGroupSize, 0,
+                ParquetProperties.DEFAULT_COLUMN_INDEX_TRUNCATE_LENGTH,
+                ParquetProperties.DEFAULT_STATISTICS_TRUNCATE_LENGTH,
+                ParquetProperties.DEFAULT_PAGE_WRITE_CHECKSUM_ENABLED);
+        writer.start();
+        return new Assembly() {
+            @Override
+            public void append(File partFile) throws IOException {
+                try (FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.READ)) {
+                    writer.appendFile(new ByteBufferInputFile(
+                            channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+                }
+            }
+
+            @Override
+            public void finish() throws IOException {
+                // Lets Avro readers see the same schema the parts were written with
+                Map<String, String> metadata = new HashMap<>();
+                metadata.put("parquet.avro.schema", writtenSchema.toString());
+                metadata.put("writer.model.name", "avro");
+                writer.end(metadata);
+            }
+
+            @Override
+            public void close() throws IOException {
+                output.close();
+            }
+        };
+    }
+
+    /** The output schema with INT96 columns, as read, replaced by microsecond timestamps. */
+    static Schema writtenSchema(Schema outputSchema) {
+        List<Schema.Field> fields = new ArrayList<>();
+        boolean changed = false;
+        for (Schema.Field field : outputSchema.getFields()) {
+            Schema fieldSchema = withoutInt96(field.schema());
+            changed |= fieldSchema != field.schema();
+            fields.add(new Schema.Field(field, fieldSchema));
+        }
+        if (!changed) {
+            return outputSchema;
+        }
+        Schema written = Schema.createRecord(outputSchema.getName(), outputSchema.getDoc(),
+                outputSchema.getNamespace(), false, fields);
+        outputSchema.getObjectProps().forEach(written::addProp);
+        return written;
+    }
+
+    private static Schema withoutInt96(Schema schema) {
+        if (ArrowSink.isInt96(schema)) {
+            return LogicalTypes.timestampMicros().addToSchema(Schema.create(Schema.Type.LONG));
+        }
+        if (schema.getType() != Schema.Type.UNION) {
+            return schema;
+        }
+        List<Schema> branches = new ArrayList<>();
+        boolean changed = false;
+        for (Schema branch : schema.getTypes()) {
+            Schema written = withoutInt96(branch);
+            changed |= written != branch;
+            branches.add(written);
+        }
+        return changed ? Schema.createUnion(branches) : schema;
+    }
+
+    private static long int96ToMicros(GenericFixed value) {
+        return Math.floorDiv(ArrowSink.int96ToNanos(value.bytes()), 1000L);
+    }
+}
+
+// Util/LocalOutputFile.java
+package com.processor.util;
+
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A parquet {@link OutputFile} on the local file system, written without
+ * Hadoop's checksum side files. Closing it closes a stream that was never
+ * closed by its writer, for writers that are abandoned.
+ */
+public final class LocalOutputFile implements OutputFile, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private OutputStream stream;
+
+    public LocalOutputFile(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) throws IOException {
+        return open(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) throws IOException {
+        return open(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+        return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private PositionOutputStream open(StandardOpenOption... options) throws IOException {
+        stream = new BufferedOutputStream(Files.newOutputStream(path, options), BUFFER_SIZE);
+        OutputStream out = stream;
+        return new PositionOutputStream() {
+            private long position;
+
+            @Override
+            public long getPos() {
+                return position;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                position++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                position += len;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+}
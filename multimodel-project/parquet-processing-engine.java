@@ -0,0 +1,483 @@
+// Service/ParquetProcessingEngine.java
+package com.processor.service;
+
+import com.processor.model.InvalidQueryException;
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.processor.model.ParquetSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.avro.AvroReadSupport;
+import org.apache.parquet.avro.AvroSchemaConverter;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.compat.RowGroupFilter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.schema.MessageType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Converts parquet files, on disk or read in place from a zip archive, by
+ * splitting them into one task per row group and running the tasks on a
+ * bounded worker pool. Row groups that the query's filter rules out from
+ * their statistics are skipped without being read, and only the projected
+ * columns are decoded. Each task writes a part file through the format's
+ * {@link OutputSink}, and parts are appended to their file's output as soon
+ * as possible: in row-group order when ordered output is requested,
+ * otherwise in completion order.
+ * <p>
+ * Files with flat schemas are read column by column into batches of
+ * primitive arrays when the format can be written from them and the query
+ * has no row filter; others are read as Avro records.
+ * <p>
+ * When a {@link ResultCache} is configured, a source whose content, query
+ * and format were converted before is restored from the cache without
+ * being planned or read, and every finished output is added to it.
+ */
+@Component
+@Slf4j
+public class ParquetProcessingEngine {
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(long rowsDone, long totalRows, String fileName);
+    }
+
+    /** The records written, and the sources, by name, whose outputs were completed or restored from the cache. */
+    public static final class Result {
+        private final long records;
+        private final Set<String> converted;
+
+        Result(long records, Set<String> converted) {
+            this.records = records;
+            this.converted = converted;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /** False for a source that was skipped or failed, which has no fresh output. */
+        public boolean isConverted(String sourceName) {
+            return converted.contains(sourceName);
+        }
+    }
+
+    private final ForkJoinPool workerPool;
+    private final boolean orderedOutput;
+    private final ResultCache resultCache;
+    private final OutputSinks outputSinks;
+    private final boolean columnarReads;
+
+    public ParquetProcessingEngine(ForkJoinPool workerPool, boolean orderedOutput) {
+        this(workerPool, orderedOutput, null);
+    }
+
+    public ParquetProcessingEngine(ForkJoinPool workerPool, boolean orderedOutput, ResultCache resultCache) {
+        this(workerPool, orderedOutput, resultCache, new OutputSinks());
+    }
+
+    public ParquetProcessingEngine(ForkJoinPool workerPool, boolean orderedOutput, ResultCache resultCache,
+                                   OutputSinks outputSinks) {
+        this(workerPool, orderedOutput, true, resultCache, outputSinks);
+    }
+
+    @Autowired
+    public ParquetProcessingEngine(@Qualifier("parquetWorkerPool") ForkJoinPool workerPool,
+                                   @Value("${app.processing.ordered-output:true}") boolean orderedOutput,
+                                   @Value("${app.processing.columnar:true}") boolean columnarReads,
+                                   ResultCache resultCache, OutputSinks outputSinks) {
+        this.workerPool = workerPool;
+        this.orderedOutput = orderedOutput;
+        this.columnarReads = columnarReads;
+        this.resultCache = resultCache == null || !resultCache.isEnabled() ? null : resultCache;
+        this.outputSinks = outputSinks;
+    }
+
+    public long process(List<File> parquetFiles, File outputDir, OutputFormat format, ParquetQuery query,
+                        ProgressListener listener) throws IOException {
+        return processSources(parquetFiles.stream().map(ParquetSource::of).collect(Collectors.toList()),
+                outputDir, format, query, listener).getRecords();
+    }
+
+    /**
+     * Converts all sources and returns the records written and which sources
+     * were converted. A failure in one source is logged and does not stop the
+     * others.
+     *
+     * @throws InvalidQueryException if the query does not fit a source's schema
+     */
+    public Result processSources(List<ParquetSource> sources, File outputDir, OutputFormat format,
+                               ParquetQuery query, ProgressListener listener) throws IOException {
+        Configuration conf = new Configuration();
+        // Legacy INT96 timestamps arrive as 12-byte fixed values instead of failing the read
+        conf.setBoolean(AvroReadSupport.READ_INT96_AS_FIXED, true);
+        OutputSink sink = outputSinks.get(format);
+        File partsDir = Files.createTempDirectory(outputDir.toPath(), ".parts").toFile();
+
+        // Plan the row-group tasks from the file footers
+        List<RowGroupTask> tasks = new ArrayList<>();
+        Set<String> converted = ConcurrentHashMap.newKeySet();
+        long totalRows = 0;
+        long cachedRows = 0;
+        String lastCached = null;
+        for (int sourceIndex = 0; sourceIndex < sources.size(); sourceIndex++) {
+            ParquetSource source = sources.get(sourceIndex);
+            File outputFile = outputFile(outputDir, source.getName(), format);
+            if (outputFile == null) {
+                log.error("Skipping {}: its output would be outside {}", source.getName(), outputDir.getPath());
+                continue;
+            }
+            if (source.getFile() != null
+                    && Objects.equals(source.getFile().getCanonicalFile(), outputFile.getCanonicalFile())) {
+                log.error("Skipping {}: its output would overwrite it", source.getName());
+                continue;
+            }
+
+            try {
+                Files.createDirectories(outputFile.getParentFile().toPath());
+            } catch (IOException e) {
+                log.error("Error creating the output directory of {}: {}", source.getName(), e.getMessage());
+                continue;
+            }
+
+            String cacheKey = null;
+            if (resultCache != null) {
+                try {
+                    cacheKey = ResultCache.key(source.getContentHash(), format, query, orderedOutput);
+                    long cachedRecords = resultCache.restore(cacheKey, outputFile);
+                    if (cachedRecords >= 0) {
+                        log.info("Restored {} from the result cache", outputFile.getPath());
+                        cachedRows += cachedRecords;
+                        lastCached = source.getName();
+                        converted.add(source.getName());
+                        continue;
+                    }
+                } catch (IOException e) {
+                    log.warn("Result cache unavailable for {}: {}", source.getName(), e.getMessage());
+                    cacheKey = null;
+                }
+            }
+
+            InputFile inputFile;
+            List<BlockMetaData> rowGroups;
+            Configuration fileConf;
+            FilterCompat.Filter filter;
+            Schema outputSchema = null;
+            MessageType columnarProjection = null;
+            try {
+                inputFile = source.newInputFile(conf);
+            } catch (Exception e) {
+                log.error("Error opening {}: {}", source.getName(), e.getMessage());
+                continue;
+            }
+            try (ParquetFileReader footerReader = ParquetFileReader.open(inputFile)) {
+                MessageType fileSchema = footerReader.getFooter().getFileMetaData().getSchema();
+                fileConf = query.configure(conf, fileSchema);
+                filter = query.toFilter(fileSchema);
+                if (columnarReads && sink.supportsBatches() && filter == FilterCompat.NOOP) {
+                    columnarProjection = ColumnarRowGroupReader.projection(fileSchema,
+                            footerReader.getFooter().getFileMetaData().getKeyValueMetaData(), query::isOutputColumn);
+                }
+                if (sink.needsSchema()) {
+                    // A projection is also the read schema; without one, records are read with the
+                    // file's own schema rather than one an Avro writer may have stored in it
+                    String projection = fileConf.get(AvroReadSupport.AVRO_REQUESTED_PROJECTION);
+                    Schema readSchema = projection != null ? new Schema.Parser().parse(projection)
+                            : new AvroSchemaConverter(fileConf).convert(fileSchema);
+                    if (projection == null) {
+                        fileConf = new Configuration(fileConf);
+                        AvroReadSupport.setAvroReadSchema(fileConf, readSchema);
+                    }
+                    outputSchema = outputSchema(readSchema, query);
+                }
+                rowGroups = footerReader.getRowGroups();
+                if (filter != FilterCompat.NOOP) {
+                    rowGroups = RowGroupFilter.filterRowGroups(
+                            Collections.singletonList(RowGroupFilter.FilterLevel.STATISTICS),
+                            filter, rowGroups, footerReader);
+                }
+            } catch (InvalidQueryException e) {
+                // The query, not the file, is at fault and would fail every other file as well
+                FileUtils.deleteQuietly(partsDir);
+                throw e;
+            } catch (Exception e) {
+                log.error("Error planning {}: {}", source.getName(), e.getMessage());
+                continue;
+            }
+
+            OutputAssembler assembler = new OutputAssembler(outputFile, sink, outputSchema, rowGroups.size(),
+                    orderedOutput, cacheKey == null ? null : resultCache, cacheKey,
+                    () -> converted.add(source.getName()));
+            if (rowGroups.isEmpty()) {
+                assembler.finishEmpty();
+                continue;
+            }
+            for (int i = 0; i < rowGroups.size(); i++) {
+                BlockMetaData block = rowGroups.get(i);
+                tasks.add(new RowGroupTask(source.getName(), sourceIndex, inputFile, i, block.getStartingPos(),
+                        block.getStartingPos() + block.getCompressedSize(), fileConf, filter, outputSchema,
+                        columnarProjection, assembler));
+                totalRows += block.getRowCount();
+            }
+        }
+
+        // Cached outputs count as done from the start
+        AtomicLong rowsDone = new AtomicLong(cachedRows);
+        long plannedRows = totalRows + cachedRows;
+        if (lastCached != null) {
+            listener.onProgress(cachedRows, plannedRows, lastCached);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+        for (RowGroupTask task : tasks) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    long rows = runTask(task, partsDir, sink, query);
+                    listener.onProgress(rowsDone.addAndGet(rows), plannedRows, task.name);
+                } catch (Exception e) {
+                    log.error("Error processing row group {} of {}: {}", task.index, task.name, e.getMessage());
+                    task.assembler.fail();
+                }
+            }, workerPool));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            FileUtils.deleteQuietly(partsDir);
+        }
+        return new Result(rowsDone.get(), converted);
+    }
+
+    /**
+     * The output of a source: its relative path under the output directory,
+     * with the format's extension for ".parquet". Null for a name, such as
+     * a zip entry with "..", that would lead outside the output directory.
+     */
+    static File outputFile(File outputDir, String name, OutputFormat format) {
+        String relative = name.endsWith(".parquet")
+                ? name.substring(0, name.length() - ".parquet".length()) + format.getExtension()
+                : name + format.getExtension();
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+        Path root = outputDir.toPath().toAbsolutePath().normalize();
+        Path output = root.resolve(relative).normalize();
+        return output.startsWith(root) && !output.equals(root) ? output.toFile() : null;
+    }
+
+    // The read schema without the columns read only to evaluate the filter
+    private static Schema outputSchema(Schema readSchema, ParquetQuery query) {
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : readSchema.getFields()) {
+            if (query.isOutputColumn(field.name())) {
+                fields.add(new Schema.Field(field, field.schema()));
+            }
+        }
+        return Schema.createRecord(readSchema.getName(), readSchema.getDoc(), readSchema.getNamespace(), false,
+                fields);
+    }
+
+    private long runTask(RowGroupTask task, File partsDir, OutputSink sink, ParquetQuery query) throws IOException {
+        // Parts are keyed by position, which is shorter than the source's path and as unique
+        File partFile = new File(partsDir, task.sourceIndex + "." + task.index + ".part");
+        long records;
+
+        try (OutputSink.PartWriter writer = sink.openPart(partFile, task.outputSchema, query::isOutputColumn)) {
+            if (task.columnarProjection != null && writer instanceof OutputSink.BatchPartWriter) {
+                ColumnarRowGroupReader.read(task.inputFile, task.conf, task.start, task.end, task.columnarProjection,
+                        (OutputSink.BatchPartWriter) writer);
+            } else {
+                readRecords(task, writer);
+            }
+            records = writer.getRecordCount();
+        }
+
+        task.assembler.complete(task.index, partFile, records);
+        return records;
+    }
+
+    private static void readRecords(RowGroupTask task, OutputSink.PartWriter writer) throws IOException {
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader
+                .<GenericRecord>builder(task.inputFile)
+                .withConf(task.conf)
+                .withFilter(task.filter)
+                .withFileRange(task.start, task.end)
+                .build()) {
+            GenericRecord record;
+            while ((record = reader.read()) != null) {
+                writer.write(record);
+            }
+        }
+    }
+
+    private static final class RowGroupTask {
+        private final String name;
+        private final int sourceIndex;
+        private final InputFile inputFile;
+        private final int index;
+        private final long start;
+        private final long end;
+        private final Configuration conf;
+        private final FilterCompat.Filter filter;
+        private final Schema outputSchema;
+        // The columns to read column by column, or null to read Avro records
+        private final MessageType columnarProjection;
+        private final OutputAssembler assembler;
+
+        private RowGroupTask(String name, int sourceIndex, InputFile inputFile, int index, long start, long end,
+                             Configuration conf, FilterCompat.Filter filter, Schema outputSchema,
+                             MessageType columnarProjection, OutputAssembler assembler) {
+            this.name = name;
+            this.sourceIndex = sourceIndex;
+            this.inputFile = inputFile;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.conf = conf;
+            this.filter = filter;
+            this.outputSchema = outputSchema;
+            this.columnarProjection = columnarProjection;
+            this.assembler = assembler;
+        }
+    }
+
+    /**
+     * Appends finished parts to one output file. Parts without records are
+     * skipped, and parts are deleted once copied,
+     * so at most the out-of-order parts are held on disk at any time. The
+     * finished output is handed to the result cache when there is one.
+     */
+    private static final class OutputAssembler {
+        private final File outputFile;
+        private final OutputSink sink;
+        private final Schema outputSchema;
+        private final int partCount;
+        private final boolean ordered;
+        private final ResultCache resultCache;
+        private final String cacheKey;
+        private final Runnable onFinished;
+        private final Map<Integer, File> pending = new HashMap<>();
+        private OutputSink.Assembly out;
+        private int nextIndex;
+        private int appended;
+        private long records;
+        private boolean failed;
+
+        private OutputAssembler(File outputFile, OutputSink sink, Schema outputSchema, int partCount,
+                                boolean ordered, ResultCache resultCache, String cacheKey, Runnable onFinished) {
+            this.outputFile = outputFile;
+            this.sink = sink;
+            this.outputSchema = outputSchema;
+            this.partCount = partCount;
+            this.ordered = ordered;
+            this.resultCache = resultCache;
+            this.cacheKey = cacheKey;
+            this.onFinished = onFinished;
+        }
+
+        synchronized void complete(int index, File partFile, long partRecords) throws IOException {
+            if (failed) {
+                partFile.delete();
+                return;
+            }
+            if (partRecords == 0) {
+                partFile.delete();
+                partFile = null;
+            }
+            records += partRecords;
+            if (!ordered) {
+                append(partFile);
+                return;
+            }
+            pending.put(index, partFile);
+            while (pending.containsKey(nextIndex)) {
+                append(pending.remove(nextIndex++));
+            }
+        }
+
+        synchronized void fail() {
+            failed = true;
+            pending.values().stream().filter(Objects::nonNull).forEach(File::delete);
+            pending.clear();
+            closeQuietly();
+            outputFile.delete();
+        }
+
+        synchronized void finishEmpty() throws IOException {
+            try (OutputSink.Assembly empty = create()) {
+                empty.finish();
+            }
+            cache();
+            onFinished.run();
+        }
+
+        // A part without records is null
+        private void append(File partFile) throws IOException {
+            if (out == null) {
+                out = create();
+            }
+            if (partFile != null) {
+                out.append(partFile);
+                partFile.delete();
+            }
+
+            if (++appended == partCount) {
+                out.finish();
+                out = null;
+                log.info("Successfully processed file to {}", outputFile.getPath());
+                cache();
+                onFinished.run();
+            }
+        }
+
+        // An earlier output may be a hard link into the result cache, which must not be overwritten in place
+        private OutputSink.Assembly create() throws IOException {
+            Files.deleteIfExists(outputFile.toPath());
+            return sink.startOutput(outputFile, outputSchema);
+        }
+
+        private void cache() {
+            if (resultCache != null) {
+                resultCache.store(cacheKey, outputFile, records);
+            }
+        }
+
+        private void closeQuietly() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // output is discarded anyway
+                }
+                out = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,1914 @@
+// 1. ParquetStreamingTest.java
+package com.processor.service;
+
+import com.processor.model.InvalidQueryException;
+import com.processor.model.JobPriority;
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.processor.util.FileProcessingUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParquetStreamingTest {
+
+    private static final long ROW_COUNT = 200_000L;
+    private static final long SLOW_ROW_COUNT = 10_000_000L;
+    private static final long MAX_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    private static final Schema SCHEMA = SchemaBuilder.record("Row").fields()
+            .requiredLong("id")
+            .requiredString("name")
+            .requiredDouble("score")
+            .endRecord();
+
+    @TempDir
+    File tempDir;
+
+    private ParquetService parquetService;
+    private File inputDir;
+    private File outputDir;
+
+    @BeforeEach
+    public void setup() {
+        inputDir = new File(tempDir, "input");
+        outputDir = new File(tempDir, "output");
+        inputDir.mkdirs();
+
+        parquetService = new ParquetService();
+        ReflectionTestUtils.setField(parquetService, "fileProcessingUtils", new FileProcessingUtils());
+        ReflectionTestUtils.setField(parquetService, "processingEngine",
+                new ParquetProcessingEngine(new ForkJoinPool(2), true));
+        ReflectionTestUtils.setField(parquetService, "outputDirectory", outputDir.getPath());
+        ReflectionTestUtils.setField(parquetService, "outputFormat", OutputFormat.NDJSON);
+        // Jobs run on the submitting thread, so they have finished when submit returns
+        ReflectionTestUtils.setField(parquetService, "jobScheduler",
+                new JobScheduler(Runnable::run, 1, 10, 1, 10, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(parquetService, "jobRegistry",
+                new JobRegistry("", TimeUnit.HOURS.toMillis(1), 100, Clock.systemUTC()));
+    }
+
+    @Test
+    public void testEveryRowIsStreamedToTheOutput() throws Exception {
+        writeParquet(new File(inputDir, "large.parquet"), ROW_COUNT);
+
+        parquetService.processParquetFromDirectory(inputDir.getPath(), ParquetQuery.ALL, null, JobPriority.NORMAL);
+
+        assertThat(countLines(new File(outputDir, "large.ndjson"))).isEqualTo(ROW_COUNT);
+    }
+
+    // Writes ten million rows first, so it is left out of the default test run
+    @Test
+    @Tag("slow")
+    public void testHeapStaysFlatWhileStreamingTenMillionRows() throws Exception {
+        writeParquet(new File(inputDir, "large.parquet"), SLOW_ROW_COUNT);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+
+        // Sample the live heap (after a forced GC) while the conversion is running
+        AtomicLong peak = new AtomicLong(baseline);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                System.gc();
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(250);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        try {
+            parquetService.processParquetFromDirectory(inputDir.getPath(), ParquetQuery.ALL, null, JobPriority.NORMAL);
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+
+        File output = new File(outputDir, "large.ndjson");
+        assertThat(countLines(output)).isEqualTo(SLOW_ROW_COUNT);
+        assertThat(peak.get() - baseline).isLessThan(MAX_HEAP_GROWTH);
+    }
+
+    @Test
+    public void testJsonArrayOutput() throws Exception {
+        ReflectionTestUtils.setField(parquetService, "outputFormat", OutputFormat.JSON);
+        writeParquet(new File(inputDir, "small.parquet"), 3);
+
+        String jobId = parquetService.processParquetFromDirectory(inputDir.getPath(), ParquetQuery.ALL, null,
+                JobPriority.NORMAL);
+        assertThat(parquetService.getStatus(jobId).getStatus()).isEqualTo("COMPLETED");
+
+        String json = Files.readString(new File(outputDir, "small.json").toPath());
+        assertThat(json.trim()).startsWith("[").endsWith("]");
+        assertThat(json).contains("\"id\" : 2");
+    }
+
+    @Test
+    public void testProjectionAndFilter() throws Exception {
+        writeParquet(new File(inputDir, "filtered.parquet"), 2000);
+
+        parquetService.processParquetFromDirectory(inputDir.getPath(),
+                ParquetQuery.parse("id", "id < 5 or (name = 'row-999' and not score > 900)"), null, JobPriority.NORMAL);
+
+        List<String> lines = Files.readAllLines(new File(outputDir, "filtered.ndjson").toPath());
+        assertThat(lines).containsExactly(
+                "{\"id\":0}", "{\"id\":1}", "{\"id\":2}", "{\"id\":3}", "{\"id\":4}", "{\"id\":999}");
+    }
+
+    @Test
+    public void testInvalidQueriesAreRefusedBeforeTheJobIsQueued() throws Exception {
+        writeParquet(new File(inputDir, "typed.parquet"), 10);
+
+        assertThatThrownBy(() -> parquetService.processParquetFromDirectory(inputDir.getPath(),
+                ParquetQuery.parse("id,missing", null), null, JobPriority.NORMAL))
+                .isInstanceOf(InvalidQueryException.class)
+                .hasMessageContaining("missing");
+        assertThatThrownBy(() -> parquetService.processParquetFromDirectory(inputDir.getPath(),
+                ParquetQuery.parse(null, "id = 1.5"), null, JobPriority.NORMAL))
+                .isInstanceOf(InvalidQueryException.class)
+                .hasMessageContaining("64-bit integer");
+        assertThatThrownBy(() -> parquetService.processParquetFromDirectory(inputDir.getPath(),
+                ParquetQuery.parse(null, "name > 3"), null, JobPriority.NORMAL))
+                .isInstanceOf(InvalidQueryException.class);
+        assertThat(outputDir.listFiles()).isNull();
+    }
+
+    @Test
+    public void testWatchedFilesWithTheSameNameKeepTheirOwnOutputs() throws Exception {
+        for (String directory : List.of("east", "west")) {
+            File file = new File(inputDir, directory + "/data.parquet");
+            file.getParentFile().mkdirs();
+            writeParquet(file, directory.equals("east") ? 10 : 20);
+            // Old enough not to be held back as still being written
+            assertThat(file.setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        }
+        try (DirectoryWatcher watcher = new DirectoryWatcher("", outputDir.getPath(), 100, 1_000, 100, false)) {
+            ReflectionTestUtils.setField(parquetService, "directoryWatcher", watcher);
+            parquetService.watchDirectory(inputDir.getPath(), ParquetQuery.ALL, null, JobPriority.NORMAL);
+
+            File east = new File(outputDir, "east/data.ndjson");
+            File west = new File(outputDir, "west/data.ndjson");
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!(east.isFile() && west.isFile()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(Files.readAllLines(east.toPath())).hasSize(10);
+            assertThat(Files.readAllLines(west.toPath())).hasSize(20);
+        }
+    }
+
+    private static void writeParquet(File file, long rows) throws Exception {
+        // Small row groups keep the reader's own page buffers out of the measurement
+        ParquetFixtures.write(file, SCHEMA, rows, builder -> builder
+                .withCompressionCodec(CompressionCodecName.SNAPPY)
+                .withRowGroupSize(8L * 1024 * 1024), (record, i) -> {
+            record.put("id", i);
+            record.put("name", "row-" + (i % 1000));
+            record.put("score", i * 0.5);
+        });
+    }
+
+    private static long countLines(File file) throws Exception {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath())) {
+            return reader.lines().count();
+        }
+    }
+}
+
+// 2. ParquetProcessingEngineTest.java
+package com.processor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParquetProcessingEngineTest {
+
+    @TempDir
+    File tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testOrderedOutputIsDeterministicAcrossRowGroups() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int f = 0; f < 3; f++) {
+            File file = new File(tempDir, "part-" + f + ".parquet");
+            writeParquet(file, f * 100_000L, 100_000);
+            files.add(file);
+        }
+        File outputDir = new File(tempDir, "out");
+        outputDir.mkdirs();
+
+        AtomicLong lastProgress = new AtomicLong();
+        ParquetProcessingEngine engine = new ParquetProcessingEngine(pool, true);
+        long records = engine.process(files, outputDir, OutputFormat.NDJSON, ParquetQuery.ALL,
+                (rowsDone, totalRows, fileName) -> lastProgress.accumulateAndGet(rowsDone, Math::max));
+
+        assertThat(records).isEqualTo(300_000);
+        assertThat(lastProgress.get()).isEqualTo(300_000);
+        for (int f = 0; f < 3; f++) {
+            List<String> lines = Files.readAllLines(new File(outputDir, "part-" + f + ".ndjson").toPath());
+            assertThat(lines).hasSize(100_000);
+            for (int i = 0; i < lines.size(); i++) {
+                assertThat(lines.get(i)).isEqualTo("{\"id\":" + (f * 100_000L + i) + "}");
+            }
+        }
+    }
+
+    @Test
+    public void testUnorderedJsonOutputContainsAllRecords() throws Exception {
+        File file = new File(tempDir, "data.parquet");
+        writeParquet(file, 0, 50_000);
+        File outputDir = new File(tempDir, "out");
+        outputDir.mkdirs();
+
+        ParquetProcessingEngine engine = new ParquetProcessingEngine(pool, false);
+        engine.process(List.of(file), outputDir, OutputFormat.JSON, ParquetQuery.ALL,
+                (rowsDone, totalRows, fileName) -> { });
+
+        List<?> records = new ObjectMapper()
+                .readValue(new File(outputDir, "data.json"), List.class);
+        assertThat(records).hasSize(50_000);
+    }
+
+    @Test
+    public void testOutputsMirrorSourcePathsInsideTheOutputDirectory() {
+        File outputDir = new File(tempDir, "out");
+
+        assertThat(ParquetProcessingEngine.outputFile(outputDir, "a/data.parquet", OutputFormat.NDJSON))
+                .isEqualTo(new File(outputDir, "a/data.ndjson").getAbsoluteFile());
+        assertThat(ParquetProcessingEngine.outputFile(outputDir, "/b/data.parquet", OutputFormat.JSON))
+                .isEqualTo(new File(outputDir, "b/data.json").getAbsoluteFile());
+        assertThat(ParquetProcessingEngine.outputFile(outputDir, "../data.parquet", OutputFormat.JSON)).isNull();
+        assertThat(ParquetProcessingEngine.outputFile(outputDir, "a/../../data.parquet", OutputFormat.JSON)).isNull();
+    }
+
+    private static void writeParquet(File file, long firstId, int rows) throws Exception {
+        // Tiny row groups so every file is split into several tasks
+        ParquetFixtures.write(file, ParquetFixtures.IDS, rows, builder -> builder.withPageSize(8 * 1024),
+                (record, i) -> record.put("id", firstId + i));
+    }
+}
+
+// 3. RecordJsonConverterTest.java
+package com.processor.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.processor.model.OutputFormat;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RecordJsonConverterTest {
+
+    private static final Schema ADDRESS = SchemaBuilder.record("Address").fields()
+            .requiredString("city")
+            .optionalInt("zip")
+            .endRecord();
+
+    private static final Schema PERSON = SchemaBuilder.record("Person").fields()
+            .requiredString("name")
+            .name("balance").type(LogicalTypes.decimal(10, 2).addToSchema(Schema.create(Schema.Type.BYTES))).noDefault()
+            .name("updated").type(LogicalTypes.timestampMicros().addToSchema(Schema.create(Schema.Type.LONG))).noDefault()
+            .name("birthday").type(LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT))).noDefault()
+            .name("address").type(ADDRESS).noDefault()
+            .name("previous").type().array().items(ADDRESS).noDefault()
+            .name("tags").type().map().values().stringType().noDefault()
+            .optionalString("nickname")
+            .endRecord();
+
+    @Test
+    public void testWritesLogicalTypesAndNestedRecords() throws Exception {
+        GenericRecord address = new GenericData.Record(ADDRESS);
+        address.put("city", new Utf8("Pune"));
+        address.put("zip", 411001);
+        GenericRecord previous = new GenericData.Record(ADDRESS);
+        previous.put("city", new Utf8("Mumbai"));
+
+        GenericRecord person = new GenericData.Record(PERSON);
+        person.put("name", new Utf8("Asha \"A\" Rao"));
+        person.put("balance", ByteBuffer.wrap(new BigDecimal("1234.56").unscaledValue().toByteArray()));
+        person.put("updated", 1_700_000_000_123_456L);
+        person.put("birthday", (int) LocalDate.of(1990, 5, 17).toEpochDay());
+        person.put("address", address);
+        person.put("previous", List.of(previous));
+        person.put("tags", Map.of(new Utf8("tier"), new Utf8("gold")));
+
+        Map<?, ?> json = new ObjectMapper().readValue(write(person, name -> true), Map.class);
+
+        assertThat(json.get("name")).isEqualTo("Asha \"A\" Rao");
+        assertThat(json.get("balance")).isEqualTo(1234.56);
+        assertThat(json.get("updated")).isEqualTo(Instant.ofEpochSecond(1_700_000_000L, 123_456_000L).toString());
+        assertThat(json.get("birthday")).isEqualTo("1990-05-17");
+        assertThat(json.get("address")).isEqualTo(Map.of("city", "Pune", "zip", 411001));
+        assertThat((List<?>) json.get("previous")).hasSize(1);
+        assertThat(((Map<?, ?>) ((List<?>) json.get("previous")).get(0)).get("city")).isEqualTo("Mumbai");
+        assertThat(json.get("tags")).isEqualTo(Map.of("tier", "gold"));
+        assertThat(json.containsKey("nickname")).isTrue();
+        assertThat(json.get("nickname")).isNull();
+    }
+
+    @Test
+    public void testLeavesOutExcludedTopLevelColumns() throws Exception {
+        GenericRecord address = new GenericData.Record(ADDRESS);
+        address.put("city", "Pune");
+
+        assertThat(write(address, "city"::equals)).isEqualTo("{\"city\":\"Pune\"}");
+    }
+
+    @Test
+    public void testUtf8StringsAreCopiedAsBytesToByteGenerators() throws Exception {
+        GenericRecord address = new GenericData.Record(ADDRESS);
+        address.put("city", new Utf8("Z\u00fcrich \"Mitte\"\n\u092a\u0941\u0923\u0947"));
+        address.put("zip", 8001);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            assertThat(generator).isInstanceOf(UTF8JsonGenerator.class);
+            RecordJsonConverter.compile(ADDRESS, name -> true).write(generator, address);
+        }
+
+        // Escaped like the character path, with non-ASCII characters left as UTF-8
+        String expected = "{\"city\":\"Z\u00fcrich \\\"Mitte\\\"\\n\u092a\u0941\u0923\u0947\",\"zip\":8001}";
+        assertThat(out.toByteArray()).isEqualTo(expected.getBytes(StandardCharsets.UTF_8));
+        assertThat(out.toByteArray()).isEqualTo(write(address, name -> true).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFailedWriteLeavesTheArrayUnclosed() throws Exception {
+        GenericRecord address = new GenericData.Record(ADDRESS);
+        address.put("city", "Pune");
+        RecordJsonConverter converter = RecordJsonConverter.compile(ADDRESS, name -> true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParquetJsonWriter writer = new ParquetJsonWriter(out, OutputFormat.JSON, new ObjectMapper(), true);
+        writer.write(converter, address);
+        // Jackson cannot serialize a bean without properties
+        assertThatThrownBy(() -> writer.write(new Object())).isInstanceOf(JsonMappingException.class);
+        writer.close();
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("[").doesNotContain("]");
+    }
+
+    private static String write(GenericRecord record, Predicate<String> columns) throws Exception {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(out)) {
+            RecordJsonConverter.compile(record.getSchema(), columns).write(generator, record);
+        }
+        return out.toString();
+    }
+}
+
+// 4. ZipArchiveTest.java
+package com.processor.util;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.processor.service.ParquetFixtures;
+import com.processor.service.ParquetProcessingEngine;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.parquet.io.SeekableInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ZipArchiveTest {
+
+    private static final Schema SCHEMA = SchemaBuilder.record("Row").fields()
+            .requiredLong("id")
+            .requiredString("name")
+            .endRecord();
+
+    @TempDir
+    File tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testStoredAndDeflatedEntriesConvertLikeExtractedFiles() throws Exception {
+        File parquet = new File(tempDir, "data.parquet");
+        writeParquet(parquet, 20_000);
+        File zip = new File(tempDir, "data.zip");
+        writeZip(zip, parquet);
+
+        File expectedDir = new File(tempDir, "expected");
+        expectedDir.mkdirs();
+        ParquetProcessingEngine engine = new ParquetProcessingEngine(pool, true);
+        engine.process(List.of(parquet), expectedDir, OutputFormat.NDJSON, ParquetQuery.ALL,
+                (rowsDone, totalRows, fileName) -> { });
+        byte[] expected = Files.readAllBytes(new File(expectedDir, "data.ndjson").toPath());
+
+        try (ZipArchive archive = ZipArchive.open(zip)) {
+            assertThat(archive.getEntries()).extracting(ZipArchive.Entry::getName)
+                    .containsExactly("stored/data.parquet", "deflated/data.parquet", "readme.txt");
+            assertThat(archive.parquetEntries()).extracting(ZipArchive.Entry::getMethod)
+                    .containsExactly(ZipArchive.STORED, ZipArchive.DEFLATED);
+
+            File outputDir = new File(tempDir, "out");
+            outputDir.mkdirs();
+            long records = engine.processSources(archive.parquetSources(), outputDir, OutputFormat.NDJSON,
+                    ParquetQuery.ALL, (rowsDone, totalRows, fileName) -> { }).getRecords();
+
+            assertThat(records).isEqualTo(40_000);
+            // Same file name, different directories: each entry keeps its own output
+            assertThat(new File(outputDir, "stored/data.ndjson")).hasBinaryContent(expected);
+            assertThat(new File(outputDir, "deflated/data.ndjson")).hasBinaryContent(expected);
+        }
+    }
+
+    @Test
+    public void testCorruptDeflatedEntryIsRejected() throws Exception {
+        File parquet = new File(tempDir, "data.parquet");
+        writeParquet(parquet, 1_000);
+        File zip = new File(tempDir, "data.zip");
+        writeZip(zip, parquet);
+
+        try (ZipArchive archive = ZipArchive.open(zip)) {
+            ZipArchive.Entry deflated = archive.parquetEntries().get(1);
+            // Overwrite the middle of the deflated entry's data
+            try (RandomAccessFile file = new RandomAccessFile(zip, "rw")) {
+                file.seek(zip.length() - deflated.getCompressedSize() / 2 - 200);
+                file.write(new byte[64]);
+            }
+            assertThatThrownBy(() -> archive.openInputFile(deflated)).isInstanceOf(ZipException.class);
+        }
+    }
+
+    @Test
+    public void testByteBufferInputFileSeeksAndReads() throws Exception {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        ByteBufferInputFile inputFile = new ByteBufferInputFile(ByteBuffer.wrap(bytes));
+        assertThat(inputFile.getLength()).isEqualTo(100);
+
+        try (SeekableInputStream first = inputFile.newStream(); SeekableInputStream second = inputFile.newStream()) {
+            first.seek(90);
+            byte[] tail = new byte[10];
+            first.readFully(tail);
+            assertThat(tail[0]).isEqualTo((byte) 90);
+            assertThat(first.read()).isEqualTo(-1);
+            assertThatThrownBy(() -> first.readFully(new byte[1])).isInstanceOf(EOFException.class);
+
+            // Streams do not share a position
+            assertThat(second.getPos()).isZero();
+            ByteBuffer head = ByteBuffer.allocate(5);
+            second.readFully(head);
+            assertThat(head.array()).containsExactly(0, 1, 2, 3, 4);
+            assertThat(second.getPos()).isEqualTo(5);
+        }
+    }
+
+    // The same parquet file twice under the same name, stored and deflated, plus a non-parquet entry
+    private static void writeZip(File zip, File parquet) throws Exception {
+        byte[] data = Files.readAllBytes(parquet.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            ZipEntry stored = new ZipEntry("stored/data.parquet");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(data.length);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(data);
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("deflated/data.parquet"));
+            out.write(data);
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("readme.txt"));
+            out.write("not parquet".getBytes());
+            out.closeEntry();
+        }
+    }
+
+    private static void writeParquet(File file, int rows) throws Exception {
+        ParquetFixtures.write(file, SCHEMA, rows, (record, i) -> {
+            record.put("id", i);
+            record.put("name", "row-" + i);
+        });
+    }
+}
+
+// 5. ZipDownloadPipelineTest.java
+package com.processor.service;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ZipDownloadPipelineTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final int ENTRIES = 4;
+    private static final int ROWS_PER_ENTRY = 30_000;
+
+    @TempDir
+    File tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private HttpServer server;
+    private byte[] zip;
+
+    @AfterEach
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testConversionOverlapsRangedDownload() throws Exception {
+        zip = buildZip();
+        // Slow ranges keep the download running while the first entries convert
+        URI uri = startServer(true, 30, false);
+
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicLong lastRows = new AtomicLong();
+        File outputDir = newOutputDir();
+        ZipDownloadPipeline pipeline = newPipeline(Long.MAX_VALUE);
+        ZipDownloadPipeline.Result result = pipeline.run(uri, new File(tempDir, "download.zip"), outputDir,
+                OutputFormat.NDJSON, ParquetQuery.ALL, (bytesDone, bytesTotal, rowsDone, rowsTotal) -> {
+                    assertThat(bytesTotal).isEqualTo(zip.length);
+                    if (rowsDone > 0 && bytesDone < bytesTotal) {
+                        overlapped.set(true);
+                    }
+                    lastRows.accumulateAndGet(rowsDone, Math::max);
+                });
+
+        assertThat(result.getFiles()).isEqualTo(ENTRIES);
+        assertThat(result.getRecords()).isEqualTo(ENTRIES * ROWS_PER_ENTRY);
+        assertThat(lastRows.get()).isEqualTo(ENTRIES * ROWS_PER_ENTRY);
+        assertThat(rangeRequests.get()).isGreaterThan(ENTRIES);
+        assertThat(overlapped).isTrue();
+        assertOutputs(outputDir);
+    }
+
+    @Test
+    public void testServerWithoutRangesIsDownloadedInOneStream() throws Exception {
+        zip = buildZip();
+        URI uri = startServer(false, 0, false);
+
+        File outputDir = newOutputDir();
+        ZipDownloadPipeline pipeline = newPipeline(Long.MAX_VALUE);
+        ZipDownloadPipeline.Result result = pipeline.run(uri, new File(tempDir, "download.zip"), outputDir,
+                OutputFormat.NDJSON, ParquetQuery.ALL, (bytesDone, bytesTotal, rowsDone, rowsTotal) -> { });
+
+        assertThat(result.getRecords()).isEqualTo(ENTRIES * ROWS_PER_ENTRY);
+        assertThat(rangeRequests.get()).isZero();
+        assertOutputs(outputDir);
+    }
+
+    @Test
+    public void testFailingRangesFailTheDownload() throws Exception {
+        zip = buildZip();
+        URI uri = startServer(true, 0, true);
+
+        ZipDownloadPipeline pipeline = newPipeline(Long.MAX_VALUE);
+        assertThatThrownBy(() -> pipeline.run(uri, new File(tempDir, "download.zip"), newOutputDir(),
+                OutputFormat.NDJSON, ParquetQuery.ALL, (bytesDone, bytesTotal, rowsDone, rowsTotal) -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("HTTP 500");
+    }
+
+    @Test
+    public void testEntriesTooLargeToBufferAreLeftForExtraction() throws Exception {
+        zip = buildZip(true);
+        URI uri = startServer(true, 0, false);
+
+        // Room to inflate one entry but not all of them
+        File outputDir = newOutputDir();
+        File zipFile = new File(tempDir, "download.zip");
+        ZipDownloadPipeline.Result result = newPipeline(zip.length / 2).run(uri, zipFile, outputDir,
+                OutputFormat.NDJSON, ParquetQuery.ALL, (bytesDone, bytesTotal, rowsDone, rowsTotal) -> { });
+
+        assertThat(result.isExtractionRequired()).isTrue();
+        assertThat(result.getRecords()).isZero();
+        assertThat(outputDir.list()).isEmpty();
+        assertThat(zipFile).hasBinaryContent(zip);
+    }
+
+    private ZipDownloadPipeline newPipeline(long maxBufferedBytes) {
+        return new ZipDownloadPipeline(new ParquetProcessingEngine(pool, true), 3, 32 * 1024, 2, maxBufferedBytes);
+    }
+
+    private void assertOutputs(File outputDir) throws IOException {
+        for (int e = 0; e < ENTRIES; e++) {
+            File output = new File(outputDir, "export/part-" + e + "/entry-" + e + ".ndjson");
+            List<String> lines = Files.readAllLines(output.toPath());
+            assertThat(lines).hasSize(ROWS_PER_ENTRY);
+            assertThat(lines.get(0)).isEqualTo("{\"id\":" + (long) e * ROWS_PER_ENTRY + "}");
+        }
+    }
+
+    private File newOutputDir() {
+        File outputDir = new File(tempDir, "out");
+        outputDir.mkdirs();
+        return outputDir;
+    }
+
+    private URI startServer(boolean acceptRanges, long delayMillis, boolean failRanges) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/data.zip", exchange -> {
+            try {
+                serve(exchange, acceptRanges, delayMillis, failRanges);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/data.zip");
+    }
+
+    private void serve(HttpExchange exchange, boolean acceptRanges, long delayMillis, boolean failRanges)
+            throws IOException, InterruptedException {
+        if (acceptRanges) {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(zip.length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (acceptRanges && range != null) {
+            rangeRequests.incrementAndGet();
+            if (failRanges) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            Thread.sleep(delayMillis);
+            Matcher matcher = RANGE.matcher(range);
+            assertThat(matcher.matches()).isTrue();
+            int start = Integer.parseInt(matcher.group(1));
+            int end = Integer.parseInt(matcher.group(2)) + 1;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + zip.length);
+            exchange.sendResponseHeaders(206, end - start);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(zip, start, end - start);
+            }
+        } else {
+            exchange.sendResponseHeaders(200, zip.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(zip);
+            }
+        }
+    }
+
+    // Stored entries, as parquet files are usually zipped, in directories like a real export
+    private byte[] buildZip() throws Exception {
+        return buildZip(false);
+    }
+
+    private byte[] buildZip(boolean deflated) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (int e = 0; e < ENTRIES; e++) {
+                File parquet = new File(tempDir, "entry-" + e + ".parquet");
+                // Uncompressed, so the entries span many download chunks
+                ParquetFixtures.writeIds(parquet, (long) e * ROWS_PER_ENTRY, ROWS_PER_ENTRY);
+                byte[] data = Files.readAllBytes(parquet.toPath());
+                CRC32 crc = new CRC32();
+                crc.update(data);
+
+                ZipEntry entry = new ZipEntry("export/part-" + e + "/entry-" + e + ".parquet");
+                if (!deflated) {
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(entry);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+}
+
+// 6. ResultCacheTest.java
+package com.processor.service;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.processor.util.ContentHash;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResultCacheTest {
+
+    @TempDir
+    File tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testResubmittedFileIsRestoredFromCache() throws Exception {
+        File parquet = new File(tempDir, "data.parquet");
+        ParquetFixtures.writeIds(parquet, 0, 20_000);
+        ResultCache cache = new ResultCache(new File(tempDir, "cache").getPath(), 1024 * 1024 * 1024, registry);
+        ParquetProcessingEngine engine = new ParquetProcessingEngine(pool, true, cache);
+
+        File first = newDir("first");
+        assertThat(engine.process(List.of(parquet), first, OutputFormat.NDJSON, ParquetQuery.ALL,
+                (rowsDone, totalRows, fileName) -> { })).isEqualTo(20_000);
+        byte[] expected = Files.readAllBytes(new File(first, "data.ndjson").toPath());
+        assertThat(registry.counter("parquet.cache.misses").count()).isEqualTo(1);
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+
+        // A different query writes over the first output, which must not reach the cached copy
+        assertThat(engine.process(List.of(parquet), first, OutputFormat.NDJSON, ParquetQuery.parse(null, "id < 10"),
+                (rowsDone, totalRows, fileName) -> { })).isEqualTo(10);
+        assertThat(registry.counter("parquet.cache.misses").count()).isEqualTo(2);
+
+        File second = newDir("second");
+        assertThat(engine.process(List.of(parquet), second, OutputFormat.NDJSON, ParquetQuery.ALL,
+                (rowsDone, totalRows, fileName) -> { })).isEqualTo(20_000);
+        assertThat(new File(second, "data.ndjson")).hasBinaryContent(expected);
+        assertThat(registry.counter("parquet.cache.hits").count()).isEqualTo(1);
+
+        // Another format is another result
+        engine.process(List.of(parquet), second, OutputFormat.JSON, ParquetQuery.ALL,
+                (rowsDone, totalRows, fileName) -> { });
+        assertThat(registry.counter("parquet.cache.misses").count()).isEqualTo(3);
+        assertThat(cache.getEntryCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultsAreEvicted() throws Exception {
+        File cacheDir = new File(tempDir, "cache");
+        ResultCache cache = new ResultCache(cacheDir.getPath(), 250, registry);
+        String a = key("a");
+        String b = key("b");
+        String c = key("c");
+        cache.store(a, output("a", 100), 1);
+        cache.store(b, output("b", 100), 2);
+        assertThat(cache.restore(a, new File(tempDir, "a.out"))).isEqualTo(1);
+
+        cache.store(c, output("c", 100), 3);
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+        assertThat(cache.getTotalBytes()).isEqualTo(200);
+        assertThat(cache.restore(b, new File(tempDir, "b.out"))).isEqualTo(-1);
+        assertThat(cache.restore(c, new File(tempDir, "c.out"))).isEqualTo(3);
+
+        // The index is rebuilt from the directory
+        ResultCache reopened = new ResultCache(cacheDir.getPath(), 250, new SimpleMeterRegistry());
+        assertThat(reopened.getEntryCount()).isEqualTo(2);
+        assertThat(reopened.restore(a, new File(tempDir, "a2.out"))).isEqualTo(1);
+        assertThat(new File(tempDir, "a2.out")).hasSize(100);
+    }
+
+    @Test
+    public void testEquivalentQueriesShareAKey() {
+        String key = ResultCache.key("a", OutputFormat.NDJSON,
+                ParquetQuery.parse("name, id", "id > 2.50 and (name = 'x' or id = 1)"), true);
+
+        assertThat(ResultCache.key("a", OutputFormat.NDJSON,
+                ParquetQuery.parse("id,name", "(id = 1.0 or name = 'x') and id > 2.5"), true)).isEqualTo(key);
+        assertThat(ResultCache.key("a", OutputFormat.NDJSON,
+                ParquetQuery.parse("id", "id > 2.5 and (name = 'x' or id = 1)"), true)).isNotEqualTo(key);
+        assertThat(ResultCache.key("a", OutputFormat.NDJSON,
+                ParquetQuery.parse("id,name", "id > 2.5 or (name = 'x' and id = 1)"), true)).isNotEqualTo(key);
+    }
+
+    @Test
+    public void testFileRewrittenWithinTheSameSecondIsHashedAgain() throws Exception {
+        File file = output("rewritten", 100);
+        long lastModified = file.lastModified();
+        String first = ContentHash.of(file);
+
+        byte[] changed = new byte[100];
+        changed[0] = 1;
+        Files.write(file.toPath(), changed);
+        file.setLastModified(lastModified);
+
+        assertThat(ContentHash.of(file)).isNotEqualTo(first);
+    }
+
+    private File newDir(String name) {
+        File dir = new File(tempDir, name);
+        dir.mkdirs();
+        return dir;
+    }
+
+    private File output(String name, int size) throws Exception {
+        File file = new File(tempDir, name);
+        Files.write(file.toPath(), new byte[size]);
+        return file;
+    }
+
+    private static String key(String content) {
+        return ResultCache.key(content, OutputFormat.NDJSON, ParquetQuery.ALL, true);
+    }
+}
+
+// 7. JobSchedulerTest.java
+package com.processor.service;
+
+import com.processor.model.JobPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JobSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testQueuedJobsStartInPriorityOrder() throws Exception {
+        JobScheduler scheduler = new JobScheduler(executor, 1, 10, 1, 10, registry);
+        CountDownLatch done = new CountDownLatch(4);
+
+        scheduler.submit("first", "a", JobPriority.LOW, blocking("first", done));
+        scheduler.submit("low", "a", JobPriority.LOW, blocking("low", done));
+        scheduler.submit("normal", "a", JobPriority.NORMAL, blocking("normal", done));
+        scheduler.submit("high", "a", JobPriority.HIGH, blocking("high", done));
+        waitUntil(() -> started.size() == 1);
+        assertThat(scheduler.getQueuedCount()).isEqualTo(3);
+
+        release.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(started).containsExactly("first", "high", "normal", "low");
+        // Run times are recorded just after the job body returns
+        waitUntil(() -> registry.timer("parquet.jobs.run").count() == 4);
+        assertThat(registry.timer("parquet.jobs.run").count()).isEqualTo(4);
+        assertThat(registry.timer("parquet.jobs.wait", "priority", "LOW").count()).isEqualTo(2);
+        assertThat(registry.summary("parquet.jobs.queue.depth").count()).isEqualTo(4);
+    }
+
+    @Test
+    public void testTenantAtItsLimitDoesNotHoldUpOthers() throws Exception {
+        JobScheduler scheduler = new JobScheduler(executor, 2, 10, 1, 10, registry);
+        CountDownLatch done = new CountDownLatch(3);
+
+        scheduler.submit("a1", "a", JobPriority.NORMAL, blocking("a1", done));
+        scheduler.submit("a2", "a", JobPriority.HIGH, blocking("a2", done));
+        scheduler.submit("b1", "b", JobPriority.LOW, blocking("b1", done));
+
+        waitUntil(() -> started.size() == 2);
+        assertThat(started).containsExactlyInAnyOrder("a1", "b1");
+        assertThat(scheduler.getRunningCount()).isEqualTo(2);
+        assertThat(scheduler.getQueuedCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(started).hasSize(3).endsWith("a2");
+    }
+
+    @Test
+    public void testFullQueueRejectsWithRetryAfter() {
+        JobScheduler scheduler = new JobScheduler(executor, 1, 2, 1, 1, registry);
+        CountDownLatch done = new CountDownLatch(3);
+
+        scheduler.submit("running", "a", JobPriority.NORMAL, blocking("running", done));
+        scheduler.submit("queued", "a", JobPriority.NORMAL, blocking("queued", done));
+        // Tenant a already has its one queued job
+        assertThatThrownBy(() -> scheduler.submit("over", "a", JobPriority.NORMAL, blocking("over", done)))
+                .isInstanceOf(JobRejectedException.class);
+
+        scheduler.submit("other", "b", JobPriority.NORMAL, blocking("other", done));
+        assertThatThrownBy(() -> scheduler.submit("full", "c", JobPriority.HIGH, blocking("full", done)))
+                .isInstanceOfSatisfying(JobRejectedException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isPositive());
+        assertThat(registry.counter("parquet.jobs.rejected").count()).isEqualTo(2);
+    }
+
+    private Runnable blocking(String name, CountDownLatch done) {
+        return () -> {
+            started.add(name);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
+
+// 8. JobRegistryTest.java
+package com.processor.service;
+
+import com.processor.model.ProcessingResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JobRegistryTest {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testStatusSurvivesRestart() {
+        String store = new File(tempDir, "jobs.db").getPath();
+        try (JobRegistry registry = new JobRegistry(store, TTL, 100, Clock.systemUTC())) {
+            registry.register("done", "Queued");
+            registry.update("done", "Processing", 0.4);
+            registry.updateCounters("done", "Processing file", "a.parquet", 0.6, -1, -1, 50, 100);
+            assertThat(registry.get("done").getMessage()).isEqualTo("Processing file: a.parquet");
+            registry.update("done", "Completed", 1.0);
+
+            registry.register("running", "Queued");
+            registry.update("running", "Processing", 0.4);
+            assertThat(registry.getActiveCount()).isEqualTo(1);
+        }
+
+        try (JobRegistry registry = new JobRegistry(store, TTL, 100, Clock.systemUTC())) {
+            ProcessingResponse done = registry.get("done");
+            assertThat(done.getStatus()).isEqualTo("COMPLETED");
+            assertThat(done.getRowsDone()).isEqualTo(50);
+            assertThat(done.getRowsTotal()).isEqualTo(100);
+            assertThat(done.getBytesDone()).isNull();
+
+            ProcessingResponse running = registry.get("running");
+            assertThat(running.getStatus()).isEqualTo("FAILED");
+            assertThat(running.getMessage()).isEqualTo("Interrupted by a restart");
+        }
+    }
+
+    @Test
+    public void testCountersOnlyMoveForwardWhileProcessing() {
+        try (JobRegistry registry = new JobRegistry("", TTL, 100, Clock.systemUTC())) {
+            registry.register("job", "Queued");
+            // Not started yet
+            registry.updateCounters("job", "Processing file", "a.parquet", 0.5, -1, -1, 10, 100);
+            assertThat(registry.get("job").getRowsDone()).isNull();
+
+            registry.update("job", "Processing", 0.4);
+            registry.updateCounters("job", "Processing file", "a.parquet", 0.6, -1, -1, 60, 100);
+            registry.updateCounters("job", "Processing file", "b.parquet", 0.5, -1, -1, 50, 100);
+            ProcessingResponse status = registry.get("job");
+            assertThat(status.getProgress()).isEqualTo(0.6);
+            assertThat(status.getRowsDone()).isEqualTo(50);
+
+            registry.update("job", "Failed: boom", -1.0);
+            registry.updateCounters("job", "Processing file", "c.parquet", 0.9, -1, -1, 90, 100);
+            assertThat(registry.get("job").getMessage()).isEqualTo("Failed: boom");
+        }
+    }
+
+    @Test
+    public void testExpiredAndEvictedStatuses() {
+        MutableClock clock = new MutableClock();
+        try (JobRegistry registry = new JobRegistry("", TTL, 1, clock)) {
+            registry.register("old", "Queued");
+            registry.update("old", "Completed", 1.0);
+            clock.advance(TTL / 2);
+            registry.register("new", "Queued");
+            registry.update("new", "Completed", 1.0);
+            registry.register("running", "Queued");
+
+            // Only one finished job is cached; the other is read back from the store
+            assertThat(registry.get("old").getStatus()).isEqualTo("COMPLETED");
+            assertThat(registry.get("new").getStatus()).isEqualTo("COMPLETED");
+
+            clock.advance(TTL / 2 + 1);
+            // Expired before the sweep has run, whether cached or read back from the store
+            assertThat(registry.get("old")).isNull();
+            assertThat(registry.get("new").getStatus()).isEqualTo("COMPLETED");
+
+            clock.advance(TTL / 2);
+            assertThat(registry.get("new")).isNull();
+            registry.sweepExpired();
+            assertThat(registry.get("old")).isNull();
+            assertThat(registry.get("new")).isNull();
+            assertThat(registry.get("running").getStatus()).isEqualTo("QUEUED");
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private long millis = 1_000_000L;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
+
+// 9. OutputSinkTest.java
+package com.processor.service;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.apache.parquet.schema.PrimitiveType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OutputSinkTest {
+
+    private static final int ROWS = 20_000;
+    private static final Schema SCHEMA = SchemaBuilder.record("Row").fields()
+            .requiredLong("id")
+            .optionalString("name")
+            .requiredDouble("score")
+            .name("day").type(LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT))).noDefault()
+            .endRecord();
+    // The filter column is read but not written
+    private static final ParquetQuery QUERY = ParquetQuery.parse("name,score,day", "id >= 100");
+
+    @TempDir
+    File tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testArrowStreamHoldsTheFilteredRowsInOrder() throws Exception {
+        File output = convert(OutputFormat.ARROW, QUERY, new OutputSinks(CompressionCodecName.SNAPPY, 1024, 1000));
+
+        long rows = 0;
+        try (RootAllocator allocator = new RootAllocator();
+             ArrowStreamReader reader = new ArrowStreamReader(new FileInputStream(output), allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertThat(root.getSchema().getFields()).extracting("name").containsExactly("name", "score", "day");
+            while (reader.loadNextBatch()) {
+                VarCharVector names = (VarCharVector) root.getVector("name");
+                Float8Vector scores = (Float8Vector) root.getVector("score");
+                DateDayVector days = (DateDayVector) root.getVector("day");
+                for (int i = 0; i < root.getRowCount(); i++) {
+                    long id = 100 + rows++;
+                    if (id % 7 == 0) {
+                        assertThat(names.isNull(i)).isTrue();
+                    } else {
+                        assertThat(new String(names.get(i))).isEqualTo("name-" + id);
+                    }
+                    assertThat(scores.get(i)).isEqualTo(id / 2.0);
+                    assertThat(days.get(i)).isEqualTo((int) (id % 365));
+                }
+            }
+        }
+        assertThat(rows).isEqualTo(ROWS - 100);
+    }
+
+    @Test
+    public void testParquetIsReencodedWithTheConfiguredCodec() throws Exception {
+        File output = convert(OutputFormat.PARQUET, QUERY,
+                new OutputSinks(CompressionCodecName.GZIP, 64 * 1024, 1000));
+
+        try (ParquetFileReader footer = ParquetFileReader.open(
+                HadoopInputFile.fromPath(new Path(output.getAbsolutePath()), new Configuration()))) {
+            // Row groups are copied from the parts, one or more per input row group
+            assertThat(footer.getRowGroups().size()).isGreaterThan(1);
+            for (BlockMetaData block : footer.getRowGroups()) {
+                assertThat(block.getColumns()).allMatch(column -> column.getCodec() == CompressionCodecName.GZIP);
+            }
+        }
+
+        long rows = 0;
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader
+                .<GenericRecord>builder(HadoopInputFile.fromPath(new Path(output.getAbsolutePath()),
+                        new Configuration()))
+                .build()) {
+            GenericRecord record;
+            while ((record = reader.read()) != null) {
+                long id = 100 + rows++;
+                assertThat(record.getSchema().getFields()).extracting("name").containsExactly("name", "score", "day");
+                assertThat(record.get("name") == null ? null : record.get("name").toString())
+                        .isEqualTo(id % 7 == 0 ? null : "name-" + id);
+                assertThat(record.get("score")).isEqualTo(id / 2.0);
+                assertThat(record.get("day")).isEqualTo((int) (id % 365));
+            }
+        }
+        assertThat(rows).isEqualTo(ROWS - 100);
+    }
+
+    @Test
+    public void testInt96TimestampsAreWrittenAsInt64Timestamps() throws Exception {
+        MessageType schema = MessageTypeParser.parseMessageType(
+                "message spark_schema { required int64 id; optional int96 registered; }");
+        File input = new File(tempDir, "spark.parquet");
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new Path(input.getAbsolutePath()))
+                .withType(schema)
+                .withConf(new Configuration())
+                .build()) {
+            SimpleGroupFactory factory = new SimpleGroupFactory(schema);
+            for (long id = 0; id < 100; id++) {
+                Group group = factory.newGroup().append("id", id);
+                if (id % 3 != 0) {
+                    // Julian day 2440588 is the epoch; nanoseconds within the day come first
+                    ByteBuffer int96 = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                    int96.putLong(id * 1_000_123L).putInt(2_440_588 + (int) id);
+                    group.add("registered", Binary.fromConstantByteArray(int96.array()));
+                }
+                writer.write(group);
+            }
+        }
+        File outputDir = new File(tempDir, "int96");
+        outputDir.mkdirs();
+        new ParquetProcessingEngine(pool, true, null, new OutputSinks()).process(List.of(input), outputDir,
+                OutputFormat.PARQUET, ParquetQuery.ALL, (rowsDone, totalRows, fileName) -> { });
+        File output = new File(outputDir, "spark.parquet");
+
+        try (ParquetFileReader footer = ParquetFileReader.open(
+                HadoopInputFile.fromPath(new Path(output.getAbsolutePath()), new Configuration()))) {
+            PrimitiveType registered = footer.getFileMetaData().getSchema().getType("registered").asPrimitiveType();
+            assertThat(registered.getPrimitiveTypeName()).isEqualTo(PrimitiveType.PrimitiveTypeName.INT64);
+            assertThat(registered.getLogicalTypeAnnotation())
+                    .isEqualTo(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MICROS));
+        }
+        long rows = 0;
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader
+                .<GenericRecord>builder(HadoopInputFile.fromPath(new Path(output.getAbsolutePath()),
+                        new Configuration()))
+                .build()) {
+            GenericRecord record;
+            while ((record = reader.read()) != null) {
+                long id = rows++;
+                assertThat(record.get("registered"))
+                        .isEqualTo(id % 3 == 0 ? null : id * 86_400_000_000L + id * 1_000_123L / 1000);
+            }
+        }
+        assertThat(rows).isEqualTo(100);
+    }
+
+    @Test
+    public void testEmptyResultsAreValidOutputs() throws Exception {
+        ParquetQuery none = ParquetQuery.parse(null, "id < 0");
+        OutputSinks sinks = new OutputSinks();
+
+        File arrow = convert(OutputFormat.ARROW, none, sinks);
+        try (RootAllocator allocator = new RootAllocator();
+             ArrowStreamReader reader = new ArrowStreamReader(new FileInputStream(arrow), allocator)) {
+            assertThat(reader.getVectorSchemaRoot().getSchema().getFields()).hasSize(4);
+            assertThat(reader.loadNextBatch()).isFalse();
+        }
+
+        File parquet = convert(OutputFormat.PARQUET, none, sinks);
+        try (ParquetFileReader footer = ParquetFileReader.open(
+                HadoopInputFile.fromPath(new Path(parquet.getAbsolutePath()), new Configuration()))) {
+            assertThat(footer.getRecordCount()).isZero();
+            assertThat(footer.getFileMetaData().getSchema().getFieldCount()).isEqualTo(4);
+        }
+    }
+
+    private File convert(OutputFormat format, ParquetQuery query, OutputSinks sinks) throws Exception {
+        File input = new File(tempDir, "data.parquet");
+        if (!input.exists()) {
+            writeParquet(input);
+        }
+        File outputDir = new File(tempDir, format.name() + "-" + System.nanoTime());
+        outputDir.mkdirs();
+        ParquetProcessingEngine engine = new ParquetProcessingEngine(pool, true, null, sinks);
+        engine.process(List.of(input), outputDir, format, query, (rowsDone, totalRows, fileName) -> { });
+        return new File(outputDir, "data" + format.getExtension());
+    }
+
+    private static void writeParquet(File file) throws Exception {
+        ParquetFixtures.write(file, SCHEMA, ROWS, (record, id) -> {
+            record.put("id", id);
+            record.put("name", id % 7 == 0 ? null : "name-" + id);
+            record.put("score", id / 2.0);
+            record.put("day", (int) (id % 365));
+        });
+    }
+}
+
+// 10. ColumnarReaderTest.java
+package com.processor.service;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.FileMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ColumnarReaderTest {
+
+    private static final int ROWS = 10_000;
+
+    @TempDir
+    File tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAvroWrittenFileConvertsAsTheRecordPathDoes() throws Exception {
+        Schema schema = SchemaBuilder.record("Row").fields()
+                .requiredLong("id")
+                .optionalString("category")
+                .optionalString("label")
+                .requiredDouble("score")
+                .optionalFloat("ratio")
+                .requiredBoolean("flag")
+                .name("day").type(LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT))).noDefault()
+                .name("at").type(LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG)))
+                .noDefault()
+                .name("amount").type(LogicalTypes.decimal(12, 2).addToSchema(Schema.create(Schema.Type.BYTES)))
+                .noDefault()
+                .endRecord();
+        File input = new File(tempDir, "avro.parquet");
+        ParquetFixtures.write(input, schema, ROWS, (record, id) -> {
+            record.put("id", id);
+            record.put("category", id % 5 == 0 ? null : "category-" + id % 7);
+            record.put("label", "label \"" + id + "\" é");
+            record.put("score", id / 3.0);
+            record.put("ratio", id % 11 == 0 ? null : id / 7.0f);
+            record.put("flag", id % 2 == 0);
+            // Before and after the epoch
+            record.put("day", (int) (id % 20_000) - 10_000);
+            record.put("at", (id % 2 == 0 ? 1 : -1) * (1_600_000_000_000L + id * 1_001));
+            record.put("amount", ByteBuffer.wrap(BigDecimal.valueOf(id * 37 - 5_000, 2)
+                    .unscaledValue().toByteArray()));
+        });
+
+        assertThat(ColumnarRowGroupReader.projection(footer(input).getSchema(), footer(input).getKeyValueMetaData(),
+                ParquetQuery.ALL::isOutputColumn)).isNotNull();
+        assertSameAsRecordPath(input, OutputFormat.JSON, ParquetQuery.ALL);
+        assertSameAsRecordPath(input, OutputFormat.NDJSON, ParquetQuery.ALL);
+        assertSameAsRecordPath(input, OutputFormat.NDJSON, ParquetQuery.parse("label,id", null));
+    }
+
+    @Test
+    public void testFileWithoutAvroSchemaConvertsAsTheRecordPathDoes() throws Exception {
+        MessageType schema = MessageTypeParser.parseMessageType("message spark_schema {"
+                + " optional int96 registered;"
+                + " optional int64 seen (TIMESTAMP(MICROS,false));"
+                + " optional int32 code;"
+                + " optional int32 since (DATE);"
+                + " optional binary country (STRING);"
+                + " optional binary payload;"
+                + " optional fixed_len_byte_array(8) price (DECIMAL(16,4));"
+                + " }");
+        File input = new File(tempDir, "spark.parquet");
+        writeGroups(input, schema, (factory, id) -> {
+            Group group = factory.newGroup();
+            if (id % 9 != 0) {
+                ByteBuffer int96 = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                int96.putLong(id * 1_000_000_123L % 86_400_000_000_000L).putInt(2_459_000 + (int) (id % 400));
+                group.add("registered", Binary.fromConstantByteArray(int96.array()));
+            }
+            group.add("seen", 1_600_000_000_000_000L + id * 17);
+            group.add("code", (int) (id % 13));
+            group.add("since", (int) (id % 3_000));
+            if (id % 4 != 0) {
+                group.add("country", new String[]{"France", "Japan", "Brasil", "Norge"}[(int) (id % 4)]);
+            }
+            group.add("payload", Binary.fromString("p" + id));
+            group.add("price", Binary.fromConstantByteArray(ByteBuffer.allocate(8).putLong(id * 12_345).array()));
+            return group;
+        });
+
+        assertSameAsRecordPath(input, OutputFormat.JSON, ParquetQuery.ALL);
+        assertSameAsRecordPath(input, OutputFormat.NDJSON, ParquetQuery.parse("country,since", null));
+    }
+
+    @Test
+    public void testColumnNamesAvroCannotReadAreConverted() throws Exception {
+        MessageType schema = MessageTypeParser.parseMessageType("message duckdb_schema {"
+                + " optional double sepal.length;"
+                + " optional binary variety (STRING);"
+                + " }");
+        File input = new File(tempDir, "iris.parquet");
+        writeGroups(input, schema, (factory, id) -> factory.newGroup()
+                .append("sepal.length", id / 10.0)
+                .append("variety", id % 2 == 0 ? "Setosa" : "Virginica"));
+
+        File output = convert(input, OutputFormat.NDJSON, ParquetQuery.ALL, true);
+        List<String> lines = Files.readAllLines(output.toPath());
+        assertThat(lines).hasSize(ROWS);
+        assertThat(lines.get(3)).isEqualTo("{\"sepal.length\":0.3,\"variety\":\"Virginica\"}");
+
+        // A row filter needs the record path, which cannot open the file
+        File filtered = convert(input, OutputFormat.NDJSON, ParquetQuery.parse(null, "variety = 'Setosa'"), true);
+        assertThat(filtered).doesNotExist();
+    }
+
+    @FunctionalInterface
+    private interface RowFactory {
+        Group create(SimpleGroupFactory factory, long id);
+    }
+
+    private void assertSameAsRecordPath(File input, OutputFormat format, ParquetQuery query) throws Exception {
+        File columnar = convert(input, format, query, true);
+        File records = convert(input, format, query, false);
+        assertThat(columnar).hasSameBinaryContentAs(records);
+    }
+
+    private File convert(File input, OutputFormat format, ParquetQuery query, boolean columnar) throws Exception {
+        File outputDir = Files.createTempDirectory(tempDir.toPath(), "out").toFile();
+        ParquetProcessingEngine engine = new ParquetProcessingEngine(pool, true, columnar, null, new OutputSinks());
+        engine.process(List.of(input), outputDir, format, query, (rowsDone, totalRows, fileName) -> { });
+        return new File(outputDir, input.getName().replace(".parquet", format.getExtension()));
+    }
+
+    private static FileMetaData footer(File file) throws Exception {
+        try (ParquetFileReader reader = ParquetFileReader.open(
+                HadoopInputFile.fromPath(new Path(file.getAbsolutePath()), new Configuration()))) {
+            return reader.getFooter().getFileMetaData();
+        }
+    }
+
+    private static void writeGroups(File file, MessageType schema, RowFactory rows) throws Exception {
+        SimpleGroupFactory factory = new SimpleGroupFactory(schema);
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new Path(file.getAbsolutePath()))
+                .withType(schema)
+                .withConf(new Configuration())
+                .withRowGroupSize(32L * 1024)
+                .withPageSize(4 * 1024)
+                .withDictionaryEncoding(true)
+                .build()) {
+            for (long id = 0; id < ROWS; id++) {
+                writer.write(rows.create(factory, id));
+            }
+        }
+    }
+}
+
+// 11. DirectoryWatcherTest.java
+package com.processor.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DirectoryWatcherTest {
+    @TempDir
+    File tempDir;
+
+    private final BlockingQueue<List<DirectoryWatcher.FileState>> batches = new LinkedBlockingQueue<>();
+    private DirectoryWatcher watcher;
+
+    @AfterEach
+    public void tearDown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testBurstIsBatchedAndOnlyChangesAreBatchedAgain() throws Exception {
+        File landing = landing();
+        watcher = watcher("", true);
+        String watchId = watcher.watch(landing.toPath(), "JSON", (id, files) -> batches.add(files));
+
+        for (String name : List.of("a", "b", "c")) {
+            write(new File(landing, name + ".parquet"), name);
+        }
+        write(new File(landing, "notes.txt"), "ignored");
+        List<DirectoryWatcher.FileState> batch = nextBatch();
+        assertThat(names(batch)).containsExactlyInAnyOrder("a.parquet", "b.parquet", "c.parquet");
+        watcher.markProcessed(watchId, batch);
+
+        // Touched without a change in content
+        File a = new File(landing, "a.parquet");
+        assertThat(a.setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        assertThat(batches.poll(1, TimeUnit.SECONDS)).isNull();
+
+        write(a, "a, second version");
+        File nested = new File(landing, "2024/06");
+        assertThat(nested.mkdirs()).isTrue();
+        write(new File(nested, "d.parquet"), "d");
+        List<String> changed = names(nextBatch());
+        List<DirectoryWatcher.FileState> more = batches.poll(1, TimeUnit.SECONDS);
+        if (more != null) {
+            changed.addAll(names(more));
+        }
+        assertThat(changed).containsExactlyInAnyOrder("a.parquet", "d.parquet");
+
+        assertThat(watcher.unwatch(watchId)).isTrue();
+        assertThat(watcher.unwatch(watchId)).isFalse();
+    }
+
+    @Test
+    public void testManifestSurvivesRestart() throws Exception {
+        File landing = landing();
+        write(new File(landing, "a.parquet"), "a");
+        write(new File(landing, "b.parquet"), "b");
+        String manifest = new File(tempDir, "manifest.db").getPath();
+
+        watcher = watcher(manifest, true);
+        String watchId = watcher.watch(landing.toPath(), "JSON", (id, files) -> batches.add(files));
+        List<DirectoryWatcher.FileState> batch = nextBatch();
+        assertThat(names(batch)).containsExactlyInAnyOrder("a.parquet", "b.parquet");
+        watcher.markProcessed(watchId, batch);
+        watcher.close();
+
+        write(new File(landing, "c.parquet"), "c");
+        watcher = watcher(manifest, true);
+        assertThat(watcher.watch(landing.toPath(), "JSON", (id, files) -> batches.add(files))).isEqualTo(watchId);
+        assertThat(names(nextBatch())).containsExactly("c.parquet");
+
+        // Another output is another watch, with a manifest of its own
+        watcher.watch(landing.toPath(), "NDJSON", (id, files) -> batches.add(files));
+        assertThat(names(nextBatch())).containsExactlyInAnyOrder("a.parquet", "b.parquet", "c.parquet");
+    }
+
+    @Test
+    public void testPollingWithoutWatchService() throws Exception {
+        File landing = landing();
+        watcher = watcher("", false);
+        watcher.watch(landing.toPath(), "JSON", (id, files) -> batches.add(files));
+        assertThat(batches.poll(500, TimeUnit.MILLISECONDS)).isNull();
+
+        write(new File(landing, "a.parquet"), "a");
+        assertThat(names(nextBatch())).containsExactly("a.parquet");
+    }
+
+    private File landing() {
+        File landing = new File(tempDir, "landing");
+        assertThat(landing.mkdirs()).isTrue();
+        return landing;
+    }
+
+    private DirectoryWatcher watcher(String manifest, boolean useWatchService) {
+        return new DirectoryWatcher(manifest, new File(tempDir, "output").getPath(), 300, 10_000, 200,
+                useWatchService);
+    }
+
+    private List<DirectoryWatcher.FileState> nextBatch() throws InterruptedException {
+        List<DirectoryWatcher.FileState> batch = batches.poll(10, TimeUnit.SECONDS);
+        assertThat(batch).isNotNull();
+        return batch;
+    }
+
+    private static List<String> names(List<DirectoryWatcher.FileState> batch) {
+        return batch.stream().map(file -> file.getFile().getName()).collect(Collectors.toList());
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.writeString(file.toPath(), content);
+    }
+}
+
+// 12. ParquetProfilerTest.java
+package com.processor.service;
+
+import com.processor.model.ParquetProfile;
+import com.processor.model.ParquetQuery;
+import com.processor.model.ParquetSource;
+import com.processor.util.TDigest;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class ParquetProfilerTest {
+    private static final int ROWS = 200_000;
+
+    private static final Schema SCHEMA = SchemaBuilder.record("Row").fields()
+            .requiredLong("id")
+            .optionalString("country")
+            .requiredDouble("score")
+            .endRecord();
+
+    @TempDir
+    File tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final ParquetProfiler profiler = new ParquetProfiler(pool);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testFooterStatisticsAnswerWithoutReadingPages() throws Exception {
+        List<ParquetSource> sources = List.of(write("a.parquet", 0), write("b.parquet", ROWS));
+
+        ParquetProfile profile = profiler.profile(sources, ParquetQuery.ALL, false);
+
+        assertThat(profile.getFiles()).isEqualTo(2);
+        assertThat(profile.getRows()).isEqualTo(2L * ROWS);
+        assertThat(profile.getRowGroups()).isGreaterThan(2);
+        assertThat(profile.getRowGroupsScanned()).isZero();
+        assertThat(profile.getErrors()).isEmpty();
+
+        ParquetProfile.ColumnProfile id = column(profile, "id");
+        assertThat(id.getMin()).isEqualTo("0");
+        assertThat(id.getMax()).isEqualTo(String.valueOf(2L * ROWS - 1));
+        assertThat(id.getDistinct()).isNull();
+        assertThat(id.isFooterOnly()).isTrue();
+
+        ParquetProfile.ColumnProfile country = column(profile, "country");
+        assertThat(country.getNulls()).isEqualTo(2L * ROWS / 5);
+        assertThat(country.getNullRate()).isEqualTo(0.2);
+        assertThat(country.getMin()).isEqualTo("Brasil");
+        assertThat(country.getMax()).isEqualTo("Norge");
+    }
+
+    @Test
+    public void testSketchesInOneParallelPass() throws Exception {
+        List<ParquetSource> sources = List.of(write("a.parquet", 0), write("b.parquet", ROWS));
+
+        ParquetProfile profile = profiler.profile(sources, ParquetQuery.parse("id,country,score", null), true);
+
+        assertThat(profile.getRowGroupsScanned()).isEqualTo(profile.getRowGroups());
+        ParquetProfile.ColumnProfile id = column(profile, "id");
+        assertThat((double) id.getDistinct()).isCloseTo(2.0 * ROWS, within(0.02 * 2 * ROWS));
+        assertThat(id.getQuantiles().get("p50")).isCloseTo(ROWS, within(0.01 * ROWS));
+        assertThat(id.getQuantiles().get("p99")).isCloseTo(0.99 * 2 * ROWS, within(0.002 * 2 * ROWS));
+        assertThat(id.getHistogram()).hasSize(10);
+        assertThat(id.getHistogram().stream().mapToLong(ParquetProfile.HistogramBin::getCount).sum())
+                .isEqualTo(2L * ROWS);
+        assertThat(id.getHistogram().get(3).getCount()).isCloseTo(2L * ROWS / 10, within(2L * ROWS / 100));
+
+        // Dictionary-encoded strings are sketched from their dictionaries
+        ParquetProfile.ColumnProfile country = column(profile, "country");
+        assertThat(country.getDistinct()).isEqualTo(4);
+        assertThat(country.isFooterOnly()).isTrue();
+        assertThat(country.getQuantiles()).isNull();
+
+        ParquetProfile.ColumnProfile score = column(profile, "score");
+        assertThat(score.getQuantiles().get("p25")).isCloseTo(25.0, within(0.5));
+        assertThat(score.isFooterOnly()).isFalse();
+    }
+
+    @Test
+    public void testDigestsMergeIntoTheWholeDistribution() {
+        Random random = new Random(7);
+        TDigest whole = new TDigest();
+        TDigest merged = new TDigest();
+        for (int part = 0; part < 8; part++) {
+            TDigest digest = new TDigest();
+            for (int i = 0; i < 50_000; i++) {
+                double value = random.nextGaussian();
+                digest.add(value);
+                whole.add(value);
+            }
+            merged.merge(digest);
+        }
+
+        assertThat(merged.count()).isEqualTo(whole.count());
+        for (double q : new double[]{0.001, 0.1, 0.5, 0.9, 0.999}) {
+            assertThat(merged.quantile(q)).isCloseTo(whole.quantile(q), within(0.02));
+        }
+        assertThat(merged.cdf(0)).isCloseTo(0.5, within(0.005));
+        assertThat(merged.cdf(1.96)).isCloseTo(0.975, within(0.003));
+    }
+
+    private static ParquetProfile.ColumnProfile column(ParquetProfile profile, String name) {
+        return profile.getColumns().stream().filter(column -> column.getName().equals(name)).findFirst()
+                .orElseThrow();
+    }
+
+    // Ids from first on; every fifth country is null and scores cycle through 0 to 99.99
+    private ParquetSource write(String name, long first) throws Exception {
+        File file = new File(tempDir, name);
+        String[] countries = {"France", "Japan", "Brasil", "Norge"};
+        ParquetFixtures.write(file, SCHEMA, ROWS, builder -> builder.withRowGroupSize(512L * 1024), (record, i) -> {
+            long id = first + i;
+            record.put("id", id);
+            record.put("country", id % 5 == 0 ? null : countries[(int) (id % 4)]);
+            record.put("score", (id % 10_000) / 100.0);
+        });
+        return ParquetSource.of(file);
+    }
+}
+
+// 13. ParquetFixtures.java
+package com.processor.service;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.util.HadoopOutputFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.ObjLongConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Writes the parquet files the tests convert, one Avro record per row.
+ */
+public final class ParquetFixtures {
+
+    /** A single required long column named id. */
+    public static final Schema IDS = SchemaBuilder.record("Row").fields()
+            .requiredLong("id")
+            .endRecord();
+
+    // Small enough that a few thousand rows span several row groups
+    private static final long ROW_GROUP_SIZE = 64 * 1024;
+
+    private ParquetFixtures() {
+    }
+
+    /**
+     * Writes {@code rows} records of {@code schema}, each filled by {@code row} from its index.
+     */
+    public static void write(File file, Schema schema, long rows, ObjLongConsumer<GenericRecord> row)
+            throws IOException {
+        write(file, schema, rows, UnaryOperator.identity(), row);
+    }
+
+    /**
+     * As {@link #write(File, Schema, long, ObjLongConsumer)}, with {@code options} applied to the writer builder
+     * after the defaults.
+     */
+    public static void write(File file, Schema schema, long rows,
+                             UnaryOperator<AvroParquetWriter.Builder<GenericRecord>> options,
+                             ObjLongConsumer<GenericRecord> row) throws IOException {
+        Configuration conf = new Configuration();
+        AvroParquetWriter.Builder<GenericRecord> builder = AvroParquetWriter
+                .<GenericRecord>builder(HadoopOutputFile.fromPath(new Path(file.getAbsolutePath()), conf))
+                .withSchema(schema)
+                .withConf(conf)
+                .withRowGroupSize(ROW_GROUP_SIZE);
+        try (ParquetWriter<GenericRecord> writer = options.apply(builder).build()) {
+            for (long i = 0; i < rows; i++) {
+                GenericRecord record = new GenericData.Record(schema);
+                row.accept(record, i);
+                writer.write(record);
+            }
+        }
+    }
+
+    /**
+     * Writes {@code rows} records of {@link #IDS} numbered from {@code firstId}.
+     */
+    public static void writeIds(File file, long firstId, long rows) throws IOException {
+        write(file, IDS, rows, (record, i) -> record.put("id", firstId + i));
+    }
+}
@@ -0,0 +1,873 @@
+// Util/HyperLogLog.java
+package com.processor.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Estimates the number of distinct values seen, within about 1% at 16 KB
+ * per sketch. Sketches filled from different parts of a dataset merge into
+ * the sketch of the whole. Values are added as 64-bit hashes, so the same
+ * value must always be hashed the same way.
+ */
+public final class HyperLogLog {
+
+    private static final int PRECISION = 14;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = 0.7213 / (1 + 1.079 / REGISTERS) * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public static long hash(long value) {
+        return mix(value + 0x9E3779B97F4A7C15L);
+    }
+
+    public static long hash(byte[] bytes, int offset, int length) {
+        long hash = 0x9E3779B97F4A7C15L ^ length;
+        int end = offset + length;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            hash = Long.rotateLeft(hash ^ mix((long) LONGS.get(bytes, i)), 27) * 0x9E3779B97F4A7C15L;
+        }
+        long tail = 0;
+        for (int shift = 0; i < end; i++, shift += 8) {
+            tail |= (bytes[i] & 0xFFL) << shift;
+        }
+        return mix(hash ^ mix(tail));
+    }
+
+    // The murmur3 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
+
+// Util/TDigest.java
+package com.processor.util;
+
+import java.util.Arrays;
+
+/**
+ * Summarizes a stream of numbers in a few hundred centroids, from which
+ * quantiles and the cumulative distribution are interpolated. Centroids
+ * are kept small near both tails, so extreme quantiles stay accurate.
+ * Digests filled from different parts of a dataset merge into the digest
+ * of the whole.
+ */
+public final class TDigest {
+
+    private final double compression;
+    private final double[] buffer;
+    private int buffered;
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(100);
+    }
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        this.buffer = new double[(int) (5 * compression)];
+        this.means = new double[(int) (2 * compression)];
+        this.weights = new double[means.length];
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (buffered == buffer.length) {
+            flush();
+        }
+        buffer[buffered++] = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(TDigest other) {
+        other.flush();
+        flush();
+        if (other.centroids > 0) {
+            compress(other.means, other.weights, other.centroids);
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    public long count() {
+        return Math.round(totalWeight) + buffered;
+    }
+
+    public double min() {
+        return count() == 0 ? Double.NaN : min;
+    }
+
+    public double max() {
+        return count() == 0 ? Double.NaN : max;
+    }
+
+    public double quantile(double q) {
+        flush();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        double index = q * totalWeight;
+        if (index <= weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+
+        // Values are interpolated between centroid centers, and towards min and max beyond them
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double gap = (weights[i] + weights[i + 1]) / 2;
+            if (index <= cumulative + gap) {
+                return means[i] + (means[i + 1] - means[i]) * (index - cumulative) / gap;
+            }
+            cumulative += gap;
+        }
+        int last = centroids - 1;
+        double fraction = Math.min(1, (index - cumulative) / (weights[last] / 2));
+        return means[last] + (max - means[last]) * fraction;
+    }
+
+    /** The fraction of values below x. */
+    public double cdf(double x) {
+        flush();
+        if (centroids == 0 || x < min) {
+            return centroids == 0 ? Double.NaN : 0;
+        }
+        if (x >= max) {
+            return 1;
+        }
+        if (x < means[0]) {
+            return weights[0] / 2 * (x - min) / (means[0] - min) / totalWeight;
+        }
+
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double gap = (weights[i] + weights[i + 1]) / 2;
+            if (x < means[i + 1]) {
+                return (cumulative + gap * (x - means[i]) / (means[i + 1] - means[i])) / totalWeight;
+            }
+            cumulative += gap;
+        }
+        int last = centroids - 1;
+        return (cumulative + weights[last] / 2 * (x - means[last]) / (max - means[last])) / totalWeight;
+    }
+
+    private void flush() {
+        if (buffered > 0) {
+            Arrays.sort(buffer, 0, buffered);
+            compress(buffer, null, buffered);
+            buffered = 0;
+        }
+    }
+
+    // Merges sorted centroids into the digest's own; null weights count one each
+    private void compress(double[] incomingMeans, double[] incomingWeights, int incoming) {
+        double total = totalWeight;
+        for (int i = 0; i < incoming; i++) {
+            total += incomingWeights == null ? 1 : incomingWeights[i];
+        }
+
+        double[] newMeans = new double[means.length];
+        double[] newWeights = new double[weights.length];
+        int count = 0;
+        double before = 0;
+        double mean = 0;
+        double weight = 0;
+        int i = 0;
+        int j = 0;
+        while (i < centroids || j < incoming) {
+            double nextMean;
+            double nextWeight;
+            if (j == incoming || i < centroids && means[i] <= incomingMeans[j]) {
+                nextMean = means[i];
+                nextWeight = weights[i++];
+            } else {
+                nextMean = incomingMeans[j];
+                nextWeight = incomingWeights == null ? 1 : incomingWeights[j];
+                j++;
+            }
+            if (weight == 0) {
+                mean = nextMean;
+                weight = nextWeight;
+                continue;
+            }
+
+            // A centroid may hold about 4 * n * q * (1 - q) / compression values
+            double proposed = weight + nextWeight;
+            double q = (before + proposed / 2) / total;
+            if (proposed <= 4 * total * q * (1 - q) / compression) {
+                mean += (nextMean - mean) * nextWeight / proposed;
+                weight = proposed;
+            } else {
+                if (count == newMeans.length) {
+                    newMeans = Arrays.copyOf(newMeans, count * 2);
+                    newWeights = Arrays.copyOf(newWeights, count * 2);
+                }
+                newMeans[count] = mean;
+                newWeights[count++] = weight;
+                before += weight;
+                mean = nextMean;
+                weight = nextWeight;
+            }
+        }
+        if (weight > 0) {
+            if (count == newMeans.length) {
+                newMeans = Arrays.copyOf(newMeans, count * 2);
+                newWeights = Arrays.copyOf(newWeights, count * 2);
+            }
+            newMeans[count] = mean;
+            newWeights[count++] = weight;
+        }
+
+        means = newMeans;
+        weights = newWeights;
+        centroids = count;
+        totalWeight = total;
+    }
+}
+
+// Model/ParquetProfile.java
+package com.processor.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class ParquetProfile {
+    private int files;
+    private int rowGroups;
+    // Row groups whose data pages had to be read; the rest was answered from footers and dictionaries
+    private int rowGroupsScanned;
+    private long rows;
+    private List<ColumnProfile> columns = new ArrayList<>();
+    private List<String> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class ColumnProfile {
+        private String name;
+        private String type;
+        private long values;
+        private long nulls;
+        private double nullRate;
+        private String min;
+        private String max;
+        // The sketched values are null when the profile was made from footers only
+        private Long distinct;
+        private Map<String, Double> quantiles;
+        private List<HistogramBin> histogram;
+        private boolean footerOnly;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class HistogramBin {
+        private double lower;
+        private double upper;
+        private long count;
+    }
+}
+
+// Service/ParquetProfiler.java
+package com.processor.service;
+
+import com.processor.model.ParquetProfile;
+import com.processor.model.ParquetQuery;
+import com.processor.model.ParquetSource;
+import com.processor.util.HyperLogLog;
+import com.processor.util.TDigest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.Dictionary;
+import org.apache.parquet.column.EncodingStats;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.DictionaryPage;
+import org.apache.parquet.column.page.DictionaryPageReadStore;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.Converter;
+import org.apache.parquet.io.api.GroupConverter;
+import org.apache.parquet.io.api.PrimitiveConverter;
+import org.apache.parquet.schema.ColumnOrder;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveComparator;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Profiles the columns of a set of parquet files as one dataset: value and
+ * null counts, min and max, and, when sketches are asked for, distinct
+ * estimates, quantiles and a histogram. Counts and bounds come from the
+ * column chunk statistics in the footers; only chunks without usable
+ * statistics have their pages read for them. Distinct estimates of
+ * non-numeric chunks that are entirely dictionary-encoded are taken from
+ * their dictionaries. Everything else is read in a single parallel pass
+ * over the row groups, each filling sketches of its own, which are merged
+ * once all row groups are done. No rows leave the worker threads.
+ */
+@Component
+@Slf4j
+public class ParquetProfiler {
+
+    private static final double[] QUANTILES = {0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+    private static final int HISTOGRAM_BINS = 10;
+
+    private final ForkJoinPool workerPool;
+
+    @Autowired
+    public ParquetProfiler(@Qualifier("parquetWorkerPool") ForkJoinPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Profiles the query's columns, nested ones by their dotted path. Row
+     * filters are not applied. Sources that cannot be read, and row groups
+     * that fail, are listed in the profile's errors.
+     */
+    public ParquetProfile profile(List<ParquetSource> sources, ParquetQuery query, boolean sketches) {
+        ParquetProfile profile = new ParquetProfile();
+        Configuration conf = new Configuration();
+        Map<String, ColumnStats> columns = new LinkedHashMap<>();
+        List<RowGroupScan> scans = new ArrayList<>();
+
+        for (ParquetSource source : sources) {
+            InputFile inputFile;
+            MessageType schema;
+            List<BlockMetaData> rowGroups;
+            try {
+                inputFile = source.newInputFile(conf);
+                try (ParquetFileReader reader = ParquetFileReader.open(inputFile)) {
+                    schema = reader.getFooter().getFileMetaData().getSchema();
+                    rowGroups = reader.getRowGroups();
+                }
+            } catch (Exception e) {
+                log.error("Error reading the footer of {}: {}", source.getName(), e.getMessage());
+                profile.getErrors().add(source.getName() + ": " + e.getMessage());
+                continue;
+            }
+            profile.setFiles(profile.getFiles() + 1);
+            profile.setRowGroups(profile.getRowGroups() + rowGroups.size());
+
+            for (int index = 0; index < rowGroups.size(); index++) {
+                BlockMetaData rowGroup = rowGroups.get(index);
+                profile.setRows(profile.getRows() + rowGroup.getRowCount());
+                RowGroupScan scan = new RowGroupScan(source.getName(), inputFile, schema, index);
+                for (ColumnChunkMetaData chunk : rowGroup.getColumns()) {
+                    String[] path = chunk.getPath().toArray();
+                    if (!query.isOutputColumn(path[0])) {
+                        continue;
+                    }
+                    PrimitiveType type = chunk.getPrimitiveType();
+                    ColumnStats column = columns.computeIfAbsent(chunk.getPath().toDotString(),
+                            name -> new ColumnStats(name, type, sketches));
+                    if (!column.hasType(type)) {
+                        log.warn("Skipping {} in {}: it is {} there, not {}", column.name, source.getName(),
+                                type, column.type);
+                        continue;
+                    }
+                    planChunk(column, chunk, schema.getColumnDescription(path), scan, sketches);
+                }
+                if (!scan.pages.isEmpty() || !scan.dictionaries.isEmpty()) {
+                    scans.add(scan);
+                }
+            }
+        }
+
+        List<CompletableFuture<Map<String, ColumnStats>>> futures = new ArrayList<>(scans.size());
+        for (RowGroupScan scan : scans) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return scan(scan, columns);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, workerPool));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            RowGroupScan scan = scans.get(i);
+            try {
+                futures.get(i).join().forEach((name, scanned) -> columns.get(name).merge(scanned));
+                if (!scan.pages.isEmpty()) {
+                    profile.setRowGroupsScanned(profile.getRowGroupsScanned() + 1);
+                }
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.error("Error profiling row group {} of {}: {}", scan.index, scan.name, cause.getMessage());
+                profile.getErrors().add(scan.name + ", row group " + scan.index + ": " + cause.getMessage());
+            }
+        }
+
+        for (ColumnStats column : columns.values()) {
+            profile.getColumns().add(column.toProfile());
+        }
+        return profile;
+    }
+
+    // Takes what the chunk's footer statistics answer, and plans reading the rest
+    private static void planChunk(ColumnStats column, ColumnChunkMetaData chunk, ColumnDescriptor descriptor,
+                                  RowGroupScan scan, boolean sketches) {
+        column.values += chunk.getValueCount();
+        Statistics<?> statistics = chunk.getStatistics();
+        boolean nullsKnown = statistics != null && statistics.isNumNullsSet();
+        boolean allNull = nullsKnown && statistics.getNumNulls() == chunk.getValueCount();
+        boolean boundsKnown = !column.ordered || allNull || statistics != null && statistics.hasNonNullValue();
+
+        if (nullsKnown && boundsKnown) {
+            column.nulls += statistics.getNumNulls();
+            if (column.ordered && !allNull) {
+                column.offerBound(statistics.genericGetMin());
+                column.offerBound(statistics.genericGetMax());
+            }
+            if (!sketches || allNull) {
+                return;
+            }
+            EncodingStats encodings = chunk.getEncodingStats();
+            if (column.digest == null && encodings != null && encodings.hasDictionaryPages()
+                    && !encodings.hasNonDictionaryEncodedPages()) {
+                scan.dictionaries.add(descriptor);
+                return;
+            }
+            scan.pages.put(descriptor, false);
+        } else {
+            column.footerOnly = false;
+            scan.pages.put(descriptor, true);
+        }
+    }
+
+    private static Map<String, ColumnStats> scan(RowGroupScan scan, Map<String, ColumnStats> columns)
+            throws IOException {
+        Map<String, ColumnStats> scanned = new HashMap<>();
+        try (ParquetFileReader reader = ParquetFileReader.open(scan.inputFile)) {
+            if (!scan.dictionaries.isEmpty()) {
+                DictionaryPageReadStore dictionaries = reader.getDictionaryReader(scan.index);
+                for (ColumnDescriptor descriptor : scan.dictionaries) {
+                    DictionaryPage page = dictionaries.readDictionaryPage(descriptor);
+                    ColumnStats stats = columns.get(String.join(".", descriptor.getPath())).emptyCopy();
+                    stats.addDictionary(page.getEncoding().initDictionary(descriptor, page));
+                    scanned.put(stats.name, stats);
+                }
+            }
+
+            if (!scan.pages.isEmpty()) {
+                MessageType projection = projection(scan.schema, scan.pages.keySet());
+                reader.setRequestedSchema(projection);
+                PageReadStore pages = reader.readRowGroup(scan.index);
+                ColumnReadStoreImpl store = new ColumnReadStoreImpl(pages, new SkippingConverter(projection),
+                        projection, reader.getFileMetaData().getCreatedBy());
+                for (Map.Entry<ColumnDescriptor, Boolean> entry : scan.pages.entrySet()) {
+                    ColumnDescriptor descriptor = entry.getKey();
+                    ColumnStats stats = columns.get(String.join(".", descriptor.getPath())).emptyCopy();
+                    stats.addPages(store.getColumnReader(descriptor), descriptor.getMaxDefinitionLevel(),
+                            entry.getValue());
+                    scanned.put(stats.name, stats);
+                }
+            }
+        }
+        return scanned;
+    }
+
+    // The schema pruned to the given leaf columns
+    private static MessageType projection(MessageType schema, Set<ColumnDescriptor> columns) {
+        Set<List<String>> paths = new HashSet<>();
+        for (ColumnDescriptor column : columns) {
+            paths.add(Arrays.asList(column.getPath()));
+        }
+        return new MessageType(schema.getName(), prune(schema, new ArrayList<>(), paths));
+    }
+
+    private static List<Type> prune(GroupType group, List<String> prefix, Set<List<String>> paths) {
+        List<Type> fields = new ArrayList<>();
+        for (Type field : group.getFields()) {
+            List<String> path = new ArrayList<>(prefix);
+            path.add(field.getName());
+            if (field.isPrimitive()) {
+                if (paths.contains(path)) {
+                    fields.add(field);
+                }
+            } else {
+                List<Type> children = prune(field.asGroupType(), path, paths);
+                if (!children.isEmpty()) {
+                    fields.add(field.asGroupType().withNewFields(children));
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static final class RowGroupScan {
+        private final String name;
+        private final InputFile inputFile;
+        private final MessageType schema;
+        private final int index;
+        // Columns whose pages are read, and whether their counts and bounds come from the pages too
+        private final Map<ColumnDescriptor, Boolean> pages = new LinkedHashMap<>();
+        // Columns only sketched, from their dictionaries
+        private final List<ColumnDescriptor> dictionaries = new ArrayList<>();
+
+        private RowGroupScan(String name, InputFile inputFile, MessageType schema, int index) {
+            this.name = name;
+            this.inputFile = inputFile;
+            this.schema = schema;
+            this.index = index;
+        }
+    }
+
+    private static final class ColumnStats {
+        private final String name;
+        private final PrimitiveType type;
+        private final boolean ordered;
+        private final PrimitiveComparator<Object> comparator;
+        private final double scale;
+        private final HyperLogLog distinct;
+        // Only for numbers
+        private final TDigest digest;
+        private long values;
+        private long nulls;
+        private Object min;
+        private Object max;
+        private boolean footerOnly = true;
+
+        @SuppressWarnings("unchecked")
+        private ColumnStats(String name, PrimitiveType type, boolean sketches) {
+            this.name = name;
+            this.type = type;
+            this.ordered = type.columnOrder().getColumnOrderName() != ColumnOrder.ColumnOrderName.UNDEFINED;
+            this.comparator = (PrimitiveComparator<Object>) type.comparator();
+            LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+            this.scale = annotation instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation
+                    ? Math.pow(10, ((LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) annotation).getScale()) : 1;
+            this.distinct = sketches ? new HyperLogLog() : null;
+            this.digest = sketches && isNumber(type) ? new TDigest() : null;
+        }
+
+        ColumnStats emptyCopy() {
+            return new ColumnStats(name, type, true);
+        }
+
+        boolean hasType(PrimitiveType other) {
+            return type.getPrimitiveTypeName() == other.getPrimitiveTypeName()
+                    && Objects.equals(type.getLogicalTypeAnnotation(), other.getLogicalTypeAnnotation());
+        }
+
+        void offerBound(Object value) {
+            if (min == null || comparator.compare(value, min) < 0) {
+                min = value;
+            }
+            if (max == null || comparator.compare(value, max) > 0) {
+                max = value;
+            }
+        }
+
+        void merge(ColumnStats scanned) {
+            nulls += scanned.nulls;
+            if (scanned.min != null) {
+                offerBound(scanned.min);
+                offerBound(scanned.max);
+            }
+            if (distinct != null) {
+                distinct.merge(scanned.distinct);
+            }
+            if (digest != null) {
+                digest.merge(scanned.digest);
+            }
+            footerOnly &= scanned.footerOnly;
+        }
+
+        void addDictionary(Dictionary dictionary) {
+            for (int id = 0; id <= dictionary.getMaxId(); id++) {
+                switch (type.getPrimitiveTypeName()) {
+                    case INT32:
+                        distinct.add(HyperLogLog.hash(dictionary.decodeToInt(id)));
+                        break;
+                    case INT64:
+                        distinct.add(HyperLogLog.hash(dictionary.decodeToLong(id)));
+                        break;
+                    case FLOAT:
+                        distinct.add(HyperLogLog.hash(Float.floatToIntBits(dictionary.decodeToFloat(id))));
+                        break;
+                    case DOUBLE:
+                        distinct.add(HyperLogLog.hash(Double.doubleToLongBits(dictionary.decodeToDouble(id))));
+                        break;
+                    case BOOLEAN:
+                        distinct.add(HyperLogLog.hash(dictionary.decodeToBoolean(id) ? 1 : 0));
+                        break;
+                    default:
+                        distinct.add(hash(dictionary.decodeToBinary(id)));
+                        break;
+                }
+            }
+        }
+
+        // Sketches every value of the chunk; counts and bounds too if the footer had none
+        void addPages(ColumnReader reader, int maxDefinitionLevel, boolean withStatistics) {
+            footerOnly = false;
+            for (long i = reader.getTotalValueCount(); i > 0; i--) {
+                if (reader.getCurrentDefinitionLevel() < maxDefinitionLevel) {
+                    if (withStatistics) {
+                        nulls++;
+                    }
+                    reader.consume();
+                    continue;
+                }
+                Object value = null;
+                switch (type.getPrimitiveTypeName()) {
+                    case INT32: {
+                        int v = reader.getInteger();
+                        distinct.add(HyperLogLog.hash(v));
+                        if (digest != null) {
+                            digest.add(isUnsigned() ? Integer.toUnsignedLong(v) / scale : v / scale);
+                        }
+                        value = withStatistics ? v : null;
+                        break;
+                    }
+                    case INT64: {
+                        long v = reader.getLong();
+                        distinct.add(HyperLogLog.hash(v));
+                        if (digest != null) {
+                            digest.add(isUnsigned() && v < 0 ? (v + 0x1p64) / scale : v / scale);
+                        }
+                        value = withStatistics ? v : null;
+                        break;
+                    }
+                    case FLOAT: {
+                        float v = reader.getFloat();
+                        distinct.add(HyperLogLog.hash(Float.floatToIntBits(v)));
+                        digest.add(v);
+                        value = withStatistics ? v : null;
+                        break;
+                    }
+                    case DOUBLE: {
+                        double v = reader.getDouble();
+                        distinct.add(HyperLogLog.hash(Double.doubleToLongBits(v)));
+                        digest.add(v);
+                        value = withStatistics ? v : null;
+                        break;
+                    }
+                    case BOOLEAN: {
+                        boolean v = reader.getBoolean();
+                        distinct.add(HyperLogLog.hash(v ? 1 : 0));
+                        value = withStatistics ? v : null;
+                        break;
+                    }
+                    default: {
+                        Binary v = reader.getBinary();
+                        distinct.add(hash(v));
+                        if (digest != null) {
+                            digest.add(new BigInteger(v.getBytes()).doubleValue() / scale);
+                        }
+                        // Bounds are compared as bytes, so keep copies rather than views of the page
+                        value = withStatistics && ordered
+                                && (min == null || comparator.compare(v, min) < 0 || comparator.compare(v, max) > 0)
+                                ? v.copy() : null;
+                        break;
+                    }
+                }
+                if (value != null && ordered) {
+                    offerBound(value);
+                }
+                reader.consume();
+            }
+        }
+
+        ParquetProfile.ColumnProfile toProfile() {
+            ParquetProfile.ColumnProfile profile = new ParquetProfile.ColumnProfile();
+            profile.setName(name);
+            LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+            profile.setType(type.getPrimitiveTypeName() + (annotation == null ? "" : " (" + annotation + ")"));
+            profile.setValues(values);
+            profile.setNulls(nulls);
+            profile.setNullRate(values == 0 ? 0 : (double) nulls / values);
+            profile.setMin(stringify(min));
+            profile.setMax(stringify(max));
+            profile.setFooterOnly(footerOnly);
+            if (distinct != null) {
+                profile.setDistinct(Math.min(distinct.estimate(), values - nulls));
+            }
+            if (digest != null && digest.count() > 0) {
+                Map<String, Double> quantiles = new LinkedHashMap<>();
+                for (double q : QUANTILES) {
+                    quantiles.put("p" + Math.round(q * 100), digest.quantile(q));
+                }
+                profile.setQuantiles(quantiles);
+                profile.setHistogram(histogram());
+            }
+            return profile;
+        }
+
+        // Equal-width bins between min and max, counted from the digest's distribution
+        private List<ParquetProfile.HistogramBin> histogram() {
+            double low = digest.min();
+            double high = digest.max();
+            long count = digest.count();
+            List<ParquetProfile.HistogramBin> bins = new ArrayList<>();
+            if (low == high || Double.isInfinite(low) || Double.isInfinite(high)) {
+                bins.add(new ParquetProfile.HistogramBin(low, high, count));
+                return bins;
+            }
+            double width = (high - low) / HISTOGRAM_BINS;
+            long counted = 0;
+            for (int i = 0; i < HISTOGRAM_BINS; i++) {
+                double upper = i == HISTOGRAM_BINS - 1 ? high : low + width * (i + 1);
+                long below = i == HISTOGRAM_BINS - 1 ? count : Math.round(digest.cdf(upper) * count);
+                bins.add(new ParquetProfile.HistogramBin(low + width * i, upper, below - counted));
+                counted = below;
+            }
+            return bins;
+        }
+
+        private String stringify(Object value) {
+            if (value == null) {
+                return null;
+            }
+            switch (type.getPrimitiveTypeName()) {
+                case INT32:
+                    return type.stringifier().stringify((int) value);
+                case INT64:
+                    return type.stringifier().stringify((long) value);
+                case FLOAT:
+                    return type.stringifier().stringify((float) value);
+                case DOUBLE:
+                    return type.stringifier().stringify((double) value);
+                case BOOLEAN:
+                    return type.stringifier().stringify((boolean) value);
+                default:
+                    return type.stringifier().stringify((Binary) value);
+            }
+        }
+
+        private boolean isUnsigned() {
+            LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+            return annotation instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation
+                    && !((LogicalTypeAnnotation.IntLogicalTypeAnnotation) annotation).isSigned();
+        }
+
+        private static boolean isNumber(PrimitiveType type) {
+            LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+            if (annotation instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) {
+                return true;
+            }
+            switch (type.getPrimitiveTypeName()) {
+                case INT32:
+                case INT64:
+                    return annotation == null || annotation instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation;
+                case FLOAT:
+                case DOUBLE:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static long hash(Binary value) {
+            byte[] bytes = value.getBytesUnsafe();
+            return HyperLogLog.hash(bytes, 0, bytes.length);
+        }
+    }
+
+    // The column readers only need converters to exist; values are read from the readers directly
+    private static final class SkippingConverter extends GroupConverter {
+        private final Converter[] converters;
+
+        private SkippingConverter(GroupType type) {
+            converters = new Converter[type.getFieldCount()];
+            for (int i = 0; i < converters.length; i++) {
+                Type field = type.getType(i);
+                converters[i] = field.isPrimitive() ? new PrimitiveConverter() {
+                } : new SkippingConverter(field.asGroupType());
+            }
+        }
+
+        @Override
+        public Converter getConverter(int fieldIndex) {
+            return converters[fieldIndex];
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
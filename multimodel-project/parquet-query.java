@@ -0,0 +1,601 @@
+// Model/ParquetQuery.java
+package com.processor.model;
+
+import org.apache.avro.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroReadSupport;
+import org.apache.parquet.avro.AvroSchemaConverter;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Column projection and row filter requested for a processing job.
+ * <p>
+ * The projection becomes an Avro requested projection so unselected column
+ * chunks are never read or decompressed, and the filter becomes a parquet
+ * {@code FilterPredicate} so row groups can be skipped from their statistics.
+ */
+public class ParquetQuery {
+
+    public static final ParquetQuery ALL = new ParquetQuery(Collections.emptyList(), null);
+
+    private final List<String> columns;
+    private final FilterExpression filter;
+
+    public ParquetQuery(List<String> columns, FilterExpression filter) {
+        this.columns = columns;
+        this.filter = filter;
+    }
+
+    /**
+     * Parses the request parameters: a comma separated list of top-level
+     * columns and a filter expression such as {@code age >= 18 and sex = 'female'}.
+     * Either may be null or blank.
+     */
+    public static ParquetQuery parse(String columns, String filter) {
+        List<String> columnList = columns == null ? Collections.emptyList()
+                : Arrays.stream(columns.split(","))
+                        .map(String::trim)
+                        .filter(column -> !column.isEmpty())
+                        .distinct()
+                        .collect(Collectors.toList());
+        FilterExpression expression = filter == null || filter.isBlank() ? null : FilterExpression.parse(filter);
+        return new ParquetQuery(columnList, expression);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public FilterExpression getFilter() {
+        return filter;
+    }
+
+    public boolean isOutputColumn(String column) {
+        return columns.isEmpty() || columns.contains(column);
+    }
+
+    /**
+     * Returns a copy of the configuration that reads only the projected columns
+     * (plus any columns the filter needs) of a file with the given schema.
+     */
+    public Configuration configure(Configuration base, MessageType fileSchema) {
+        if (columns.isEmpty()) {
+            return base;
+        }
+
+        Set<String> readColumns = new LinkedHashSet<>(columns);
+        if (filter != null) {
+            filter.collectColumns(readColumns);
+        }
+        checkColumns(readColumns, fileSchema);
+
+        // Keep the file's column order
+        List<Type> fields = new ArrayList<>();
+        for (Type field : fileSchema.getFields()) {
+            if (readColumns.contains(field.getName())) {
+                fields.add(field);
+            }
+        }
+
+        Configuration conf = new Configuration(base);
+        Schema projection = new AvroSchemaConverter(conf).convert(new MessageType(fileSchema.getName(), fields));
+        AvroReadSupport.setRequestedProjection(conf, projection);
+        AvroReadSupport.setAvroReadSchema(conf, projection);
+        return conf;
+    }
+
+    /**
+     * Checks the query against a file's schema: that its columns exist and
+     * that the filter's literals suit their columns' types.
+     *
+     * @throws InvalidQueryException if the query cannot be run on the file
+     */
+    public void validate(MessageType fileSchema) {
+        Set<String> readColumns = new LinkedHashSet<>(columns);
+        if (filter != null) {
+            filter.collectColumns(readColumns);
+        }
+        checkColumns(readColumns, fileSchema);
+        if (filter != null) {
+            filter.toPredicate(fileSchema);
+        }
+    }
+
+    private static void checkColumns(Set<String> readColumns, MessageType fileSchema) {
+        for (String column : readColumns) {
+            if (!fileSchema.containsField(column)) {
+                throw new InvalidQueryException("Unknown column: " + column);
+            }
+        }
+    }
+
+    public FilterCompat.Filter toFilter(MessageType fileSchema) {
+        return filter == null ? FilterCompat.NOOP : FilterCompat.get(filter.toPredicate(fileSchema));
+    }
+
+    /**
+     * A canonical form of the query, the same for queries that select the
+     * same rows and columns: outputs keep the file's column order whatever
+     * order the columns were asked in, and filters are in canonical form.
+     */
+    public String canonical() {
+        return "columns=" + new TreeSet<>(columns) + " filter=" + (filter == null ? null : filter.canonical());
+    }
+
+    @Override
+    public String toString() {
+        return "columns=" + columns + " filter=" + filter;
+    }
+}
+
+// Model/FilterExpression.java
+package com.processor.model;
+
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.filter2.predicate.Operators;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A small filter language that is bound to a parquet {@link FilterPredicate}
+ * once the column types of a file are known.
+ * <pre>
+ *   expr       := term (OR term)*
+ *   term       := factor (AND factor)*
+ *   factor     := NOT factor | '(' expr ')' | column op literal
+ *   op         := = | != | &lt;&gt; | &lt; | &lt;= | &gt; | &gt;=
+ *   literal    := number | 'string' | true | false | null
+ * </pre>
+ * Columns may be nested paths such as {@code address.city}, so top-level
+ * columns whose names contain dots cannot be filtered. Only columns of
+ * primitive type (int32, int64, float, double, boolean, binary) can be filtered.
+ */
+public abstract class FilterExpression {
+
+    public abstract FilterPredicate toPredicate(MessageType schema);
+
+    /** Adds the top-level columns the expression reads to the given set. */
+    public abstract void collectColumns(Set<String> columns);
+
+    /**
+     * The expression with the operands of each chain of ands or ors sorted
+     * and numbers without trailing zeros, so that filters that differ only
+     * in such ways read the same.
+     */
+    public abstract String canonical();
+
+    // Ands and ors are associative and commutative, so a chain of them is a sorted list of operands
+    private static String canonicalChain(String keyword, FilterExpression expression) {
+        List<String> operands = new ArrayList<>();
+        collectChain(keyword, expression, operands);
+        Collections.sort(operands);
+        return "(" + String.join(" " + keyword + " ", operands) + ")";
+    }
+
+    private static void collectChain(String keyword, FilterExpression expression, List<String> operands) {
+        if (keyword.equals("and") && expression instanceof And) {
+            collectChain(keyword, ((And) expression).left, operands);
+            collectChain(keyword, ((And) expression).right, operands);
+        } else if (keyword.equals("or") && expression instanceof Or) {
+            collectChain(keyword, ((Or) expression).left, operands);
+            collectChain(keyword, ((Or) expression).right, operands);
+        } else {
+            operands.add(expression.canonical());
+        }
+    }
+
+    public static FilterExpression parse(String text) {
+        Parser parser = new Parser(tokenize(text));
+        FilterExpression expression = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new InvalidQueryException("Unexpected token in filter: " + parser.tokens.get(parser.position));
+        }
+        return expression;
+    }
+
+    private static final class And extends FilterExpression {
+        private final FilterExpression left;
+        private final FilterExpression right;
+
+        private And(FilterExpression left, FilterExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public FilterPredicate toPredicate(MessageType schema) {
+            return FilterApi.and(left.toPredicate(schema), right.toPredicate(schema));
+        }
+
+        @Override
+        public void collectColumns(Set<String> columns) {
+            left.collectColumns(columns);
+            right.collectColumns(columns);
+        }
+
+        @Override
+        public String canonical() {
+            return canonicalChain("and", this);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " and " + right + ")";
+        }
+    }
+
+    private static final class Or extends FilterExpression {
+        private final FilterExpression left;
+        private final FilterExpression right;
+
+        private Or(FilterExpression left, FilterExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public FilterPredicate toPredicate(MessageType schema) {
+            return FilterApi.or(left.toPredicate(schema), right.toPredicate(schema));
+        }
+
+        @Override
+        public void collectColumns(Set<String> columns) {
+            left.collectColumns(columns);
+            right.collectColumns(columns);
+        }
+
+        @Override
+        public String canonical() {
+            return canonicalChain("or", this);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " or " + right + ")";
+        }
+    }
+
+    private static final class Not extends FilterExpression {
+        private final FilterExpression operand;
+
+        private Not(FilterExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public FilterPredicate toPredicate(MessageType schema) {
+            return FilterApi.not(operand.toPredicate(schema));
+        }
+
+        @Override
+        public void collectColumns(Set<String> columns) {
+            operand.collectColumns(columns);
+        }
+
+        @Override
+        public String canonical() {
+            return "not " + operand.canonical();
+        }
+
+        @Override
+        public String toString() {
+            return "not " + operand;
+        }
+    }
+
+    private static final class Comparison extends FilterExpression {
+        private final String column;
+        private final String operator;
+        private final Object literal;
+
+        private Comparison(String column, String operator, Object literal) {
+            this.column = column;
+            this.operator = operator;
+            this.literal = literal;
+        }
+
+        @Override
+        public void collectColumns(Set<String> columns) {
+            int dot = column.indexOf('.');
+            columns.add(dot < 0 ? column : column.substring(0, dot));
+        }
+
+        @Override
+        public String toString() {
+            String value = literal instanceof String
+                    ? "'" + ((String) literal).replace("'", "''") + "'"
+                    : String.valueOf(literal);
+            return column + " " + operator + " " + value;
+        }
+
+        @Override
+        public String canonical() {
+            return literal instanceof BigDecimal
+                    ? column + " " + operator + " " + ((BigDecimal) literal).stripTrailingZeros().toPlainString()
+                    : toString();
+        }
+
+        @Override
+        public FilterPredicate toPredicate(MessageType schema) {
+            String[] path = column.split("\\.");
+            if (!schema.containsPath(path)) {
+                throw new InvalidQueryException("Unknown filter column: " + column);
+            }
+            Type type = schema.getType(path);
+            if (!type.isPrimitive()) {
+                throw new InvalidQueryException("Filter column is not a primitive: " + column);
+            }
+
+            PrimitiveType.PrimitiveTypeName typeName = type.asPrimitiveType().getPrimitiveTypeName();
+            switch (typeName) {
+                case INT32:
+                    return compare(FilterApi.intColumn(column), literal == null ? null : integer(32).intValue());
+                case INT64:
+                    return compare(FilterApi.longColumn(column), literal == null ? null : integer(64).longValue());
+                case FLOAT:
+                    return compare(FilterApi.floatColumn(column), literal == null ? null : number().floatValue());
+                case DOUBLE:
+                    return compare(FilterApi.doubleColumn(column), literal == null ? null : number().doubleValue());
+                case BINARY:
+                    return compare(FilterApi.binaryColumn(column), literal == null ? null : Binary.fromString(string()));
+                case BOOLEAN:
+                    Operators.BooleanColumn booleanColumn = FilterApi.booleanColumn(column);
+                    Boolean value = literal == null ? null : bool();
+                    if ("=".equals(operator)) {
+                        return FilterApi.eq(booleanColumn, value);
+                    } else if ("!=".equals(operator)) {
+                        return FilterApi.notEq(booleanColumn, value);
+                    }
+                    throw new InvalidQueryException("Operator " + operator + " is not supported on boolean column " + column);
+                default:
+                    throw new InvalidQueryException("Filtering on " + typeName + " column " + column + " is not supported");
+            }
+        }
+
+        private <T extends Comparable<T>, C extends Operators.Column<T> & Operators.SupportsLtGt>
+        FilterPredicate compare(C filterColumn, T value) {
+            if (value == null && !"=".equals(operator) && !"!=".equals(operator)) {
+                throw new InvalidQueryException("Operator " + operator + " cannot be used with null");
+            }
+            switch (operator) {
+                case "=":
+                    return FilterApi.eq(filterColumn, value);
+                case "!=":
+                    return FilterApi.notEq(filterColumn, value);
+                case "<":
+                    return FilterApi.lt(filterColumn, value);
+                case "<=":
+                    return FilterApi.ltEq(filterColumn, value);
+                case ">":
+                    return FilterApi.gt(filterColumn, value);
+                default:
+                    return FilterApi.gtEq(filterColumn, value);
+            }
+        }
+
+        private BigDecimal number() {
+            if (!(literal instanceof BigDecimal)) {
+                throw new InvalidQueryException("Column " + column + " must be compared with a number");
+            }
+            return (BigDecimal) literal;
+        }
+
+        // An integral literal within the column's range, where BigDecimal's exact conversions would throw
+        private BigDecimal integer(int bits) {
+            BigDecimal number = number();
+            BigDecimal min = BigDecimal.valueOf(bits == 32 ? Integer.MIN_VALUE : Long.MIN_VALUE);
+            BigDecimal max = BigDecimal.valueOf(bits == 32 ? Integer.MAX_VALUE : Long.MAX_VALUE);
+            if (number.stripTrailingZeros().scale() > 0 || number.compareTo(min) < 0 || number.compareTo(max) > 0) {
+                throw new InvalidQueryException("Column " + column + " must be compared with a " + bits
+                        + "-bit integer, not " + number.toPlainString());
+            }
+            return number;
+        }
+
+        private String string() {
+            if (!(literal instanceof String)) {
+                throw new InvalidQueryException("Column " + column + " must be compared with a quoted string");
+            }
+            return (String) literal;
+        }
+
+        private Boolean bool() {
+            if (!(literal instanceof Boolean)) {
+                throw new InvalidQueryException("Column " + column + " must be compared with true or false");
+            }
+            return (Boolean) literal;
+        }
+    }
+
+    // Tokens are kept as strings; quoted strings keep their leading quote as a marker
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'') {
+                StringBuilder value = new StringBuilder("'");
+                i++;
+                while (true) {
+                    if (i >= text.length()) {
+                        throw new InvalidQueryException("Unterminated string in filter");
+                    }
+                    char s = text.charAt(i++);
+                    if (s == '\'') {
+                        if (i < text.length() && text.charAt(i) == '\'') {
+                            value.append('\'');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(s);
+                    }
+                }
+                tokens.add(value.toString());
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '=' || c == '!' || c == '<' || c == '>') {
+                int start = i++;
+                if (i < text.length() && (text.charAt(i) == '=' || (c == '<' && text.charAt(i) == '>'))) {
+                    i++;
+                }
+                String operator = text.substring(start, i);
+                switch (operator) {
+                    case "!":
+                        throw new InvalidQueryException("Invalid operator '!' in filter");
+                    case "==":
+                        operator = "=";
+                        break;
+                    case "<>":
+                        operator = "!=";
+                        break;
+                    default:
+                        break;
+                }
+                tokens.add(operator);
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.') {
+                int start = i;
+                while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i))
+                        || "_-.+".indexOf(text.charAt(i)) >= 0)) {
+                    i++;
+                }
+                tokens.add(text.substring(start, i));
+            } else {
+                throw new InvalidQueryException("Unexpected character '" + c + "' in filter");
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        private Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        private FilterExpression parseOr() {
+            FilterExpression left = parseAnd();
+            while (acceptKeyword("or")) {
+                left = new Or(left, parseAnd());
+            }
+            return left;
+        }
+
+        private FilterExpression parseAnd() {
+            FilterExpression left = parseFactor();
+            while (acceptKeyword("and")) {
+                left = new And(left, parseFactor());
+            }
+            return left;
+        }
+
+        private FilterExpression parseFactor() {
+            if (acceptKeyword("not")) {
+                return new Not(parseFactor());
+            }
+            if (accept("(")) {
+                FilterExpression inner = parseOr();
+                if (!accept(")")) {
+                    throw new InvalidQueryException("Missing ')' in filter");
+                }
+                return inner;
+            }
+
+            String column = next("column name");
+            if (column.startsWith("'") || !Character.isLetter(column.charAt(0)) && column.charAt(0) != '_') {
+                throw new InvalidQueryException("Expected a column name but found " + column);
+            }
+            String operator = next("operator");
+            if (!List.of("=", "!=", "<", "<=", ">", ">=").contains(operator)) {
+                throw new InvalidQueryException("Expected an operator after " + column + " but found " + operator);
+            }
+            return new Comparison(column, operator, literal(next("value")));
+        }
+
+        private Object literal(String token) {
+            if (token.startsWith("'")) {
+                return token.substring(1);
+            }
+            switch (token.toLowerCase(Locale.ROOT)) {
+                case "true":
+                    return Boolean.TRUE;
+                case "false":
+                    return Boolean.FALSE;
+                case "null":
+                    return null;
+                default:
+                    try {
+                        return new BigDecimal(token);
+                    } catch (NumberFormatException e) {
+                        throw new InvalidQueryException("Invalid value in filter: " + token);
+                    }
+            }
+        }
+
+        private String next(String expected) {
+            if (position >= tokens.size()) {
+                throw new InvalidQueryException("Filter ended while expecting " + expected);
+            }
+            return tokens.get(position++);
+        }
+
+        private boolean accept(String token) {
+            if (position < tokens.size() && tokens.get(position).equals(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
+
+// Model/InvalidQueryException.java
+package com.processor.model;
+
+/**
+ * A query that cannot be parsed or run on a file: an unknown column, or a
+ * filter literal that does not suit its column's type. The caller's
+ * request is at fault rather than the file, so jobs fail on it instead of
+ * skipping the file.
+ */
+public class InvalidQueryException extends IllegalArgumentException {
+
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+}
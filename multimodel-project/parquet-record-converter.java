@@ -0,0 +1,303 @@
+// Service/RecordJsonConverter.java
+package com.processor.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Writes Avro records straight to a {@link JsonGenerator} using a plan that is
+ * compiled once per schema: field positions and pre-quoted names are resolved
+ * up front and each field gets a writer chosen from its type, so the per-row
+ * loop does no schema walking, field name lookups or intermediate maps.
+ * <p>
+ * Strings are written from the {@link Utf8} bytes without decoding, dates and
+ * timestamps are written as ISO-8601 strings, decimals as exact numbers and
+ * INT96 timestamps (read as 12-byte fixed values) as instants.
+ */
+public final class RecordJsonConverter {
+
+    @FunctionalInterface
+    interface ValueWriter {
+        // value is never null; nulls are written by the enclosing record, array or map
+        void write(JsonGenerator generator, Object value) throws IOException;
+    }
+
+    private static final long JULIAN_EPOCH_OFFSET_DAYS = 2_440_588L;
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+
+    private final Schema schema;
+    private final RecordWriter root;
+
+    private RecordJsonConverter(Schema schema, RecordWriter root) {
+        this.schema = schema;
+        this.root = root;
+    }
+
+    /**
+     * Compiles a converter for records of the given schema. Top-level fields
+     * rejected by {@code outputColumns} are left out of the output.
+     */
+    public static RecordJsonConverter compile(Schema schema, Predicate<String> outputColumns) {
+        return new RecordJsonConverter(schema, recordWriter(schema, outputColumns));
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public void write(JsonGenerator generator, GenericRecord record) throws IOException {
+        root.write(generator, record);
+    }
+
+    private static RecordWriter recordWriter(Schema schema, Predicate<String> include) {
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            if (include.test(field.name())) {
+                fields.add(field);
+            }
+        }
+
+        SerializedString[] names = new SerializedString[fields.size()];
+        int[] positions = new int[fields.size()];
+        ValueWriter[] writers = new ValueWriter[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            Schema.Field field = fields.get(i);
+            names[i] = new SerializedString(field.name());
+            positions[i] = field.pos();
+            writers[i] = writerFor(field.schema());
+        }
+        return new RecordWriter(names, positions, writers);
+    }
+
+    private static ValueWriter writerFor(Schema schema) {
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType != null) {
+            ValueWriter logical = logicalWriter(logicalType);
+            if (logical != null) {
+                return logical;
+            }
+        }
+
+        switch (schema.getType()) {
+            case NULL:
+                return (generator, value) -> generator.writeNull();
+            case BOOLEAN:
+                return (generator, value) -> generator.writeBoolean((Boolean) value);
+            case INT:
+                return (generator, value) -> generator.writeNumber((Integer) value);
+            case LONG:
+                return (generator, value) -> generator.writeNumber((Long) value);
+            case FLOAT:
+                return (generator, value) -> generator.writeNumber((Float) value);
+            case DOUBLE:
+                return (generator, value) -> generator.writeNumber((Double) value);
+            case STRING:
+                return RecordJsonConverter::writeString;
+            case ENUM:
+                return (generator, value) -> generator.writeString(value.toString());
+            case BYTES:
+                return (generator, value) -> generator.writeBinary(bytes((ByteBuffer) value));
+            case FIXED:
+                if ("INT96".equals(schema.getName()) && schema.getFixedSize() == 12) {
+                    return (generator, value) -> generator.writeString(int96ToInstant(((GenericFixed) value).bytes()).toString());
+                }
+                return (generator, value) -> generator.writeBinary(((GenericFixed) value).bytes());
+            case RECORD:
+                return recordWriter(schema, name -> true);
+            case ARRAY:
+                return new ArrayWriter(writerFor(schema.getElementType()));
+            case MAP:
+                return new MapWriter(writerFor(schema.getValueType()));
+            case UNION:
+                return unionWriter(schema);
+            default:
+                throw new IllegalArgumentException("Unsupported Avro type: " + schema.getType());
+        }
+    }
+
+    private static ValueWriter unionWriter(Schema union) {
+        List<Schema> branches = union.getTypes();
+        // The common optional-field case: nulls are handled by the caller
+        if (branches.size() == 2 && branches.get(0).getType() == Schema.Type.NULL) {
+            return writerFor(branches.get(1));
+        }
+        if (branches.size() == 2 && branches.get(1).getType() == Schema.Type.NULL) {
+            return writerFor(branches.get(0));
+        }
+
+        ValueWriter[] writers = new ValueWriter[branches.size()];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = writerFor(branches.get(i));
+        }
+        return (generator, value) -> writers[GenericData.get().resolveUnion(union, value)].write(generator, value);
+    }
+
+    private static ValueWriter logicalWriter(LogicalType logicalType) {
+        switch (logicalType.getName()) {
+            case "date":
+                return (generator, value) -> generator.writeString(value instanceof Integer
+                        ? LocalDate.ofEpochDay((Integer) value).toString() : value.toString());
+            case "time-millis":
+                return (generator, value) -> generator.writeString(value instanceof Integer
+                        ? LocalTime.ofNanoOfDay((Integer) value * 1_000_000L).toString() : value.toString());
+            case "time-micros":
+                return (generator, value) -> generator.writeString(value instanceof Long
+                        ? LocalTime.ofNanoOfDay((Long) value * 1_000L).toString() : value.toString());
+            case "timestamp-millis":
+                return (generator, value) -> generator.writeString(value instanceof Long
+                        ? Instant.ofEpochMilli((Long) value).toString() : value.toString());
+            case "timestamp-micros":
+                return (generator, value) -> generator.writeString(value instanceof Long
+                        ? microsToInstant((Long) value).toString() : value.toString());
+            case "local-timestamp-millis":
+                return (generator, value) -> generator.writeString(value instanceof Long
+                        ? LocalDateTime.ofInstant(Instant.ofEpochMilli((Long) value), ZoneOffset.UTC).toString()
+                        : value.toString());
+            case "local-timestamp-micros":
+                return (generator, value) -> generator.writeString(value instanceof Long
+                        ? LocalDateTime.ofInstant(microsToInstant((Long) value), ZoneOffset.UTC).toString()
+                        : value.toString());
+            case "decimal":
+                int scale = ((LogicalTypes.Decimal) logicalType).getScale();
+                return (generator, value) -> generator.writeNumber(decimal(value, scale));
+            default:
+                // uuid and unknown logical types fall back to their underlying type
+                return null;
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, Object value) throws IOException {
+        // Byte-based generators can copy the UTF-8 bytes without decoding them
+        if (value instanceof Utf8 && generator instanceof UTF8JsonGenerator) {
+            Utf8 utf8 = (Utf8) value;
+            generator.writeUTF8String(utf8.getBytes(), 0, utf8.getByteLength());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    private static BigDecimal decimal(Object value, int scale) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        byte[] unscaled = value instanceof GenericFixed ? ((GenericFixed) value).bytes() : bytes((ByteBuffer) value);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        // Read through a duplicate so the record's buffer position is left alone
+        ByteBuffer copy = buffer.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+
+    private static Instant microsToInstant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+                Math.floorMod(micros, MICROS_PER_SECOND) * 1_000L);
+    }
+
+    // INT96: 8 bytes of nanoseconds within the day, then a 4 byte Julian day, little endian
+    static Instant int96ToInstant(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long nanosOfDay = buffer.getLong();
+        long epochDay = buffer.getInt() - JULIAN_EPOCH_OFFSET_DAYS;
+        return Instant.ofEpochSecond(epochDay * 86_400L, nanosOfDay);
+    }
+
+    private static final class RecordWriter implements ValueWriter {
+        private final SerializedString[] names;
+        private final int[] positions;
+        private final ValueWriter[] writers;
+
+        private RecordWriter(SerializedString[] names, int[] positions, ValueWriter[] writers) {
+            this.names = names;
+            this.positions = positions;
+            this.writers = writers;
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Object value) throws IOException {
+            IndexedRecord record = (IndexedRecord) value;
+            generator.writeStartObject();
+            for (int i = 0; i < positions.length; i++) {
+                generator.writeFieldName(names[i]);
+                Object fieldValue = record.get(positions[i]);
+                if (fieldValue == null) {
+                    generator.writeNull();
+                } else {
+                    writers[i].write(generator, fieldValue);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private static final class ArrayWriter implements ValueWriter {
+        private final ValueWriter elementWriter;
+
+        private ArrayWriter(ValueWriter elementWriter) {
+            this.elementWriter = elementWriter;
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Object value) throws IOException {
+            generator.writeStartArray();
+            for (Object element : (Collection<?>) value) {
+                if (element == null) {
+                    generator.writeNull();
+                } else {
+                    elementWriter.write(generator, element);
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static final class MapWriter implements ValueWriter {
+        private final ValueWriter valueWriter;
+
+        private MapWriter(ValueWriter valueWriter) {
+            this.valueWriter = valueWriter;
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Object value) throws IOException {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(entry.getKey().toString());
+                if (entry.getValue() == null) {
+                    generator.writeNull();
+                } else {
+                    valueWriter.write(generator, entry.getValue());
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
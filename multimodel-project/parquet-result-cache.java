@@ -0,0 +1,341 @@
+// Util/ContentHash.java
+package com.processor.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * SHA-256 content hashes for the result cache. Hashes of files on disk are
+ * remembered by path, file key (the inode, where there is one), size and
+ * modification time, so a file that is submitted again is not read again
+ * unless it changed. A file modified within the timestamp granularity of
+ * when it was hashed may have changed again without its time moving, so
+ * its hash is not trusted until it has been taken after that window.
+ */
+public final class ContentHash {
+
+    private static final int MAX_REMEMBERED = 4096;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    // Coarse enough for filesystems that keep modification times to the second, or to two (FAT)
+    private static final long MTIME_GRANULARITY_MILLIS = 2000;
+
+    private static final Map<String, Remembered> REMEMBERED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Remembered> eldest) {
+            return size() > MAX_REMEMBERED;
+        }
+    };
+
+    private ContentHash() {
+    }
+
+    public static String of(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        long size = attributes.size();
+        FileTime lastModified = attributes.lastModifiedTime();
+        synchronized (REMEMBERED) {
+            Remembered remembered = REMEMBERED.get(path);
+            if (remembered != null && remembered.matches(fileKey, size, lastModified)) {
+                return remembered.hash;
+            }
+        }
+
+        long hashedAt = System.currentTimeMillis();
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        synchronized (REMEMBERED) {
+            REMEMBERED.put(path, new Remembered(fileKey, size, lastModified, hashedAt, hash));
+        }
+        return hash;
+    }
+
+    /** Hashes a prefix, such as a description of how the data is encoded, followed by the data. */
+    public static String of(String prefix, ByteBuffer data) {
+        MessageDigest digest = sha256();
+        digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(data.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String of(String text) {
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JDK is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Remembered {
+        private final Object fileKey;
+        private final long size;
+        private final FileTime lastModified;
+        private final long hashedAt;
+        private final String hash;
+
+        private Remembered(Object fileKey, long size, FileTime lastModified, long hashedAt, String hash) {
+            this.fileKey = fileKey;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hashedAt = hashedAt;
+            this.hash = hash;
+        }
+
+        // A file rewritten in the same tick as it was hashed keeps its time, so such hashes are not reused
+        boolean matches(Object fileKey, long size, FileTime lastModified) {
+            return Objects.equals(this.fileKey, fileKey) && this.size == size
+                    && this.lastModified.equals(lastModified)
+                    && lastModified.toMillis() < hashedAt - MTIME_GRANULARITY_MILLIS;
+        }
+    }
+}
+
+// Service/ResultCache.java
+package com.processor.service;
+
+import com.processor.model.OutputFormat;
+import com.processor.model.ParquetQuery;
+import com.processor.util.ContentHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps converted outputs on local disk, keyed by the content hash of the
+ * parquet file together with everything else that shapes the output: the
+ * format, the projected columns and filter, and the output ordering.
+ * <p>
+ * Results are hard-linked into and out of the cache directory where the
+ * file system allows it and copied otherwise, so a hit costs no more than
+ * a link. The index of cached results lives in memory in least recently
+ * used order and is rebuilt from the directory on startup; the oldest
+ * results are evicted once the cache grows beyond its size limit. Cached
+ * files are named {@code <key>_<records>} so the record count survives a
+ * restart. A size limit of 0 disables the cache.
+ */
+@Component
+@Slf4j
+public class ResultCache {
+
+    /** Change whenever the converter's output changes, so older results are no longer served. */
+    static final int OUTPUT_VERSION = 1;
+
+    private static final Pattern FILE_NAME = Pattern.compile("([0-9a-f]{64})_(\\d+)");
+
+    private final File directory;
+    private final long maxBytes;
+    private final Counter hits;
+    private final Counter misses;
+
+    // All guarded by this
+    private final LinkedHashMap<String, CachedResult> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public ResultCache(@Value("${app.cache.directory:cache}") String directory,
+                       @Value("${app.cache.max-bytes:10737418240}") long maxBytes,
+                       MeterRegistry meterRegistry) throws IOException {
+        this.directory = new File(directory);
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("parquet.cache.hits")
+                .description("Conversions served from the result cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("parquet.cache.misses")
+                .description("Conversions not found in the result cache")
+                .register(meterRegistry);
+        Gauge.builder("parquet.cache.size", this, ResultCache::getTotalBytes)
+                .description("Bytes held by the result cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("parquet.cache.entries", this, ResultCache::getEntryCount)
+                .description("Results held by the result cache")
+                .register(meterRegistry);
+
+        if (isEnabled()) {
+            Files.createDirectories(this.directory.toPath());
+            load();
+        }
+    }
+
+    public static String key(String contentHash, OutputFormat format, ParquetQuery query, boolean orderedOutput) {
+        return ContentHash.of(OUTPUT_VERSION + "\n" + contentHash + "\n" + format + "\n" + query.canonical()
+                + "\n" + orderedOutput);
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Puts the cached result for the key at the target path, replacing any
+     * file there, and returns its record count, or -1 if nothing is cached.
+     */
+    public synchronized long restore(String key, File target) throws IOException {
+        CachedResult cached = index.get(key);
+        if (cached == null) {
+            misses.increment();
+            return -1;
+        }
+        if (!cached.file.exists()) {
+            // Removed behind our back
+            forget(key);
+            misses.increment();
+            return -1;
+        }
+
+        Files.deleteIfExists(target.toPath());
+        try {
+            Files.createLink(target.toPath(), cached.file.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(cached.file.toPath(), target.toPath());
+        }
+        // Keeps the least recently used order across restarts
+        cached.file.setLastModified(System.currentTimeMillis());
+        hits.increment();
+        return cached.records;
+    }
+
+    /** Adds a finished output to the cache. Failures are logged, the output itself is left alone. */
+    public synchronized void store(String key, File output, long records) {
+        if (index.containsKey(key)) {
+            return;
+        }
+        long size = output.length();
+        if (size > maxBytes) {
+            return;
+        }
+
+        Path cacheFile = new File(directory, key + "_" + records).toPath();
+        try {
+            try {
+                Files.createLink(cacheFile, output.toPath());
+            } catch (FileAlreadyExistsException e) {
+                Files.delete(cacheFile);
+                Files.createLink(cacheFile, output.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Path temp = Files.createTempFile(directory.toPath(), key, ".tmp");
+                Files.copy(output.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Could not cache {}: {}", output.getName(), e.getMessage());
+            return;
+        }
+
+        index.put(key, new CachedResult(cacheFile.toFile(), records, size));
+        totalBytes += size;
+        evict();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    public double getHitCount() {
+        return hits.count();
+    }
+
+    public double getMissCount() {
+        return misses.count();
+    }
+
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            Matcher matcher = FILE_NAME.matcher(file.getName());
+            if (!matcher.matches()) {
+                // Leftovers of an interrupted copy
+                file.delete();
+                continue;
+            }
+            long size = file.length();
+            index.put(matcher.group(1), new CachedResult(file, Long.parseLong(matcher.group(2)), size));
+            totalBytes += size;
+        }
+        evict();
+        log.info("Result cache holds {} results, {} bytes", index.size(), totalBytes);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, CachedResult>> eldest = index.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            CachedResult cached = eldest.next().getValue();
+            eldest.remove();
+            totalBytes -= cached.size;
+            cached.file.delete();
+        }
+    }
+
+    private void forget(String key) {
+        CachedResult cached = index.remove(key);
+        if (cached != null) {
+            totalBytes -= cached.size;
+            cached.file.delete();
+        }
+    }
+
+    private static final class CachedResult {
+        private final File file;
+        private final long records;
+        private final long size;
+
+        private CachedResult(File file, long records, long size) {
+            this.file = file;
+            this.records = records;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,577 @@
+// Model/ParquetSource.java
+package com.processor.model;
+
+import com.processor.util.ContentHash;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.io.InputFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A parquet file to convert: a file on disk or an entry read in place from
+ * a zip archive. The name is the source's path relative to the directory or
+ * archive it came from, with '/' separators; the output is written to the
+ * same path under the output directory, so that files of the same name in
+ * different directories do not share an output.
+ */
+public interface ParquetSource {
+
+    String getName();
+
+    /** Opens the data for reading; the returned file may be read by several tasks at once. */
+    InputFile newInputFile(Configuration conf) throws IOException;
+
+    /** A SHA-256 of the source's bytes, identifying results converted from the same data. */
+    String getContentHash() throws IOException;
+
+    /** The file on disk the source is read from, or null if it is read from an archive. */
+    default File getFile() {
+        return null;
+    }
+
+    static ParquetSource of(File file) {
+        return of(file, file.getParentFile());
+    }
+
+    /** A file named by its path relative to root. */
+    static ParquetSource of(File file, File root) {
+        String name = root == null ? file.getName()
+                : root.toPath().toAbsolutePath().normalize()
+                        .relativize(file.toPath().toAbsolutePath().normalize()).toString()
+                        .replace(File.separatorChar, '/');
+        return new ParquetSource() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public InputFile newInputFile(Configuration conf) throws IOException {
+                return HadoopInputFile.fromPath(new Path(file.getAbsolutePath()), conf);
+            }
+
+            @Override
+            public String getContentHash() throws IOException {
+                return ContentHash.of(file);
+            }
+
+            @Override
+            public File getFile() {
+                return file;
+            }
+        };
+    }
+}
+
+// Util/ZipArchive.java
+package com.processor.util;
+
+import com.processor.model.ParquetSource;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.io.InputFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a zip archive in place. The central directory is read from a
+ * memory-mapped tail of the file, and entries are opened without extracting
+ * anything to disk: stored entries are served straight from a mapping of
+ * their bytes, deflated entries are inflated once into a heap buffer.
+ * <p>
+ * Zip64 archives are supported. Entries larger than 2 GB cannot be mapped
+ * or buffered and are rejected with a {@link ZipException}.
+ */
+public final class ZipArchive implements Closeable {
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+    /** How much of the end of a zip can hold its end records: end record, longest comment, zip64 locator. */
+    public static final int MAX_TAIL_SIZE = 22 + 0xFFFF + 20;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final long UNSIGNED_INT_MAX = 0xFFFFFFFFL;
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<Entry> entries;
+
+    private ZipArchive(File file, FileChannel channel, List<Entry> entries) {
+        this.file = file;
+        this.channel = channel;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    public static ZipArchive open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new ZipArchive(file, channel, readCentralDirectory(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public List<Entry> parquetEntries() {
+        List<Entry> parquetEntries = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!entry.isDirectory() && entry.getName().endsWith(".parquet")) {
+                parquetEntries.add(entry);
+            }
+        }
+        return parquetEntries;
+    }
+
+    /**
+     * The first .parquet entry that cannot be read in place: one over 2 GB,
+     * or the deflated entry that takes the memory needed to inflate them all
+     * past maxBufferedBytes. Null when every entry can be read in place.
+     */
+    public Entry firstEntryTooLargeInPlace(long maxBufferedBytes) {
+        long bufferedBytes = 0;
+        for (Entry entry : parquetEntries()) {
+            if (entry.getMethod() != STORED) {
+                bufferedBytes += entry.getSize();
+            }
+            if (entry.getSize() > Integer.MAX_VALUE || entry.getCompressedSize() > Integer.MAX_VALUE
+                    || bufferedBytes > maxBufferedBytes) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /** The .parquet entries as conversion sources, named after the entry's path in the archive. */
+    public List<ParquetSource> parquetSources() {
+        List<ParquetSource> sources = new ArrayList<>();
+        for (Entry entry : parquetEntries()) {
+            sources.add(new ParquetSource() {
+                @Override
+                public String getName() {
+                    return entry.getName();
+                }
+
+                @Override
+                public InputFile newInputFile(Configuration conf) throws IOException {
+                    return openInputFile(entry);
+                }
+
+                @Override
+                public String getContentHash() throws IOException {
+                    return contentHash(entry);
+                }
+            });
+        }
+        return sources;
+    }
+
+    /**
+     * Opens an entry for random access. Stored entries are mapped, deflated
+     * entries are inflated into memory and checked against their CRC.
+     */
+    public InputFile openInputFile(Entry entry) throws IOException {
+        if (entry.isEncrypted()) {
+            throw new ZipException("Encrypted entry is not supported: " + entry.getName());
+        }
+        if (entry.getSize() > Integer.MAX_VALUE || entry.getCompressedSize() > Integer.MAX_VALUE) {
+            throw new ZipException("Entry is too large to read in place: " + entry.getName());
+        }
+
+        ByteBuffer data = map(channel, dataOffset(entry), (int) entry.getCompressedSize());
+        switch (entry.getMethod()) {
+            case STORED:
+                return new ByteBufferInputFile(data);
+            case DEFLATED:
+                return new ByteBufferInputFile(ByteBuffer.wrap(inflate(entry, data)));
+            default:
+                throw new ZipException("Unsupported compression method " + entry.getMethod()
+                        + " for entry " + entry.getName());
+        }
+    }
+
+    /**
+     * Hashes an entry's bytes as stored in the archive, without inflating them.
+     * The method, size and CRC are included so that a stored and a deflated
+     * copy of the same data never share a hash.
+     */
+    public String contentHash(Entry entry) throws IOException {
+        if (entry.getCompressedSize() > Integer.MAX_VALUE) {
+            throw new ZipException("Entry is too large to read in place: " + entry.getName());
+        }
+        ByteBuffer data = map(channel, dataOffset(entry), (int) entry.getCompressedSize());
+        return ContentHash.of(entry.getMethod() + ":" + entry.getSize() + ":" + entry.getCrc(), data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mappings stay valid after the channel is closed and are released by the GC
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+
+    /**
+     * Returns where the central directory starts, reading only the end of
+     * the file. Everything from there to the end is needed to {@link #open}
+     * the archive, which lets a download fetch that part first.
+     */
+    public static long centralDirectoryOffset(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return locateCentralDirectory(channel)[0];
+        }
+    }
+
+    // Returns the central directory's offset, size and entry count
+    private static long[] locateCentralDirectory(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < EOCD_SIZE) {
+            throw new ZipException("Not a zip file: too short");
+        }
+
+        // The end record sits after the central directory and before an optional comment
+        int tailSize = (int) Math.min(fileSize, MAX_TAIL_SIZE);
+        ByteBuffer tail = map(channel, fileSize - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new ZipException("Not a zip file: end of central directory not found");
+        }
+
+        long entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+        long directorySize = tail.getInt(eocd + 12) & UNSIGNED_INT_MAX;
+        long directoryOffset = tail.getInt(eocd + 16) & UNSIGNED_INT_MAX;
+        int locator = eocd - ZIP64_EOCD_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+            ByteBuffer zip64 = map(channel, tail.getLong(locator + 8), ZIP64_EOCD_SIZE);
+            if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                throw new ZipException("Corrupt zip64 end of central directory");
+            }
+            entryCount = zip64.getLong(32);
+            directorySize = zip64.getLong(40);
+            directoryOffset = zip64.getLong(48);
+        }
+        if (directorySize > Integer.MAX_VALUE || directoryOffset + directorySize > fileSize) {
+            throw new ZipException("Corrupt central directory");
+        }
+        return new long[]{directoryOffset, directorySize, entryCount};
+    }
+
+    private static List<Entry> readCentralDirectory(FileChannel channel) throws IOException {
+        long[] location = locateCentralDirectory(channel);
+        long directoryOffset = location[0];
+        long directorySize = location[1];
+        long entryCount = location[2];
+
+        ByteBuffer directory = map(channel, directoryOffset, (int) directorySize);
+        List<Entry> entries = new ArrayList<>();
+        int pos = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > directory.limit() || directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Corrupt central directory at entry " + i);
+            }
+            int flags = directory.getShort(pos + 8) & 0xFFFF;
+            int method = directory.getShort(pos + 10) & 0xFFFF;
+            long crc = directory.getInt(pos + 16) & UNSIGNED_INT_MAX;
+            long compressedSize = directory.getInt(pos + 20) & UNSIGNED_INT_MAX;
+            long size = directory.getInt(pos + 24) & UNSIGNED_INT_MAX;
+            int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+            int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+            int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+            long localHeaderOffset = directory.getInt(pos + 42) & UNSIGNED_INT_MAX;
+
+            byte[] name = new byte[nameLength];
+            directory.get(pos + CENTRAL_HEADER_SIZE, name);
+
+            // Zip64 values follow in this order, present only for the fields that overflowed
+            int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = directory.getShort(extra) & 0xFFFF;
+                int length = directory.getShort(extra + 2) & 0xFFFF;
+                if (id == ZIP64_EXTRA_ID) {
+                    int value = extra + 4;
+                    if (size == UNSIGNED_INT_MAX) {
+                        size = directory.getLong(value);
+                        value += 8;
+                    }
+                    if (compressedSize == UNSIGNED_INT_MAX) {
+                        compressedSize = directory.getLong(value);
+                        value += 8;
+                    }
+                    if (localHeaderOffset == UNSIGNED_INT_MAX) {
+                        localHeaderOffset = directory.getLong(value);
+                    }
+                }
+                extra += 4 + length;
+            }
+
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), flags, method, crc,
+                    compressedSize, size, localHeaderOffset));
+            pos = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    // The local header repeats the name and may carry a different extra field
+    private long dataOffset(Entry entry) throws IOException {
+        ByteBuffer header = map(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Corrupt local header for entry " + entry.getName());
+        }
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        return entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private static byte[] inflate(Entry entry, ByteBuffer compressed) throws IOException {
+        byte[] data = new byte[(int) entry.getSize()];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < data.length) {
+                int inflated = inflater.inflate(data, length, data.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated entry: " + entry.getName());
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt entry " + entry.getName() + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if (crc.getValue() != entry.getCrc()) {
+            throw new ZipException("CRC mismatch for entry " + entry.getName());
+        }
+        return data;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int flags, int method, long crc, long compressedSize, long size,
+                      long localHeaderOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** The name without its directory path. */
+        public String getFileName() {
+            return name.substring(name.lastIndexOf('/') + 1);
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public boolean isEncrypted() {
+            return (flags & 1) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
+
+// Util/ByteBufferInputFile.java
+package com.processor.util;
+
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.SeekableInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A parquet {@link InputFile} over a buffer, typically a memory mapping.
+ * Each stream reads through its own view, so streams can be used from
+ * different threads at the same time.
+ */
+public final class ByteBufferInputFile implements InputFile {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputFile(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public long getLength() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public SeekableInputStream newStream() {
+        return new ByteBufferStream(buffer.duplicate());
+    }
+
+    private static final class ByteBufferStream extends SeekableInputStream {
+        // The view's position is the stream position
+        private final ByteBuffer view;
+
+        private ByteBufferStream(ByteBuffer view) {
+            this.view = view;
+        }
+
+        @Override
+        public long getPos() {
+            return view.position();
+        }
+
+        @Override
+        public void seek(long newPos) throws IOException {
+            if (newPos < 0 || newPos > view.limit()) {
+                throw new EOFException("Seek to " + newPos + " outside of 0.." + view.limit());
+            }
+            view.position((int) newPos);
+        }
+
+        @Override
+        public int read() {
+            return view.hasRemaining() ? view.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!view.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, view.remaining());
+            view.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, view.remaining()));
+            view.position(view.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return view.remaining();
+        }
+
+        @Override
+        public void readFully(byte[] bytes) throws IOException {
+            readFully(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void readFully(byte[] bytes, int offset, int length) throws IOException {
+            if (length > view.remaining()) {
+                throw new EOFException("Reached the end of the data with " + view.remaining()
+                        + " of " + length + " bytes read");
+            }
+            view.get(bytes, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer destination) {
+            if (!view.hasRemaining()) {
+                return destination.hasRemaining() ? -1 : 0;
+            }
+            int count = Math.min(destination.remaining(), view.remaining());
+            destination.put(view.slice().limit(count));
+            view.position(view.position() + count);
+            return count;
+        }
+
+        @Override
+        public void readFully(ByteBuffer destination) throws IOException {
+            if (destination.remaining() > view.remaining()) {
+                throw new EOFException("Reached the end of the data with " + view.remaining()
+                        + " of " + destination.remaining() + " bytes read");
+            }
+            read(destination);
+        }
+    }
+}